@@ -0,0 +1,20 @@
+-- ========================
+-- Ràng buộc một bản ghi thu phí cho mỗi hộ khẩu + đợt thu phí
+-- Chạy một lần trên cơ sở dữ liệu đã có trước khi khởi động phiên bản mới
+-- (ddl-auto=update không thêm được ràng buộc nếu còn dữ liệu trùng).
+-- ========================
+BEGIN;
+
+-- Giữ bản ghi có id nhỏ nhất (giống logic tổng quan), xóa các bản ghi trùng còn lại
+DELETE FROM thu_phi_ho_khau t
+USING thu_phi_ho_khau k
+WHERE t.ho_khau_id = k.ho_khau_id
+  AND t.dot_thu_phi_id = k.dot_thu_phi_id
+  AND t.id > k.id;
+
+ALTER TABLE thu_phi_ho_khau
+    ADD CONSTRAINT uk_thu_phi_ho_khau_dot UNIQUE (ho_khau_id, dot_thu_phi_id);
+
+COMMIT;
+
+-- Sau khi chạy: gọi POST /api/thu-phi-ho-khau/tong-hop/rebuild để tính lại bảng tổng hợp
@@ -0,0 +1,16 @@
+-- ========================
+-- Index cho API nhật ký biến động phân trang theo (thoi_gian DESC, id DESC)
+-- Chạy trước khi khởi động phiên bản mới trên cơ sở dữ liệu đã có nhiều dữ liệu:
+-- CONCURRENTLY không khóa ghi bảng bien_dong (không chạy được trong transaction).
+-- ========================
+CREATE INDEX CONCURRENTLY IF NOT EXISTS idx_bien_dong_thoi_gian
+    ON bien_dong (thoi_gian DESC, id DESC);
+
+CREATE INDEX CONCURRENTLY IF NOT EXISTS idx_bien_dong_ho_khau_thoi_gian
+    ON bien_dong (ho_khau_id, thoi_gian DESC, id DESC);
+
+CREATE INDEX CONCURRENTLY IF NOT EXISTS idx_bien_dong_nhan_khau_thoi_gian
+    ON bien_dong (nhan_khau_id, thoi_gian DESC, id DESC);
+
+CREATE INDEX CONCURRENTLY IF NOT EXISTS idx_bien_dong_loai_thoi_gian
+    ON bien_dong (loai, thoi_gian DESC, id DESC);
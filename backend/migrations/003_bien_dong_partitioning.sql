@@ -0,0 +1,62 @@
+-- ========================
+-- Chuyển bien_dong sang bảng phân vùng theo tháng (PARTITION BY RANGE thoi_gian)
+-- Chạy một lần khi dừng ứng dụng. Sau đó ứng dụng tự tạo phân vùng cho các tháng tới
+-- và lưu trữ (archive) các phân vùng cũ theo app.bien-dong.partition.*.
+-- ========================
+BEGIN;
+
+ALTER TABLE bien_dong RENAME TO bien_dong_old;
+
+-- Tên index thuộc schema: bỏ index cũ để tạo lại trên bảng phân vùng
+DROP INDEX IF EXISTS idx_bien_dong_thoi_gian;
+DROP INDEX IF EXISTS idx_bien_dong_ho_khau_thoi_gian;
+DROP INDEX IF EXISTS idx_bien_dong_nhan_khau_thoi_gian;
+DROP INDEX IF EXISTS idx_bien_dong_loai_thoi_gian;
+
+CREATE SEQUENCE IF NOT EXISTS bien_dong_id_seq_p;
+
+-- Khóa chính của bảng phân vùng phải chứa cột phân vùng
+CREATE TABLE bien_dong (
+    id BIGINT NOT NULL DEFAULT nextval('bien_dong_id_seq_p'),
+    loai VARCHAR(50) NOT NULL,
+    noi_dung VARCHAR(1000),
+    thoi_gian TIMESTAMP NOT NULL,
+    ho_khau_id BIGINT,
+    nhan_khau_id BIGINT,
+    PRIMARY KEY (id, thoi_gian),
+    CONSTRAINT fk_biendong_hokhau FOREIGN KEY (ho_khau_id) REFERENCES ho_khau(id) ON DELETE CASCADE,
+    CONSTRAINT fk_biendong_nhankhau FOREIGN KEY (nhan_khau_id) REFERENCES nhan_khau(id) ON DELETE CASCADE
+) PARTITION BY RANGE (thoi_gian);
+
+ALTER SEQUENCE bien_dong_id_seq_p OWNED BY bien_dong.id;
+
+-- Phân vùng cho mọi tháng đã có dữ liệu tới 3 tháng sau tháng hiện tại
+DO $$
+DECLARE
+    thang DATE := date_trunc('month', COALESCE((SELECT MIN(thoi_gian) FROM bien_dong_old), now()));
+    het DATE := date_trunc('month', now()) + INTERVAL '4 months';
+BEGIN
+    WHILE thang < het LOOP
+        EXECUTE format('CREATE TABLE IF NOT EXISTS %I PARTITION OF bien_dong FOR VALUES FROM (%L) TO (%L)',
+                       'bien_dong_p' || to_char(thang, 'YYYYMM'), thang, thang + INTERVAL '1 month');
+        thang := thang + INTERVAL '1 month';
+    END LOOP;
+END $$;
+
+-- Lưới an toàn: dòng nằm ngoài mọi phân vùng tháng (bình thường luôn rỗng)
+CREATE TABLE bien_dong_p_default PARTITION OF bien_dong DEFAULT;
+
+CREATE INDEX idx_bien_dong_thoi_gian ON bien_dong (thoi_gian DESC, id DESC);
+CREATE INDEX idx_bien_dong_ho_khau_thoi_gian ON bien_dong (ho_khau_id, thoi_gian DESC, id DESC);
+CREATE INDEX idx_bien_dong_nhan_khau_thoi_gian ON bien_dong (nhan_khau_id, thoi_gian DESC, id DESC);
+CREATE INDEX idx_bien_dong_loai_thoi_gian ON bien_dong (loai, thoi_gian DESC, id DESC);
+
+INSERT INTO bien_dong (id, loai, noi_dung, thoi_gian, ho_khau_id, nhan_khau_id)
+SELECT id, loai, noi_dung, COALESCE(thoi_gian, now()), ho_khau_id, nhan_khau_id
+FROM bien_dong_old;
+
+SELECT setval('bien_dong_id_seq_p', COALESCE((SELECT MAX(id) FROM bien_dong), 0) + 1, false);
+
+DROP TABLE bien_dong_old;
+
+COMMIT;
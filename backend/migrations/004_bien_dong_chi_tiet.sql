@@ -0,0 +1,8 @@
+-- ========================
+-- Chi tiết thay đổi có cấu trúc cho bien_dong (trường, giá trị cũ/mới, người thực hiện)
+-- Bản ghi cũ giữ chi_tiet = NULL; noi_dung vẫn là câu hiển thị.
+-- ========================
+ALTER TABLE bien_dong ADD COLUMN IF NOT EXISTS chi_tiet JSONB;
+
+-- jsonb_path_ops: gọn hơn jsonb_ops và đủ cho truy vấn chứa (chi_tiet @> '{"truong": "hoTen"}')
+CREATE INDEX IF NOT EXISTS idx_bien_dong_chi_tiet ON bien_dong USING GIN (chi_tiet jsonb_path_ops);
@@ -0,0 +1,16 @@
+-- ========================
+-- Tìm kiếm toàn văn trên bien_dong.noi_dung, không phân biệt dấu / hoa thường
+-- ========================
+CREATE EXTENSION IF NOT EXISTS unaccent;
+
+-- unaccent() là STABLE (phụ thuộc search_path) nên không dùng được trong index;
+-- bọc lại với từ điển chỉ định rõ để khai báo IMMUTABLE
+CREATE OR REPLACE FUNCTION f_unaccent(text) RETURNS text
+    LANGUAGE sql IMMUTABLE PARALLEL SAFE STRICT
+AS $$ SELECT lower(public.unaccent('public.unaccent'::regdictionary, $1)) $$;
+
+-- Index biểu thức (không thêm cột): cấu hình 'simple' vì tiếng Việt không cần stemming.
+-- fastupdate: dòng mới vào danh sách chờ, gộp vào cây GIN theo lô -> ghi nhật ký gần như không chậm thêm
+CREATE INDEX IF NOT EXISTS idx_bien_dong_noi_dung_fts ON bien_dong
+    USING GIN (to_tsvector('simple', f_unaccent(coalesce(noi_dung, ''))))
+    WITH (fastupdate = on);
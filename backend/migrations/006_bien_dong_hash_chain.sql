@@ -0,0 +1,35 @@
+-- ========================
+-- Chuỗi hash chống sửa cho nhật ký bien_dong
+-- Mỗi dòng mới thuộc một trong app.bien-dong.chuoi.so-chuoi chuỗi, có thứ tự thu_tu và
+-- hash = SHA-256(vị trí, hash_truoc, nội dung). Dòng cũ giữ chuoi = NULL (không kiểm tra được).
+-- ========================
+BEGIN;
+
+ALTER TABLE bien_dong ADD COLUMN IF NOT EXISTS chuoi INTEGER;
+ALTER TABLE bien_dong ADD COLUMN IF NOT EXISTS thu_tu BIGINT;
+ALTER TABLE bien_dong ADD COLUMN IF NOT EXISTS hash_truoc VARCHAR(64);
+ALTER TABLE bien_dong ADD COLUMN IF NOT EXISTS hash VARCHAR(64);
+
+CREATE INDEX IF NOT EXISTS idx_bien_dong_chuoi_thu_tu ON bien_dong (chuoi, thu_tu);
+
+-- Đầu mỗi chuỗi: transaction ghi nhật ký khóa một dòng ở đây (SELECT ... FOR UPDATE SKIP LOCKED)
+CREATE TABLE IF NOT EXISTS bien_dong_chuoi (
+    chuoi INTEGER PRIMARY KEY,
+    thu_tu BIGINT NOT NULL DEFAULT 0,
+    hash VARCHAR(64) NOT NULL,
+    cap_nhat_luc TIMESTAMP
+);
+
+-- Xóa hộ khẩu / nhân khẩu không được xóa theo nhật ký (làm đứt chuỗi): chỉ bỏ liên kết
+ALTER TABLE bien_dong DROP CONSTRAINT IF EXISTS fk_biendong_hokhau;
+ALTER TABLE bien_dong DROP CONSTRAINT IF EXISTS fk_bien_dong_ho_khau;
+ALTER TABLE bien_dong DROP CONSTRAINT IF EXISTS fk_biendong_nhankhau;
+ALTER TABLE bien_dong ADD CONSTRAINT fk_bien_dong_ho_khau
+    FOREIGN KEY (ho_khau_id) REFERENCES ho_khau(id) ON DELETE SET NULL;
+ALTER TABLE bien_dong ADD CONSTRAINT fk_biendong_nhankhau
+    FOREIGN KEY (nhan_khau_id) REFERENCES nhan_khau(id) ON DELETE SET NULL;
+
+COMMIT;
+
+-- Chỉ tài khoản ứng dụng cần quyền ghi; nên thu hồi UPDATE / DELETE trên bien_dong và
+-- bien_dong_chuoi với các tài khoản khác. Kiểm tra: POST /api/bien-dong/chuoi/kiem-tra
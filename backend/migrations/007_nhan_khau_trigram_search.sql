@@ -0,0 +1,15 @@
+-- ========================
+-- Tìm kiếm nhân khẩu theo tên không dấu / CMND-CCCD bằng index trigram
+-- Cần f_unaccent từ migrations/005. CONCURRENTLY: không khóa ghi trên nhan_khau khi tạo index,
+-- vì vậy không chạy trong transaction.
+-- ========================
+CREATE EXTENSION IF NOT EXISTS pg_trgm;
+
+-- Phục vụ f_unaccent(ho_ten) LIKE '%kw%' và toán tử gần đúng theo từ (kw <% f_unaccent(ho_ten))
+CREATE INDEX CONCURRENTLY IF NOT EXISTS idx_nhan_khau_ho_ten_trgm
+    ON nhan_khau USING GIN (f_unaccent(ho_ten) gin_trgm_ops);
+
+CREATE INDEX CONCURRENTLY IF NOT EXISTS idx_nhan_khau_cmnd_cccd_trgm
+    ON nhan_khau USING GIN (cmnd_cccd gin_trgm_ops);
+
+ANALYZE nhan_khau;
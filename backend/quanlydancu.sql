@@ -1,3 +1,13 @@
+-- ========================
+-- 0️⃣ Tiện ích tìm kiếm không dấu
+-- ========================
+CREATE EXTENSION IF NOT EXISTS unaccent;
+CREATE EXTENSION IF NOT EXISTS pg_trgm;
+
+CREATE OR REPLACE FUNCTION f_unaccent(text) RETURNS text
+    LANGUAGE sql IMMUTABLE PARALLEL SAFE STRICT
+AS $$ SELECT lower(public.unaccent('public.unaccent'::regdictionary, $1)) $$;
+
 -- ========================
 -- 1️⃣ Bảng tài khoản
 -- ========================
@@ -48,20 +58,80 @@ CREATE TABLE nhan_khau (
     CONSTRAINT fk_nhankhau_hokhau FOREIGN KEY (ho_khau_id) REFERENCES ho_khau(id) ON DELETE CASCADE
 );
 
+-- Tìm kiếm theo tên không dấu / CMND-CCCD (trigram)
+CREATE INDEX idx_nhan_khau_ho_ten_trgm ON nhan_khau USING GIN (f_unaccent(ho_ten) gin_trgm_ops);
+CREATE INDEX idx_nhan_khau_cmnd_cccd_trgm ON nhan_khau USING GIN (cmnd_cccd gin_trgm_ops);
+
 -- ========================
 -- 4️⃣ Bảng biến động
 -- ========================
 CREATE TABLE bien_dong (
-    id BIGINT GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
-    loai VARCHAR(100),
+    id BIGSERIAL,
+    loai VARCHAR(50) NOT NULL,
     noi_dung VARCHAR(1000),
-    thoi_gian TIMESTAMP,
+    thoi_gian TIMESTAMP NOT NULL,
     ho_khau_id BIGINT,
     nhan_khau_id BIGINT,
-    CONSTRAINT fk_biendong_hokhau FOREIGN KEY (ho_khau_id) REFERENCES ho_khau(id) ON DELETE CASCADE ,
-    CONSTRAINT fk_biendong_nhankhau FOREIGN KEY (nhan_khau_id) REFERENCES nhan_khau(id) ON DELETE CASCADE
+    chi_tiet JSONB,
+    chuoi INTEGER,
+    thu_tu BIGINT,
+    hash_truoc VARCHAR(64),
+    hash VARCHAR(64),
+    PRIMARY KEY (id, thoi_gian),
+    -- Xóa hộ khẩu / nhân khẩu chỉ bỏ liên kết, không xóa nhật ký (chuỗi hash)
+    CONSTRAINT fk_bien_dong_ho_khau FOREIGN KEY (ho_khau_id) REFERENCES ho_khau(id) ON DELETE SET NULL,
+    CONSTRAINT fk_biendong_nhankhau FOREIGN KEY (nhan_khau_id) REFERENCES nhan_khau(id) ON DELETE SET NULL
+) PARTITION BY RANGE (thoi_gian);
+
+-- Phân vùng theo tháng: tháng hiện tại và 3 tháng tới; ứng dụng tự tạo tiếp các tháng sau
+DO $$
+DECLARE
+    thang DATE := date_trunc('month', now());
+BEGIN
+    FOR i IN 0..3 LOOP
+        EXECUTE format('CREATE TABLE IF NOT EXISTS %I PARTITION OF bien_dong FOR VALUES FROM (%L) TO (%L)',
+                       'bien_dong_p' || to_char(thang, 'YYYYMM'), thang, thang + INTERVAL '1 month');
+        thang := thang + INTERVAL '1 month';
+    END LOOP;
+END $$;
+
+CREATE TABLE bien_dong_p_default PARTITION OF bien_dong DEFAULT;
+
+-- Nhật ký đọc theo (thoi_gian DESC, id DESC), lọc tùy chọn theo hộ / nhân khẩu / loại
+CREATE INDEX idx_bien_dong_thoi_gian ON bien_dong (thoi_gian DESC, id DESC);
+CREATE INDEX idx_bien_dong_ho_khau_thoi_gian ON bien_dong (ho_khau_id, thoi_gian DESC, id DESC);
+CREATE INDEX idx_bien_dong_nhan_khau_thoi_gian ON bien_dong (nhan_khau_id, thoi_gian DESC, id DESC);
+CREATE INDEX idx_bien_dong_loai_thoi_gian ON bien_dong (loai, thoi_gian DESC, id DESC);
+CREATE INDEX idx_bien_dong_chi_tiet ON bien_dong USING GIN (chi_tiet jsonb_path_ops);
+CREATE INDEX idx_bien_dong_noi_dung_fts ON bien_dong
+    USING GIN (to_tsvector('simple', f_unaccent(coalesce(noi_dung, ''))))
+    WITH (fastupdate = on);
+
+CREATE INDEX idx_bien_dong_chuoi_thu_tu ON bien_dong (chuoi, thu_tu);
+
+COMMENT ON COLUMN bien_dong.chi_tiet IS 'Thay đổi có cấu trúc: {truong, nhan, giaTriCu, giaTriMoi, nguoiThucHien}';
+COMMENT ON COLUMN bien_dong.hash IS 'SHA-256 (hex) của (chuoi, thu_tu, hash_truoc, loai, noi_dung, thoi_gian, chi_tiet)';
+
+-- Đầu các chuỗi hash nhật ký: thứ tự và hash của dòng cuối mỗi chuỗi
+CREATE TABLE bien_dong_chuoi (
+    chuoi INTEGER PRIMARY KEY,
+    thu_tu BIGINT NOT NULL DEFAULT 0,
+    hash VARCHAR(64) NOT NULL,
+    cap_nhat_luc TIMESTAMP
 );
 
+-- Số lượng biến động theo loại và theo ngày / tháng (cộng dồn khi ghi nhật ký, dựng lại hằng đêm)
+CREATE TABLE bien_dong_thong_ke (
+    don_vi VARCHAR(10) NOT NULL CHECK (don_vi IN ('NGAY', 'THANG')),
+    ky DATE NOT NULL,
+    loai VARCHAR(50) NOT NULL,
+    so_luong BIGINT NOT NULL DEFAULT 0,
+    cap_nhat_luc TIMESTAMP,
+    PRIMARY KEY (don_vi, ky, loai)
+);
+
+COMMENT ON COLUMN bien_dong_thong_ke.ky IS 'Ngày (NGAY) hoặc ngày đầu tháng (THANG)';
+
 -- ========================
 -- 5️⃣ Bảng đợt thu phí
 -- ========================
@@ -89,13 +159,22 @@ CREATE TABLE thu_phi_ho_khau (
     ngay_thu DATE,
     ghi_chu VARCHAR(500),
     CONSTRAINT fk_thuphi_hokhau FOREIGN KEY (ho_khau_id) REFERENCES ho_khau(id) ON DELETE CASCADE,
-    CONSTRAINT fk_thuphi_dotthuphi FOREIGN KEY (dot_thu_phi_id) REFERENCES dot_thu_phi(id)
+    CONSTRAINT fk_thuphi_dotthuphi FOREIGN KEY (dot_thu_phi_id) REFERENCES dot_thu_phi(id),
+    CONSTRAINT uk_thu_phi_ho_khau_dot UNIQUE (ho_khau_id, dot_thu_phi_id)
 );
 
 COMMENT ON COLUMN thu_phi_ho_khau.so_nguoi IS 'Số người trong hộ được tính tại thời điểm ghi nhận';
 COMMENT ON COLUMN thu_phi_ho_khau.tong_phi IS 'Tổng phí thực tế. Phí BAT_BUOC = dinh_muc * so_nguoi; phí TU_NGUYEN do hộ tự khai báo';
 COMMENT ON COLUMN thu_phi_ho_khau.trang_thai IS 'Trạng thái: CHUA_NOP (chưa nộp đủ), DA_NOP (đã nộp đủ)';
 
+-- ========================
+-- 7️⃣ Bảng tổng hợp thu phí theo đợt
+-- ========================
+CREATE TABLE thu_phi_tong_hop (
+    dot_thu_phi_id BIGINT PRIMARY KEY,
+    so_ho_da_nop BIGINT NOT NULL DEFAULT 0,
+    tong_da_thu DECIMAL(18,2) NOT NULL DEFAULT 0,
+    cap_nhat_luc TIMESTAMP
+);
 
-
-
+COMMENT ON TABLE thu_phi_tong_hop IS 'Tổng hợp theo đợt, cập nhật tăng dần khi ghi nhận/xóa thu phí; dựng lại hằng đêm';
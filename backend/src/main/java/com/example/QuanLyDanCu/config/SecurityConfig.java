@@ -1,6 +1,7 @@
 package com.example.QuanLyDanCu.config;
 
 import com.example.QuanLyDanCu.security.JwtFilter;
+import jakarta.servlet.DispatcherType;
 import org.springframework.context.annotation.*;
 import org.springframework.http.HttpMethod;
 import org.springframework.security.authentication.*;
@@ -40,6 +41,9 @@ public class SecurityConfig {
             .cors(cors -> cors.configurationSource(corsConfigurationSource()))
             .sessionManagement(sess -> sess.sessionCreationPolicy(SessionCreationPolicy.STATELESS))
             .authorizeHttpRequests(auth -> auth
+                // Async/error dispatch của response dạng luồng: request gốc đã được xác thực
+                .dispatcherTypeMatchers(DispatcherType.ASYNC, DispatcherType.ERROR).permitAll()
+
                 // Allow CORS preflight for all endpoints
                 .requestMatchers(HttpMethod.OPTIONS, "/**").permitAll()
                 
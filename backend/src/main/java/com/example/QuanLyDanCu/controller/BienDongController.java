@@ -1,17 +1,31 @@
 package com.example.QuanLyDanCu.controller;
 
+import com.example.QuanLyDanCu.dto.request.BienDongFilterDto;
 import com.example.QuanLyDanCu.dto.response.BienDongResponseDto;
+import com.example.QuanLyDanCu.dto.response.BienDongThongKeResponseDto;
+import com.example.QuanLyDanCu.dto.response.CursorPageResponseDto;
+import com.example.QuanLyDanCu.dto.response.KiemTraChuoiResponseDto;
+import com.example.QuanLyDanCu.enums.BienDongType;
+import com.example.QuanLyDanCu.enums.DonViThoiGian;
+import com.example.QuanLyDanCu.service.BienDongArchiveService;
+import com.example.QuanLyDanCu.service.BienDongChuoiService;
 import com.example.QuanLyDanCu.service.BienDongService;
+import com.example.QuanLyDanCu.service.BienDongThongKeService;
 import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.Parameter;
 import io.swagger.v3.oas.annotations.responses.ApiResponse;
 import io.swagger.v3.oas.annotations.responses.ApiResponses;
 import io.swagger.v3.oas.annotations.tags.Tag;
 import lombok.RequiredArgsConstructor;
+import org.springframework.format.annotation.DateTimeFormat;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.*;
 
+import java.time.LocalDate;
+import java.time.LocalDateTime;
 import java.util.List;
+import java.util.Map;
 
 @RestController
 @RequestMapping("/api/bien-dong")
@@ -20,15 +34,214 @@ import java.util.List;
 public class BienDongController {
 
     private final BienDongService bienDongService;
+    private final BienDongArchiveService bienDongArchiveService;
+    private final BienDongThongKeService bienDongThongKeService;
+    private final BienDongChuoiService bienDongChuoiService;
 
     @GetMapping
     @PreAuthorize("hasAnyAuthority('ADMIN','TOTRUONG','KETOAN')")
-    @Operation(summary = "Lấy danh sách biến động dạng log thuần văn bản")
+    @Operation(summary = "Lấy nhật ký biến động (phân trang theo con trỏ)", description = "Mặc định trả về một trang biến động mới nhất trước kèm nextCursor, "
+            + "lọc tùy chọn theo hộ khẩu, nhân khẩu, loại và khoảng thời gian [tuThoiGian, denThoiGian). "
+            + "Truyền unpaged=true để lấy toàn bộ danh sách như trước (chế độ tương thích, sẽ bị loại bỏ).")
     @ApiResponses(value = {
-            @ApiResponse(responseCode = "200", description = "Lấy danh sách thành công")
+            @ApiResponse(responseCode = "200", description = "Lấy danh sách thành công"),
+            @ApiResponse(responseCode = "400", description = "Cursor hoặc tham số lọc không hợp lệ")
     })
-    public ResponseEntity<List<BienDongResponseDto>> getAll() {
-        return ResponseEntity.ok(bienDongService.getAllDto());
+    public ResponseEntity<?> getAll(
+            @Parameter(description = "Trả về toàn bộ danh sách không phân trang (tương thích ngược)") @RequestParam(defaultValue = "false") boolean unpaged,
+            @Parameter(description = "Con trỏ trang tiếp theo (nextCursor của trang trước)") @RequestParam(required = false) String cursor,
+            @Parameter(description = "Số phần tử mỗi trang (mặc định 50, tối đa 200)", example = "50") @RequestParam(required = false) Integer size,
+            @Parameter(description = "Lọc theo ID hộ khẩu", example = "1") @RequestParam(required = false) Long hoKhauId,
+            @Parameter(description = "Lọc theo ID nhân khẩu", example = "10") @RequestParam(required = false) Long nhanKhauId,
+            @Parameter(description = "Lọc theo loại biến động", example = "TAM_VANG") @RequestParam(required = false) BienDongType loai,
+            @Parameter(description = "Thời gian từ, bao gồm (yyyy-MM-ddTHH:mm:ss)") @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime tuThoiGian,
+            @Parameter(description = "Thời gian đến, không bao gồm (yyyy-MM-ddTHH:mm:ss)") @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime denThoiGian) {
+        if (unpaged) {
+            return ResponseEntity.ok(bienDongService.getAllDto());
+        }
+        BienDongFilterDto filter = BienDongFilterDto.builder()
+                .hoKhauId(hoKhauId)
+                .nhanKhauId(nhanKhauId)
+                .loai(loai)
+                .tuThoiGian(tuThoiGian)
+                .denThoiGian(denThoiGian)
+                .build();
+        return ResponseEntity.ok(bienDongService.getPage(filter, cursor, size));
+    }
+
+    @GetMapping("/ho-khau/{hoKhauId}")
+    @PreAuthorize("hasAnyAuthority('ADMIN','TOTRUONG','KETOAN')")
+    @Operation(summary = "Dòng thời gian biến động của một hộ khẩu", description = "Tương đương GET /api/bien-dong?hoKhauId={hoKhauId}")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Lấy danh sách thành công"),
+            @ApiResponse(responseCode = "400", description = "Cursor hoặc tham số lọc không hợp lệ")
+    })
+    public ResponseEntity<CursorPageResponseDto<BienDongResponseDto>> getByHoKhau(
+            @PathVariable Long hoKhauId,
+            @Parameter(description = "Con trỏ trang tiếp theo (nextCursor của trang trước)") @RequestParam(required = false) String cursor,
+            @Parameter(description = "Số phần tử mỗi trang (mặc định 50, tối đa 200)", example = "50") @RequestParam(required = false) Integer size,
+            @Parameter(description = "Lọc theo loại biến động", example = "TAM_VANG") @RequestParam(required = false) BienDongType loai) {
+        BienDongFilterDto filter = BienDongFilterDto.builder()
+                .hoKhauId(hoKhauId)
+                .loai(loai)
+                .build();
+        return ResponseEntity.ok(bienDongService.getPage(filter, cursor, size));
+    }
+
+    @GetMapping("/nhan-khau/{nhanKhauId}")
+    @PreAuthorize("hasAnyAuthority('ADMIN','TOTRUONG','KETOAN')")
+    @Operation(summary = "Dòng thời gian biến động của một nhân khẩu", description = "Tương đương GET /api/bien-dong?nhanKhauId={nhanKhauId}")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Lấy danh sách thành công"),
+            @ApiResponse(responseCode = "400", description = "Cursor hoặc tham số lọc không hợp lệ")
+    })
+    public ResponseEntity<CursorPageResponseDto<BienDongResponseDto>> getByNhanKhau(
+            @PathVariable Long nhanKhauId,
+            @Parameter(description = "Con trỏ trang tiếp theo (nextCursor của trang trước)") @RequestParam(required = false) String cursor,
+            @Parameter(description = "Số phần tử mỗi trang (mặc định 50, tối đa 200)", example = "50") @RequestParam(required = false) Integer size,
+            @Parameter(description = "Lọc theo loại biến động", example = "TAM_VANG") @RequestParam(required = false) BienDongType loai) {
+        BienDongFilterDto filter = BienDongFilterDto.builder()
+                .nhanKhauId(nhanKhauId)
+                .loai(loai)
+                .build();
+        return ResponseEntity.ok(bienDongService.getPage(filter, cursor, size));
+    }
+
+    @GetMapping("/thay-doi")
+    @PreAuthorize("hasAnyAuthority('ADMIN','TOTRUONG','KETOAN')")
+    @Operation(summary = "Tra cứu thay đổi theo trường / người thực hiện", description = "Ví dụ: ai đã sửa trường hoTen của nhân khẩu 10. "
+            + "Lọc trên chi tiết có cấu trúc (JSONB) của biến động, phân trang theo con trỏ, mới nhất trước.")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Lấy danh sách thành công"),
+            @ApiResponse(responseCode = "400", description = "Cursor hoặc tham số lọc không hợp lệ")
+    })
+    public ResponseEntity<CursorPageResponseDto<BienDongResponseDto>> getChanges(
+            @Parameter(description = "Tên trường bị thay đổi", example = "hoTen") @RequestParam(required = false) String truong,
+            @Parameter(description = "Tên đăng nhập người thực hiện", example = "admin") @RequestParam(required = false) String nguoiThucHien,
+            @Parameter(description = "Lọc theo ID hộ khẩu", example = "1") @RequestParam(required = false) Long hoKhauId,
+            @Parameter(description = "Lọc theo ID nhân khẩu", example = "10") @RequestParam(required = false) Long nhanKhauId,
+            @Parameter(description = "Thời gian từ, bao gồm (yyyy-MM-ddTHH:mm:ss)") @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime tuThoiGian,
+            @Parameter(description = "Thời gian đến, không bao gồm (yyyy-MM-ddTHH:mm:ss)") @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime denThoiGian,
+            @Parameter(description = "Con trỏ trang tiếp theo (nextCursor của trang trước)") @RequestParam(required = false) String cursor,
+            @Parameter(description = "Số phần tử mỗi trang (mặc định 50, tối đa 200)", example = "50") @RequestParam(required = false) Integer size) {
+        BienDongFilterDto filter = BienDongFilterDto.builder()
+                .truong(truong)
+                .nguoiThucHien(nguoiThucHien)
+                .hoKhauId(hoKhauId)
+                .nhanKhauId(nhanKhauId)
+                .tuThoiGian(tuThoiGian)
+                .denThoiGian(denThoiGian)
+                .build();
+        return ResponseEntity.ok(bienDongService.getPage(filter, cursor, size));
+    }
+
+    @GetMapping("/tim-kiem")
+    @PreAuthorize("hasAnyAuthority('ADMIN','TOTRUONG','KETOAN')")
+    @Operation(summary = "Tìm kiếm toàn văn trong nội dung biến động", description = "Không phân biệt dấu và hoa thường (\"chuyen ho\" khớp \"Chuyển hộ\"), "
+            + "tất cả các từ phải xuất hiện, từ cuối khớp tiền tố. Kết quả xếp theo độ liên quan rồi mới nhất trước, phân trang theo con trỏ.")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Tìm kiếm thành công"),
+            @ApiResponse(responseCode = "400", description = "Từ khóa trống, cursor hoặc tham số lọc không hợp lệ")
+    })
+    public ResponseEntity<CursorPageResponseDto<BienDongResponseDto>> search(
+            @Parameter(description = "Từ khóa tìm kiếm", example = "chuyen ho") @RequestParam String q,
+            @Parameter(description = "Lọc theo loại biến động", example = "TAM_TRU") @RequestParam(required = false) BienDongType loai,
+            @Parameter(description = "Thời gian từ, bao gồm (yyyy-MM-ddTHH:mm:ss)") @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime tuThoiGian,
+            @Parameter(description = "Thời gian đến, không bao gồm (yyyy-MM-ddTHH:mm:ss)") @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime denThoiGian,
+            @Parameter(description = "Con trỏ trang tiếp theo (nextCursor của trang trước)") @RequestParam(required = false) String cursor,
+            @Parameter(description = "Số phần tử mỗi trang (mặc định 50, tối đa 200)", example = "50") @RequestParam(required = false) Integer size) {
+        return ResponseEntity.ok(bienDongService.search(q, loai, tuThoiGian, denThoiGian, cursor, size));
+    }
+
+    @GetMapping("/thong-ke")
+    @PreAuthorize("hasAnyAuthority('ADMIN','TOTRUONG','KETOAN')")
+    @Operation(summary = "Số lượng biến động theo ngày / tháng", description = "Dữ liệu cho biểu đồ: mỗi kỳ gồm tổng và số lượng theo loại, "
+            + "đọc từ bảng tổng hợp nên không phụ thuộc kích thước nhật ký. Mặc định 12 tháng gần nhất (THANG) hoặc 30 ngày gần nhất (NGAY).")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Lấy thống kê thành công"),
+            @ApiResponse(responseCode = "400", description = "Khoảng thời gian không hợp lệ")
+    })
+    public ResponseEntity<List<BienDongThongKeResponseDto>> getThongKe(
+            @Parameter(description = "Đơn vị thời gian (NGAY, THANG)", example = "THANG") @RequestParam(required = false) DonViThoiGian donVi,
+            @Parameter(description = "Từ ngày (yyyy-MM-dd)") @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate tuNgay,
+            @Parameter(description = "Đến ngày (yyyy-MM-dd)") @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate denNgay,
+            @Parameter(description = "Chỉ lấy các loại biến động này", example = "TAM_TRU") @RequestParam(required = false) List<BienDongType> loai) {
+        return ResponseEntity.ok(bienDongThongKeService.getStats(donVi, tuNgay, denNgay, loai));
+    }
+
+    @PostMapping("/thong-ke/rebuild")
+    @PreAuthorize("hasAnyAuthority('ADMIN')")
+    @Operation(summary = "Dựng lại bảng thống kê biến động", description = "Tính lại số lượng theo ngày / tháng từ nhật ký gốc để sửa sai lệch; tháng đã lưu trữ và các tháng cũ hơn giữ nguyên (yêu cầu quyền ADMIN)")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Dựng lại thành công"),
+            @ApiResponse(responseCode = "403", description = "Không có quyền truy cập")
+    })
+    public ResponseEntity<String> rebuildThongKe() {
+        bienDongThongKeService.rebuild();
+        return ResponseEntity.ok("Đã dựng lại bảng thống kê biến động");
+    }
+
+    @GetMapping("/luu-tru")
+    @PreAuthorize("hasAnyAuthority('ADMIN')")
+    @Operation(summary = "Trạng thái phân vùng và lưu trữ nhật ký", description = "Danh sách phân vùng tháng đang dùng và các tệp lưu trữ (yêu cầu quyền ADMIN)")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Lấy trạng thái thành công"),
+            @ApiResponse(responseCode = "403", description = "Không có quyền truy cập")
+    })
+    public ResponseEntity<Map<String, Object>> getArchiveStatus() {
+        return ResponseEntity.ok(bienDongArchiveService.getStatus());
+    }
+
+    @PostMapping("/luu-tru/chay")
+    @PreAuthorize("hasAnyAuthority('ADMIN')")
+    @Operation(summary = "Chạy lưu trữ nhật ký ngay", description = "Tạo phân vùng các tháng tới, xuất các phân vùng quá hạn ra tệp nén rồi xóa khỏi cơ sở dữ liệu (yêu cầu quyền ADMIN)")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Chạy thành công"),
+            @ApiResponse(responseCode = "403", description = "Không có quyền truy cập"),
+            @ApiResponse(responseCode = "422", description = "Bảng chưa phân vùng hoặc đang có lượt lưu trữ khác")
+    })
+    public ResponseEntity<Map<String, Object>> runArchive() {
+        return ResponseEntity.ok(bienDongArchiveService.runNow());
+    }
+
+    @PostMapping("/luu-tru/khoi-phuc")
+    @PreAuthorize("hasAnyAuthority('ADMIN')")
+    @Operation(summary = "Nạp lại nhật ký từ tệp lưu trữ", description = "Nạp lại nhật ký của một tháng đã lưu trữ để tra cứu (yêu cầu quyền ADMIN)")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Nạp lại thành công"),
+            @ApiResponse(responseCode = "400", description = "Tháng không hợp lệ"),
+            @ApiResponse(responseCode = "403", description = "Không có quyền truy cập"),
+            @ApiResponse(responseCode = "404", description = "Không có tệp lưu trữ cho tháng này")
+    })
+    public ResponseEntity<Map<String, Object>> restoreArchive(
+            @Parameter(description = "Tháng cần nạp lại (yyyy-MM)", example = "2023-01") @RequestParam String thang) {
+        return ResponseEntity.ok(bienDongArchiveService.restore(thang));
+    }
+
+    @GetMapping("/chuoi/kiem-tra")
+    @PreAuthorize("hasAnyAuthority('ADMIN')")
+    @Operation(summary = "Kết quả kiểm tra chuỗi hash gần nhất", description = "Kết quả lượt kiểm tra chống sửa nhật ký gần nhất (hằng đêm hoặc chạy tay), "
+            + "gồm mắt xích hỏng đầu tiên của từng chuỗi và tốc độ kiểm tra (yêu cầu quyền ADMIN)")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Lấy kết quả thành công"),
+            @ApiResponse(responseCode = "403", description = "Không có quyền truy cập"),
+            @ApiResponse(responseCode = "404", description = "Chưa có lượt kiểm tra nào")
+    })
+    public ResponseEntity<KiemTraChuoiResponseDto> getHashChainStatus() {
+        return ResponseEntity.ok(bienDongChuoiService.getLastResult());
+    }
+
+    @PostMapping("/chuoi/kiem-tra")
+    @PreAuthorize("hasAnyAuthority('ADMIN')")
+    @Operation(summary = "Kiểm tra chuỗi hash nhật ký ngay", description = "Tính lại hash của mọi dòng nhật ký, kiểm tra song song theo đoạn, "
+            + "báo dòng bị sửa / xóa / chèn đầu tiên của từng chuỗi (yêu cầu quyền ADMIN)")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Kiểm tra xong (xem hopLe)"),
+            @ApiResponse(responseCode = "403", description = "Không có quyền truy cập"),
+            @ApiResponse(responseCode = "422", description = "Đang có lượt kiểm tra khác chạy")
+    })
+    public ResponseEntity<KiemTraChuoiResponseDto> verifyHashChain() {
+        return ResponseEntity.ok(bienDongChuoiService.verifyNow());
     }
 
     @GetMapping("/{id}")
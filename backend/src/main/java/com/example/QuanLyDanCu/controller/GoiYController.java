@@ -0,0 +1,55 @@
+package com.example.QuanLyDanCu.controller;
+
+import com.example.QuanLyDanCu.dto.response.GoiYResponseDto;
+import com.example.QuanLyDanCu.enums.LoaiGoiY;
+import com.example.QuanLyDanCu.service.GoiYService;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.Parameter;
+import io.swagger.v3.oas.annotations.responses.ApiResponse;
+import io.swagger.v3.oas.annotations.responses.ApiResponses;
+import io.swagger.v3.oas.annotations.tags.Tag;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.List;
+import java.util.Map;
+
+@RestController
+@RequestMapping("/api/goi-y")
+@RequiredArgsConstructor
+@Tag(name = "Gợi Ý", description = "Gợi ý khi nhập họ tên, CMND/CCCD, số hộ khẩu (đọc từ bộ nhớ)")
+public class GoiYController {
+
+    private final GoiYService goiYService;
+
+    @GetMapping
+    @PreAuthorize("hasAnyAuthority('ADMIN','TOTRUONG','KETOAN')")
+    @Operation(summary = "Gợi ý nhân khẩu / hộ khẩu theo tiền tố", description = "Không phân biệt dấu và hoa thường. Họ tên khớp từ bất kỳ đầu từ nào "
+            + "(\"an\", \"van an\" đều ra \"Nguyễn Văn An\"); CMND/CCCD và số hộ khẩu khớp từ đầu. Khớp ngắn nhất trước.")
+    @ApiResponses({
+            @ApiResponse(responseCode = "200", description = "Lấy gợi ý thành công"),
+            @ApiResponse(responseCode = "400", description = "Tham số không hợp lệ")
+    })
+    public ResponseEntity<List<GoiYResponseDto>> suggest(
+            @Parameter(description = "Chuỗi đang nhập", example = "nguyen van") @RequestParam String q,
+            @Parameter(description = "Chỉ lấy một loại (NHAN_KHAU, HO_KHAU); bỏ trống = cả hai") @RequestParam(required = false) LoaiGoiY loai,
+            @Parameter(description = "Số gợi ý tối đa (mặc định 10, tối đa 50)", example = "10") @RequestParam(required = false) Integer k) {
+        return ResponseEntity.ok(goiYService.suggest(q, loai, k));
+    }
+
+    @GetMapping("/thong-ke")
+    @PreAuthorize("hasAnyAuthority('ADMIN')")
+    @Operation(summary = "Thống kê chỉ mục gợi ý", description = "Số mục, số nút, bộ nhớ ước tính và quy đổi cho 100.000 mục (yêu cầu quyền ADMIN)")
+    @ApiResponses({
+            @ApiResponse(responseCode = "200", description = "Lấy thống kê thành công"),
+            @ApiResponse(responseCode = "403", description = "Không có quyền truy cập")
+    })
+    public ResponseEntity<Map<String, Object>> getStats() {
+        return ResponseEntity.ok(goiYService.getStats());
+    }
+}
@@ -3,18 +3,23 @@ package com.example.QuanLyDanCu.controller;
 import com.example.QuanLyDanCu.dto.request.HoKhauRequestDto;
 import com.example.QuanLyDanCu.dto.request.HoKhauUpdateDto;
 import com.example.QuanLyDanCu.dto.response.HoKhauResponseDto;
+import com.example.QuanLyDanCu.enums.DinhDangXuat;
+import com.example.QuanLyDanCu.service.DanCuExportService;
 import com.example.QuanLyDanCu.service.HoKhauService;
 import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.Parameter;
 import io.swagger.v3.oas.annotations.responses.ApiResponse;
 import io.swagger.v3.oas.annotations.responses.ApiResponses;
 import io.swagger.v3.oas.annotations.tags.Tag;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.security.core.Authentication;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import java.util.List;
 
@@ -25,15 +30,40 @@ import java.util.List;
 public class HoKhauController {
 
     private final HoKhauService hoKhauService;
+    private final DanCuExportService danCuExportService;
 
     @GetMapping
     @PreAuthorize("hasAnyAuthority('ADMIN','TOTRUONG','KETOAN')")
-    @Operation(summary = "Lấy danh sách tất cả hộ khẩu")
+    @Operation(summary = "Lấy danh sách tất cả hộ khẩu",
+            description = "Mặc định chỉ trả về soThanhVien. Truyền include=members để kèm danh sách nhân khẩu của từng hộ.")
     @ApiResponses(value = {
             @ApiResponse(responseCode = "200", description = "Lấy danh sách thành công")
     })
-    public ResponseEntity<List<HoKhauResponseDto>> getAll() {
-        return ResponseEntity.ok(hoKhauService.getAll());
+    public ResponseEntity<List<HoKhauResponseDto>> getAll(
+            @Parameter(description = "Dữ liệu kèm theo, hỗ trợ: members", example = "members")
+            @RequestParam(required = false) String include) {
+        boolean includeMembers = "members".equalsIgnoreCase(include);
+        return ResponseEntity.ok(hoKhauService.getAll(includeMembers));
+    }
+
+    @GetMapping("/export")
+    @PreAuthorize("hasAnyAuthority('ADMIN','TOTRUONG','KETOAN')")
+    @Operation(summary = "Xuất toàn bộ hộ khẩu (dạng luồng)",
+            description = "Mỗi hộ khẩu chưa xóa một dòng, kèm số thành viên (không tính người đã khai tử); sắp xếp theo số hộ khẩu. "
+                    + "Dữ liệu được ghi dần khi đọc từ database.")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Bắt đầu ghi dữ liệu"),
+            @ApiResponse(responseCode = "400", description = "Định dạng không hợp lệ")
+    })
+    public ResponseEntity<StreamingResponseBody> export(
+            @Parameter(description = "Định dạng: csv (mặc định) hoặc xlsx")
+            @RequestParam(defaultValue = "csv") String format) {
+        DinhDangXuat dinhDang = danCuExportService.checkFormat(format);
+        StreamingResponseBody body = out -> danCuExportService.writeHoKhau(dinhDang, out);
+        return ResponseEntity.ok()
+                .contentType(MediaType.parseMediaType(dinhDang.getContentType()))
+                .header("Content-Disposition", "attachment; filename=\"ho-khau." + dinhDang.getExtension() + "\"")
+                .body(body);
     }
 
     @GetMapping("/{id}")
@@ -2,10 +2,17 @@ package com.example.QuanLyDanCu.controller;
 
 import com.example.QuanLyDanCu.dto.request.DangKyTamTruTamVangRequestDto;
 import com.example.QuanLyDanCu.dto.request.KhaiTuRequestDto;
+import com.example.QuanLyDanCu.dto.request.NhanKhauFilterDto;
 import com.example.QuanLyDanCu.dto.request.NhanKhauRequestDto;
 import com.example.QuanLyDanCu.dto.request.NhanKhauUpdateDto;
+import com.example.QuanLyDanCu.dto.response.CursorPageResponseDto;
+import com.example.QuanLyDanCu.dto.response.NhanKhauImportResponseDto;
 import com.example.QuanLyDanCu.dto.response.NhanKhauResponseDto;
 import com.example.QuanLyDanCu.entity.NhanKhau;
+import com.example.QuanLyDanCu.enums.DinhDangXuat;
+import com.example.QuanLyDanCu.exception.BadRequestException;
+import com.example.QuanLyDanCu.service.DanCuExportService;
+import com.example.QuanLyDanCu.service.NhanKhauImportService;
 import com.example.QuanLyDanCu.service.NhanKhauService;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.Parameter;
@@ -14,12 +21,19 @@ import io.swagger.v3.oas.annotations.responses.ApiResponses;
 import io.swagger.v3.oas.annotations.tags.Tag;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
+import org.springframework.format.annotation.DateTimeFormat;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.security.core.Authentication;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.time.LocalDate;
 import java.util.List;
 import java.util.Map;
 
@@ -30,15 +44,55 @@ import java.util.Map;
 public class NhanKhauController {
 
     private final NhanKhauService nhanKhauService;
+    private final DanCuExportService danCuExportService;
+    private final NhanKhauImportService nhanKhauImportService;
 
     @GetMapping
     @PreAuthorize("hasAnyAuthority('ADMIN','TOTRUONG','KETOAN')")
-    @Operation(summary = "Lấy danh sách tất cả nhân khẩu", description = "Trả về danh sách đầy đủ thông tin nhân khẩu")
+    @Operation(summary = "Lấy danh sách nhân khẩu (phân trang theo con trỏ)", description = "Mặc định trả về một trang nhân khẩu sắp xếp theo ID kèm nextCursor. "
+            + "Truyền unpaged=true để lấy toàn bộ danh sách như trước (chế độ tương thích, sẽ bị loại bỏ).")
     @ApiResponses({
-            @ApiResponse(responseCode = "200", description = "Lấy danh sách thành công")
+            @ApiResponse(responseCode = "200", description = "Lấy danh sách thành công"),
+            @ApiResponse(responseCode = "400", description = "Cursor hoặc tham số lọc không hợp lệ")
     })
-    public ResponseEntity<List<NhanKhauResponseDto>> getAll() {
-        return ResponseEntity.ok(nhanKhauService.getAll());
+    public ResponseEntity<?> getAll(
+            @Parameter(description = "Trả về toàn bộ danh sách không phân trang (tương thích ngược)") @RequestParam(defaultValue = "false") boolean unpaged,
+            @Parameter(description = "Con trỏ trang tiếp theo (nextCursor của trang trước)") @RequestParam(required = false) String cursor,
+            @Parameter(description = "Số phần tử mỗi trang (mặc định 50, tối đa 200)", example = "50") @RequestParam(required = false) Integer size,
+            @Parameter(description = "Lọc theo ID hộ khẩu", example = "1") @RequestParam(required = false) Long hoKhauId,
+            @Parameter(description = "Lọc theo trạng thái", example = "THUONG_TRU") @RequestParam(required = false) String trangThai,
+            @Parameter(description = "Lọc theo giới tính", example = "Nam") @RequestParam(required = false) String gioiTinh,
+            @Parameter(description = "Ngày sinh từ (yyyy-MM-dd)") @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate ngaySinhTu,
+            @Parameter(description = "Ngày sinh đến (yyyy-MM-dd)") @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate ngaySinhDen) {
+        if (unpaged) {
+            return ResponseEntity.ok(nhanKhauService.getAll());
+        }
+        NhanKhauFilterDto filter = NhanKhauFilterDto.builder()
+                .hoKhauId(hoKhauId)
+                .trangThai(trangThai)
+                .gioiTinh(gioiTinh)
+                .ngaySinhTu(ngaySinhTu)
+                .ngaySinhDen(ngaySinhDen)
+                .build();
+        return ResponseEntity.ok(nhanKhauService.getPage(filter, cursor, size));
+    }
+
+    @GetMapping("/export")
+    @PreAuthorize("hasAnyAuthority('ADMIN','TOTRUONG','KETOAN')")
+    @Operation(summary = "Xuất toàn bộ nhân khẩu (dạng luồng)", description = "Mỗi nhân khẩu (kể cả đã khai tử) một dòng, kèm số hộ khẩu, "
+            + "chủ hộ, địa chỉ; sắp xếp theo ID. Dữ liệu được ghi dần khi đọc từ database nên dùng được cho phường có nhiều nhân khẩu.")
+    @ApiResponses({
+            @ApiResponse(responseCode = "200", description = "Bắt đầu ghi dữ liệu"),
+            @ApiResponse(responseCode = "400", description = "Định dạng không hợp lệ")
+    })
+    public ResponseEntity<StreamingResponseBody> export(
+            @Parameter(description = "Định dạng: csv (mặc định) hoặc xlsx") @RequestParam(defaultValue = "csv") String format) {
+        DinhDangXuat dinhDang = danCuExportService.checkFormat(format);
+        StreamingResponseBody body = out -> danCuExportService.writeNhanKhau(dinhDang, out);
+        return ResponseEntity.ok()
+                .contentType(MediaType.parseMediaType(dinhDang.getContentType()))
+                .header("Content-Disposition", "attachment; filename=\"nhan-khau." + dinhDang.getExtension() + "\"")
+                .body(body);
     }
 
     @GetMapping("/{id}")
@@ -68,6 +122,38 @@ public class NhanKhauController {
         return ResponseEntity.status(HttpStatus.CREATED).body(created);
     }
 
+    @PostMapping(value = "/import", consumes = MediaType.MULTIPART_FORM_DATA_VALUE)
+    @PreAuthorize("hasAnyAuthority('ADMIN','TOTRUONG')")
+    @Operation(summary = "Nhập nhân khẩu hàng loạt từ tệp CSV",
+            description = "Tệp CSV UTF-8, dòng đầu là tiêu đề với tên cột trùng tên trường khi tạo nhân khẩu "
+                    + "(hoTen, ngaySinh, gioiTinh, ..., hoKhauId); có thể dùng cột soHoKhau thay cho hoKhauId. "
+                    + "Ngày ghi dạng yyyy-MM-dd hoặc dd/MM/yyyy. Trả kết quả theo từng dòng. "
+                    + "dryRun = true: chỉ kiểm tra, không ghi. choPhepMotPhan = true: ghi các dòng hợp lệ và bỏ qua dòng lỗi; "
+                    + "false: chỉ ghi khi tất cả các dòng hợp lệ")
+    @ApiResponses({
+            @ApiResponse(responseCode = "200", description = "Kết quả kiểm tra (dryRun = true)"),
+            @ApiResponse(responseCode = "201", description = "Đã ghi ít nhất một nhân khẩu"),
+            @ApiResponse(responseCode = "422", description = "Không dòng nào được ghi (xem lỗi từng dòng)"),
+            @ApiResponse(responseCode = "400", description = "Tệp rỗng, sai tiêu đề hoặc quá số dòng cho phép"),
+            @ApiResponse(responseCode = "403", description = "Không có quyền thực hiện thao tác")
+    })
+    public ResponseEntity<NhanKhauImportResponseDto> importCsv(
+            @Parameter(description = "Tệp CSV") @RequestParam("file") MultipartFile file,
+            @Parameter(description = "Chỉ kiểm tra, không ghi dữ liệu", example = "false") @RequestParam(defaultValue = "false") boolean dryRun,
+            @Parameter(description = "Ghi các dòng hợp lệ dù có dòng lỗi", example = "false") @RequestParam(defaultValue = "false") boolean choPhepMotPhan)
+            throws IOException {
+        if (file.isEmpty()) {
+            throw new BadRequestException("Tệp rỗng");
+        }
+        NhanKhauImportResponseDto result;
+        try (InputStream in = file.getInputStream()) {
+            result = nhanKhauImportService.importCsv(in, dryRun, choPhepMotPhan);
+        }
+        HttpStatus status = dryRun ? HttpStatus.OK
+                : result.getSoThanhCong() > 0 ? HttpStatus.CREATED : HttpStatus.UNPROCESSABLE_ENTITY;
+        return ResponseEntity.status(status).body(result);
+    }
+
     @PutMapping("/{id}")
     @PreAuthorize("hasAnyAuthority('ADMIN','TOTRUONG')")
     @Operation(summary = "Cập nhật thông tin nhân khẩu (partial update)", description = "Cập nhật thông tin của nhân khẩu theo ID - chỉ cập nhật các trường được cung cấp")
@@ -179,7 +265,8 @@ public class NhanKhauController {
     // Search theo tên
     @GetMapping("/search")
     @PreAuthorize("hasAnyAuthority('ADMIN','TOTRUONG','KETOAN')")
-    @Operation(summary = "Tìm kiếm nhân khẩu theo tên", description = "Tìm kiếm nhân khẩu có tên chứa từ khóa")
+    @Operation(summary = "Tìm kiếm nhân khẩu theo tên", description = "Tìm kiếm nhân khẩu theo tên hoặc CMND/CCCD, không phân biệt dấu. "
+            + "Trả về tối đa 200 kết quả liên quan nhất (tương thích ngược, dùng /tim-kiem để phân trang)")
     @ApiResponses({
             @ApiResponse(responseCode = "200", description = "Tìm kiếm thành công")
     })
@@ -188,6 +275,22 @@ public class NhanKhauController {
         return ResponseEntity.ok(nhanKhauService.searchDtoByName(q));
     }
 
+    @GetMapping("/tim-kiem")
+    @PreAuthorize("hasAnyAuthority('ADMIN','TOTRUONG','KETOAN')")
+    @Operation(summary = "Tìm kiếm nhân khẩu (xếp theo độ liên quan, phân trang)", description = "Tìm theo họ tên không phân biệt dấu / hoa thường, "
+            + "chịu được gõ sai nhẹ (\"nguyen van an\" khớp \"Nguyễn Văn An\"); từ khóa toàn chữ số được tìm theo CMND/CCCD. "
+            + "Kết quả xếp theo độ liên quan, phân trang theo con trỏ, tối đa 500 kết quả.")
+    @ApiResponses({
+            @ApiResponse(responseCode = "200", description = "Tìm kiếm thành công"),
+            @ApiResponse(responseCode = "400", description = "Từ khóa quá ngắn hoặc cursor không hợp lệ")
+    })
+    public ResponseEntity<CursorPageResponseDto<NhanKhauResponseDto>> search(
+            @Parameter(description = "Từ khóa (họ tên hoặc CMND/CCCD)", example = "nguyen van") @RequestParam String q,
+            @Parameter(description = "Con trỏ trang tiếp theo (nextCursor của trang trước)") @RequestParam(required = false) String cursor,
+            @Parameter(description = "Số phần tử mỗi trang (mặc định 20, tối đa 200)", example = "20") @RequestParam(required = false) Integer size) {
+        return ResponseEntity.ok(nhanKhauService.search(q, cursor, size));
+    }
+
     // Thống kê giới tính
     @GetMapping("/stats/gender")
     @PreAuthorize("hasAnyAuthority('ADMIN','TOTRUONG','KETOAN')")
@@ -210,6 +313,34 @@ public class NhanKhauController {
         return ResponseEntity.ok(nhanKhauService.statsByAge());
     }
 
+    @GetMapping("/stats/cache-stats")
+    @PreAuthorize("hasAnyAuthority('ADMIN')")
+    @Operation(summary = "Thống kê cache thống kê nhân khẩu", description = "Số lần hit / hit giá trị cũ / miss, số lần tính lại nền "
+            + "và trạng thái từng loại thống kê (yêu cầu quyền ADMIN)")
+    @ApiResponses({
+            @ApiResponse(responseCode = "200", description = "Lấy thống kê thành công"),
+            @ApiResponse(responseCode = "403", description = "Không có quyền truy cập")
+    })
+    public ResponseEntity<Map<String, Object>> getStatsCacheStats() {
+        return ResponseEntity.ok(nhanKhauService.getStatsCacheStats());
+    }
+
+    // Tháp dân số theo nhóm tuổi x giới tính x trạng thái
+    @GetMapping("/stats/age-pyramid")
+    @PreAuthorize("hasAnyAuthority('ADMIN','TOTRUONG','KETOAN')")
+    @Operation(summary = "Tháp dân số theo nhóm tuổi", description = "Chia nhân khẩu (trừ khai tử) thành các nhóm tuổi rộng doRong năm, "
+            + "nhóm cuối gom mọi người từ tuoiToiDa trở lên; mỗi nhóm kèm số người theo giới tính và theo trạng thái cư trú")
+    @ApiResponses({
+            @ApiResponse(responseCode = "200", description = "Thống kê thành công"),
+            @ApiResponse(responseCode = "400", description = "Độ rộng nhóm hoặc tuổi tối đa không hợp lệ")
+    })
+    public ResponseEntity<Map<String, Object>> statsAgePyramid(
+            @Parameter(description = "Độ rộng mỗi nhóm tuổi (mặc định 5, từ 1 đến 50)", example = "5") @RequestParam(required = false) Integer doRong,
+            @Parameter(description = "Tuổi bắt đầu nhóm cuối (mặc định 80, tối đa 150)", example = "80") @RequestParam(required = false) Integer tuoiToiDa,
+            @Parameter(description = "Chỉ đếm nhân khẩu ở trạng thái này", example = "THUONG_TRU") @RequestParam(required = false) String trangThai) {
+        return ResponseEntity.ok(nhanKhauService.statsAgePyramid(doRong, tuoiToiDa, trangThai));
+    }
+
     // Thống kê theo trạng thái
     @GetMapping("/stats/status")
     @PreAuthorize("hasAnyAuthority('ADMIN','TOTRUONG','KETOAN')")
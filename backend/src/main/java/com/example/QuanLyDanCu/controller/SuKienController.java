@@ -0,0 +1,61 @@
+package com.example.QuanLyDanCu.controller;
+
+import com.example.QuanLyDanCu.service.LiveEventBroadcaster;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.Parameter;
+import io.swagger.v3.oas.annotations.responses.ApiResponse;
+import io.swagger.v3.oas.annotations.responses.ApiResponses;
+import io.swagger.v3.oas.annotations.tags.Tag;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.security.core.Authentication;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestHeader;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.util.List;
+import java.util.Map;
+
+@RestController
+@RequestMapping("/api/su-kien")
+@RequiredArgsConstructor
+@Tag(name = "Sự Kiện", description = "Luồng sự kiện trực tiếp (Server-Sent Events) cho dashboard")
+public class SuKienController {
+
+    private final LiveEventBroadcaster liveEventBroadcaster;
+
+    @GetMapping(value = "/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    @PreAuthorize("hasAnyAuthority('ADMIN','TOTRUONG','KETOAN')")
+    @Operation(summary = "Luồng sự kiện biến động và thu phí", description = "Đẩy nhật ký biến động mới (event: bien-dong) và ghi nhận / xóa thu phí "
+            + "(event: thu-phi) ngay sau khi commit, thay cho việc hỏi lại định kỳ. Kết nối lại với Last-Event-ID để nhận tiếp phần bỏ lỡ; "
+            + "event: reset nghĩa là cần tải lại dữ liệu qua REST. EventSource không gửi được header nên có thể truyền token qua access_token.")
+    @ApiResponses({
+            @ApiResponse(responseCode = "200", description = "Mở luồng sự kiện thành công"),
+            @ApiResponse(responseCode = "400", description = "Loại sự kiện không hợp lệ"),
+            @ApiResponse(responseCode = "403", description = "Không có quyền nhận loại sự kiện yêu cầu"),
+            @ApiResponse(responseCode = "422", description = "Quá nhiều kết nối đang mở")
+    })
+    public SseEmitter stream(
+            @Parameter(description = "Loại sự kiện muốn nhận (bien-dong, thu-phi); bỏ trống = tất cả được phép") @RequestParam(required = false) List<String> loai,
+            @Parameter(description = "Id sự kiện cuối đã nhận (trình duyệt tự gửi khi kết nối lại)") @RequestHeader(value = "Last-Event-ID", required = false) Long lastEventIdHeader,
+            @Parameter(description = "Id sự kiện cuối đã nhận, dùng khi không gửi được header") @RequestParam(required = false) Long lastEventId,
+            Authentication auth) {
+        return liveEventBroadcaster.subscribe(auth, loai, lastEventIdHeader != null ? lastEventIdHeader : lastEventId);
+    }
+
+    @GetMapping("/stats")
+    @PreAuthorize("hasAnyAuthority('ADMIN')")
+    @Operation(summary = "Thống kê luồng sự kiện", description = "Số client đang kết nối, số sự kiện đã phát / đã gửi, số client bị ngắt do chậm (yêu cầu quyền ADMIN)")
+    @ApiResponses({
+            @ApiResponse(responseCode = "200", description = "Lấy thống kê thành công"),
+            @ApiResponse(responseCode = "403", description = "Không có quyền truy cập")
+    })
+    public ResponseEntity<Map<String, Object>> getStats() {
+        return ResponseEntity.ok(liveEventBroadcaster.getStats());
+    }
+}
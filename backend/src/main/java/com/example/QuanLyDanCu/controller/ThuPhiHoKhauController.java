@@ -1,8 +1,15 @@
 package com.example.QuanLyDanCu.controller;
 
+import com.example.QuanLyDanCu.dto.request.ThuPhiHoKhauBulkRequestDto;
 import com.example.QuanLyDanCu.dto.request.ThuPhiHoKhauRequestDto;
+import com.example.QuanLyDanCu.dto.response.ThuPhiHoKhauBulkResponseDto;
 import com.example.QuanLyDanCu.dto.response.ThuPhiHoKhauResponseDto;
+import com.example.QuanLyDanCu.dto.response.ThuPhiTongHopResponseDto;
+import com.example.QuanLyDanCu.enums.DinhDangXuat;
+import com.example.QuanLyDanCu.enums.TrangThaiThuPhi;
+import com.example.QuanLyDanCu.service.FeeRecalculationQueue;
 import com.example.QuanLyDanCu.service.ThuPhiHoKhauService;
+import com.example.QuanLyDanCu.service.ThuPhiTongHopService;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.Parameter;
 import io.swagger.v3.oas.annotations.media.Content;
@@ -12,12 +19,16 @@ import io.swagger.v3.oas.annotations.responses.ApiResponses;
 import io.swagger.v3.oas.annotations.tags.Tag;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
+import org.springframework.format.annotation.DateTimeFormat;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.security.core.Authentication;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.time.LocalDate;
 import java.util.List;
 import java.util.Map;
 
@@ -28,26 +39,87 @@ import java.util.Map;
 public class ThuPhiHoKhauController {
 
     private final ThuPhiHoKhauService thuPhiHoKhauService;
+    private final ThuPhiTongHopService thuPhiTongHopService;
+    private final FeeRecalculationQueue feeRecalculationQueue;
 
     @GetMapping
     @PreAuthorize("hasAnyAuthority('ADMIN','KETOAN','TOTRUONG')")
-    @Operation(summary = "Lấy danh sách tất cả thu phí", description = "Trả về danh sách tất cả các bản ghi thu phí hộ khẩu")
+    @Operation(summary = "Lấy danh sách thu phí (phân trang theo con trỏ)", description = "Mặc định trả về một trang bản ghi thu phí sắp xếp theo số hộ khẩu (hộ chưa có số đứng cuối) kèm nextCursor. "
+            + "Truyền unpaged=true để lấy toàn bộ danh sách như trước (chế độ tương thích, sẽ bị loại bỏ).")
     @ApiResponses(value = {
-            @ApiResponse(responseCode = "200", description = "Lấy danh sách thành công",
-                    content = @Content(mediaType = "application/json", schema = @Schema(implementation = ThuPhiHoKhauResponseDto.class)))
+            @ApiResponse(responseCode = "200", description = "Lấy danh sách thành công"),
+            @ApiResponse(responseCode = "400", description = "Cursor hoặc tham số lọc không hợp lệ", content = @Content)
     })
-    public ResponseEntity<List<ThuPhiHoKhauResponseDto>> getAll() {
-        return ResponseEntity.ok(thuPhiHoKhauService.getAll());
+    public ResponseEntity<?> getAll(
+            @Parameter(description = "Trả về toàn bộ danh sách không phân trang (tương thích ngược)") @RequestParam(defaultValue = "false") boolean unpaged,
+            @Parameter(description = "Con trỏ trang tiếp theo (nextCursor của trang trước)") @RequestParam(required = false) String cursor,
+            @Parameter(description = "Số phần tử mỗi trang (mặc định 50, tối đa 200)", example = "50") @RequestParam(required = false) Integer size,
+            @Parameter(description = "Lọc theo ID đợt thu phí", example = "1") @RequestParam(required = false) Long dotThuPhiId,
+            @Parameter(description = "Lọc theo ID hộ khẩu", example = "1") @RequestParam(required = false) Long hoKhauId,
+            @Parameter(description = "Lọc theo trạng thái", example = "DA_NOP") @RequestParam(required = false) TrangThaiThuPhi trangThai) {
+        if (unpaged) {
+            return ResponseEntity.ok(thuPhiHoKhauService.getAll());
+        }
+        return ResponseEntity.ok(thuPhiHoKhauService.getPage(dotThuPhiId, hoKhauId, trangThai, cursor, size));
     }
 
     @GetMapping("/stats")
     @PreAuthorize("hasAnyAuthority('ADMIN','KETOAN','TOTRUONG')")
-    @Operation(summary = "Thống kê thu phí", description = "Thống kê tổng quan về thu phí hộ khẩu")
+    @Operation(summary = "Thống kê thu phí", description = "Thống kê tổng quan về thu phí hộ khẩu, kèm chi tiết theo đợt (byPeriod) và theo năm (byYear). "
+            + "Có thể lọc theo khoảng ngày thu")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Lấy thống kê thành công"),
+            @ApiResponse(responseCode = "400", description = "Khoảng ngày không hợp lệ", content = @Content)
+    })
+    public ResponseEntity<Map<String, Object>> getStats(
+            @Parameter(description = "Ngày thu từ (yyyy-MM-dd)", example = "2025-01-01")
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate tuNgay,
+            @Parameter(description = "Ngày thu đến (yyyy-MM-dd)", example = "2025-12-31")
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate denNgay) {
+        return ResponseEntity.ok(thuPhiHoKhauService.getStats(tuNgay, denNgay));
+    }
+
+    @GetMapping("/tong-hop")
+    @PreAuthorize("hasAnyAuthority('ADMIN','KETOAN','TOTRUONG')")
+    @Operation(summary = "Số liệu tổng hợp của tất cả các đợt", description = "Đọc trực tiếp từ bảng tổng hợp theo đợt (số hộ đã nộp, tổng tiền đã thu)")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Lấy tổng hợp thành công")
+    })
+    public ResponseEntity<List<ThuPhiTongHopResponseDto>> getAllTongHop() {
+        return ResponseEntity.ok(thuPhiTongHopService.getAll());
+    }
+
+    @GetMapping("/tong-hop/{dotThuPhiId}")
+    @PreAuthorize("hasAnyAuthority('ADMIN','KETOAN','TOTRUONG')")
+    @Operation(summary = "Số liệu tổng hợp của một đợt", description = "Đọc O(1) từ bảng tổng hợp, không quét danh sách thu phí")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Lấy tổng hợp thành công")
+    })
+    public ResponseEntity<ThuPhiTongHopResponseDto> getTongHop(@PathVariable Long dotThuPhiId) {
+        return ResponseEntity.ok(thuPhiTongHopService.getByDotThuPhiId(dotThuPhiId));
+    }
+
+    @PostMapping("/tong-hop/rebuild")
+    @PreAuthorize("hasAnyAuthority('ADMIN')")
+    @Operation(summary = "Dựng lại bảng tổng hợp", description = "Tính lại toàn bộ số liệu tổng hợp từ dữ liệu gốc để sửa sai lệch (yêu cầu quyền ADMIN)")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Dựng lại thành công", content = @Content),
+            @ApiResponse(responseCode = "403", description = "Không có quyền truy cập", content = @Content)
+    })
+    public ResponseEntity<String> rebuildTongHop() {
+        thuPhiTongHopService.rebuildAll();
+        return ResponseEntity.ok("Đã dựng lại bảng tổng hợp thu phí");
+    }
+
+    @GetMapping("/recalculation-stats")
+    @PreAuthorize("hasAnyAuthority('ADMIN')")
+    @Operation(summary = "Thống kê hàng đợi tính lại phí", description = "Độ sâu hàng đợi, số yêu cầu đã gộp, độ trễ xử lý của việc tính lại phí sau khi thay đổi nhân khẩu (yêu cầu quyền ADMIN)")
     @ApiResponses(value = {
-            @ApiResponse(responseCode = "200", description = "Lấy thống kê thành công")
+            @ApiResponse(responseCode = "200", description = "Lấy thống kê thành công"),
+            @ApiResponse(responseCode = "403", description = "Không có quyền truy cập", content = @Content)
     })
-    public ResponseEntity<Map<String, Object>> getStats() {
-        return ResponseEntity.ok(thuPhiHoKhauService.getStats());
+    public ResponseEntity<Map<String, Object>> getRecalculationStats() {
+        return ResponseEntity.ok(feeRecalculationQueue.getStats());
     }
 
     @GetMapping("/calculate")
@@ -78,6 +150,46 @@ public class ThuPhiHoKhauController {
         return ResponseEntity.ok(thuPhiHoKhauService.getOverviewByPeriod(dotThuPhiId));
     }
 
+    @GetMapping("/overview/stream")
+    @PreAuthorize("hasAnyAuthority('ADMIN','KETOAN','TOTRUONG')")
+    @Operation(summary = "Tổng quan thu phí theo đợt (dạng luồng)",
+            description = "Ghi từng hộ ngay khi đọc được dưới dạng NDJSON (mỗi dòng một hộ, dòng cuối là {\"summary\": ...}) "
+                    + "hoặc CSV / XLSX (bảng hộ, sau dòng trống là phần tổng hợp). Dùng cho đợt có nhiều hộ.")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Bắt đầu ghi dữ liệu", content = @Content),
+            @ApiResponse(responseCode = "400", description = "Định dạng không hợp lệ", content = @Content),
+            @ApiResponse(responseCode = "404", description = "Không tìm thấy đợt thu phí", content = @Content)
+    })
+    public ResponseEntity<StreamingResponseBody> streamOverviewByPeriod(
+            @Parameter(description = "ID đợt thu phí", required = true)
+            @RequestParam Long dotThuPhiId,
+            @Parameter(description = "Định dạng: ndjson (mặc định), csv hoặc xlsx")
+            @RequestParam(required = false, defaultValue = "ndjson") String format) {
+        DinhDangXuat dinhDang = DinhDangXuat.fromParam(format);
+        // Kiểm tra trước khi mở luồng để lỗi 404 trả về đúng mã trạng thái
+        thuPhiHoKhauService.ensurePeriodExists(dotThuPhiId);
+
+        StreamingResponseBody body = out -> thuPhiHoKhauService.writeOverview(dotThuPhiId, dinhDang, out);
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok()
+                .contentType(MediaType.parseMediaType(dinhDang.getContentType()));
+        if (dinhDang.isTabular()) {
+            response.header("Content-Disposition",
+                    "attachment; filename=\"tong-quan-dot-" + dotThuPhiId + "." + dinhDang.getExtension() + "\"");
+        }
+        return response.body(body);
+    }
+
+    @GetMapping("/overview/cache-stats")
+    @PreAuthorize("hasAnyAuthority('ADMIN')")
+    @Operation(summary = "Thống kê cache tổng quan", description = "Số lần hit/miss/eviction của cache tổng quan theo đợt (yêu cầu quyền ADMIN)")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Lấy thống kê thành công"),
+            @ApiResponse(responseCode = "403", description = "Không có quyền truy cập", content = @Content)
+    })
+    public ResponseEntity<Map<String, Object>> getOverviewCacheStats() {
+        return ResponseEntity.ok(thuPhiHoKhauService.getOverviewCacheStats());
+    }
+
     @GetMapping("/ho-khau/{hoKhauId}")
     @PreAuthorize("hasAnyAuthority('ADMIN','KETOAN','TOTRUONG')")
     @Operation(summary = "Lấy danh sách thu phí theo hộ khẩu", description = "Trả về danh sách các bản ghi thu phí của một hộ khẩu")
@@ -107,6 +219,8 @@ public class ThuPhiHoKhauController {
     @ApiResponses(value = {
             @ApiResponse(responseCode = "201", description = "Tạo thu phí thành công",
                     content = @Content(mediaType = "application/json", schema = @Schema(implementation = ThuPhiHoKhauResponseDto.class))),
+            @ApiResponse(responseCode = "409", description = "Hộ khẩu đã có bản ghi trong đợt này; body là bản ghi đã tồn tại",
+                    content = @Content(mediaType = "application/json", schema = @Schema(implementation = ThuPhiHoKhauResponseDto.class))),
             @ApiResponse(responseCode = "400", description = "Dữ liệu không hợp lệ", content = @Content),
             @ApiResponse(responseCode = "403", description = "Không có quyền truy cập (chỉ ADMIN hoặc KETOAN)", content = @Content)
     })
@@ -115,6 +229,24 @@ public class ThuPhiHoKhauController {
         return ResponseEntity.status(HttpStatus.CREATED).body(created);
     }
 
+    @PostMapping("/bulk")
+    @PreAuthorize("hasAnyAuthority('ADMIN','KETOAN')")
+    @Operation(summary = "Ghi nhận thu phí hàng loạt", description = "Ghi nhận nhiều khoản thu (một hoặc nhiều đợt) trong một transaction, trả kết quả theo từng dòng. "
+            + "choPhepMotPhan = true: ghi các dòng hợp lệ và bỏ qua dòng lỗi; false: chỉ ghi khi tất cả các dòng hợp lệ (yêu cầu quyền ADMIN hoặc KETOAN)")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "201", description = "Đã ghi nhận ít nhất một dòng",
+                    content = @Content(mediaType = "application/json", schema = @Schema(implementation = ThuPhiHoKhauBulkResponseDto.class))),
+            @ApiResponse(responseCode = "422", description = "Không dòng nào được ghi nhận (xem lỗi từng dòng)",
+                    content = @Content(mediaType = "application/json", schema = @Schema(implementation = ThuPhiHoKhauBulkResponseDto.class))),
+            @ApiResponse(responseCode = "400", description = "Dữ liệu không hợp lệ", content = @Content),
+            @ApiResponse(responseCode = "403", description = "Không có quyền truy cập (chỉ ADMIN hoặc KETOAN)", content = @Content)
+    })
+    public ResponseEntity<ThuPhiHoKhauBulkResponseDto> createBulk(@Valid @RequestBody ThuPhiHoKhauBulkRequestDto dto, Authentication auth) {
+        ThuPhiHoKhauBulkResponseDto result = thuPhiHoKhauService.createBulk(dto, auth);
+        HttpStatus status = result.getSoThanhCong() > 0 ? HttpStatus.CREATED : HttpStatus.UNPROCESSABLE_ENTITY;
+        return ResponseEntity.status(status).body(result);
+    }
+
     @DeleteMapping("/{id}")
     @PreAuthorize("hasAnyAuthority('ADMIN','KETOAN')")
     @Operation(summary = "Xóa thu phí", description = "Xóa một bản ghi thu phí (yêu cầu quyền ADMIN hoặc KETOAN)")
@@ -0,0 +1,43 @@
+package com.example.QuanLyDanCu.dto.request;
+
+import com.example.QuanLyDanCu.enums.BienDongType;
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * Bộ lọc tùy chọn cho nhật ký biến động phân trang.
+ * Các trường null sẽ bị bỏ qua.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@Schema(description = "Bộ lọc nhật ký biến động")
+public class BienDongFilterDto {
+
+    @Schema(description = "ID hộ khẩu", example = "1")
+    private Long hoKhauId;
+
+    @Schema(description = "ID nhân khẩu", example = "10")
+    private Long nhanKhauId;
+
+    @Schema(description = "Loại biến động", example = "TAM_VANG")
+    private BienDongType loai;
+
+    @Schema(description = "Thời gian từ (bao gồm)", example = "2025-01-01T00:00:00")
+    private LocalDateTime tuThoiGian;
+
+    @Schema(description = "Thời gian đến (không bao gồm)", example = "2025-02-01T00:00:00")
+    private LocalDateTime denThoiGian;
+
+    @Schema(description = "Tên trường bị thay đổi (chi_tiet.truong)", example = "hoTen")
+    private String truong;
+
+    @Schema(description = "Tên đăng nhập người thực hiện (chi_tiet.nguoiThucHien)", example = "admin")
+    private String nguoiThucHien;
+}
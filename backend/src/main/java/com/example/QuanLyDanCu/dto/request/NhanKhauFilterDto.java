@@ -0,0 +1,36 @@
+package com.example.QuanLyDanCu.dto.request;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDate;
+
+/**
+ * Bộ lọc tùy chọn cho danh sách nhân khẩu phân trang.
+ * Các trường null sẽ bị bỏ qua.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@Schema(description = "Bộ lọc danh sách nhân khẩu")
+public class NhanKhauFilterDto {
+
+    @Schema(description = "ID hộ khẩu", example = "1")
+    private Long hoKhauId;
+
+    @Schema(description = "Trạng thái", example = "THUONG_TRU")
+    private String trangThai;
+
+    @Schema(description = "Giới tính", example = "Nam")
+    private String gioiTinh;
+
+    @Schema(description = "Ngày sinh từ (yyyy-MM-dd)", example = "1990-01-01")
+    private LocalDate ngaySinhTu;
+
+    @Schema(description = "Ngày sinh đến (yyyy-MM-dd)", example = "2000-12-31")
+    private LocalDate ngaySinhDen;
+}
@@ -0,0 +1,23 @@
+package com.example.QuanLyDanCu.dto.request;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import jakarta.validation.constraints.NotEmpty;
+import jakarta.validation.constraints.Size;
+import lombok.*;
+
+import java.util.List;
+
+@Getter @Setter @NoArgsConstructor @AllArgsConstructor @Builder
+@Schema(description = "Request DTO ghi nhận nhiều khoản thu phí trong một lần")
+public class ThuPhiHoKhauBulkRequestDto {
+
+    // Từng dòng được validate riêng trong service để trả lỗi theo dòng
+    @NotEmpty(message = "Danh sách thu phí không được để trống")
+    @Size(max = 2000, message = "Tối đa 2000 dòng cho mỗi lần ghi nhận")
+    @Schema(description = "Danh sách khoản thu (có thể thuộc nhiều đợt)")
+    private List<ThuPhiHoKhauRequestDto> items;
+
+    @Builder.Default
+    @Schema(description = "true: ghi nhận các dòng hợp lệ, bỏ qua dòng lỗi; false: chỉ ghi khi tất cả đều hợp lệ", example = "false")
+    private Boolean choPhepMotPhan = false;
+}
@@ -1,5 +1,6 @@
 package com.example.QuanLyDanCu.dto.response;
 
+import com.example.QuanLyDanCu.entity.ChiTietBienDong;
 import com.fasterxml.jackson.annotation.JsonProperty;
 import io.swagger.v3.oas.annotations.media.Schema;
 import lombok.*;
@@ -37,4 +38,20 @@ public class BienDongResponseDto {
     @JsonProperty("nhanKhauId")
     @Schema(description = "ID nhân khẩu liên quan (có thể null)")
     private Long nhanKhauId;
+
+    @JsonProperty("chiTiet")
+    @Schema(description = "Chi tiết thay đổi có cấu trúc (có thể null với bản ghi cũ)")
+    private ChiTietBienDong chiTiet;
+
+    @JsonProperty("chuoi")
+    @Schema(description = "Số hiệu chuỗi hash chứa dòng này (null với bản ghi cũ)", example = "3")
+    private Integer chuoi;
+
+    @JsonProperty("thuTu")
+    @Schema(description = "Thứ tự của dòng trong chuỗi hash", example = "10452")
+    private Long thuTu;
+
+    @JsonProperty("hash")
+    @Schema(description = "Hash SHA-256 (hex) của dòng, nối với hash dòng trước trong chuỗi")
+    private String hash;
 }
@@ -0,0 +1,22 @@
+package com.example.QuanLyDanCu.dto.response;
+
+import com.example.QuanLyDanCu.enums.BienDongType;
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.*;
+
+import java.time.LocalDate;
+import java.util.Map;
+
+@Getter @Setter @NoArgsConstructor @AllArgsConstructor @Builder
+@Schema(description = "Số lượng biến động của một kỳ (ngày hoặc tháng), đọc từ bảng tổng hợp")
+public class BienDongThongKeResponseDto {
+
+    @Schema(description = "Ngày (NGAY) hoặc ngày đầu tháng (THANG)", example = "2025-01-01")
+    private LocalDate ky;
+
+    @Schema(description = "Tổng số biến động trong kỳ", example = "42")
+    private Long tong;
+
+    @Schema(description = "Số biến động theo loại (chỉ gồm loại có phát sinh)")
+    private Map<BienDongType, Long> soLuongTheoLoai;
+}
@@ -0,0 +1,23 @@
+package com.example.QuanLyDanCu.dto.response;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.*;
+
+import java.util.List;
+
+@Getter @Setter @NoArgsConstructor @AllArgsConstructor @Builder
+@Schema(description = "Một trang kết quả phân trang theo con trỏ (keyset)")
+public class CursorPageResponseDto<T> {
+
+    @Schema(description = "Danh sách phần tử của trang hiện tại")
+    private List<T> items;
+
+    @Schema(description = "Số phần tử trong trang", example = "50")
+    private Integer size;
+
+    @Schema(description = "Còn trang tiếp theo hay không", example = "true")
+    private Boolean hasMore;
+
+    @Schema(description = "Con trỏ để lấy trang tiếp theo (null nếu đã hết)", example = "MTAw")
+    private String nextCursor;
+}
@@ -0,0 +1,22 @@
+package com.example.QuanLyDanCu.dto.response;
+
+import com.example.QuanLyDanCu.enums.LoaiGoiY;
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.*;
+
+@Getter @Setter @NoArgsConstructor @AllArgsConstructor @Builder
+@Schema(description = "Một mục gợi ý khi nhập (autocomplete)")
+public class GoiYResponseDto {
+
+    @Schema(description = "Loại mục", example = "NHAN_KHAU")
+    private LoaiGoiY loai;
+
+    @Schema(description = "ID nhân khẩu hoặc hộ khẩu", example = "10")
+    private Long id;
+
+    @Schema(description = "Nội dung hiển thị chính (họ tên hoặc số hộ khẩu)", example = "Nguyễn Văn An")
+    private String nhan;
+
+    @Schema(description = "Thông tin phụ để phân biệt (CMND/CCCD, ngày sinh hoặc chủ hộ, địa chỉ)", example = "CCCD 001090000123 · 1990-05-15")
+    private String moTa;
+}
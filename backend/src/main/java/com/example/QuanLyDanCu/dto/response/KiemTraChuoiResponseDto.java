@@ -0,0 +1,42 @@
+package com.example.QuanLyDanCu.dto.response;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.*;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+@Getter @Setter @NoArgsConstructor @AllArgsConstructor @Builder
+@Schema(description = "Kết quả kiểm tra chuỗi hash chống sửa của nhật ký biến động")
+public class KiemTraChuoiResponseDto {
+
+    @Schema(description = "Thời điểm bắt đầu kiểm tra")
+    private LocalDateTime batDau;
+
+    @Schema(description = "Thời gian chạy (ms)", example = "5230")
+    private Long thoiGianMs;
+
+    @Schema(description = "Không có mắt xích hỏng nào", example = "true")
+    private Boolean hopLe;
+
+    @Schema(description = "Số chuỗi đã kiểm tra", example = "8")
+    private Integer soChuoi;
+
+    @Schema(description = "Số dòng đã kiểm tra", example = "1000000")
+    private Long soDongDaKiemTra;
+
+    @Schema(description = "Số dòng ghi trước khi bật chuỗi hash (không kiểm tra được)", example = "0")
+    private Long soDongChuaNiemPhong;
+
+    @Schema(description = "Số dòng giữa chuỗi nằm trong tệp lưu trữ (khoảng trống đã biết, không kiểm tra nội dung)", example = "0")
+    private Long soDongDaLuuTru;
+
+    @Schema(description = "Tốc độ kiểm tra (dòng / giây)", example = "191000")
+    private Long tocDoDongMoiGiay;
+
+    @Schema(description = "Số luồng kiểm tra song song", example = "4")
+    private Integer soLuongXuLy;
+
+    @Schema(description = "Mắt xích hỏng đầu tiên của từng chuỗi bị hỏng (rỗng nếu hợp lệ)")
+    private List<LienKetHongDto> lienKetHong;
+}
@@ -0,0 +1,21 @@
+package com.example.QuanLyDanCu.dto.response;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.*;
+
+@Getter @Setter @NoArgsConstructor @AllArgsConstructor @Builder
+@Schema(description = "Mắt xích hỏng đầu tiên của một chuỗi hash nhật ký")
+public class LienKetHongDto {
+
+    @Schema(description = "Số hiệu chuỗi", example = "3")
+    private Integer chuoi;
+
+    @Schema(description = "Thứ tự của mắt xích hỏng trong chuỗi", example = "10452")
+    private Long thuTu;
+
+    @Schema(description = "ID dòng biến động (null nếu dòng bị mất)", example = "123456")
+    private Long bienDongId;
+
+    @Schema(description = "Lý do", example = "Hash không khớp nội dung (dòng đã bị sửa)")
+    private String lyDo;
+}
@@ -0,0 +1,55 @@
+package com.example.QuanLyDanCu.dto.response;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.*;
+
+import java.util.List;
+
+@Getter @Setter @NoArgsConstructor @AllArgsConstructor @Builder
+@Schema(description = "Kết quả nhập nhân khẩu hàng loạt từ tệp CSV")
+public class NhanKhauImportResponseDto {
+
+    @Schema(description = "Chỉ kiểm tra, không ghi dữ liệu", example = "false")
+    private boolean dryRun;
+
+    @Schema(description = "Tổng số dòng dữ liệu (không tính dòng tiêu đề, dòng trống)", example = "1200")
+    private int tongSo;
+
+    @Schema(description = "Số dòng đã ghi (dryRun: số dòng hợp lệ)", example = "1195")
+    private int soThanhCong;
+
+    @Schema(description = "Số dòng lỗi", example = "5")
+    private int soLoi;
+
+    @Schema(description = "Số hộ khẩu có thành viên mới", example = "310")
+    private int soHoKhau;
+
+    @Schema(description = "Kết quả từng dòng theo thứ tự trong tệp")
+    private List<KetQuaDong> ketQua;
+
+    @Getter @Setter @NoArgsConstructor @AllArgsConstructor @Builder
+    @Schema(description = "Kết quả của một dòng")
+    public static class KetQuaDong {
+
+        @Schema(description = "Số dòng trong tệp (dòng tiêu đề là 1)", example = "2")
+        private int dong;
+
+        @Schema(description = "Họ tên", example = "Nguyễn Văn A")
+        private String hoTen;
+
+        @Schema(description = "Số CMND/CCCD", example = "001234567890")
+        private String cmndCccd;
+
+        @Schema(description = "ID hộ khẩu", example = "1")
+        private Long hoKhauId;
+
+        @Schema(description = "Dòng đã được ghi (dryRun: dòng hợp lệ)", example = "true")
+        private boolean thanhCong;
+
+        @Schema(description = "ID nhân khẩu mới tạo", example = "1024")
+        private Long nhanKhauId;
+
+        @Schema(description = "Lý do lỗi (nếu có)")
+        private String loi;
+    }
+}
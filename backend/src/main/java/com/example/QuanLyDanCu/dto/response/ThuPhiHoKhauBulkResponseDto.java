@@ -0,0 +1,56 @@
+package com.example.QuanLyDanCu.dto.response;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.*;
+
+import java.math.BigDecimal;
+import java.util.List;
+
+@Getter @Setter @NoArgsConstructor @AllArgsConstructor @Builder
+@Schema(description = "Kết quả ghi nhận thu phí hàng loạt")
+public class ThuPhiHoKhauBulkResponseDto {
+
+    @Schema(description = "Tổng số dòng gửi lên", example = "120")
+    private int tongSo;
+
+    @Schema(description = "Số dòng đã ghi nhận", example = "118")
+    private int soThanhCong;
+
+    @Schema(description = "Số dòng lỗi", example = "2")
+    private int soLoi;
+
+    @Schema(description = "Tổng tiền đã ghi nhận", example = "8496000")
+    private BigDecimal tongTien;
+
+    @Schema(description = "Kết quả từng dòng theo đúng thứ tự gửi lên")
+    private List<KetQuaDong> ketQua;
+
+    @Getter @Setter @NoArgsConstructor @AllArgsConstructor @Builder
+    @Schema(description = "Kết quả của một dòng")
+    public static class KetQuaDong {
+
+        @Schema(description = "Vị trí dòng trong danh sách (bắt đầu từ 0)", example = "0")
+        private int viTri;
+
+        @Schema(description = "ID hộ khẩu", example = "1")
+        private Long hoKhauId;
+
+        @Schema(description = "ID đợt thu phí", example = "1")
+        private Long dotThuPhiId;
+
+        @Schema(description = "Dòng đã được ghi nhận hay chưa", example = "true")
+        private boolean thanhCong;
+
+        @Schema(description = "ID bản ghi thu phí (mới tạo hoặc bản ghi đã tồn tại)", example = "15")
+        private Long thuPhiId;
+
+        @Schema(description = "Số người tính phí", example = "4")
+        private Integer soNguoi;
+
+        @Schema(description = "Tổng phí", example = "288000")
+        private BigDecimal tongPhi;
+
+        @Schema(description = "Lý do lỗi (nếu có)")
+        private String loi;
+    }
+}
@@ -0,0 +1,24 @@
+package com.example.QuanLyDanCu.dto.response;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.*;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+@Getter @Setter @NoArgsConstructor @AllArgsConstructor @Builder
+@Schema(description = "Số liệu tổng hợp thu phí của một đợt (đọc trực tiếp từ bảng tổng hợp)")
+public class ThuPhiTongHopResponseDto {
+
+    @Schema(description = "ID đợt thu phí", example = "1")
+    private Long dotThuPhiId;
+
+    @Schema(description = "Số hộ đã nộp", example = "120")
+    private Long soHoDaNop;
+
+    @Schema(description = "Tổng số tiền đã thu (VND)", example = "25920000")
+    private BigDecimal tongDaThu;
+
+    @Schema(description = "Thời điểm cập nhật gần nhất")
+    private LocalDateTime capNhatLuc;
+}
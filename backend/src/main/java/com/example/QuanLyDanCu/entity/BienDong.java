@@ -3,13 +3,23 @@ package com.example.QuanLyDanCu.entity;
 import com.example.QuanLyDanCu.enums.BienDongType;
 import jakarta.persistence.*;
 import lombok.*;
+import org.hibernate.annotations.JdbcTypeCode;
 import org.hibernate.annotations.OnDelete;
 import org.hibernate.annotations.OnDeleteAction;
+import org.hibernate.type.SqlTypes;
 
 import java.time.LocalDateTime;
 
 @Entity
-@Table(name = "bien_dong")
+@Table(name = "bien_dong", indexes = {
+        // Keyset pagination theo (thoi_gian DESC, id DESC), có hoặc không có bộ lọc
+        @Index(name = "idx_bien_dong_thoi_gian", columnList = "thoi_gian DESC, id DESC"),
+        @Index(name = "idx_bien_dong_ho_khau_thoi_gian", columnList = "ho_khau_id, thoi_gian DESC, id DESC"),
+        @Index(name = "idx_bien_dong_nhan_khau_thoi_gian", columnList = "nhan_khau_id, thoi_gian DESC, id DESC"),
+        @Index(name = "idx_bien_dong_loai_thoi_gian", columnList = "loai, thoi_gian DESC, id DESC"),
+        // Kiểm tra chuỗi hash theo từng đoạn (chuoi, thu_tu)
+        @Index(name = "idx_bien_dong_chuoi_thu_tu", columnList = "chuoi, thu_tu")
+})
 @Getter @Setter
 @NoArgsConstructor @AllArgsConstructor
 @Builder
@@ -26,10 +36,30 @@ public class BienDong {
     @Column(name = "noi_dung", length = 1000)
     private String noiDung;                 // VARCHAR(1000)
 
-    @Column(name = "thoi_gian")
+    // Cột phân vùng theo tháng (migrations/003): khóa chính trong DB là (id, thoi_gian)
+    @Column(name = "thoi_gian", nullable = false)
     private LocalDateTime thoiGian;         // TIMESTAMP
 
-    // FK dạng Long
+    // Thay đổi có cấu trúc (trường, giá trị cũ/mới, người thực hiện); index GIN ở migrations/004
+    @JdbcTypeCode(SqlTypes.JSON)
+    @Column(name = "chi_tiet", columnDefinition = "jsonb")
+    private ChiTietBienDong chiTiet;
+
+    // Chuỗi hash chống sửa (migrations/006): dòng thứ thu_tu của chuỗi, nối với hash của dòng trước.
+    // Null với các dòng ghi trước khi bật chuỗi hash.
+    @Column(name = "chuoi")
+    private Integer chuoi;
+
+    @Column(name = "thu_tu")
+    private Long thuTu;
+
+    @Column(name = "hash_truoc", length = 64)
+    private String hashTruoc;
+
+    @Column(name = "hash", length = 64)
+    private String hash;
+
+    // FK dạng Long; xóa hộ khẩu / nhân khẩu chỉ bỏ liên kết, không xóa nhật ký
     @Column(name = "ho_khau_id")
     private Long hoKhauId;
 
@@ -40,10 +70,10 @@ public class BienDong {
             updatable = false,
             foreignKey = @ForeignKey(
                 name = "fk_bien_dong_ho_khau",
-                foreignKeyDefinition = "FOREIGN KEY (ho_khau_id) REFERENCES ho_khau(id) ON DELETE CASCADE"
+                foreignKeyDefinition = "FOREIGN KEY (ho_khau_id) REFERENCES ho_khau(id) ON DELETE SET NULL"
             )
     )
-    @OnDelete(action = OnDeleteAction.CASCADE)
+    @OnDelete(action = OnDeleteAction.SET_NULL)
     private HoKhau hoKhau;
 
     @Column(name = "nhan_khau_id")
@@ -55,10 +85,10 @@ public class BienDong {
             updatable = false,
             foreignKey = @ForeignKey(
                     name = "fk_biendong_nhankhau",
-                    foreignKeyDefinition = "FOREIGN KEY (nhan_khau_id) REFERENCES nhan_khau(id) ON DELETE CASCADE"
+                    foreignKeyDefinition = "FOREIGN KEY (nhan_khau_id) REFERENCES nhan_khau(id) ON DELETE SET NULL"
             )
     )
-    @OnDelete(action = OnDeleteAction.CASCADE)
+    @OnDelete(action = OnDeleteAction.SET_NULL)
     private NhanKhau nhanKhau;
 
 
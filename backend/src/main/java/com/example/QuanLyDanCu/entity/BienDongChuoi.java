@@ -0,0 +1,31 @@
+package com.example.QuanLyDanCu.entity;
+
+import jakarta.persistence.*;
+import lombok.*;
+
+import java.time.LocalDateTime;
+
+/**
+ * Đầu của một chuỗi hash nhật ký biến động: thứ tự và hash của dòng cuối cùng đã ghi.
+ * Nhật ký được chia vào nhiều chuỗi độc lập để các transaction ghi song song không phải
+ * chờ cùng một khóa (xem {@code BienDongChuoiService}).
+ */
+@Entity
+@Table(name = "bien_dong_chuoi")
+@Getter @Setter @NoArgsConstructor @AllArgsConstructor @Builder
+public class BienDongChuoi {
+
+    @Id
+    @Column(name = "chuoi")
+    private Integer chuoi;
+
+    // 0 khi chuỗi chưa có dòng nào
+    @Column(name = "thu_tu", nullable = false)
+    private Long thuTu;
+
+    @Column(name = "hash", length = 64, nullable = false)
+    private String hash;
+
+    @Column(name = "cap_nhat_luc")
+    private LocalDateTime capNhatLuc;
+}
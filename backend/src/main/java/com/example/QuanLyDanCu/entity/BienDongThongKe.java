@@ -0,0 +1,49 @@
+package com.example.QuanLyDanCu.entity;
+
+import com.example.QuanLyDanCu.enums.BienDongType;
+import com.example.QuanLyDanCu.enums.DonViThoiGian;
+import jakarta.persistence.*;
+import lombok.*;
+
+import java.io.Serializable;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+
+/**
+ * Số lượng biến động theo loại và theo ngày / tháng, được cộng dồn trong cùng transaction
+ * với việc ghi nhật ký (xem {@code BienDongThongKeService}).
+ */
+@Entity
+@Table(name = "bien_dong_thong_ke")
+@IdClass(BienDongThongKe.Key.class)
+@Getter @Setter @NoArgsConstructor @AllArgsConstructor @Builder
+public class BienDongThongKe {
+
+    @Id
+    @Enumerated(EnumType.STRING)
+    @Column(name = "don_vi", length = 10)
+    private DonViThoiGian donVi;
+
+    // Ngày (NGAY) hoặc ngày đầu tháng (THANG)
+    @Id
+    @Column(name = "ky")
+    private LocalDate ky;
+
+    @Id
+    @Enumerated(EnumType.STRING)
+    @Column(name = "loai", length = 50)
+    private BienDongType loai;
+
+    @Column(name = "so_luong", nullable = false)
+    private Long soLuong;
+
+    @Column(name = "cap_nhat_luc")
+    private LocalDateTime capNhatLuc;
+
+    @Getter @Setter @NoArgsConstructor @AllArgsConstructor @EqualsAndHashCode
+    public static class Key implements Serializable {
+        private DonViThoiGian donVi;
+        private LocalDate ky;
+        private BienDongType loai;
+    }
+}
@@ -0,0 +1,36 @@
+package com.example.QuanLyDanCu.entity;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Nội dung có cấu trúc của một dòng biến động, lưu ở cột JSONB {@code bien_dong.chi_tiet}.
+ * Các trường null không được ghi để truy vấn chứa ({@code @>}) trên index GIN gọn và chính xác.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@JsonInclude(JsonInclude.Include.NON_NULL)
+@Schema(description = "Chi tiết thay đổi có cấu trúc của biến động")
+public class ChiTietBienDong {
+
+    @Schema(description = "Tên trường bị thay đổi", example = "hoTen")
+    private String truong;
+
+    @Schema(description = "Tên hiển thị của trường", example = "họ tên")
+    private String nhan;
+
+    @Schema(description = "Giá trị cũ", example = "Nguyễn Văn A")
+    private String giaTriCu;
+
+    @Schema(description = "Giá trị mới", example = "Nguyễn Văn B")
+    private String giaTriMoi;
+
+    @Schema(description = "Tên đăng nhập người thực hiện", example = "admin")
+    private String nguoiThucHien;
+}
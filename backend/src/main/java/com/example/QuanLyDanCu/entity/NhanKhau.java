@@ -8,7 +8,9 @@ import org.hibernate.annotations.OnDeleteAction;
 import java.time.LocalDate;
 
 @Entity
-@Table(name = "nhan_khau")
+@Table(name = "nhan_khau", indexes = {
+        @Index(name = "idx_nhan_khau_ho_khau_id", columnList = "ho_khau_id")
+})
 @Getter
 @Setter
 @NoArgsConstructor
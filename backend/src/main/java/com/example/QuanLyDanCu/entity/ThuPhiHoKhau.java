@@ -10,7 +10,10 @@ import java.math.BigDecimal;
 import java.time.LocalDate;
 
 @Entity
-@Table(name = "thu_phi_ho_khau")
+@Table(name = "thu_phi_ho_khau", uniqueConstraints = {
+        // Mỗi hộ khẩu chỉ có một bản ghi cho mỗi đợt thu phí
+        @UniqueConstraint(name = "uk_thu_phi_ho_khau_dot", columnNames = { "ho_khau_id", "dot_thu_phi_id" })
+})
 @Getter @Setter @NoArgsConstructor @AllArgsConstructor @Builder
 public class ThuPhiHoKhau {
     @Id
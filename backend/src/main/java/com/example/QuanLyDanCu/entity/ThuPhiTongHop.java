@@ -0,0 +1,32 @@
+package com.example.QuanLyDanCu.entity;
+
+import jakarta.persistence.*;
+import lombok.*;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+/**
+ * Bảng tổng hợp thu phí theo đợt, được cập nhật tăng dần trong cùng transaction
+ * với việc ghi nhận / xóa bản ghi thu phí.
+ */
+@Entity
+@Table(name = "thu_phi_tong_hop")
+@Getter @Setter @NoArgsConstructor @AllArgsConstructor @Builder
+public class ThuPhiTongHop {
+
+    @Id
+    @Column(name = "dot_thu_phi_id")
+    private Long dotThuPhiId;
+
+    // Số hộ đã có bản ghi thu phí trong đợt
+    @Column(name = "so_ho_da_nop", nullable = false)
+    private Long soHoDaNop;
+
+    // Tổng số tiền đã thu trong đợt
+    @Column(name = "tong_da_thu", precision = 18, scale = 2, nullable = false)
+    private BigDecimal tongDaThu;
+
+    @Column(name = "cap_nhat_luc")
+    private LocalDateTime capNhatLuc;
+}
@@ -0,0 +1,69 @@
+package com.example.QuanLyDanCu.enums;
+
+import com.example.QuanLyDanCu.exception.BadRequestException;
+import com.example.QuanLyDanCu.util.CsvWriter;
+import com.example.QuanLyDanCu.util.TabularWriter;
+import com.example.QuanLyDanCu.util.XlsxWriter;
+import io.swagger.v3.oas.annotations.media.Schema;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+@Schema(description = "Định dạng xuất dữ liệu dạng luồng: NDJSON, CSV hoặc XLSX")
+public enum DinhDangXuat {
+
+    @Schema(description = "Mỗi dòng một đối tượng JSON (application/x-ndjson)")
+    NDJSON("application/x-ndjson", "ndjson"),
+
+    @Schema(description = "CSV UTF-8 (text/csv)")
+    CSV("text/csv;charset=UTF-8", "csv"),
+
+    @Schema(description = "Bảng tính Excel (.xlsx), một trang tính")
+    XLSX("application/vnd.openxmlformats-officedocument.spreadsheetml.sheet", "xlsx");
+
+    private final String contentType;
+    private final String extension;
+
+    DinhDangXuat(String contentType, String extension) {
+        this.contentType = contentType;
+        this.extension = extension;
+    }
+
+    public String getContentType() {
+        return contentType;
+    }
+
+    public String getExtension() {
+        return extension;
+    }
+
+    /**
+     * Định dạng dạng bảng (CSV, XLSX), ghi được bằng {@link TabularWriter}.
+     */
+    public boolean isTabular() {
+        return this != NDJSON;
+    }
+
+    /**
+     * Mở bộ ghi bảng cho định dạng CSV / XLSX (sheetName chỉ dùng cho XLSX).
+     */
+    public TabularWriter openTabularWriter(OutputStream out, String sheetName) throws IOException {
+        return switch (this) {
+            case CSV -> new CsvWriter(out);
+            case XLSX -> new XlsxWriter(out, sheetName);
+            case NDJSON -> throw new IllegalStateException("NDJSON không phải định dạng bảng");
+        };
+    }
+
+    public static DinhDangXuat fromParam(String value) {
+        if (value == null || value.isBlank()) {
+            return NDJSON;
+        }
+        for (DinhDangXuat format : values()) {
+            if (format.name().equalsIgnoreCase(value.trim())) {
+                return format;
+            }
+        }
+        throw new BadRequestException("Định dạng không hợp lệ: " + value + " (chỉ hỗ trợ ndjson, csv, xlsx)");
+    }
+}
@@ -0,0 +1,13 @@
+package com.example.QuanLyDanCu.enums;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+
+@Schema(description = "Đơn vị thời gian của số liệu tổng hợp: NGAY (theo ngày) hoặc THANG (theo tháng)")
+public enum DonViThoiGian {
+
+    @Schema(description = "Theo ngày")
+    NGAY,
+
+    @Schema(description = "Theo tháng (ky là ngày đầu tháng)")
+    THANG;
+}
@@ -0,0 +1,13 @@
+package com.example.QuanLyDanCu.enums;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+
+@Schema(description = "Loại mục gợi ý: NHAN_KHAU (theo họ tên / CMND-CCCD) hoặc HO_KHAU (theo số hộ khẩu)")
+public enum LoaiGoiY {
+
+    @Schema(description = "Nhân khẩu")
+    NHAN_KHAU,
+
+    @Schema(description = "Hộ khẩu")
+    HO_KHAU;
+}
@@ -0,0 +1,15 @@
+package com.example.QuanLyDanCu.event;
+
+import com.example.QuanLyDanCu.entity.BienDong;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+/**
+ * Phát ra khi một dòng nhật ký biến động được ghi (listener nhận sau khi commit).
+ */
+@Getter
+@AllArgsConstructor
+public class BienDongLoggedEvent {
+
+    private final BienDong entry;
+}
@@ -0,0 +1,20 @@
+package com.example.QuanLyDanCu.event;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+/**
+ * Phát ra khi đợt thu phí được tạo hoặc bị xóa.
+ */
+@Getter
+@AllArgsConstructor
+public class DotThuPhiChangedEvent {
+
+    public enum Type {
+        CREATED,
+        DELETED
+    }
+
+    private final Type type;
+    private final Long dotThuPhiId;
+}
@@ -0,0 +1,29 @@
+package com.example.QuanLyDanCu.event;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.util.List;
+
+/**
+ * Phát ra khi hộ khẩu được tạo, cập nhật hoặc xóa.
+ * nhanKhauIds chỉ có khi xóa hẳn hộ khẩu: các nhân khẩu bị xóa theo (ON DELETE CASCADE).
+ */
+@Getter
+@AllArgsConstructor
+public class HoKhauChangedEvent {
+
+    public enum Type {
+        CREATED,
+        UPDATED,
+        DELETED
+    }
+
+    private final Type type;
+    private final Long hoKhauId;
+    private final List<Long> nhanKhauIds;
+
+    public HoKhauChangedEvent(Type type, Long hoKhauId) {
+        this(type, hoKhauId, List.of());
+    }
+}
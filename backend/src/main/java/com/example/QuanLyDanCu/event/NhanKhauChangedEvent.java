@@ -0,0 +1,30 @@
+package com.example.QuanLyDanCu.event;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.util.Set;
+
+/**
+ * Phát ra khi thông tin / trạng thái cư trú của một nhân khẩu thay đổi.
+ * hoKhauIds chứa mọi hộ khẩu bị ảnh hưởng (ví dụ: cả hộ cũ và hộ mới khi chuyển hộ).
+ */
+@Getter
+@AllArgsConstructor
+public class NhanKhauChangedEvent {
+
+    public enum Type {
+        CREATED,
+        UPDATED,
+        DELETED,
+        TAM_TRU,
+        HUY_TAM_TRU,
+        TAM_VANG,
+        HUY_TAM_VANG,
+        KHAI_TU
+    }
+
+    private final Type type;
+    private final Long nhanKhauId;
+    private final Set<Long> hoKhauIds;
+}
@@ -0,0 +1,18 @@
+package com.example.QuanLyDanCu.event;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.util.Set;
+
+/**
+ * Phát ra một lần sau khi nhập hàng loạt nhân khẩu, thay cho một NhanKhauChangedEvent mỗi dòng.
+ * hoKhauIds chứa mọi hộ khẩu có thành viên mới.
+ */
+@Getter
+@AllArgsConstructor
+public class NhanKhauImportedEvent {
+
+    private final Set<Long> nhanKhauIds;
+    private final Set<Long> hoKhauIds;
+}
@@ -0,0 +1,22 @@
+package com.example.QuanLyDanCu.event;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+/**
+ * Phát ra khi một bản ghi thu phí được ghi nhận hoặc bị xóa.
+ */
+@Getter
+@AllArgsConstructor
+public class ThuPhiHoKhauChangedEvent {
+
+    public enum Type {
+        CREATED,
+        DELETED
+    }
+
+    private final Type type;
+    private final Long thuPhiHoKhauId;
+    private final Long hoKhauId;
+    private final Long dotThuPhiId;
+}
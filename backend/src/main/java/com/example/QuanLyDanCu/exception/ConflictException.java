@@ -0,0 +1,18 @@
+package com.example.QuanLyDanCu.exception;
+
+/**
+ * Thrown when the request would create a record that already exists.
+ * Carries the existing record so the client receives it as the response body.
+ */
+public class ConflictException extends RuntimeException {
+    private final transient Object existing;
+
+    public ConflictException(String message, Object existing) {
+        super(message);
+        this.existing = existing;
+    }
+
+    public Object getExisting() {
+        return existing;
+    }
+}
@@ -14,6 +14,7 @@ import org.springframework.web.HttpRequestMethodNotSupportedException;
 import org.springframework.web.bind.MethodArgumentNotValidException;
 import org.springframework.web.bind.annotation.ExceptionHandler;
 import org.springframework.web.bind.annotation.RestControllerAdvice;
+import org.springframework.web.method.annotation.MethodArgumentTypeMismatchException;
 
 @RestControllerAdvice
 public class GlobalExceptionHandler {
@@ -56,6 +57,26 @@ public class GlobalExceptionHandler {
         return buildResponse(HttpStatus.BAD_REQUEST, "Dữ liệu không hợp lệ: " + ex.getMostSpecificCause().getMessage());
     }
 
+    /**
+     * Bắt lỗi sai kiểu cho tham số query / path (enum, ngày giờ, số)
+     */
+    @ExceptionHandler(MethodArgumentTypeMismatchException.class)
+    public ResponseEntity<ApiErrorResponse> handleTypeMismatch(MethodArgumentTypeMismatchException ex) {
+        Class<?> requiredType = ex.getRequiredType();
+        if (requiredType != null && requiredType.isEnum()) {
+            String allowedValues = Arrays.stream(requiredType.getEnumConstants())
+                    .map(Object::toString)
+                    .collect(Collectors.joining(", "));
+            return buildResponse(
+                    HttpStatus.BAD_REQUEST,
+                    String.format("Giá trị '%s' không hợp lệ cho tham số '%s'. Chỉ chấp nhận: %s",
+                            ex.getValue(), ex.getName(), allowedValues)
+            );
+        }
+        return buildResponse(HttpStatus.BAD_REQUEST,
+                String.format("Giá trị '%s' không hợp lệ cho tham số '%s'", ex.getValue(), ex.getName()));
+    }
+
     @ExceptionHandler(AccessDeniedException.class)
     public ResponseEntity<ApiErrorResponse> handleAccessDenied(AccessDeniedException ex) {
         return buildResponse(HttpStatus.FORBIDDEN, ex.getMessage());
@@ -76,6 +97,17 @@ public class GlobalExceptionHandler {
         return buildResponse(HttpStatus.UNPROCESSABLE_ENTITY, ex.getMessage());
     }
 
+    /**
+     * Bản ghi đã tồn tại: trả 409 kèm chính bản ghi đó (không chỉ thông báo lỗi).
+     */
+    @ExceptionHandler(ConflictException.class)
+    public ResponseEntity<?> handleConflict(ConflictException ex) {
+        if (ex.getExisting() == null) {
+            return buildResponse(HttpStatus.CONFLICT, ex.getMessage());
+        }
+        return ResponseEntity.status(HttpStatus.CONFLICT).body(ex.getExisting());
+    }
+
     @ExceptionHandler(HttpRequestMethodNotSupportedException.class)
     public ResponseEntity<ApiErrorResponse> handleMethodNotSupported(HttpRequestMethodNotSupportedException ex) {
         String method = ex.getMethod();
@@ -0,0 +1,140 @@
+package com.example.QuanLyDanCu.repository;
+
+import com.example.QuanLyDanCu.util.BienDongHashUtils;
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.function.Predicate;
+
+/**
+ * Truy cập JDBC cho chuỗi hash của nhật ký biến động: khóa / cập nhật đầu chuỗi khi ghi,
+ * đọc tuần tự các mắt xích khi kiểm tra.
+ */
+@Repository
+@RequiredArgsConstructor
+public class BienDongChuoiRepository {
+
+    private static final int FETCH_SIZE = 1000;
+
+    private final JdbcTemplate jdbcTemplate;
+
+    /**
+     * Đầu chuỗi: thứ tự và hash của dòng cuối cùng.
+     */
+    public record Head(int chuoi, long thuTu, String hash) {
+    }
+
+    /**
+     * Số dòng và thứ tự nhỏ nhất còn trong bảng của một chuỗi (phần cũ hơn có thể đã lưu trữ).
+     */
+    public record Range(int chuoi, long tuThuTu, long soDong) {
+    }
+
+    /**
+     * Một mắt xích: các trường được băm cùng vị trí và hash đã lưu. chiTiet là JSON thô của cột JSONB.
+     */
+    public record Link(long id, int chuoi, long thuTu, String hashTruoc, String hash, String loai,
+            String noiDung, LocalDateTime thoiGian, String chiTiet) {
+    }
+
+    /**
+     * Tạo đầu chuỗi 0..soChuoi-1 nếu chưa có.
+     */
+    public void ensureChains(int soChuoi) {
+        jdbcTemplate.update("""
+                INSERT INTO bien_dong_chuoi (chuoi, thu_tu, hash, cap_nhat_luc)
+                SELECT g, 0, ?, now() FROM generate_series(0, ? - 1) g
+                ON CONFLICT (chuoi) DO NOTHING
+                """, BienDongHashUtils.GENESIS, soChuoi);
+    }
+
+    /**
+     * Khóa một chuỗi bất kỳ đang rảnh (bỏ qua chuỗi transaction khác đang giữ).
+     *
+     * @return null nếu mọi chuỗi đều đang bị khóa
+     */
+    public Head lockAnyFree(int soChuoi) {
+        List<Head> heads = jdbcTemplate.query("""
+                SELECT chuoi, thu_tu, hash FROM bien_dong_chuoi
+                WHERE chuoi < ?
+                ORDER BY random()
+                LIMIT 1
+                FOR UPDATE SKIP LOCKED
+                """, (rs, rowNum) -> new Head(rs.getInt("chuoi"), rs.getLong("thu_tu"), rs.getString("hash")), soChuoi);
+        return heads.isEmpty() ? null : heads.get(0);
+    }
+
+    /**
+     * Khóa (chờ nếu cần) đầu của một chuỗi xác định.
+     *
+     * @return null nếu chuỗi chưa được tạo
+     */
+    public Head lock(int chuoi) {
+        List<Head> heads = jdbcTemplate.query(
+                "SELECT chuoi, thu_tu, hash FROM bien_dong_chuoi WHERE chuoi = ? FOR UPDATE",
+                (rs, rowNum) -> new Head(rs.getInt("chuoi"), rs.getLong("thu_tu"), rs.getString("hash")), chuoi);
+        return heads.isEmpty() ? null : heads.get(0);
+    }
+
+    public void updateHead(int chuoi, long thuTu, String hash, LocalDateTime capNhatLuc) {
+        jdbcTemplate.update("UPDATE bien_dong_chuoi SET thu_tu = ?, hash = ?, cap_nhat_luc = ? WHERE chuoi = ?",
+                thuTu, hash, Timestamp.valueOf(capNhatLuc), chuoi);
+    }
+
+    public List<Head> findHeads() {
+        return jdbcTemplate.query("SELECT chuoi, thu_tu, hash FROM bien_dong_chuoi ORDER BY chuoi",
+                (rs, rowNum) -> new Head(rs.getInt("chuoi"), rs.getLong("thu_tu"), rs.getString("hash")));
+    }
+
+    public List<Range> findRanges() {
+        return jdbcTemplate.query("""
+                SELECT chuoi, MIN(thu_tu) AS tu_thu_tu, COUNT(*) AS so_dong
+                FROM bien_dong WHERE chuoi IS NOT NULL
+                GROUP BY chuoi
+                """, (rs, rowNum) -> new Range(rs.getInt("chuoi"), rs.getLong("tu_thu_tu"), rs.getLong("so_dong")));
+    }
+
+    /**
+     * Số dòng ghi trước khi bật chuỗi hash (không kiểm tra được).
+     */
+    public long countUnchained() {
+        Long count = jdbcTemplate.queryForObject("SELECT COUNT(*) FROM bien_dong WHERE chuoi IS NULL", Long.class);
+        return count != null ? count : 0;
+    }
+
+    /**
+     * Đọc lần lượt các mắt xích có thu_tu trong [tuThuTu, denThuTu] của một chuỗi, theo thứ tự.
+     * Dừng khi visitor trả về false. Phải gọi trong transaction để PostgreSQL dùng cursor theo fetch size.
+     */
+    public void forEachLink(int chuoi, long tuThuTu, long denThuTu, Predicate<Link> visitor) {
+        JdbcTemplate streaming = new JdbcTemplate(jdbcTemplate.getDataSource());
+        streaming.setFetchSize(FETCH_SIZE);
+
+        boolean[] stopped = {false};
+        streaming.query("""
+                SELECT id, chuoi, thu_tu, hash_truoc, hash, loai, noi_dung, thoi_gian, CAST(chi_tiet AS text) AS chi_tiet
+                FROM bien_dong
+                WHERE chuoi = ? AND thu_tu BETWEEN ? AND ?
+                ORDER BY thu_tu, id
+                """, rs -> {
+                    if (stopped[0]) {
+                        return;
+                    }
+                    Link link = new Link(
+                            rs.getLong("id"),
+                            rs.getInt("chuoi"),
+                            rs.getLong("thu_tu"),
+                            rs.getString("hash_truoc"),
+                            rs.getString("hash"),
+                            rs.getString("loai"),
+                            rs.getString("noi_dung"),
+                            rs.getTimestamp("thoi_gian").toLocalDateTime(),
+                            rs.getString("chi_tiet"));
+                    stopped[0] = !visitor.test(link);
+                }, chuoi, tuThuTu, denThuTu);
+    }
+}
@@ -0,0 +1,214 @@
+package com.example.QuanLyDanCu.repository;
+
+import com.example.QuanLyDanCu.entity.BienDong;
+import com.example.QuanLyDanCu.entity.BienDongThongKe;
+import com.example.QuanLyDanCu.entity.ChiTietBienDong;
+import com.example.QuanLyDanCu.enums.BienDongType;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.BatchPreparedStatementSetter;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.support.GeneratedKeyHolder;
+import org.springframework.jdbc.support.KeyHolder;
+import org.springframework.stereotype.Repository;
+
+import java.sql.Date;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Ghi nhật ký biến động bằng JDBC batch (một lượt gửi cho nhiều dòng).
+ * Chạy trong transaction hiện tại của JPA.
+ */
+@Repository
+@RequiredArgsConstructor
+public class BienDongJdbcRepository {
+
+    private static final String INSERT_SQL = """
+            INSERT INTO bien_dong (loai, noi_dung, thoi_gian, ho_khau_id, nhan_khau_id, chi_tiet,
+                                   chuoi, thu_tu, hash_truoc, hash)
+            VALUES (?, ?, ?, ?, ?, CAST(? AS jsonb), ?, ?, ?, ?)
+            """;
+
+    private static final String INCREMENT_THONG_KE_SQL = """
+            INSERT INTO bien_dong_thong_ke (don_vi, ky, loai, so_luong, cap_nhat_luc)
+            VALUES (?, ?, ?, ?, ?)
+            ON CONFLICT (don_vi, ky, loai) DO UPDATE
+               SET so_luong = bien_dong_thong_ke.so_luong + EXCLUDED.so_luong,
+                   cap_nhat_luc = EXCLUDED.cap_nhat_luc
+            """;
+
+    // Phải trùng biểu thức của idx_bien_dong_noi_dung_fts để PostgreSQL dùng được index
+    private static final String FTS_VECTOR = "to_tsvector('simple', f_unaccent(coalesce(b.noi_dung, '')))";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final ObjectMapper objectMapper;
+
+    /**
+     * Ghi các dòng bằng một batch và gán id sinh ra vào từng entity (theo đúng thứ tự),
+     * để sự kiện phát sau commit mang id thật của bản ghi.
+     */
+    public void batchInsert(List<BienDong> entries) {
+        if (entries.isEmpty()) {
+            return;
+        }
+
+        KeyHolder keyHolder = new GeneratedKeyHolder();
+        jdbcTemplate.batchUpdate(
+                con -> con.prepareStatement(INSERT_SQL, new String[] { "id" }),
+                new BatchPreparedStatementSetter() {
+                    @Override
+                    public void setValues(PreparedStatement ps, int i) throws SQLException {
+                        BienDong entry = entries.get(i);
+                        ps.setString(1, entry.getLoai().name());
+                        ps.setString(2, entry.getNoiDung());
+                        ps.setTimestamp(3, Timestamp.valueOf(entry.getThoiGian()));
+                        setNullableLong(ps, 4, entry.getHoKhauId());
+                        setNullableLong(ps, 5, entry.getNhanKhauId());
+                        ps.setString(6, toJson(entry.getChiTiet()));
+                        if (entry.getChuoi() == null) {
+                            ps.setNull(7, Types.INTEGER);
+                        } else {
+                            ps.setInt(7, entry.getChuoi());
+                        }
+                        setNullableLong(ps, 8, entry.getThuTu());
+                        ps.setString(9, entry.getHashTruoc());
+                        ps.setString(10, entry.getHash());
+                    }
+
+                    @Override
+                    public int getBatchSize() {
+                        return entries.size();
+                    }
+                },
+                keyHolder);
+
+        List<Map<String, Object>> keys = keyHolder.getKeyList();
+        for (int i = 0; i < entries.size(); i++) {
+            entries.get(i).setId(((Number) keys.get(i).get("id")).longValue());
+        }
+    }
+
+    /**
+     * Cộng dồn số lượng (soLuong là phần tăng thêm) vào bảng tổng hợp, một lượt batch.
+     * Người gọi sắp xếp theo khóa để các transaction đồng thời khóa dòng theo cùng thứ tự.
+     */
+    public void batchIncrementThongKe(List<BienDongThongKe> deltas) {
+        if (deltas.isEmpty()) {
+            return;
+        }
+
+        jdbcTemplate.batchUpdate(INCREMENT_THONG_KE_SQL, new BatchPreparedStatementSetter() {
+            @Override
+            public void setValues(PreparedStatement ps, int i) throws SQLException {
+                BienDongThongKe delta = deltas.get(i);
+                ps.setString(1, delta.getDonVi().name());
+                ps.setDate(2, Date.valueOf(delta.getKy()));
+                ps.setString(3, delta.getLoai().name());
+                ps.setLong(4, delta.getSoLuong());
+                ps.setTimestamp(5, Timestamp.valueOf(delta.getCapNhatLuc()));
+            }
+
+            @Override
+            public int getBatchSize() {
+                return deltas.size();
+            }
+        });
+    }
+
+    /**
+     * Một dòng kết quả tìm kiếm kèm điểm xếp hạng.
+     */
+    public record SearchHit(BienDong entry, float rank) {
+    }
+
+    /**
+     * Tìm kiếm toàn văn trên noi_dung, xếp theo (rank DESC, thoi_gian DESC, id DESC),
+     * phân trang keyset: trang sau lấy các dòng đứng sau (beforeRank, beforeThoiGian, beforeId).
+     *
+     * @param tsQuery chuỗi tsquery đã được làm sạch (chỉ gồm từ chữ/số, &amp;, :*)
+     */
+    public List<SearchHit> search(String tsQuery, BienDongType loai, LocalDateTime tuThoiGian,
+            LocalDateTime denThoiGian, Float beforeRank, LocalDateTime beforeThoiGian, Long beforeId, int limit) {
+        StringBuilder inner = new StringBuilder()
+                .append("SELECT b.id, b.loai, b.noi_dung, b.thoi_gian, b.ho_khau_id, b.nhan_khau_id, ")
+                .append("CAST(b.chi_tiet AS text) AS chi_tiet, b.chuoi, b.thu_tu, b.hash_truoc, b.hash, ")
+                .append("ts_rank_cd(").append(FTS_VECTOR).append(", to_tsquery('simple', f_unaccent(?))) AS rank ")
+                .append("FROM bien_dong b WHERE ").append(FTS_VECTOR).append(" @@ to_tsquery('simple', f_unaccent(?))");
+        List<Object> args = new ArrayList<>(List.of(tsQuery, tsQuery));
+
+        if (loai != null) {
+            inner.append(" AND b.loai = ?");
+            args.add(loai.name());
+        }
+        if (tuThoiGian != null) {
+            inner.append(" AND b.thoi_gian >= ?");
+            args.add(Timestamp.valueOf(tuThoiGian));
+        }
+        if (denThoiGian != null) {
+            inner.append(" AND b.thoi_gian < ?");
+            args.add(Timestamp.valueOf(denThoiGian));
+        }
+
+        StringBuilder sql = new StringBuilder("SELECT * FROM (").append(inner).append(") s");
+        if (beforeRank != null && beforeThoiGian != null && beforeId != null) {
+            sql.append(" WHERE (s.rank, s.thoi_gian, s.id) < (CAST(? AS real), ?, ?)");
+            args.add(beforeRank);
+            args.add(Timestamp.valueOf(beforeThoiGian));
+            args.add(beforeId);
+        }
+        sql.append(" ORDER BY s.rank DESC, s.thoi_gian DESC, s.id DESC LIMIT ?");
+        args.add(limit);
+
+        return jdbcTemplate.query(sql.toString(), (rs, rowNum) -> new SearchHit(mapRow(rs), rs.getFloat("rank")),
+                args.toArray());
+    }
+
+    private BienDong mapRow(ResultSet rs) throws SQLException {
+        String chiTiet = rs.getString("chi_tiet");
+        try {
+            return BienDong.builder()
+                    .id(rs.getLong("id"))
+                    .loai(BienDongType.valueOf(rs.getString("loai")))
+                    .noiDung(rs.getString("noi_dung"))
+                    .thoiGian(rs.getTimestamp("thoi_gian").toLocalDateTime())
+                    .hoKhauId(rs.getObject("ho_khau_id", Long.class))
+                    .nhanKhauId(rs.getObject("nhan_khau_id", Long.class))
+                    .chiTiet(chiTiet == null ? null : objectMapper.readValue(chiTiet, ChiTietBienDong.class))
+                    .chuoi(rs.getObject("chuoi", Integer.class))
+                    .thuTu(rs.getObject("thu_tu", Long.class))
+                    .hashTruoc(rs.getString("hash_truoc"))
+                    .hash(rs.getString("hash"))
+                    .build();
+        } catch (JsonProcessingException ex) {
+            throw new IllegalStateException("Chi tiết biến động không phải JSON hợp lệ", ex);
+        }
+    }
+
+    private String toJson(Object value) {
+        if (value == null) {
+            return null;
+        }
+        try {
+            return objectMapper.writeValueAsString(value);
+        } catch (JsonProcessingException ex) {
+            throw new IllegalStateException("Không thể ghi chi tiết biến động dạng JSON", ex);
+        }
+    }
+
+    private static void setNullableLong(PreparedStatement ps, int index, Long value) throws SQLException {
+        if (value == null) {
+            ps.setNull(index, Types.BIGINT);
+        } else {
+            ps.setLong(index, value);
+        }
+    }
+}
@@ -0,0 +1,222 @@
+package com.example.QuanLyDanCu.repository;
+
+import com.example.QuanLyDanCu.entity.ChiTietBienDong;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.BatchPreparedStatementSetter;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Quản lý phân vùng theo tháng của bảng bien_dong (PostgreSQL declarative partitioning).
+ * Phân vùng tháng được đặt tên {@code bien_dong_pYYYYMM}; tên luôn sinh từ {@link YearMonth}
+ * nên an toàn khi ghép vào câu DDL.
+ */
+@Repository
+@RequiredArgsConstructor
+public class BienDongPartitionRepository {
+
+    private static final Pattern PARTITION_NAME = Pattern.compile("^bien_dong_p(\\d{4})(\\d{2})$");
+    private static final int FETCH_SIZE = 1000;
+
+    private static final String RESTORE_SQL = """
+            INSERT INTO bien_dong (id, loai, noi_dung, thoi_gian, ho_khau_id, nhan_khau_id, chi_tiet,
+                                   chuoi, thu_tu, hash_truoc, hash)
+            VALUES (?, ?, ?, ?, (SELECT id FROM ho_khau WHERE id = ?), (SELECT id FROM nhan_khau WHERE id = ?),
+                    CAST(? AS jsonb), ?, ?, ?, ?)
+            ON CONFLICT DO NOTHING
+            """;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final ObjectMapper objectMapper;
+
+    /**
+     * Một dòng nhật ký trong tệp lưu trữ (một dòng JSON), giữ nguyên vị trí trong chuỗi hash
+     * để khôi phục xong vẫn kiểm tra được. Tệp lưu trữ cũ không có các trường chuỗi -> null.
+     */
+    public record ArchivedRow(Long id, String loai, String noiDung, LocalDateTime thoiGian,
+            Long hoKhauId, Long nhanKhauId, ChiTietBienDong chiTiet,
+            Integer chuoi, Long thuTu, String hashTruoc, String hash) {
+    }
+
+    public static String partitionName(YearMonth thang) {
+        return String.format("bien_dong_p%04d%02d", thang.getYear(), thang.getMonthValue());
+    }
+
+    /**
+     * Tháng của phân vùng theo tên; null nếu không phải phân vùng tháng (vd. phân vùng DEFAULT).
+     */
+    public static YearMonth monthOf(String partitionName) {
+        Matcher m = PARTITION_NAME.matcher(partitionName);
+        if (!m.matches()) {
+            return null;
+        }
+        return YearMonth.of(Integer.parseInt(m.group(1)), Integer.parseInt(m.group(2)));
+    }
+
+    public boolean isPartitioned() {
+        Boolean result = jdbcTemplate.queryForObject("""
+                SELECT EXISTS (
+                    SELECT 1 FROM pg_partitioned_table p
+                    JOIN pg_class c ON c.oid = p.partrelid
+                    WHERE c.relname = 'bien_dong' AND c.relnamespace = current_schema()::regnamespace
+                )
+                """, Boolean.class);
+        return Boolean.TRUE.equals(result);
+    }
+
+    /**
+     * Các phân vùng tháng đang gắn vào bien_dong.
+     */
+    public List<String> findAttachedPartitions() {
+        return jdbcTemplate.queryForList("""
+                SELECT c.relname FROM pg_inherits i
+                JOIN pg_class c ON c.oid = i.inhrelid
+                WHERE i.inhparent = 'bien_dong'::regclass
+                  AND c.relname ~ '^bien_dong_p[0-9]{6}$'
+                ORDER BY c.relname
+                """, String.class);
+    }
+
+    /**
+     * Phân vùng tháng đã tách nhưng chưa xóa (lần lưu trữ trước bị gián đoạn).
+     */
+    public List<String> findDetachedPartitions() {
+        return jdbcTemplate.queryForList("""
+                SELECT c.relname FROM pg_class c
+                WHERE c.relkind = 'r'
+                  AND c.relnamespace = current_schema()::regnamespace
+                  AND c.relname ~ '^bien_dong_p[0-9]{6}$'
+                  AND NOT EXISTS (SELECT 1 FROM pg_inherits i WHERE i.inhrelid = c.oid)
+                ORDER BY c.relname
+                """, String.class);
+    }
+
+    public void createPartition(YearMonth thang) {
+        jdbcTemplate.execute(String.format(
+                "CREATE TABLE IF NOT EXISTS %s PARTITION OF bien_dong FOR VALUES FROM ('%s') TO ('%s')",
+                partitionName(thang), thang.atDay(1), thang.plusMonths(1).atDay(1)));
+    }
+
+    public void detachPartition(YearMonth thang) {
+        jdbcTemplate.execute("ALTER TABLE bien_dong DETACH PARTITION " + partitionName(thang));
+    }
+
+    public void dropPartition(YearMonth thang) {
+        jdbcTemplate.execute("DROP TABLE IF EXISTS " + partitionName(thang));
+    }
+
+    /**
+     * Đọc lần lượt các dòng của một phân vùng (đã tách hoặc chưa) theo id.
+     * Phải gọi trong transaction để PostgreSQL dùng cursor theo fetch size, không nạp hết vào bộ nhớ.
+     */
+    public long forEachRow(YearMonth thang, Consumer<ArchivedRow> consumer) {
+        JdbcTemplate streaming = new JdbcTemplate(jdbcTemplate.getDataSource());
+        streaming.setFetchSize(FETCH_SIZE);
+
+        long[] count = {0};
+        streaming.query(
+                "SELECT id, loai, noi_dung, thoi_gian, ho_khau_id, nhan_khau_id, chi_tiet,"
+                        + " chuoi, thu_tu, hash_truoc, hash FROM "
+                        + partitionName(thang) + " ORDER BY id",
+                rs -> {
+                    consumer.accept(new ArchivedRow(
+                            rs.getLong("id"),
+                            rs.getString("loai"),
+                            rs.getString("noi_dung"),
+                            rs.getTimestamp("thoi_gian").toLocalDateTime(),
+                            rs.getObject("ho_khau_id", Long.class),
+                            rs.getObject("nhan_khau_id", Long.class),
+                            fromJson(rs.getString("chi_tiet")),
+                            rs.getObject("chuoi", Integer.class),
+                            rs.getObject("thu_tu", Long.class),
+                            rs.getString("hash_truoc"),
+                            rs.getString("hash")));
+                    count[0]++;
+                });
+        return count[0];
+    }
+
+    /**
+     * Ghi lại các dòng từ tệp lưu trữ. Dòng đã có bị bỏ qua; hộ khẩu / nhân khẩu đã bị xóa
+     * thì khóa ngoại được để null.
+     *
+     * @return số dòng thực sự được thêm
+     */
+    public int restoreRows(List<ArchivedRow> rows) {
+        if (rows.isEmpty()) {
+            return 0;
+        }
+
+        int[] results = jdbcTemplate.batchUpdate(RESTORE_SQL, new BatchPreparedStatementSetter() {
+            @Override
+            public void setValues(PreparedStatement ps, int i) throws SQLException {
+                ArchivedRow row = rows.get(i);
+                ps.setLong(1, row.id());
+                ps.setString(2, row.loai());
+                ps.setString(3, row.noiDung());
+                ps.setTimestamp(4, Timestamp.valueOf(row.thoiGian()));
+                setNullableLong(ps, 5, row.hoKhauId());
+                setNullableLong(ps, 6, row.nhanKhauId());
+                ps.setString(7, toJson(row.chiTiet()));
+                if (row.chuoi() == null) {
+                    ps.setNull(8, Types.INTEGER);
+                } else {
+                    ps.setInt(8, row.chuoi());
+                }
+                setNullableLong(ps, 9, row.thuTu());
+                ps.setString(10, row.hashTruoc());
+                ps.setString(11, row.hash());
+            }
+
+            @Override
+            public int getBatchSize() {
+                return rows.size();
+            }
+        });
+
+        int inserted = 0;
+        for (int result : results) {
+            // SUCCESS_NO_INFO: driver không trả số dòng -> coi như đã thêm
+            inserted += result == Statement.SUCCESS_NO_INFO ? 1 : result;
+        }
+        return inserted;
+    }
+
+    private String toJson(ChiTietBienDong chiTiet) {
+        try {
+            return chiTiet == null ? null : objectMapper.writeValueAsString(chiTiet);
+        } catch (JsonProcessingException ex) {
+            throw new IllegalStateException("Không thể ghi chi tiết biến động dạng JSON", ex);
+        }
+    }
+
+    private ChiTietBienDong fromJson(String json) {
+        try {
+            return json == null ? null : objectMapper.readValue(json, ChiTietBienDong.class);
+        } catch (JsonProcessingException ex) {
+            throw new IllegalStateException("Chi tiết biến động không phải JSON hợp lệ", ex);
+        }
+    }
+
+    private static void setNullableLong(PreparedStatement ps, int index, Long value) throws SQLException {
+        if (value == null) {
+            ps.setNull(index, Types.BIGINT);
+        } else {
+            ps.setLong(index, value);
+        }
+    }
+}
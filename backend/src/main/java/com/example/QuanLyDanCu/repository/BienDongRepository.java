@@ -3,5 +3,5 @@ package com.example.QuanLyDanCu.repository;
 import com.example.QuanLyDanCu.entity.BienDong;
 import org.springframework.data.jpa.repository.JpaRepository;
 
-public interface BienDongRepository extends JpaRepository<BienDong, Long> {
+public interface BienDongRepository extends JpaRepository<BienDong, Long>, BienDongRepositoryCustom {
 }
@@ -0,0 +1,19 @@
+package com.example.QuanLyDanCu.repository;
+
+import com.example.QuanLyDanCu.dto.request.BienDongFilterDto;
+import com.example.QuanLyDanCu.entity.BienDong;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+public interface BienDongRepositoryCustom {
+
+    /**
+     * Keyset pagination theo (thoiGian DESC, id DESC).
+     * beforeThoiGian/beforeId null: trang đầu tiên.
+     */
+    List<BienDong> findPageBefore(BienDongFilterDto filter,
+            LocalDateTime beforeThoiGian,
+            Long beforeId,
+            int limit);
+}
@@ -0,0 +1,92 @@
+package com.example.QuanLyDanCu.repository;
+
+import com.example.QuanLyDanCu.dto.request.BienDongFilterDto;
+import com.example.QuanLyDanCu.entity.BienDong;
+import com.example.QuanLyDanCu.entity.ChiTietBienDong;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import jakarta.persistence.Query;
+
+import java.time.LocalDateTime;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Câu truy vấn nhật ký được dựng theo đúng các bộ lọc có mặt (không dùng
+ * {@code :x IS NULL OR ...}) để PostgreSQL luôn chọn được index
+ * (cột lọc, thoi_gian, id) và quét theo khoảng, dừng sau {@code limit} dòng.
+ * Dùng SQL thuần vì bộ lọc chi tiết cần toán tử {@code @>} (index GIN trên chi_tiet).
+ */
+class BienDongRepositoryImpl implements BienDongRepositoryCustom {
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    private final ObjectMapper objectMapper;
+
+    BienDongRepositoryImpl(ObjectMapper objectMapper) {
+        this.objectMapper = objectMapper;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public List<BienDong> findPageBefore(BienDongFilterDto filter,
+            LocalDateTime beforeThoiGian,
+            Long beforeId,
+            int limit) {
+        StringBuilder sql = new StringBuilder("SELECT b.* FROM bien_dong b WHERE b.thoi_gian IS NOT NULL");
+        Map<String, Object> params = new LinkedHashMap<>();
+
+        if (filter.getHoKhauId() != null) {
+            sql.append(" AND b.ho_khau_id = :hoKhauId");
+            params.put("hoKhauId", filter.getHoKhauId());
+        }
+        if (filter.getNhanKhauId() != null) {
+            sql.append(" AND b.nhan_khau_id = :nhanKhauId");
+            params.put("nhanKhauId", filter.getNhanKhauId());
+        }
+        if (filter.getLoai() != null) {
+            sql.append(" AND b.loai = :loai");
+            params.put("loai", filter.getLoai().name());
+        }
+        if (filter.getTuThoiGian() != null) {
+            sql.append(" AND b.thoi_gian >= :tuThoiGian");
+            params.put("tuThoiGian", filter.getTuThoiGian());
+        }
+        if (filter.getDenThoiGian() != null) {
+            sql.append(" AND b.thoi_gian < :denThoiGian");
+            params.put("denThoiGian", filter.getDenThoiGian());
+        }
+        if (filter.getTruong() != null || filter.getNguoiThucHien() != null) {
+            sql.append(" AND b.chi_tiet @> CAST(:chiTiet AS jsonb)");
+            params.put("chiTiet", toJson(ChiTietBienDong.builder()
+                    .truong(filter.getTruong())
+                    .nguoiThucHien(filter.getNguoiThucHien())
+                    .build()));
+        }
+        if (beforeThoiGian != null && beforeId != null) {
+            // So sánh theo bộ (row value) -> một điều kiện khoảng trên index;
+            // điều kiện thoi_gian <= riêng để PostgreSQL loại bỏ các phân vùng tháng mới hơn
+            sql.append(" AND b.thoi_gian <= :beforeThoiGian AND (b.thoi_gian, b.id) < (:beforeThoiGian, :beforeId)");
+            params.put("beforeThoiGian", beforeThoiGian);
+            params.put("beforeId", beforeId);
+        }
+        sql.append(" ORDER BY b.thoi_gian DESC, b.id DESC LIMIT :limit");
+        params.put("limit", limit);
+
+        Query query = entityManager.createNativeQuery(sql.toString(), BienDong.class);
+        params.forEach(query::setParameter);
+        return query.getResultList();
+    }
+
+    private String toJson(ChiTietBienDong chiTiet) {
+        try {
+            return objectMapper.writeValueAsString(chiTiet);
+        } catch (JsonProcessingException ex) {
+            throw new IllegalStateException("Không thể tạo bộ lọc chi tiết biến động", ex);
+        }
+    }
+}
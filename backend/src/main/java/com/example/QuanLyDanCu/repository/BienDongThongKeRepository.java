@@ -0,0 +1,72 @@
+package com.example.QuanLyDanCu.repository;
+
+import com.example.QuanLyDanCu.entity.BienDongThongKe;
+import com.example.QuanLyDanCu.enums.BienDongType;
+import com.example.QuanLyDanCu.enums.DonViThoiGian;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+
+@Repository
+public interface BienDongThongKeRepository extends JpaRepository<BienDongThongKe, BienDongThongKe.Key> {
+
+    // --- Đọc theo khóa chính (don_vi, ky, loai): quét khoảng nhỏ, không đụng tới bien_dong
+    @Query("""
+            SELECT t FROM BienDongThongKe t
+            WHERE t.donVi = :donVi AND t.ky BETWEEN :tu AND :den
+            ORDER BY t.ky ASC, t.loai ASC
+            """)
+    List<BienDongThongKe> findRange(@Param("donVi") DonViThoiGian donVi,
+                                    @Param("tu") LocalDate tu,
+                                    @Param("den") LocalDate den);
+
+    @Query("""
+            SELECT t FROM BienDongThongKe t
+            WHERE t.donVi = :donVi AND t.ky BETWEEN :tu AND :den AND t.loai IN :loai
+            ORDER BY t.ky ASC, t.loai ASC
+            """)
+    List<BienDongThongKe> findRangeByLoai(@Param("donVi") DonViThoiGian donVi,
+                                          @Param("tu") LocalDate tu,
+                                          @Param("den") LocalDate den,
+                                          @Param("loai") Collection<BienDongType> loai);
+
+    @Query(value = "SELECT CAST(MIN(thoi_gian) AS DATE) FROM bien_dong", nativeQuery = true)
+    LocalDate findOldestLogDate();
+
+    /**
+     * Chặn các transaction ghi nhật ký cộng dồn trong lúc dựng lại, và chờ các transaction
+     * đang cộng dồn commit xong (để nhật ký của chúng được tính đúng một lần).
+     */
+    @Modifying
+    @Query(value = "LOCK TABLE bien_dong_thong_ke IN EXCLUSIVE MODE", nativeQuery = true)
+    void lockForRebuild();
+
+    @Modifying
+    @Query(value = "DELETE FROM bien_dong_thong_ke WHERE ky >= :tu", nativeQuery = true)
+    int deleteFrom(@Param("tu") LocalDate tu);
+
+    /**
+     * Tính lại số liệu ngày và tháng từ nhật ký gốc, kể từ ngày tu (đầu tháng).
+     */
+    @Modifying
+    @Query(value = """
+            INSERT INTO bien_dong_thong_ke (don_vi, ky, loai, so_luong, cap_nhat_luc)
+            SELECT 'NGAY', CAST(b.thoi_gian AS DATE), b.loai, COUNT(*), :now
+            FROM bien_dong b
+            WHERE b.thoi_gian >= :tu
+            GROUP BY CAST(b.thoi_gian AS DATE), b.loai
+            UNION ALL
+            SELECT 'THANG', CAST(date_trunc('month', b.thoi_gian) AS DATE), b.loai, COUNT(*), :now
+            FROM bien_dong b
+            WHERE b.thoi_gian >= :tu
+            GROUP BY CAST(date_trunc('month', b.thoi_gian) AS DATE), b.loai
+            """, nativeQuery = true)
+    int rebuildFrom(@Param("tu") LocalDate tu, @Param("now") LocalDateTime now);
+}
@@ -0,0 +1,111 @@
+package com.example.QuanLyDanCu.repository;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Đọc tuần tự toàn bộ nhân khẩu / hộ khẩu cho xuất báo cáo, bằng con trỏ chỉ-tiến với fetch size
+ * cố định: không nạp thực thể, bộ nhớ không phụ thuộc số dòng. Phải gọi trong transaction để
+ * PostgreSQL dùng cursor theo fetch size.
+ */
+@Repository
+@RequiredArgsConstructor
+public class DanCuExportRepository {
+
+    private static final int FETCH_SIZE = 1000;
+
+    public static final List<String> NHAN_KHAU_COLUMNS = List.of(
+            "id", "hoTen", "ngaySinh", "gioiTinh", "danToc", "quocTich", "queQuan", "ngheNghiep",
+            "cmndCccd", "ngayCap", "noiCap", "quanHeChuHo", "trangThai", "tamTruTu", "tamTruDen",
+            "tamVangTu", "tamVangDen", "ghiChu", "hoKhauId", "soHoKhau", "tenChuHo", "diaChi");
+
+    public static final List<String> HO_KHAU_COLUMNS = List.of(
+            "id", "soHoKhau", "tenChuHo", "diaChi", "ngayTao", "soThanhVien");
+
+    private final JdbcTemplate jdbcTemplate;
+
+    /**
+     * Mỗi nhân khẩu (kể cả đã khai tử) kèm thông tin hộ khẩu, theo id; giá trị theo thứ tự
+     * {@link #NHAN_KHAU_COLUMNS}.
+     */
+    public void forEachNhanKhau(Consumer<Object[]> visitor) {
+        streaming().query("""
+                SELECT n.id, n.ho_ten, n.ngay_sinh, n.gioi_tinh, n.dan_toc, n.quoc_tich, n.que_quan, n.nghe_nghiep,
+                       n.cmnd_cccd, n.ngay_cap, n.noi_cap, n.quan_he_chu_ho, n.trang_thai, n.tam_tru_tu, n.tam_tru_den,
+                       n.tam_vang_tu, n.tam_vang_den, n.ghi_chu, n.ho_khau_id, h.so_ho_khau, h.ten_chu_ho, h.dia_chi
+                FROM nhan_khau n
+                LEFT JOIN ho_khau h ON h.id = n.ho_khau_id
+                ORDER BY n.id
+                """, rs -> {
+                    visitor.accept(new Object[] {
+                            rs.getLong("id"),
+                            rs.getString("ho_ten"),
+                            date(rs, "ngay_sinh"),
+                            rs.getString("gioi_tinh"),
+                            rs.getString("dan_toc"),
+                            rs.getString("quoc_tich"),
+                            rs.getString("que_quan"),
+                            rs.getString("nghe_nghiep"),
+                            rs.getString("cmnd_cccd"),
+                            date(rs, "ngay_cap"),
+                            rs.getString("noi_cap"),
+                            rs.getString("quan_he_chu_ho"),
+                            rs.getString("trang_thai"),
+                            date(rs, "tam_tru_tu"),
+                            date(rs, "tam_tru_den"),
+                            date(rs, "tam_vang_tu"),
+                            date(rs, "tam_vang_den"),
+                            rs.getString("ghi_chu"),
+                            rs.getObject("ho_khau_id", Long.class),
+                            rs.getString("so_ho_khau"),
+                            rs.getString("ten_chu_ho"),
+                            rs.getString("dia_chi")
+                    });
+                });
+    }
+
+    /**
+     * Mỗi hộ khẩu chưa xóa kèm số thành viên chưa khai tử, theo soHoKhau; giá trị theo thứ tự
+     * {@link #HO_KHAU_COLUMNS}.
+     */
+    public void forEachHoKhau(Consumer<Object[]> visitor) {
+        streaming().query("""
+                SELECT h.id, h.so_ho_khau, h.ten_chu_ho, h.dia_chi, h.ngay_tao, COALESCE(m.so_thanh_vien, 0) AS so_thanh_vien
+                FROM ho_khau h
+                LEFT JOIN (
+                    SELECT ho_khau_id, COUNT(*) AS so_thanh_vien
+                    FROM nhan_khau
+                    WHERE trang_thai IS NULL OR trang_thai <> 'KHAI_TU'
+                    GROUP BY ho_khau_id
+                ) m ON m.ho_khau_id = h.id
+                WHERE h.is_deleted = false OR h.is_deleted IS NULL
+                ORDER BY h.so_ho_khau ASC NULLS LAST, h.id ASC
+                """, rs -> {
+                    visitor.accept(new Object[] {
+                            rs.getLong("id"),
+                            rs.getString("so_ho_khau"),
+                            rs.getString("ten_chu_ho"),
+                            rs.getString("dia_chi"),
+                            date(rs, "ngay_tao"),
+                            rs.getLong("so_thanh_vien")
+                    });
+                });
+    }
+
+    private JdbcTemplate streaming() {
+        JdbcTemplate streaming = new JdbcTemplate(jdbcTemplate.getDataSource());
+        streaming.setFetchSize(FETCH_SIZE);
+        return streaming;
+    }
+
+    private static LocalDate date(ResultSet rs, String column) throws SQLException {
+        return rs.getObject(column, LocalDate.class);
+    }
+}
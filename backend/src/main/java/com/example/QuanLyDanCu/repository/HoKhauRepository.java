@@ -4,6 +4,7 @@ import com.example.QuanLyDanCu.entity.HoKhau;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
+import java.util.Collection;
 import java.util.List;
 
 public interface HoKhauRepository extends JpaRepository<HoKhau, Long> {
@@ -14,6 +15,9 @@ public interface HoKhauRepository extends JpaRepository<HoKhau, Long> {
 
     boolean existsBySoHoKhau(String soHoKhau);
 
+    // Tra cứu nhiều hộ theo số hộ khẩu trong một câu IN (nhập hàng loạt)
+    List<HoKhau> findBySoHoKhauIn(Collection<String> soHoKhaus);
+
     @org.springframework.data.jpa.repository.Modifying
     @org.springframework.data.jpa.repository.Query("UPDATE HoKhau h SET h.tenChuHo = :tenChuHo WHERE h.id = :id")
     void updateTenChuHo(@Param("id") Long id, @Param("tenChuHo") String tenChuHo);
@@ -0,0 +1,93 @@
+package com.example.QuanLyDanCu.repository;
+
+import com.example.QuanLyDanCu.entity.NhanKhau;
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.BatchPreparedStatementSetter;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.support.GeneratedKeyHolder;
+import org.springframework.jdbc.support.KeyHolder;
+import org.springframework.stereotype.Repository;
+
+import java.sql.Date;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Ghi nhân khẩu hàng loạt bằng JDBC batch, chạy trong transaction hiện tại của JPA.
+ */
+@Repository
+@RequiredArgsConstructor
+public class NhanKhauJdbcRepository {
+
+    // Số dòng mỗi lần gửi batch (giới hạn kích thước gói tin và bộ nhớ driver)
+    private static final int BATCH_SIZE = 1000;
+
+    private static final String INSERT_SQL = """
+            INSERT INTO nhan_khau (ho_ten, ngay_sinh, gioi_tinh, dan_toc, quoc_tich, que_quan, nghe_nghiep,
+                                   cmnd_cccd, ngay_cap, noi_cap, quan_he_chu_ho, ghi_chu, ho_khau_id, trang_thai)
+            VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)
+            """;
+
+    private final JdbcTemplate jdbcTemplate;
+
+    /**
+     * Chèn theo lô, trả về ID sinh ra theo đúng thứ tự danh sách đầu vào.
+     */
+    public List<Long> batchInsert(List<NhanKhau> records) {
+        List<Long> ids = new ArrayList<>(records.size());
+        for (int from = 0; from < records.size(); from += BATCH_SIZE) {
+            List<NhanKhau> chunk = records.subList(from, Math.min(from + BATCH_SIZE, records.size()));
+
+            KeyHolder keyHolder = new GeneratedKeyHolder();
+            jdbcTemplate.batchUpdate(
+                    con -> con.prepareStatement(INSERT_SQL, new String[] { "id" }),
+                    new BatchPreparedStatementSetter() {
+                        @Override
+                        public void setValues(PreparedStatement ps, int i) throws SQLException {
+                            bind(ps, chunk.get(i));
+                        }
+
+                        @Override
+                        public int getBatchSize() {
+                            return chunk.size();
+                        }
+                    },
+                    keyHolder);
+
+            for (Map<String, Object> key : keyHolder.getKeyList()) {
+                ids.add(((Number) key.get("id")).longValue());
+            }
+        }
+        return ids;
+    }
+
+    private void bind(PreparedStatement ps, NhanKhau nk) throws SQLException {
+        ps.setString(1, nk.getHoTen());
+        setDate(ps, 2, nk.getNgaySinh());
+        ps.setString(3, nk.getGioiTinh());
+        ps.setString(4, nk.getDanToc());
+        ps.setString(5, nk.getQuocTich());
+        ps.setString(6, nk.getQueQuan());
+        ps.setString(7, nk.getNgheNghiep());
+        ps.setString(8, nk.getCmndCccd());
+        setDate(ps, 9, nk.getNgayCap());
+        ps.setString(10, nk.getNoiCap());
+        ps.setString(11, nk.getQuanHeChuHo());
+        ps.setString(12, nk.getGhiChu());
+        if (nk.getHoKhauId() == null) {
+            ps.setNull(13, Types.BIGINT);
+        } else {
+            ps.setLong(13, nk.getHoKhauId());
+        }
+        ps.setString(14, nk.getTrangThai());
+    }
+
+    private static void setDate(PreparedStatement ps, int index, LocalDate value) throws SQLException {
+        ps.setDate(index, value == null ? null : Date.valueOf(value));
+    }
+}
@@ -1,30 +1,75 @@
 package com.example.QuanLyDanCu.repository;
 
 import com.example.QuanLyDanCu.entity.NhanKhau;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 
 import java.time.LocalDate;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
 public interface NhanKhauRepository extends JpaRepository<NhanKhau, Long> {
-  // --- Search theo tên hoặc CCCD (contains, không phân biệt hoa-thường)
-  @Query("SELECT n FROM NhanKhau n WHERE LOWER(n.hoTen) LIKE LOWER(CONCAT('%', :keyword, '%')) OR n.cmndCccd LIKE CONCAT('%', :keyword, '%')")
-  List<NhanKhau> findByHoTenContainingIgnoreCase(@Param("keyword") String keyword);
+  // --- Search theo tên hoặc CCCD: xem NhanKhauSearchRepository (trigram, không dấu)
 
   // --- Tìm nhân khẩu theo hộ khẩu
   List<NhanKhau> findByHoKhauId(Long hoKhauId);
 
+  @Query("SELECT n.id FROM NhanKhau n WHERE n.hoKhauId = :hoKhauId")
+  List<Long> findIdsByHoKhauId(@Param("hoKhauId") Long hoKhauId);
+
   List<NhanKhau> findAllByOrderByIdAsc();
 
+  // --- Keyset pagination theo id (chỉ dùng Pageable để giới hạn số dòng, không
+  // sinh câu COUNT)
+  @Query("""
+      SELECT n FROM NhanKhau n
+      WHERE n.id > :afterId
+        AND (:hoKhauId IS NULL OR n.hoKhauId = :hoKhauId)
+        AND (:trangThai IS NULL OR n.trangThai = :trangThai)
+        AND (:gioiTinh IS NULL OR n.gioiTinh = :gioiTinh)
+        AND (:ngaySinhTu IS NULL OR n.ngaySinh >= :ngaySinhTu)
+        AND (:ngaySinhDen IS NULL OR n.ngaySinh <= :ngaySinhDen)
+      ORDER BY n.id ASC
+      """)
+  List<NhanKhau> findPageAfterId(@Param("afterId") long afterId,
+      @Param("hoKhauId") Long hoKhauId,
+      @Param("trangThai") String trangThai,
+      @Param("gioiTinh") String gioiTinh,
+      @Param("ngaySinhTu") LocalDate ngaySinhTu,
+      @Param("ngaySinhDen") LocalDate ngaySinhDen,
+      Pageable pageable);
+
   List<NhanKhau> findByHoKhauIdOrderByIdAsc(Long hoKhauId);
 
+  // --- Lấy thành viên của nhiều hộ trong một câu IN (tránh N+1)
+  List<NhanKhau> findByHoKhauIdInOrderByIdAsc(Collection<Long> hoKhauIds);
+
+  // --- Projection đếm số thành viên theo từng hộ
+  interface HoKhauMemberCount {
+    Long getHoKhauId();
+
+    Long getTotal();
+  }
+
+  @Query("""
+      SELECT n.hoKhauId AS hoKhauId, COUNT(n) AS total
+      FROM NhanKhau n
+      WHERE n.hoKhauId IN :hoKhauIds
+      GROUP BY n.hoKhauId
+      """)
+  List<HoKhauMemberCount> countByHoKhauIds(@Param("hoKhauIds") Collection<Long> hoKhauIds);
+
   // --- Kiểm tra CCCD có tồn tại không (trả về boolean để tránh lỗi unique
   // result)
   boolean existsByCmndCccd(String cmndCccd);
 
+  // Như existsByCmndCccd nhưng cho cả tập (nhập hàng loạt): trả về các số đã có
+  @Query("SELECT n.cmndCccd FROM NhanKhau n WHERE n.cmndCccd IN :cmndCccds")
+  List<String> findExistingCmndCccd(@Param("cmndCccds") Collection<String> cmndCccds);
+
   @Query("""
       SELECT COUNT(n)
       FROM NhanKhau n
@@ -34,6 +79,18 @@ public interface NhanKhauRepository extends JpaRepository<NhanKhau, Long> {
       """)
   long countActiveMembers(@Param("hoKhauId") Long hoKhauId, @Param("today") LocalDate today);
 
+  // Như countActiveMembers nhưng cho nhiều hộ trong một câu GROUP BY (hộ không có ai sẽ vắng mặt)
+  @Query("""
+      SELECT n.hoKhauId AS hoKhauId, COUNT(n) AS total
+      FROM NhanKhau n
+      WHERE n.hoKhauId IN :hoKhauIds
+        AND (n.tamVangDen IS NULL OR n.tamVangDen < :today)
+        AND (n.trangThai IS NULL OR n.trangThai <> 'KHAI_TU')
+      GROUP BY n.hoKhauId
+      """)
+  List<HoKhauMemberCount> countActiveMembersByHoKhauIds(@Param("hoKhauIds") Collection<Long> hoKhauIds,
+      @Param("today") LocalDate today);
+
   // --- Projection cho thống kê giới tính
   interface GenderCount {
     String getGioiTinh();
@@ -64,6 +121,30 @@ public interface NhanKhauRepository extends JpaRepository<NhanKhau, Long> {
       """)
   List<StatusCount> countByTrangThai();
 
+  // --- Projection cho thống kê độ tuổi: tuổi tròn (null nếu thiếu ngày sinh)
+  interface AgeCount {
+    Integer getTuoi();
+
+    String getGioiTinh();
+
+    String getTrangThai();
+
+    Long getTotal();
+  }
+
+  // Gom theo tuổi tròn ngay trong DB (tối đa vài trăm dòng), người gọi tự chia nhóm tuổi.
+  // age() tính tuổi tròn giống Period.between(ngaySinh, today).getYears()
+  @Query(value = """
+      SELECT CAST(date_part('year', age(CAST(:today AS timestamp), CAST(n.ngay_sinh AS timestamp))) AS integer) AS tuoi,
+             n.gioi_tinh AS gioiTinh,
+             COALESCE(n.trang_thai, 'THUONG_TRU') AS trangThai,
+             COUNT(*) AS total
+      FROM nhan_khau n
+      WHERE n.trang_thai IS NULL OR n.trang_thai <> 'KHAI_TU'
+      GROUP BY 1, 2, 3
+      """, nativeQuery = true)
+  List<AgeCount> countByTuoi(@Param("today") LocalDate today);
+
   long countByHoKhauId(Long hoKhauId);
 
   // Đếm số thành viên chưa bị khai tử (active)
@@ -0,0 +1,71 @@
+package com.example.QuanLyDanCu.repository;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Tìm kiếm nhân khẩu theo tên (không dấu, gần đúng) hoặc CMND/CCCD trên index trigram
+ * (migrations/007). Chỉ trả về id và điểm liên quan; người gọi nạp thực thể theo id.
+ */
+@Repository
+@RequiredArgsConstructor
+public class NhanKhauSearchRepository {
+
+    // Phải trùng biểu thức của idx_nhan_khau_ho_ten_trgm để PostgreSQL dùng được index
+    private static final String TEN = "f_unaccent(n.ho_ten)";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public record Hit(long id, float score) {
+    }
+
+    /**
+     * Tìm theo tên: chứa chuỗi (LIKE) hoặc gần đúng theo từ (toán tử {@code <%}, chịu được gõ sai).
+     * Điểm = word_similarity + similarity: trùng cả họ tên > chứa đủ một từ > gần đúng.
+     *
+     * @param tuKhoa từ khóa đã bỏ dấu, chỉ gồm chữ / số / khoảng trắng (không có ký tự đại diện LIKE)
+     */
+    public List<Hit> searchByTen(String tuKhoa, Float beforeScore, Long afterId, int limit) {
+        String inner = "SELECT n.id, word_similarity(?, " + TEN + ") + similarity(?, " + TEN + ") AS score "
+                + "FROM nhan_khau n WHERE " + TEN + " LIKE '%' || ? || '%' OR ? <% " + TEN;
+        List<Object> args = new ArrayList<>(List.of(tuKhoa, tuKhoa, tuKhoa, tuKhoa));
+        return query(inner, args, beforeScore, afterId, limit);
+    }
+
+    /**
+     * Tìm theo CMND/CCCD: trùng khớp > bắt đầu bằng > chứa.
+     *
+     * @param soGiayTo chỉ gồm chữ số
+     */
+    public List<Hit> searchByCmndCccd(String soGiayTo, Float beforeScore, Long afterId, int limit) {
+        String inner = """
+                SELECT n.id,
+                       CASE WHEN n.cmnd_cccd = ? THEN CAST(2 AS real)
+                            WHEN n.cmnd_cccd LIKE ? || '%' THEN CAST(1.5 AS real)
+                            ELSE CAST(1 AS real) END AS score
+                FROM nhan_khau n WHERE n.cmnd_cccd LIKE '%' || ? || '%'
+                """;
+        List<Object> args = new ArrayList<>(List.of(soGiayTo, soGiayTo, soGiayTo));
+        return query(inner, args, beforeScore, afterId, limit);
+    }
+
+    // Xếp theo (score DESC, id ASC), trang sau bắt đầu sau (beforeScore, afterId)
+    private List<Hit> query(String inner, List<Object> args, Float beforeScore, Long afterId, int limit) {
+        StringBuilder sql = new StringBuilder("SELECT s.id, s.score FROM (").append(inner).append(") s");
+        if (beforeScore != null && afterId != null) {
+            sql.append(" WHERE s.score < CAST(? AS real) OR (s.score = CAST(? AS real) AND s.id > ?)");
+            args.add(beforeScore);
+            args.add(beforeScore);
+            args.add(afterId);
+        }
+        sql.append(" ORDER BY s.score DESC, s.id ASC LIMIT ?");
+        args.add(limit);
+
+        return jdbcTemplate.query(sql.toString(),
+                (rs, rowNum) -> new Hit(rs.getLong("id"), rs.getFloat("score")), args.toArray());
+    }
+}
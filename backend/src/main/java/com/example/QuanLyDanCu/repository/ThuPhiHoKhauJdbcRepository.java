@@ -0,0 +1,101 @@
+package com.example.QuanLyDanCu.repository;
+
+import com.example.QuanLyDanCu.entity.ThuPhiHoKhau;
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.BatchPreparedStatementSetter;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.support.GeneratedKeyHolder;
+import org.springframework.jdbc.support.KeyHolder;
+import org.springframework.stereotype.Repository;
+
+import java.sql.Date;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Ghi thu phí bằng JDBC (INSERT ... ON CONFLICT DO NOTHING), chạy trong transaction hiện tại của JPA.
+ * Ràng buộc duy nhất đảm bảo hai người thu cùng lúc không thể tạo bản ghi trùng.
+ */
+@Repository
+@RequiredArgsConstructor
+public class ThuPhiHoKhauJdbcRepository {
+
+    // Trùng (ho_khau_id, dot_thu_phi_id) thì bỏ qua thay vì lỗi, dựa trên uk_thu_phi_ho_khau_dot
+    private static final String INSERT_SQL = """
+            INSERT INTO thu_phi_ho_khau (ho_khau_id, dot_thu_phi_id, so_nguoi, tong_phi, trang_thai, ngay_thu, ghi_chu)
+            VALUES (?, ?, ?, ?, ?, ?, ?)
+            ON CONFLICT (ho_khau_id, dot_thu_phi_id) DO NOTHING
+            """;
+
+    private final JdbcTemplate jdbcTemplate;
+
+    /**
+     * Chèn một bản ghi nếu hộ khẩu chưa có bản ghi trong đợt.
+     *
+     * @return ID mới, hoặc rỗng nếu đã có bản ghi (kể cả do giao dịch khác vừa chèn)
+     */
+    public Optional<Long> insertIfAbsent(ThuPhiHoKhau record) {
+        List<Long> ids = jdbcTemplate.query(INSERT_SQL + " RETURNING id",
+                ps -> bind(ps, record),
+                (rs, rowNum) -> rs.getLong(1));
+        return ids.stream().findFirst();
+    }
+
+    /**
+     * Chèn theo lô, trả về ID sinh ra theo đúng thứ tự danh sách đầu vào;
+     * phần tử null nghĩa là dòng đó bị bỏ qua vì đã tồn tại bản ghi.
+     */
+    public List<Long> batchInsertIfAbsent(List<ThuPhiHoKhau> records) {
+        if (records.isEmpty()) {
+            return List.of();
+        }
+
+        KeyHolder keyHolder = new GeneratedKeyHolder();
+        int[] counts = jdbcTemplate.batchUpdate(
+                con -> con.prepareStatement(INSERT_SQL, new String[] { "id" }),
+                new BatchPreparedStatementSetter() {
+                    @Override
+                    public void setValues(PreparedStatement ps, int i) throws SQLException {
+                        bind(ps, records.get(i));
+                    }
+
+                    @Override
+                    public int getBatchSize() {
+                        return records.size();
+                    }
+                },
+                keyHolder);
+
+        List<Map<String, Object>> keyList = keyHolder.getKeyList();
+        boolean allInserted = keyList.size() == records.size();
+        Iterator<Map<String, Object>> keys = keyList.iterator();
+
+        List<Long> ids = new ArrayList<>(records.size());
+        for (int count : counts) {
+            // Khóa sinh ra chỉ có cho các dòng thực sự được chèn, theo đúng thứ tự
+            boolean inserted = allInserted || count > 0;
+            ids.add(inserted ? ((Number) keys.next().get("id")).longValue() : null);
+        }
+        return ids;
+    }
+
+    private void bind(PreparedStatement ps, ThuPhiHoKhau record) throws SQLException {
+        ps.setLong(1, record.getHoKhau().getId());
+        ps.setLong(2, record.getDotThuPhi().getId());
+        if (record.getSoNguoi() == null) {
+            ps.setNull(3, Types.INTEGER);
+        } else {
+            ps.setInt(3, record.getSoNguoi());
+        }
+        ps.setBigDecimal(4, record.getTongPhi());
+        ps.setString(5, record.getTrangThai() == null ? null : record.getTrangThai().name());
+        ps.setDate(6, record.getNgayThu() == null ? null : Date.valueOf(record.getNgayThu()));
+        ps.setString(7, record.getGhiChu());
+    }
+}
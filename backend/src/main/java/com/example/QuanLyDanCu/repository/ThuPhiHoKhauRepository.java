@@ -1,19 +1,265 @@
 package com.example.QuanLyDanCu.repository;
 
 import com.example.QuanLyDanCu.entity.ThuPhiHoKhau;
+import com.example.QuanLyDanCu.enums.LoaiThuPhi;
+import com.example.QuanLyDanCu.enums.TrangThaiThuPhi;
+import jakarta.persistence.QueryHint;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.Collection;
 import java.util.List;
+import java.util.stream.Stream;
+
+import static org.hibernate.jpa.HibernateHints.HINT_FETCH_SIZE;
+import static org.hibernate.jpa.HibernateHints.HINT_READ_ONLY;
 
 @Repository
-public interface ThuPhiHoKhauRepository extends JpaRepository<ThuPhiHoKhau, Long> {
+public interface ThuPhiHoKhauRepository extends JpaRepository<ThuPhiHoKhau, Long>, ThuPhiHoKhauRepositoryCustom {
+    // Nạp kèm hộ khẩu và đợt thu trong cùng câu truy vấn (tránh lazy load từng dòng khi dựng DTO)
+    @EntityGraph(attributePaths = { "hoKhau", "dotThuPhi" })
     List<ThuPhiHoKhau> findByHoKhauId(Long hoKhauId);
+
+    @EntityGraph(attributePaths = { "hoKhau", "dotThuPhi" })
     List<ThuPhiHoKhau> findByDotThuPhiId(Long dotThuPhiId);
+
+    /**
+     * Toàn bộ bản ghi của các hộ chưa bị xóa mềm, sắp xếp theo soHoKhau ngay trong database.
+     */
+    @Query("""
+            SELECT t FROM ThuPhiHoKhau t
+            JOIN FETCH t.hoKhau h
+            JOIN FETCH t.dotThuPhi d
+            WHERE h.isDeleted = false OR h.isDeleted IS NULL
+            ORDER BY h.soHoKhau ASC NULLS LAST, t.id ASC
+            """)
+    List<ThuPhiHoKhau> findAllActiveWithDetails();
     
     /**
      * Find all payment records for a specific household and fee period.
      * Used to calculate total paid amount when multiple partial payments exist.
      */
     List<ThuPhiHoKhau> findByHoKhauIdAndDotThuPhiId(Long hoKhauId, Long dotThuPhiId);
+
+    /**
+     * Một dòng tổng quan đợt thu bắt buộc: hộ khẩu đang hoạt động, bản ghi thu phí
+     * (nếu có) của đợt và số thành viên đủ điều kiện tính phí tại ngày tham chiếu.
+     */
+    interface MandatoryOverviewRow {
+        Long getHoKhauId();
+
+        String getSoHoKhau();
+
+        String getTenChuHo();
+
+        Long getThuPhiId();
+
+        Integer getSoNguoi();
+
+        BigDecimal getTongPhi();
+
+        TrangThaiThuPhi getTrangThai();
+
+        LocalDate getNgayThu();
+
+        String getGhiChu();
+
+        Long getSoNguoiHopLe();
+    }
+
+    /**
+     * Toàn bộ dữ liệu cho tổng quan đợt thu bắt buộc trong MỘT câu truy vấn, đọc dần bằng
+     * con trỏ (fetch size). Đây là nguồn duy nhất cho cả tổng quan JSON lẫn bản xuất dạng luồng.
+     * Điều kiện đếm thành viên giống hệt {@code NhanKhauRepository.countActiveMembers}.
+     * Số hộ đã nộp và số đã thu được cộng từ chính các dòng này (chỉ gồm hộ đang hoạt động).
+     * <p>
+     * Sắp xếp theo soHoKhau với collation ucs_basic (so sánh theo mã ký tự, giống
+     * {@code String.compareTo}, không phụ thuộc collation mặc định của database), rồi theo
+     * id hộ; các dòng trùng của cùng một hộ đứng liền nhau, dòng có thuPhiId nhỏ nhất trước.
+     * Phải được gọi trong transaction và đóng Stream sau khi dùng.
+     */
+    @QueryHints({
+            @QueryHint(name = HINT_FETCH_SIZE, value = "500"),
+            @QueryHint(name = HINT_READ_ONLY, value = "true")
+    })
+    @Query("""
+            SELECT h.id AS hoKhauId, h.soHoKhau AS soHoKhau, h.tenChuHo AS tenChuHo,
+                   t.id AS thuPhiId, t.soNguoi AS soNguoi, t.tongPhi AS tongPhi,
+                   t.trangThai AS trangThai, t.ngayThu AS ngayThu, t.ghiChu AS ghiChu,
+                   COUNT(n.id) AS soNguoiHopLe
+            FROM HoKhau h
+            LEFT JOIN ThuPhiHoKhau t ON t.hoKhau.id = h.id AND t.dotThuPhi.id = :dotThuPhiId
+            LEFT JOIN NhanKhau n ON n.hoKhauId = h.id
+                 AND (n.tamVangDen IS NULL OR n.tamVangDen < :refDate)
+                 AND (n.trangThai IS NULL OR n.trangThai <> 'KHAI_TU')
+            WHERE h.isDeleted = false OR h.isDeleted IS NULL
+            GROUP BY h.id, h.soHoKhau, h.tenChuHo, t.id, t.soNguoi, t.tongPhi, t.trangThai, t.ngayThu, t.ghiChu
+            ORDER BY collate(h.soHoKhau as ucs_basic) ASC NULLS LAST, h.id ASC, t.id ASC
+            """)
+    Stream<MandatoryOverviewRow> streamMandatoryOverviewRows(@Param("dotThuPhiId") Long dotThuPhiId,
+            @Param("refDate") LocalDate refDate);
+
+    /**
+     * Một bản ghi thu phí của đợt tự nguyện, kèm thông tin hộ khẩu.
+     */
+    interface VoluntaryOverviewRow {
+        Long getThuPhiId();
+
+        Long getHoKhauId();
+
+        String getSoHoKhau();
+
+        String getTenChuHo();
+
+        Integer getSoNguoi();
+
+        BigDecimal getTongPhi();
+
+        TrangThaiThuPhi getTrangThai();
+
+        LocalDate getNgayThu();
+
+        String getGhiChu();
+    }
+
+    @QueryHints({
+            @QueryHint(name = HINT_FETCH_SIZE, value = "500"),
+            @QueryHint(name = HINT_READ_ONLY, value = "true")
+    })
+    @Query("""
+            SELECT t.id AS thuPhiId, h.id AS hoKhauId, h.soHoKhau AS soHoKhau, h.tenChuHo AS tenChuHo,
+                   t.soNguoi AS soNguoi, t.tongPhi AS tongPhi, t.trangThai AS trangThai,
+                   t.ngayThu AS ngayThu, t.ghiChu AS ghiChu
+            FROM ThuPhiHoKhau t
+            JOIN t.hoKhau h
+            WHERE t.dotThuPhi.id = :dotThuPhiId
+            ORDER BY collate(h.soHoKhau as ucs_basic) ASC NULLS LAST, t.id ASC
+            """)
+    Stream<VoluntaryOverviewRow> streamVoluntaryOverviewRows(@Param("dotThuPhiId") Long dotThuPhiId);
+
+    // Số hộ có ít nhất một bản ghi (đi theo index duy nhất ho_khau_id, dot_thu_phi_id)
+    @Query("SELECT COUNT(DISTINCT t.hoKhau.id) FROM ThuPhiHoKhau t")
+    long countDistinctHouseholds();
+
+    // --- Tổng hợp theo đợt (dùng để dựng lại bảng thu_phi_tong_hop)
+    interface PeriodTotals {
+        Long getDotThuPhiId();
+
+        Long getSoHo();
+
+        BigDecimal getTongTien();
+    }
+
+    @Query("""
+            SELECT t.dotThuPhi.id AS dotThuPhiId, COUNT(DISTINCT t.hoKhau.id) AS soHo,
+                   COALESCE(SUM(t.tongPhi), 0) AS tongTien
+            FROM ThuPhiHoKhau t
+            GROUP BY t.dotThuPhi.id
+            """)
+    List<PeriodTotals> sumByPeriod();
+
+    @Query("""
+            SELECT t.dotThuPhi.id AS dotThuPhiId, COUNT(DISTINCT t.hoKhau.id) AS soHo,
+                   COALESCE(SUM(t.tongPhi), 0) AS tongTien
+            FROM ThuPhiHoKhau t
+            WHERE t.dotThuPhi.id = :dotThuPhiId
+            GROUP BY t.dotThuPhi.id
+            """)
+    List<PeriodTotals> sumForPeriod(@Param("dotThuPhiId") Long dotThuPhiId);
+
+    @Query("SELECT DISTINCT t.dotThuPhi.id FROM ThuPhiHoKhau t WHERE t.hoKhau.id = :hoKhauId")
+    List<Long> findDotThuPhiIdsByHoKhauId(@Param("hoKhauId") Long hoKhauId);
+
+    // --- Thống kê thu phí (lọc tùy chọn theo ngày thu, null = không giới hạn)
+    interface StatsTotals {
+        Long getTotalRecords();
+
+        BigDecimal getTotalFee();
+
+        Long getTotalHouseholds();
+
+        Long getPaidRecords();
+    }
+
+    @Query("""
+            SELECT COUNT(t) AS totalRecords, COALESCE(SUM(t.tongPhi), 0) AS totalFee,
+                   COUNT(DISTINCT t.hoKhau.id) AS totalHouseholds,
+                   COALESCE(SUM(CASE WHEN t.trangThai = :daNop THEN 1 ELSE 0 END), 0) AS paidRecords
+            FROM ThuPhiHoKhau t
+            WHERE (:tuNgay IS NULL OR t.ngayThu >= :tuNgay)
+              AND (:denNgay IS NULL OR t.ngayThu <= :denNgay)
+            """)
+    StatsTotals aggregateStats(@Param("daNop") TrangThaiThuPhi daNop,
+            @Param("tuNgay") LocalDate tuNgay,
+            @Param("denNgay") LocalDate denNgay);
+
+    interface PeriodStats extends StatsTotals {
+        Long getDotThuPhiId();
+
+        String getTenDot();
+
+        LoaiThuPhi getLoai();
+    }
+
+    @Query("""
+            SELECT d.id AS dotThuPhiId, d.tenDot AS tenDot, d.loai AS loai,
+                   COUNT(t) AS totalRecords, COALESCE(SUM(t.tongPhi), 0) AS totalFee,
+                   COUNT(DISTINCT t.hoKhau.id) AS totalHouseholds,
+                   COALESCE(SUM(CASE WHEN t.trangThai = :daNop THEN 1 ELSE 0 END), 0) AS paidRecords
+            FROM ThuPhiHoKhau t
+            JOIN t.dotThuPhi d
+            WHERE (:tuNgay IS NULL OR t.ngayThu >= :tuNgay)
+              AND (:denNgay IS NULL OR t.ngayThu <= :denNgay)
+            GROUP BY d.id, d.tenDot, d.loai
+            ORDER BY d.id
+            """)
+    List<PeriodStats> aggregateStatsByPeriod(@Param("daNop") TrangThaiThuPhi daNop,
+            @Param("tuNgay") LocalDate tuNgay,
+            @Param("denNgay") LocalDate denNgay);
+
+    interface YearStats extends StatsTotals {
+        Integer getNam();
+    }
+
+    @Query("""
+            SELECT YEAR(t.ngayThu) AS nam,
+                   COUNT(t) AS totalRecords, COALESCE(SUM(t.tongPhi), 0) AS totalFee,
+                   COUNT(DISTINCT t.hoKhau.id) AS totalHouseholds,
+                   COALESCE(SUM(CASE WHEN t.trangThai = :daNop THEN 1 ELSE 0 END), 0) AS paidRecords
+            FROM ThuPhiHoKhau t
+            WHERE (:tuNgay IS NULL OR t.ngayThu >= :tuNgay)
+              AND (:denNgay IS NULL OR t.ngayThu <= :denNgay)
+            GROUP BY YEAR(t.ngayThu)
+            ORDER BY YEAR(t.ngayThu)
+            """)
+    List<YearStats> aggregateStatsByYear(@Param("daNop") TrangThaiThuPhi daNop,
+            @Param("tuNgay") LocalDate tuNgay,
+            @Param("denNgay") LocalDate denNgay);
+
+    // --- Bản ghi đã tồn tại (kiểm tra trùng khi ghi hàng loạt)
+    interface ExistingRecord {
+        Long getId();
+
+        Long getHoKhauId();
+
+        Long getDotThuPhiId();
+    }
+
+    /**
+     * Các bản ghi hiện có trong tích Descartes (hoKhauIds × dotThuPhiIds);
+     * service lọc lại đúng từng cặp.
+     */
+    @Query("""
+            SELECT t.id AS id, t.hoKhau.id AS hoKhauId, t.dotThuPhi.id AS dotThuPhiId
+            FROM ThuPhiHoKhau t
+            WHERE t.hoKhau.id IN :hoKhauIds AND t.dotThuPhi.id IN :dotThuPhiIds
+            """)
+    List<ExistingRecord> findExisting(@Param("hoKhauIds") Collection<Long> hoKhauIds,
+            @Param("dotThuPhiIds") Collection<Long> dotThuPhiIds);
 }
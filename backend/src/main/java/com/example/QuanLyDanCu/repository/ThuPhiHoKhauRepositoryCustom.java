@@ -0,0 +1,21 @@
+package com.example.QuanLyDanCu.repository;
+
+import com.example.QuanLyDanCu.entity.ThuPhiHoKhau;
+import com.example.QuanLyDanCu.enums.TrangThaiThuPhi;
+
+import java.util.List;
+
+public interface ThuPhiHoKhauRepositoryCustom {
+
+    /**
+     * Keyset pagination theo (soHoKhau ASC NULLS LAST, id ASC), cùng thứ tự với
+     * {@link ThuPhiHoKhauRepository#findAllActiveWithDetails()}; chỉ gồm hộ chưa bị xóa mềm.
+     * afterSoHoKhau null: trang đầu tiên; chuỗi rỗng: con trỏ đang ở phần hộ chưa có số hộ khẩu.
+     */
+    List<ThuPhiHoKhau> findPageAfter(String afterSoHoKhau,
+            long afterId,
+            Long dotThuPhiId,
+            Long hoKhauId,
+            TrangThaiThuPhi trangThai,
+            int limit);
+}
@@ -0,0 +1,103 @@
+package com.example.QuanLyDanCu.repository;
+
+import com.example.QuanLyDanCu.entity.ThuPhiHoKhau;
+import com.example.QuanLyDanCu.enums.TrangThaiThuPhi;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import jakarta.persistence.TypedQuery;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Trang bản ghi thu phí được dựng theo đúng các bộ lọc có mặt (không dùng
+ * {@code :x IS NULL OR ...}) và sắp xếp theo cột soHoKhau gốc (không bọc COALESCE),
+ * để PostgreSQL quét index duy nhất của ho_khau.so_ho_khau theo thứ tự, nối sang
+ * thu_phi_ho_khau qua index (ho_khau_id, dot_thu_phi_id) và dừng sau {@code limit} dòng.
+ * <p>
+ * Hộ chưa có số hộ khẩu đứng cuối (NULLS LAST, như {@code findAllActiveWithDetails}) và được
+ * đọc bằng câu truy vấn thứ hai khi phần có số hộ khẩu đã hết.
+ */
+class ThuPhiHoKhauRepositoryImpl implements ThuPhiHoKhauRepositoryCustom {
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Override
+    public List<ThuPhiHoKhau> findPageAfter(String afterSoHoKhau,
+            long afterId,
+            Long dotThuPhiId,
+            Long hoKhauId,
+            TrangThaiThuPhi trangThai,
+            int limit) {
+        // Con trỏ đã nằm trong phần hộ chưa có số hộ khẩu
+        if (afterSoHoKhau != null && afterSoHoKhau.isEmpty()) {
+            return findWithoutSoHoKhau(afterId, dotThuPhiId, hoKhauId, trangThai, limit);
+        }
+
+        List<ThuPhiHoKhau> rows = new ArrayList<>(
+                findWithSoHoKhau(afterSoHoKhau, afterId, dotThuPhiId, hoKhauId, trangThai, limit));
+        if (rows.size() < limit) {
+            rows.addAll(findWithoutSoHoKhau(null, dotThuPhiId, hoKhauId, trangThai, limit - rows.size()));
+        }
+        return rows;
+    }
+
+    private List<ThuPhiHoKhau> findWithSoHoKhau(String afterSoHoKhau, long afterId, Long dotThuPhiId,
+            Long hoKhauId, TrangThaiThuPhi trangThai, int limit) {
+        StringBuilder jpql = new StringBuilder();
+        Map<String, Object> params = new LinkedHashMap<>();
+        appendFilters(jpql, params, dotThuPhiId, hoKhauId, trangThai);
+        jpql.append(" AND h.soHoKhau IS NOT NULL");
+        if (afterSoHoKhau != null) {
+            // Điều kiện >= riêng là một khoảng trên index so_ho_khau; phần OR chỉ lọc các dòng cùng hộ
+            jpql.append(" AND h.soHoKhau >= :afterSoHoKhau"
+                    + " AND (h.soHoKhau > :afterSoHoKhau OR t.id > :afterId)");
+            params.put("afterSoHoKhau", afterSoHoKhau);
+            params.put("afterId", afterId);
+        }
+        jpql.append(" ORDER BY h.soHoKhau ASC, t.id ASC");
+        return run(jpql, params, limit);
+    }
+
+    private List<ThuPhiHoKhau> findWithoutSoHoKhau(Long afterId, Long dotThuPhiId, Long hoKhauId,
+            TrangThaiThuPhi trangThai, int limit) {
+        StringBuilder jpql = new StringBuilder();
+        Map<String, Object> params = new LinkedHashMap<>();
+        appendFilters(jpql, params, dotThuPhiId, hoKhauId, trangThai);
+        jpql.append(" AND h.soHoKhau IS NULL");
+        if (afterId != null) {
+            jpql.append(" AND t.id > :afterId");
+            params.put("afterId", afterId);
+        }
+        jpql.append(" ORDER BY t.id ASC");
+        return run(jpql, params, limit);
+    }
+
+    private static void appendFilters(StringBuilder jpql, Map<String, Object> params,
+            Long dotThuPhiId, Long hoKhauId, TrangThaiThuPhi trangThai) {
+        jpql.append("SELECT t FROM ThuPhiHoKhau t JOIN FETCH t.hoKhau h JOIN FETCH t.dotThuPhi d"
+                + " WHERE (h.isDeleted = false OR h.isDeleted IS NULL)");
+        if (dotThuPhiId != null) {
+            jpql.append(" AND d.id = :dotThuPhiId");
+            params.put("dotThuPhiId", dotThuPhiId);
+        }
+        if (hoKhauId != null) {
+            jpql.append(" AND h.id = :hoKhauId");
+            params.put("hoKhauId", hoKhauId);
+        }
+        if (trangThai != null) {
+            jpql.append(" AND t.trangThai = :trangThai");
+            params.put("trangThai", trangThai);
+        }
+    }
+
+    private List<ThuPhiHoKhau> run(StringBuilder jpql, Map<String, Object> params, int limit) {
+        TypedQuery<ThuPhiHoKhau> query = entityManager.createQuery(jpql.toString(), ThuPhiHoKhau.class);
+        params.forEach(query::setParameter);
+        query.setMaxResults(limit);
+        return query.getResultList();
+    }
+}
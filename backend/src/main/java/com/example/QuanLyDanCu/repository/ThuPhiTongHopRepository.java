@@ -0,0 +1,92 @@
+package com.example.QuanLyDanCu.repository;
+
+import com.example.QuanLyDanCu.entity.ThuPhiTongHop;
+import com.example.QuanLyDanCu.enums.LoaiThuPhi;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.List;
+
+@Repository
+public interface ThuPhiTongHopRepository extends JpaRepository<ThuPhiTongHop, Long> {
+
+    /**
+     * Cộng dồn chênh lệch vào dòng tổng hợp của đợt (tạo mới nếu chưa có).
+     * Dùng upsert để hai giao dịch đồng thời không ghi đè lẫn nhau.
+     */
+    @Modifying
+    @Query(value = """
+            INSERT INTO thu_phi_tong_hop (dot_thu_phi_id, so_ho_da_nop, tong_da_thu, cap_nhat_luc)
+            VALUES (:dotThuPhiId, :soHo, :soTien, :now)
+            ON CONFLICT (dot_thu_phi_id) DO UPDATE
+               SET so_ho_da_nop = thu_phi_tong_hop.so_ho_da_nop + EXCLUDED.so_ho_da_nop,
+                   tong_da_thu = thu_phi_tong_hop.tong_da_thu + EXCLUDED.tong_da_thu,
+                   cap_nhat_luc = EXCLUDED.cap_nhat_luc
+            """, nativeQuery = true)
+    int applyDelta(@Param("dotThuPhiId") Long dotThuPhiId,
+                   @Param("soHo") long soHo,
+                   @Param("soTien") BigDecimal soTien,
+                   @Param("now") LocalDateTime now);
+
+    /**
+     * Ghi đè dòng tổng hợp bằng giá trị tính lại từ dữ liệu gốc.
+     */
+    @Modifying
+    @Query(value = """
+            INSERT INTO thu_phi_tong_hop (dot_thu_phi_id, so_ho_da_nop, tong_da_thu, cap_nhat_luc)
+            VALUES (:dotThuPhiId, :soHo, :soTien, :now)
+            ON CONFLICT (dot_thu_phi_id) DO UPDATE
+               SET so_ho_da_nop = EXCLUDED.so_ho_da_nop,
+                   tong_da_thu = EXCLUDED.tong_da_thu,
+                   cap_nhat_luc = EXCLUDED.cap_nhat_luc
+            """, nativeQuery = true)
+    int overwrite(@Param("dotThuPhiId") Long dotThuPhiId,
+                  @Param("soHo") long soHo,
+                  @Param("soTien") BigDecimal soTien,
+                  @Param("now") LocalDateTime now);
+
+    /**
+     * Chặn các transaction cộng dồn (applyDelta) trong lúc dựng lại, và chờ các transaction
+     * đang cộng dồn commit xong, để tổng đọc từ thu_phi_ho_khau và giá trị ghi đè khớp nhau.
+     */
+    @Modifying
+    @Query(value = "LOCK TABLE thu_phi_tong_hop IN EXCLUSIVE MODE", nativeQuery = true)
+    void lockForRebuild();
+
+    // --- Tổng của mọi đợt (thống kê thu phí không lọc theo ngày)
+    interface GrandTotals {
+        Long getSoHoDaNop();
+
+        BigDecimal getTongDaThu();
+    }
+
+    @Query("""
+            SELECT COALESCE(SUM(t.soHoDaNop), 0) AS soHoDaNop, COALESCE(SUM(t.tongDaThu), 0) AS tongDaThu
+            FROM ThuPhiTongHop t
+            """)
+    GrandTotals sumAll();
+
+    // --- Tổng theo từng đợt có thu (thống kê thu phí không lọc theo ngày)
+    interface PeriodTotals extends GrandTotals {
+        Long getDotThuPhiId();
+
+        String getTenDot();
+
+        LoaiThuPhi getLoai();
+    }
+
+    @Query("""
+            SELECT d.id AS dotThuPhiId, d.tenDot AS tenDot, d.loai AS loai,
+                   t.soHoDaNop AS soHoDaNop, t.tongDaThu AS tongDaThu
+            FROM ThuPhiTongHop t
+            JOIN DotThuPhi d ON d.id = t.dotThuPhiId
+            WHERE t.soHoDaNop > 0
+            ORDER BY d.id
+            """)
+    List<PeriodTotals> findPeriodTotals();
+}
@@ -13,6 +13,10 @@ import java.util.List;
 
 @Component
 public class JwtFilter extends GenericFilter {
+    // EventSource của trình duyệt không gửi được header: chỉ luồng SSE nhận token qua query
+    private static final String EVENT_STREAM_PATH = "/api/su-kien/stream";
+    private static final String TOKEN_PARAM = "access_token";
+
     private final JwtUtil jwtUtil;
 
     public JwtFilter(JwtUtil jwtUtil) {
@@ -24,10 +28,9 @@ public class JwtFilter extends GenericFilter {
             throws IOException, ServletException {
 
         HttpServletRequest req = (HttpServletRequest) request;
-        String header = req.getHeader("Authorization");
+        String token = resolveToken(req);
 
-        if (header != null && header.startsWith("Bearer ")) {
-            String token = header.substring(7);
+        if (token != null) {
             try {
                 Claims claims = jwtUtil.parseToken(token);
                 String username = claims.getSubject();
@@ -43,4 +46,15 @@ public class JwtFilter extends GenericFilter {
 
         chain.doFilter(request, response);
     }
+
+    private String resolveToken(HttpServletRequest req) {
+        String header = req.getHeader("Authorization");
+        if (header != null && header.startsWith("Bearer ")) {
+            return header.substring(7);
+        }
+        if (EVENT_STREAM_PATH.equals(req.getRequestURI())) {
+            return req.getParameter(TOKEN_PARAM);
+        }
+        return null;
+    }
 }
@@ -0,0 +1,453 @@
+package com.example.QuanLyDanCu.service;
+
+import com.example.QuanLyDanCu.exception.BadRequestException;
+import com.example.QuanLyDanCu.exception.BusinessException;
+import com.example.QuanLyDanCu.exception.NotFoundException;
+import com.example.QuanLyDanCu.repository.BienDongPartitionRepository;
+import com.example.QuanLyDanCu.repository.BienDongPartitionRepository.ArchivedRow;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+import java.time.YearMonth;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Bảo trì bảng nhật ký bien_dong đã phân vùng theo tháng (migrations/003).
+ *
+ * <ul>
+ * <li>Tạo trước phân vùng cho {@code months-ahead} tháng tới để dòng mới không rơi vào
+ * phân vùng DEFAULT</li>
+ * <li>Phân vùng cũ hơn {@code retention-months} tháng: tách khỏi bảng, xuất ra tệp
+ * {@code bien_dong_pYYYYMM.ndjson.gz} trong {@code archive-dir}, rồi mới xóa</li>
+ * <li>Tệp lưu trữ có thể nạp lại theo tháng khi cần tra cứu</li>
+ * </ul>
+ * Nếu bảng chưa được chuyển sang dạng phân vùng thì job chỉ ghi cảnh báo và bỏ qua.
+ */
+@Service
+@Slf4j
+public class BienDongArchiveService {
+
+    private static final String ARCHIVE_SUFFIX = ".ndjson.gz";
+    private static final int RESTORE_BATCH_SIZE = 1000;
+
+    private final BienDongPartitionRepository partitionRepo;
+    private final ObjectMapper objectMapper;
+    private final TransactionTemplate transactionTemplate;
+    private final boolean enabled;
+    private final int monthsAhead;
+    private final int retentionMonths;
+    private final Path archiveDir;
+
+    // Chỉ một lượt bảo trì / khôi phục tại một thời điểm
+    private final ReentrantLock lock = new ReentrantLock();
+
+    // Tóm tắt đoạn chuỗi hash của từng tệp lưu trữ (xem findArchivedChainRuns)
+    private final Map<Path, CachedChainRuns> chainRunCache = new ConcurrentHashMap<>();
+
+    public BienDongArchiveService(BienDongPartitionRepository partitionRepo,
+            ObjectMapper objectMapper,
+            PlatformTransactionManager transactionManager,
+            @Value("${app.bien-dong.partition.enabled:true}") boolean enabled,
+            @Value("${app.bien-dong.partition.months-ahead:3}") int monthsAhead,
+            @Value("${app.bien-dong.partition.retention-months:24}") int retentionMonths,
+            @Value("${app.bien-dong.partition.archive-dir:archive/bien-dong}") String archiveDir) {
+        this.partitionRepo = partitionRepo;
+        this.objectMapper = objectMapper;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.enabled = enabled;
+        this.monthsAhead = Math.max(monthsAhead, 1);
+        this.retentionMonths = Math.max(retentionMonths, 1);
+        this.archiveDir = Paths.get(archiveDir);
+    }
+
+    /**
+     * Tạo phân vùng tháng tới và lưu trữ phân vùng hết hạn. Chạy khi khởi động và hằng đêm.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    @Scheduled(cron = "${app.bien-dong.partition.cron:0 0 3 * * *}")
+    public void runScheduledMaintenance() {
+        if (!enabled) {
+            return;
+        }
+        if (!lock.tryLock()) {
+            log.info("Audit log partition maintenance already running, skipping");
+            return;
+        }
+        try {
+            if (!partitionRepo.isPartitioned()) {
+                log.warn("bien_dong is not partitioned; run migrations/003_bien_dong_partitioning.sql to enable retention");
+                return;
+            }
+            ensureFuturePartitions();
+            archiveExpiredPartitions();
+        } catch (RuntimeException ex) {
+            log.error("Audit log partition maintenance failed", ex);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Chạy bảo trì ngay (API quản trị).
+     */
+    public Map<String, Object> runNow() {
+        if (!lock.tryLock()) {
+            throw new BusinessException("Đang có một lượt lưu trữ nhật ký khác chạy, vui lòng thử lại sau");
+        }
+        try {
+            ensurePartitioned();
+            Map<String, Object> result = new LinkedHashMap<>();
+            result.put("phanVungDaTao", ensureFuturePartitions());
+            result.put("phanVungDaLuuTru", archiveExpiredPartitions());
+            return result;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public Map<String, Object> getStatus() {
+        boolean partitioned = partitionRepo.isPartitioned();
+
+        Map<String, Object> status = new LinkedHashMap<>();
+        status.put("enabled", enabled);
+        status.put("partitioned", partitioned);
+        status.put("monthsAhead", monthsAhead);
+        status.put("retentionMonths", retentionMonths);
+        status.put("archiveDir", archiveDir.toAbsolutePath().toString());
+        status.put("phanVung", partitioned ? partitionRepo.findAttachedPartitions() : List.of());
+        status.put("tepLuuTru", listArchives());
+        return status;
+    }
+
+    /**
+     * Nạp lại nhật ký một tháng từ tệp lưu trữ vào bảng bien_dong.
+     * Nếu tháng đó vẫn quá hạn lưu giữ, lượt bảo trì kế tiếp sẽ lưu trữ lại (ghi đè cùng nội dung).
+     */
+    public Map<String, Object> restore(String thangParam) {
+        YearMonth thang = parseMonth(thangParam);
+        Path file = archiveFile(thang);
+        if (!Files.exists(file)) {
+            throw new NotFoundException("Không có tệp lưu trữ nhật ký cho tháng " + thang);
+        }
+
+        if (!lock.tryLock()) {
+            throw new BusinessException("Đang có một lượt lưu trữ nhật ký khác chạy, vui lòng thử lại sau");
+        }
+        try {
+            ensurePartitioned();
+            long[] counts = transactionTemplate.execute(status -> {
+                partitionRepo.createPartition(thang);
+                return restoreFromFile(file);
+            });
+
+            log.info("Restored {} of {} audit log rows for {}", counts[1], counts[0], thang);
+            Map<String, Object> result = new LinkedHashMap<>();
+            result.put("thang", thang.toString());
+            result.put("soDongTrongTep", counts[0]);
+            result.put("soDongDaNap", counts[1]);
+            return result;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Các đoạn thu_tu liên tục của từng chuỗi hash nằm trong tệp lưu trữ của những tháng không còn
+     * trong bảng (tháng đã nạp lại thì bỏ qua vì dòng đã ở trong bảng). Đoạn nối tiếp nhau giữa các
+     * tệp được gộp lại; danh sách của mỗi chuỗi sắp theo thu_tu. Tóm tắt của mỗi tệp được nhớ theo
+     * kích thước và thời điểm sửa tệp nên mỗi tệp chỉ phải đọc lại khi thay đổi.
+     */
+    public Map<Integer, List<ChainRun>> findArchivedChainRuns() {
+        if (!Files.isDirectory(archiveDir)) {
+            return Map.of();
+        }
+        Set<YearMonth> attached = partitionRepo.isPartitioned()
+                ? partitionRepo.findAttachedPartitions().stream()
+                        .map(BienDongPartitionRepository::monthOf)
+                        .filter(Objects::nonNull)
+                        .collect(Collectors.toSet())
+                : Set.of();
+
+        List<ChainRun> runs = new ArrayList<>();
+        try (Stream<Path> files = Files.list(archiveDir)) {
+            for (Path file : (Iterable<Path>) files::iterator) {
+                String name = file.getFileName().toString();
+                if (!name.endsWith(ARCHIVE_SUFFIX)) {
+                    continue;
+                }
+                YearMonth thang = BienDongPartitionRepository.monthOf(
+                        name.substring(0, name.length() - ARCHIVE_SUFFIX.length()));
+                if (thang != null && !attached.contains(thang)) {
+                    runs.addAll(chainRunsOf(file));
+                }
+            }
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+
+        Map<Integer, List<ChainRun>> byChain = new HashMap<>();
+        runs.stream()
+                .sorted(Comparator.comparingInt(ChainRun::chuoi).thenComparingLong(ChainRun::tu))
+                .forEach(run -> {
+                    List<ChainRun> list = byChain.computeIfAbsent(run.chuoi(), k -> new ArrayList<>());
+                    ChainRun last = list.isEmpty() ? null : list.get(list.size() - 1);
+                    if (last != null && last.den() + 1 == run.tu()) {
+                        list.set(list.size() - 1, new ChainRun(run.chuoi(), last.tu(), run.den(),
+                                last.hashTruoc(), run.hash()));
+                    } else {
+                        list.add(run);
+                    }
+                });
+        return byChain;
+    }
+
+    // ========================================
+    // PRIVATE HELPERS
+    // ========================================
+
+    private List<ChainRun> chainRunsOf(Path file) throws IOException {
+        FileTime modified = Files.getLastModifiedTime(file);
+        long size = Files.size(file);
+        CachedChainRuns cached = chainRunCache.get(file);
+        if (cached != null && cached.modified().equals(modified) && cached.size() == size) {
+            return cached.runs();
+        }
+
+        // Trong tệp, dòng xếp theo id; trong cùng một chuỗi thứ tự id trùng thứ tự thu_tu
+        List<ChainRun> runs = new ArrayList<>();
+        Map<Integer, ChainRun> open = new HashMap<>();
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(
+                new GZIPInputStream(Files.newInputStream(file)), StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.isBlank()) {
+                    continue;
+                }
+                ArchivedRow row = objectMapper.readValue(line, ArchivedRow.class);
+                if (row.chuoi() == null || row.thuTu() == null) {
+                    continue;
+                }
+                ChainRun run = open.get(row.chuoi());
+                if (run != null && run.den() + 1 == row.thuTu()) {
+                    open.put(row.chuoi(), new ChainRun(run.chuoi(), run.tu(), row.thuTu(), run.hashTruoc(), row.hash()));
+                } else {
+                    if (run != null) {
+                        runs.add(run);
+                    }
+                    open.put(row.chuoi(), new ChainRun(row.chuoi(), row.thuTu(), row.thuTu(), row.hashTruoc(), row.hash()));
+                }
+            }
+        } catch (JsonProcessingException ex) {
+            throw new BusinessException("Tệp lưu trữ " + file.getFileName() + " bị hỏng: " + ex.getOriginalMessage());
+        }
+        runs.addAll(open.values());
+
+        chainRunCache.put(file, new CachedChainRuns(modified, size, List.copyOf(runs)));
+        return runs;
+    }
+
+
+    private List<String> ensureFuturePartitions() {
+        List<String> created = new ArrayList<>();
+        List<String> existing = partitionRepo.findAttachedPartitions();
+        YearMonth current = YearMonth.now();
+
+        for (int i = 0; i <= monthsAhead; i++) {
+            YearMonth thang = current.plusMonths(i);
+            String name = BienDongPartitionRepository.partitionName(thang);
+            if (existing.contains(name)) {
+                continue;
+            }
+            try {
+                partitionRepo.createPartition(thang);
+                created.add(name);
+            } catch (RuntimeException ex) {
+                // Thường do phân vùng DEFAULT đã chứa dòng của tháng này
+                log.error("Cannot create audit log partition {}", name, ex);
+            }
+        }
+        if (!created.isEmpty()) {
+            log.info("Created audit log partitions {}", created);
+        }
+        return created;
+    }
+
+    private List<String> archiveExpiredPartitions() {
+        YearMonth cutoff = YearMonth.now().minusMonths(retentionMonths);
+        List<String> archived = new ArrayList<>();
+
+        // Phân vùng đã tách ở lượt trước nhưng chưa kịp xuất/xóa
+        for (String name : partitionRepo.findDetachedPartitions()) {
+            YearMonth thang = BienDongPartitionRepository.monthOf(name);
+            if (thang != null) {
+                exportAndDrop(thang);
+                archived.add(name);
+            }
+        }
+
+        for (String name : partitionRepo.findAttachedPartitions()) {
+            YearMonth thang = BienDongPartitionRepository.monthOf(name);
+            if (thang == null || !thang.isBefore(cutoff)) {
+                continue;
+            }
+            // Tách trước: truy vấn trên bien_dong không còn thấy phân vùng này
+            partitionRepo.detachPartition(thang);
+            exportAndDrop(thang);
+            archived.add(name);
+        }
+
+        if (!archived.isEmpty()) {
+            log.info("Archived audit log partitions {} to {}", archived, archiveDir.toAbsolutePath());
+        }
+        return archived;
+    }
+
+    /**
+     * Xuất phân vùng đã tách ra tệp nén rồi xóa bảng. Tệp được ghi vào tệp tạm và đổi tên
+     * sau khi hoàn tất, nên nếu lỗi giữa chừng thì bảng vẫn còn và lượt sau làm lại.
+     */
+    private void exportAndDrop(YearMonth thang) {
+        Path target = archiveFile(thang);
+        Path temp = target.resolveSibling(target.getFileName() + ".tmp");
+
+        try {
+            Files.createDirectories(archiveDir);
+            long rows;
+            try (Writer writer = new BufferedWriter(new OutputStreamWriter(
+                    new GZIPOutputStream(Files.newOutputStream(temp)), StandardCharsets.UTF_8))) {
+                rows = transactionTemplate.execute(status -> partitionRepo.forEachRow(thang, row -> {
+                    try {
+                        writer.write(objectMapper.writeValueAsString(row));
+                        writer.write('\n');
+                    } catch (IOException ex) {
+                        throw new UncheckedIOException(ex);
+                    }
+                }));
+            }
+            Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            log.info("Exported {} audit log rows of {} to {}", rows, thang, target);
+        } catch (IOException | UncheckedIOException ex) {
+            throw new IllegalStateException("Không thể xuất nhật ký tháng " + thang + " ra " + target, ex);
+        }
+
+        partitionRepo.dropPartition(thang);
+    }
+
+    /**
+     * @return {số dòng trong tệp, số dòng đã thêm}
+     */
+    private long[] restoreFromFile(Path file) {
+        long total = 0;
+        long inserted = 0;
+        List<ArchivedRow> batch = new ArrayList<>(RESTORE_BATCH_SIZE);
+
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(
+                new GZIPInputStream(Files.newInputStream(file)), StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.isBlank()) {
+                    continue;
+                }
+                batch.add(objectMapper.readValue(line, ArchivedRow.class));
+                total++;
+                if (batch.size() == RESTORE_BATCH_SIZE) {
+                    inserted += partitionRepo.restoreRows(batch);
+                    batch.clear();
+                }
+            }
+            inserted += partitionRepo.restoreRows(batch);
+        } catch (JsonProcessingException ex) {
+            throw new BusinessException("Tệp lưu trữ " + file.getFileName() + " bị hỏng: " + ex.getOriginalMessage());
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+        return new long[] { total, inserted };
+    }
+
+    private List<Map<String, Object>> listArchives() {
+        if (!Files.isDirectory(archiveDir)) {
+            return List.of();
+        }
+        try (Stream<Path> files = Files.list(archiveDir)) {
+            return files
+                    .filter(p -> p.getFileName().toString().endsWith(ARCHIVE_SUFFIX))
+                    .sorted()
+                    .map(p -> {
+                        Map<String, Object> info = new LinkedHashMap<>();
+                        info.put("tenTep", p.getFileName().toString());
+                        try {
+                            info.put("kichThuoc", Files.size(p));
+                        } catch (IOException ex) {
+                            info.put("kichThuoc", null);
+                        }
+                        return info;
+                    })
+                    .toList();
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+    }
+
+    private void ensurePartitioned() {
+        if (!partitionRepo.isPartitioned()) {
+            throw new BusinessException("Bảng bien_dong chưa được phân vùng, cần chạy migrations/003_bien_dong_partitioning.sql");
+        }
+    }
+
+    private Path archiveFile(YearMonth thang) {
+        return archiveDir.resolve(BienDongPartitionRepository.partitionName(thang) + ARCHIVE_SUFFIX);
+    }
+
+    private YearMonth parseMonth(String thang) {
+        try {
+            return YearMonth.parse(thang);
+        } catch (DateTimeParseException | NullPointerException ex) {
+            throw new BadRequestException("Tháng không hợp lệ, định dạng yyyy-MM: " + thang);
+        }
+    }
+
+    /**
+     * Đoạn [tu, den] liên tục của một chuỗi hash nằm trong tệp lưu trữ: hashTruoc của dòng đầu
+     * và hash của dòng cuối, đủ để nối với các dòng còn trong bảng ở hai đầu.
+     */
+    public record ChainRun(int chuoi, long tu, long den, String hashTruoc, String hash) {
+    }
+
+    private record CachedChainRuns(FileTime modified, long size, List<ChainRun> runs) {
+    }
+}
@@ -0,0 +1,448 @@
+package com.example.QuanLyDanCu.service;
+
+import com.example.QuanLyDanCu.dto.response.KiemTraChuoiResponseDto;
+import com.example.QuanLyDanCu.dto.response.LienKetHongDto;
+import com.example.QuanLyDanCu.entity.BienDong;
+import com.example.QuanLyDanCu.entity.ChiTietBienDong;
+import com.example.QuanLyDanCu.exception.BusinessException;
+import com.example.QuanLyDanCu.exception.NotFoundException;
+import com.example.QuanLyDanCu.repository.BienDongChuoiRepository;
+import com.example.QuanLyDanCu.repository.BienDongChuoiRepository.Head;
+import com.example.QuanLyDanCu.repository.BienDongChuoiRepository.Link;
+import com.example.QuanLyDanCu.repository.BienDongChuoiRepository.Range;
+import com.example.QuanLyDanCu.service.BienDongArchiveService.ChainRun;
+import com.example.QuanLyDanCu.util.BienDongHashUtils;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Predicate;
+import java.util.stream.Collectors;
+
+/**
+ * Chuỗi hash chống sửa cho nhật ký biến động (migrations/006).
+ *
+ * <ul>
+ * <li>Ghi: mỗi transaction khóa đầu của một trong {@code so-chuoi} chuỗi (ưu tiên chuỗi đang rảnh),
+ * nối các dòng của mình vào chuỗi đó rồi cập nhật đầu chuỗi. Các transaction ghi song song
+ * dùng các chuỗi khác nhau nên không xếp hàng sau một khóa chung.</li>
+ * <li>Kiểm tra: mỗi chuỗi được chia thành các đoạn {@code segment-size} dòng, kiểm tra song song;
+ * báo mắt xích hỏng đầu tiên của từng chuỗi (dòng bị sửa, bị xóa, bị chèn).</li>
+ * </ul>
+ * Phần đầu chuỗi đã lưu trữ ra tệp (BienDongArchiveService) không còn trong bảng:
+ * chuỗi được kiểm tra từ dòng cũ nhất còn lại. Khoảng trống giữa chuỗi nằm trọn trong một
+ * đoạn của tệp lưu trữ (vd. sau khi nạp lại một tháng cũ, các tháng sau nó vẫn ở trong tệp)
+ * là khoảng đã biết, không phải mắt xích hỏng: dòng hai bên phải nối đúng với hash trong tệp.
+ */
+@Service
+@Slf4j
+public class BienDongChuoiService {
+
+    private final BienDongChuoiRepository chuoiRepo;
+    private final BienDongArchiveService archiveService;
+    private final ObjectMapper objectMapper;
+    private final TransactionTemplate readOnlyTransaction;
+    private final int soChuoi;
+    private final int segmentSize;
+    private final int threads;
+
+    // Chỉ một lượt kiểm tra tại một thời điểm
+    private final ReentrantLock verifyLock = new ReentrantLock();
+    private volatile KiemTraChuoiResponseDto lastResult;
+
+    public BienDongChuoiService(BienDongChuoiRepository chuoiRepo,
+            BienDongArchiveService archiveService,
+            ObjectMapper objectMapper,
+            PlatformTransactionManager transactionManager,
+            @Value("${app.bien-dong.chuoi.so-chuoi:8}") int soChuoi,
+            @Value("${app.bien-dong.chuoi.segment-size:50000}") int segmentSize,
+            @Value("${app.bien-dong.chuoi.verify-threads:0}") int threads) {
+        this.chuoiRepo = chuoiRepo;
+        this.archiveService = archiveService;
+        this.objectMapper = objectMapper;
+        this.readOnlyTransaction = new TransactionTemplate(transactionManager);
+        this.readOnlyTransaction.setReadOnly(true);
+        this.soChuoi = Math.max(soChuoi, 1);
+        this.segmentSize = Math.max(segmentSize, 1000);
+        // Mặc định: số nhân CPU nhưng không quá 4 để chừa kết nối trong pool cho request
+        this.threads = threads > 0 ? threads : Math.min(Runtime.getRuntime().availableProcessors(), 4);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void initializeChains() {
+        try {
+            chuoiRepo.ensureChains(soChuoi);
+        } catch (RuntimeException ex) {
+            log.warn("Could not initialize audit hash chains (run migrations/006_bien_dong_hash_chain.sql): {}",
+                    ex.getMessage());
+        }
+    }
+
+    /**
+     * Nối các dòng nhật ký của transaction hiện tại vào một chuỗi: gán chuoi, thu_tu, hash_truoc, hash.
+     * Gọi trong transaction ghi nhật ký, ngay trước khi insert; khóa đầu chuỗi được giữ tới commit.
+     */
+    public void seal(List<BienDong> entries) {
+        if (entries.isEmpty()) {
+            return;
+        }
+
+        Head head = lockHead();
+        int chuoi = head.chuoi();
+        long thuTu = head.thuTu();
+        String hash = head.hash();
+        for (BienDong entry : entries) {
+            thuTu++;
+            entry.setChuoi(chuoi);
+            entry.setThuTu(thuTu);
+            entry.setHashTruoc(hash);
+            hash = BienDongHashUtils.compute(chuoi, thuTu, hash, entry.getLoai().name(), entry.getNoiDung(),
+                    entry.getThoiGian(), toTree(entry.getChiTiet()));
+            entry.setHash(hash);
+        }
+        chuoiRepo.updateHead(chuoi, thuTu, hash, LocalDateTime.now());
+    }
+
+    private Head lockHead() {
+        Head head = chuoiRepo.lockAnyFree(soChuoi);
+        if (head != null) {
+            return head;
+        }
+
+        // Mọi chuỗi đều đang bận (hoặc chưa được tạo): chờ một chuỗi ngẫu nhiên
+        int chuoi = ThreadLocalRandom.current().nextInt(soChuoi);
+        head = chuoiRepo.lock(chuoi);
+        if (head == null) {
+            chuoiRepo.ensureChains(soChuoi);
+            head = chuoiRepo.lock(chuoi);
+        }
+        if (head == null) {
+            throw new IllegalStateException("Không khóa được đầu chuỗi hash nhật ký " + chuoi);
+        }
+        return head;
+    }
+
+    private JsonNode toTree(ChiTietBienDong chiTiet) {
+        return chiTiet == null ? null : objectMapper.valueToTree(chiTiet);
+    }
+
+    /**
+     * Kiểm tra toàn bộ chuỗi hằng đêm; kết quả xem qua {@link #getLastResult()}.
+     */
+    @Scheduled(cron = "${app.bien-dong.chuoi.verify-cron:0 30 4 * * *}")
+    public void runScheduledVerification() {
+        if (!verifyLock.tryLock()) {
+            log.info("Audit hash chain verification already running, skipping");
+            return;
+        }
+        try {
+            verify();
+        } catch (RuntimeException ex) {
+            log.error("Audit hash chain verification failed", ex);
+        } finally {
+            verifyLock.unlock();
+        }
+    }
+
+    /**
+     * Kiểm tra ngay (API quản trị).
+     */
+    public KiemTraChuoiResponseDto verifyNow() {
+        if (!verifyLock.tryLock()) {
+            throw new BusinessException("Đang có một lượt kiểm tra chuỗi hash khác chạy, vui lòng thử lại sau");
+        }
+        try {
+            return verify();
+        } finally {
+            verifyLock.unlock();
+        }
+    }
+
+    public KiemTraChuoiResponseDto getLastResult() {
+        KiemTraChuoiResponseDto result = lastResult;
+        if (result == null) {
+            throw new NotFoundException("Chưa có lượt kiểm tra chuỗi hash nào");
+        }
+        return result;
+    }
+
+    private KiemTraChuoiResponseDto verify() {
+        LocalDateTime batDau = LocalDateTime.now();
+        long start = System.nanoTime();
+
+        // Đọc đầu chuỗi trước: dòng ghi sau thời điểm này có thu_tu lớn hơn và nằm ngoài lượt kiểm tra
+        List<Head> heads = chuoiRepo.findHeads();
+        Map<Integer, Range> ranges = chuoiRepo.findRanges().stream()
+                .collect(Collectors.toMap(Range::chuoi, r -> r));
+        long unchained = chuoiRepo.countUnchained();
+        ArchivedGaps archived = new ArchivedGaps(archiveService.findArchivedChainRuns());
+
+        List<Segment> segments = new ArrayList<>();
+        for (Head head : heads) {
+            Range range = ranges.get(head.chuoi());
+            if (head.thuTu() == 0 || range == null) {
+                // Chuỗi chưa dùng, hoặc mọi dòng đã được lưu trữ ra tệp
+                continue;
+            }
+            for (long tu = range.tuThuTu(); tu <= head.thuTu(); tu += segmentSize) {
+                segments.add(new Segment(head, range.tuThuTu(), tu, Math.min(tu + segmentSize - 1, head.thuTu()),
+                        archived));
+            }
+        }
+
+        AtomicInteger threadNumber = new AtomicInteger();
+        ExecutorService pool = Executors.newFixedThreadPool(threads, r -> {
+            Thread t = new Thread(r, "hash-chain-verify-" + threadNumber.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+
+        long checked = 0;
+        long skippedArchived = 0;
+        Map<Integer, LienKetHongDto> firstBroken = new HashMap<>();
+        try {
+            List<Future<SegmentVerifier>> futures = new ArrayList<>(segments.size());
+            for (Segment segment : segments) {
+                futures.add(pool.submit(() -> verifySegment(segment)));
+            }
+            for (Future<SegmentVerifier> future : futures) {
+                SegmentVerifier done = future.get();
+                checked += done.checked;
+                skippedArchived += done.archived;
+                if (done.broken != null) {
+                    // Đoạn đứng trước trong chuỗi thắng: đó là mắt xích hỏng đầu tiên
+                    firstBroken.merge(done.broken.getChuoi(), done.broken,
+                            (a, b) -> a.getThuTu() <= b.getThuTu() ? a : b);
+                }
+            }
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Kiểm tra chuỗi hash bị ngắt", ex);
+        } catch (ExecutionException ex) {
+            throw new IllegalStateException("Kiểm tra chuỗi hash thất bại: " + ex.getCause().getMessage(), ex.getCause());
+        } finally {
+            pool.shutdownNow();
+        }
+
+        long elapsedMs = Math.max((System.nanoTime() - start) / 1_000_000, 1);
+        long rowsPerSecond = checked * 1000 / elapsedMs;
+        List<LienKetHongDto> broken = firstBroken.values().stream()
+                .sorted(Comparator.comparing(LienKetHongDto::getChuoi))
+                .toList();
+
+        KiemTraChuoiResponseDto result = KiemTraChuoiResponseDto.builder()
+                .batDau(batDau)
+                .thoiGianMs(elapsedMs)
+                .hopLe(broken.isEmpty())
+                .soChuoi(heads.size())
+                .soDongDaKiemTra(checked)
+                .soDongChuaNiemPhong(unchained)
+                .soDongDaLuuTru(skippedArchived)
+                .tocDoDongMoiGiay(rowsPerSecond)
+                .soLuongXuLy(threads)
+                .lienKetHong(broken)
+                .build();
+        lastResult = result;
+
+        log.info("Verified {} audit rows in {} chains in {} ms ({} rows/s, {} threads)",
+                checked, heads.size(), elapsedMs, rowsPerSecond, threads);
+        if (!broken.isEmpty()) {
+            log.error("Audit hash chain broken in {} chain(s), first: chain {} at #{}: {}", broken.size(),
+                    broken.get(0).getChuoi(), broken.get(0).getThuTu(), broken.get(0).getLyDo());
+        }
+        return result;
+    }
+
+    private SegmentVerifier verifySegment(Segment segment) {
+        return readOnlyTransaction.execute(status -> {
+            SegmentVerifier verifier = new SegmentVerifier(segment, objectMapper);
+            // Đọc thêm dòng cuối của đoạn trước để kiểm tra mối nối giữa hai đoạn
+            long tu = segment.tu() > segment.chainStart() ? segment.tu() - 1 : segment.tu();
+            chuoiRepo.forEachLink(segment.head().chuoi(), tu, segment.den(), verifier);
+            verifier.finish();
+            return verifier;
+        });
+    }
+
+    /**
+     * Đoạn [tu, den] của một chuỗi; chainStart là thu_tu nhỏ nhất còn trong bảng.
+     */
+    private record Segment(Head head, long chainStart, long tu, long den, ArchivedGaps archived) {
+    }
+
+    /**
+     * Tra cứu các đoạn chuỗi nằm trong tệp lưu trữ, theo chuỗi và thu_tu đầu đoạn.
+     */
+    private static final class ArchivedGaps {
+
+        private final Map<Integer, NavigableMap<Long, ChainRun>> byChain = new HashMap<>();
+
+        ArchivedGaps(Map<Integer, List<ChainRun>> runs) {
+            runs.forEach((chuoi, list) -> {
+                NavigableMap<Long, ChainRun> byStart = new TreeMap<>();
+                list.forEach(run -> byStart.put(run.tu(), run));
+                byChain.put(chuoi, byStart);
+            });
+        }
+
+        /**
+         * Đoạn lưu trữ chứa trọn [tu, den], hoặc null.
+         */
+        ChainRun covering(int chuoi, long tu, long den) {
+            NavigableMap<Long, ChainRun> byStart = byChain.get(chuoi);
+            Map.Entry<Long, ChainRun> entry = byStart == null ? null : byStart.floorEntry(tu);
+            return entry != null && entry.getValue().den() >= den ? entry.getValue() : null;
+        }
+
+        /**
+         * Hash của dòng thuTu nếu đó là dòng cuối của một đoạn lưu trữ (dòng ngay sau nó còn trong bảng).
+         */
+        String hashOfRunEnd(int chuoi, long thuTu) {
+            ChainRun run = covering(chuoi, thuTu, thuTu);
+            return run != null && run.den() == thuTu ? run.hash() : null;
+        }
+    }
+
+    /**
+     * Duyệt tuần tự một đoạn, dừng ở mắt xích hỏng đầu tiên.
+     */
+    private static final class SegmentVerifier implements Predicate<Link> {
+
+        private final Segment segment;
+        private final ObjectMapper objectMapper;
+        private long expected;
+        private String prevHash;
+        private long checked;
+        private long archived;
+        private LienKetHongDto broken;
+
+        SegmentVerifier(Segment segment, ObjectMapper objectMapper) {
+            this.segment = segment;
+            this.objectMapper = objectMapper;
+            this.expected = segment.tu();
+            // Dòng ngay trước đoạn nằm trong tệp lưu trữ: lấy hash từ tệp (nếu dòng còn trong bảng, test() ghi đè)
+            if (segment.tu() > segment.chainStart()) {
+                this.prevHash = segment.archived().hashOfRunEnd(segment.head().chuoi(), segment.tu() - 1);
+            }
+        }
+
+        @Override
+        public boolean test(Link link) {
+            if (link.thuTu() < segment.tu()) {
+                // Dòng nối từ đoạn trước (đoạn trước tự kiểm tra nội dung của nó)
+                prevHash = link.hash();
+                return true;
+            }
+            if (link.thuTu() < expected) {
+                return fail(link.thuTu(), link.id(), "Trùng thứ tự trong chuỗi (dòng bị chèn thêm)");
+            }
+            if (link.thuTu() > expected) {
+                if (!skipArchived(link.thuTu() - 1)) {
+                    return fail(expected, null, missing(expected, link.thuTu() - 1));
+                }
+                if (broken != null) {
+                    return false;
+                }
+            }
+            if (prevHash != null && !prevHash.equals(link.hashTruoc())) {
+                return fail(link.thuTu(), link.id(), "hash_truoc không khớp hash của dòng trước");
+            }
+            if (link.thuTu() == 1 && !BienDongHashUtils.GENESIS.equals(link.hashTruoc())) {
+                return fail(link.thuTu(), link.id(), "Dòng đầu chuỗi không nối với gốc");
+            }
+
+            JsonNode chiTiet;
+            try {
+                chiTiet = link.chiTiet() == null ? null : objectMapper.readTree(link.chiTiet());
+            } catch (JsonProcessingException ex) {
+                return fail(link.thuTu(), link.id(), "chi_tiet không phải JSON hợp lệ");
+            }
+            String hash = BienDongHashUtils.compute(link.chuoi(), link.thuTu(), link.hashTruoc(), link.loai(),
+                    link.noiDung(), link.thoiGian(), chiTiet);
+            if (!hash.equals(link.hash())) {
+                return fail(link.thuTu(), link.id(), "Hash không khớp nội dung (dòng đã bị sửa)");
+            }
+
+            checked++;
+            prevHash = link.hash();
+            expected++;
+            return true;
+        }
+
+        void finish() {
+            if (broken != null) {
+                return;
+            }
+            if (expected <= segment.den()) {
+                if (!skipArchived(segment.den())) {
+                    fail(expected, null, missing(expected, segment.den()));
+                    return;
+                }
+                if (broken != null) {
+                    return;
+                }
+            }
+            if (segment.den() == segment.head().thuTu() && !segment.head().hash().equals(prevHash)) {
+                fail(segment.den(), null, "Hash đầu chuỗi không khớp dòng cuối cùng");
+            }
+        }
+
+        /**
+         * Bỏ qua [expected, den] nếu khoảng này nằm trọn trong tệp lưu trữ và nối đúng với dòng
+         * trước nó; sau đó dòng kế tiếp được so với hash của dòng cuối khoảng trong tệp.
+         */
+        private boolean skipArchived(long den) {
+            ChainRun run = segment.archived().covering(segment.head().chuoi(), expected, den);
+            if (run == null) {
+                return false;
+            }
+            if (run.tu() == expected && prevHash != null && !prevHash.equals(run.hashTruoc())) {
+                fail(expected, null, "Dòng đầu của đoạn đã lưu trữ không nối với hash của dòng trước");
+                return true;
+            }
+            archived += den - expected + 1;
+            prevHash = run.den() == den ? run.hash() : null;
+            expected = den + 1;
+            return true;
+        }
+
+        private boolean fail(long thuTu, Long bienDongId, String lyDo) {
+            broken = LienKetHongDto.builder()
+                    .chuoi(segment.head().chuoi())
+                    .thuTu(thuTu)
+                    .bienDongId(bienDongId)
+                    .lyDo(lyDo)
+                    .build();
+            return false;
+        }
+
+        private static String missing(long tu, long den) {
+            return tu == den
+                    ? "Thiếu dòng thứ tự " + tu + " (đã bị xóa hoặc đã lưu trữ)"
+                    : "Thiếu các dòng thứ tự " + tu + ".." + den + " (đã bị xóa hoặc đã lưu trữ)";
+        }
+    }
+}
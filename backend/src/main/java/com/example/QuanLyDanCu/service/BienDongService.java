@@ -1,22 +1,50 @@
 package com.example.QuanLyDanCu.service;
 
+import com.example.QuanLyDanCu.dto.request.BienDongFilterDto;
 import com.example.QuanLyDanCu.dto.response.BienDongResponseDto;
+import com.example.QuanLyDanCu.dto.response.CursorPageResponseDto;
 import com.example.QuanLyDanCu.entity.BienDong;
+import com.example.QuanLyDanCu.entity.ChiTietBienDong;
 import com.example.QuanLyDanCu.enums.BienDongType;
+import com.example.QuanLyDanCu.event.BienDongLoggedEvent;
+import com.example.QuanLyDanCu.exception.BadRequestException;
 import com.example.QuanLyDanCu.exception.NotFoundException;
+import com.example.QuanLyDanCu.repository.BienDongJdbcRepository;
 import com.example.QuanLyDanCu.repository.BienDongRepository;
+import com.example.QuanLyDanCu.util.CursorUtils;
+import com.example.QuanLyDanCu.util.VietnameseText;
+import jakarta.persistence.EntityManager;
 import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
 import java.util.List;
 import lombok.RequiredArgsConstructor;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.data.domain.Sort;
+import org.springframework.security.authentication.AnonymousAuthenticationToken;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
 @Service
 @RequiredArgsConstructor
 public class BienDongService {
 
+    public static final int DEFAULT_PAGE_SIZE = 50;
+    public static final int MAX_PAGE_SIZE = 200;
+    // Giới hạn số từ trong một truy vấn tìm kiếm để tsquery không phình to
+    private static final int MAX_SEARCH_TOKENS = 10;
+
     private final BienDongRepository bienDongRepository;
+    private final BienDongJdbcRepository bienDongJdbcRepository;
+    private final BienDongThongKeService thongKeService;
+    private final BienDongChuoiService chuoiService;
+    private final EntityManager entityManager;
+    private final ApplicationEventPublisher eventPublisher;
 
     public List<BienDongResponseDto> getAllDto() {
         return bienDongRepository.findAll(Sort.by(Sort.Direction.DESC, "thoiGian"))
@@ -25,25 +53,230 @@ public class BienDongService {
                 .toList();
     }
 
+    /**
+     * Lấy một trang nhật ký, mới nhất trước, theo con trỏ (thoiGian, id).
+     * Dòng thời gian của một hộ khẩu / nhân khẩu chỉ là bộ lọc hoKhauId / nhanKhauId.
+     */
+    public CursorPageResponseDto<BienDongResponseDto> getPage(BienDongFilterDto filter, String cursor, Integer size) {
+        int pageSize = size == null ? DEFAULT_PAGE_SIZE : size;
+        if (pageSize <= 0) {
+            throw new BadRequestException("Kích thước trang phải lớn hơn 0");
+        }
+        pageSize = Math.min(pageSize, MAX_PAGE_SIZE);
+
+        BienDongFilterDto f = filter != null ? filter : new BienDongFilterDto();
+        if (f.getTuThoiGian() != null && f.getDenThoiGian() != null
+                && !f.getTuThoiGian().isBefore(f.getDenThoiGian())) {
+            throw new BadRequestException("Thời gian từ phải trước thời gian đến");
+        }
+
+        LocalDateTime beforeThoiGian = null;
+        Long beforeId = null;
+        if (cursor != null && !cursor.isBlank()) {
+            String[] parts = CursorUtils.decode(cursor, 2);
+            try {
+                beforeThoiGian = LocalDateTime.parse(parts[0]);
+                beforeId = Long.parseLong(parts[1]);
+            } catch (DateTimeParseException | NumberFormatException ex) {
+                throw new BadRequestException("Cursor không hợp lệ");
+            }
+        }
+
+        // Lấy dư 1 dòng để biết còn trang sau hay không
+        List<BienDong> rows = bienDongRepository.findPageBefore(f, beforeThoiGian, beforeId, pageSize + 1);
+
+        boolean hasMore = rows.size() > pageSize;
+        List<BienDong> pageRows = hasMore ? rows.subList(0, pageSize) : rows;
+
+        List<BienDongResponseDto> items = pageRows.stream()
+                .map(this::toResponseDto)
+                .toList();
+
+        String nextCursor = null;
+        if (hasMore) {
+            BienDong last = pageRows.get(pageRows.size() - 1);
+            nextCursor = CursorUtils.encode(last.getThoiGian(), last.getId());
+        }
+
+        return CursorPageResponseDto.<BienDongResponseDto>builder()
+                .items(items)
+                .size(items.size())
+                .hasMore(hasMore)
+                .nextCursor(nextCursor)
+                .build();
+    }
+
+    /**
+     * Tìm kiếm toàn văn trong nội dung nhật ký, không phân biệt dấu và hoa thường
+     * ("chuyen ho" khớp "Chuyển hộ"). Từ cuối được so khớp tiền tố để gõ dở vẫn ra kết quả.
+     * Kết quả xếp theo độ liên quan rồi mới nhất trước, con trỏ là (rank, thoiGian, id).
+     */
+    public CursorPageResponseDto<BienDongResponseDto> search(String q, BienDongType loai,
+            LocalDateTime tuThoiGian, LocalDateTime denThoiGian, String cursor, Integer size) {
+        int pageSize = size == null ? DEFAULT_PAGE_SIZE : size;
+        if (pageSize <= 0) {
+            throw new BadRequestException("Kích thước trang phải lớn hơn 0");
+        }
+        pageSize = Math.min(pageSize, MAX_PAGE_SIZE);
+
+        if (tuThoiGian != null && denThoiGian != null && !tuThoiGian.isBefore(denThoiGian)) {
+            throw new BadRequestException("Thời gian từ phải trước thời gian đến");
+        }
+        String tsQuery = toTsQuery(q);
+
+        Float beforeRank = null;
+        LocalDateTime beforeThoiGian = null;
+        Long beforeId = null;
+        if (cursor != null && !cursor.isBlank()) {
+            String[] parts = CursorUtils.decode(cursor, 3);
+            try {
+                beforeRank = Float.parseFloat(parts[0]);
+                beforeThoiGian = LocalDateTime.parse(parts[1]);
+                beforeId = Long.parseLong(parts[2]);
+            } catch (DateTimeParseException | NumberFormatException ex) {
+                throw new BadRequestException("Cursor không hợp lệ");
+            }
+        }
+
+        // Lấy dư 1 dòng để biết còn trang sau hay không
+        List<BienDongJdbcRepository.SearchHit> rows = bienDongJdbcRepository.search(
+                tsQuery, loai, tuThoiGian, denThoiGian, beforeRank, beforeThoiGian, beforeId, pageSize + 1);
+
+        boolean hasMore = rows.size() > pageSize;
+        List<BienDongJdbcRepository.SearchHit> pageRows = hasMore ? rows.subList(0, pageSize) : rows;
+
+        List<BienDongResponseDto> items = pageRows.stream()
+                .map(hit -> toResponseDto(hit.entry()))
+                .toList();
+
+        String nextCursor = null;
+        if (hasMore) {
+            BienDongJdbcRepository.SearchHit last = pageRows.get(pageRows.size() - 1);
+            nextCursor = CursorUtils.encode(Float.toString(last.rank()),
+                    last.entry().getThoiGian(), last.entry().getId());
+        }
+
+        return CursorPageResponseDto.<BienDongResponseDto>builder()
+                .items(items)
+                .size(items.size())
+                .hasMore(hasMore)
+                .nextCursor(nextCursor)
+                .build();
+    }
+
+    /**
+     * Chuyển chuỗi người dùng nhập thành tsquery an toàn: chỉ giữ các từ chữ/số đã bỏ dấu,
+     * nối bằng AND, từ cuối so khớp tiền tố.
+     */
+    private static String toTsQuery(String q) {
+        List<String> tokens = VietnameseText.tokens(q);
+        if (tokens.isEmpty()) {
+            throw new BadRequestException("Từ khóa tìm kiếm không được để trống");
+        }
+        if (tokens.size() > MAX_SEARCH_TOKENS) {
+            tokens = tokens.subList(0, MAX_SEARCH_TOKENS);
+        }
+        return String.join(" & ", tokens) + ":*";
+    }
+
     public BienDongResponseDto getByIdDto(Long id) {
         BienDong entity = bienDongRepository.findById(id)
             .orElseThrow(() -> new NotFoundException("Không tìm thấy biến động với id = " + id));
         return toResponseDto(entity);
     }
 
+    /**
+     * Ghi một dòng nhật ký biến động.
+     * Các dòng của cùng transaction được gom lại và ghi bằng một JDBC batch ngay trước khi
+     * commit, trong chính transaction đó: nhật ký và thay đổi dữ liệu cùng thành công
+     * hoặc cùng rollback, không mất dòng nào khi tiến trình dừng đột ngột.
+     */
     @Transactional
-    public BienDong log(BienDongType type, String noiDung, Long hoKhauId, Long nhanKhauId) {
+    public void log(BienDongType type, String noiDung, Long hoKhauId, Long nhanKhauId) {
+        log(type, noiDung, hoKhauId, nhanKhauId, null);
+    }
+
+    /**
+     * Ghi một dòng nhật ký kèm chi tiết có cấu trúc (trường, giá trị cũ/mới).
+     * noiDung vẫn là câu hiển thị; người thực hiện được lấy từ SecurityContext nếu chưa có.
+     */
+    @Transactional
+    public void log(BienDongType type, String noiDung, Long hoKhauId, Long nhanKhauId, ChiTietBienDong chiTiet) {
+        ChiTietBienDong detail = chiTiet != null ? chiTiet : new ChiTietBienDong();
+        if (detail.getNguoiThucHien() == null) {
+            detail.setNguoiThucHien(currentUsername());
+        }
+
         BienDong entity = BienDong.builder()
                 .loai(type)
                 .noiDung(noiDung)
-                .thoiGian(LocalDateTime.now())
+                // PostgreSQL lưu TIMESTAMP tới micro giây
+                .thoiGian(LocalDateTime.now().truncatedTo(ChronoUnit.MICROS))
                 .hoKhauId(hoKhauId)
                 .nhanKhauId(nhanKhauId)
+                .chiTiet(isEmpty(detail) ? null : detail)
                 .build();
-        return bienDongRepository.save(entity);
+
+        // @Transactional bảo đảm luôn có transaction (mới hoặc của nơi gọi) để gom lô
+        pendingInCurrentTransaction().add(entity);
+
+        // Người nghe (luồng sự kiện trực tiếp) chỉ nhận sau khi commit
+        eventPublisher.publishEvent(new BienDongLoggedEvent(entity));
+    }
+
+    /**
+     * Bộ đệm nhật ký của transaction hiện tại; đăng ký ghi theo lô trước khi commit.
+     */
+    @SuppressWarnings("unchecked")
+    private List<BienDong> pendingInCurrentTransaction() {
+        List<BienDong> buffer = (List<BienDong>) TransactionSynchronizationManager.getResource(this);
+        if (buffer != null) {
+            return buffer;
+        }
+
+        List<BienDong> newBuffer = new ArrayList<>();
+        TransactionSynchronizationManager.bindResource(this, newBuffer);
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void beforeCommit(boolean readOnly) {
+                // Đẩy các thay đổi JPA đang chờ trước để khóa ngoại (hộ khẩu, nhân khẩu) đã có trong DB
+                entityManager.flush();
+                write(newBuffer);
+                newBuffer.clear();
+            }
+
+            @Override
+            public void afterCompletion(int status) {
+                TransactionSynchronizationManager.unbindResourceIfPossible(BienDongService.this);
+            }
+        });
+        return newBuffer;
+    }
+
+    /**
+     * Nối các dòng vào chuỗi hash, ghi bằng một batch và cộng dồn thống kê.
+     */
+    private void write(List<BienDong> entries) {
+        chuoiService.seal(entries);
+        bienDongJdbcRepository.batchInsert(entries);
+        thongKeService.onLogged(entries);
+    }
+
+    private String currentUsername() {
+        Authentication auth = SecurityContextHolder.getContext().getAuthentication();
+        if (auth == null || !auth.isAuthenticated() || auth instanceof AnonymousAuthenticationToken) {
+            // Job nền / luồng không có người dùng
+            return null;
+        }
+        return auth.getName();
+    }
+
+    private boolean isEmpty(ChiTietBienDong detail) {
+        return detail.getTruong() == null && detail.getGiaTriCu() == null
+                && detail.getGiaTriMoi() == null && detail.getNguoiThucHien() == null;
     }
 
-    private BienDongResponseDto toResponseDto(BienDong entity) {
+    public BienDongResponseDto toResponseDto(BienDong entity) {
         return BienDongResponseDto.builder()
                 .id(entity.getId())
                 .loai(entity.getLoai() != null ? entity.getLoai().name() : null)
@@ -51,6 +284,10 @@ public class BienDongService {
                 .thoiGian(entity.getThoiGian())
                 .hoKhauId(entity.getHoKhauId())
                 .nhanKhauId(entity.getNhanKhauId())
+                .chiTiet(entity.getChiTiet())
+                .chuoi(entity.getChuoi())
+                .thuTu(entity.getThuTu())
+                .hash(entity.getHash())
                 .build();
     }
 }
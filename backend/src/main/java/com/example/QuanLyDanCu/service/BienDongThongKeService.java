@@ -0,0 +1,184 @@
+package com.example.QuanLyDanCu.service;
+
+import com.example.QuanLyDanCu.dto.response.BienDongThongKeResponseDto;
+import com.example.QuanLyDanCu.entity.BienDong;
+import com.example.QuanLyDanCu.entity.BienDongThongKe;
+import com.example.QuanLyDanCu.enums.BienDongType;
+import com.example.QuanLyDanCu.enums.DonViThoiGian;
+import com.example.QuanLyDanCu.exception.BadRequestException;
+import com.example.QuanLyDanCu.repository.BienDongJdbcRepository;
+import com.example.QuanLyDanCu.repository.BienDongPartitionRepository;
+import com.example.QuanLyDanCu.repository.BienDongThongKeRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.stream.Collectors;
+
+/**
+ * Duy trì bảng số lượng biến động theo loại, theo ngày và theo tháng ({@code bien_dong_thong_ke}).
+ *
+ * <ul>
+ * <li>Mỗi lượt ghi nhật ký theo lô cộng dồn vào bảng trong cùng transaction</li>
+ * <li>Biểu đồ đọc trực tiếp từ bảng (vài trăm dòng), không quét bien_dong</li>
+ * <li>Job dựng lại hằng đêm tính lại từ nhật ký còn trong cơ sở dữ liệu; tháng đã lưu trữ
+ * (xem {@link BienDongArchiveService}) và mọi tháng cũ hơn nó giữ nguyên số liệu</li>
+ * </ul>
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class BienDongThongKeService {
+
+    // Giới hạn số kỳ trả về để biểu đồ theo ngày không vô tình lấy nhiều năm
+    private static final int MAX_DAYS = 366;
+
+    private final BienDongThongKeRepository thongKeRepo;
+    private final BienDongJdbcRepository bienDongJdbcRepository;
+    private final BienDongPartitionRepository partitionRepo;
+
+    /**
+     * Cộng dồn các dòng nhật ký vừa ghi. Gọi trong transaction ghi nhật ký.
+     */
+    public void onLogged(Collection<BienDong> entries) {
+        if (entries.isEmpty()) {
+            return;
+        }
+
+        // Gom theo (đơn vị, kỳ, loại), sắp xếp để khóa dòng theo cùng thứ tự giữa các transaction
+        Comparator<BienDongThongKe.Key> order = Comparator
+                .comparing(BienDongThongKe.Key::getDonVi)
+                .thenComparing(BienDongThongKe.Key::getKy)
+                .thenComparing(BienDongThongKe.Key::getLoai);
+        Map<BienDongThongKe.Key, Long> counts = new TreeMap<>(order);
+        for (BienDong entry : entries) {
+            LocalDate ngay = entry.getThoiGian().toLocalDate();
+            counts.merge(new BienDongThongKe.Key(DonViThoiGian.NGAY, ngay, entry.getLoai()), 1L, Long::sum);
+            counts.merge(new BienDongThongKe.Key(DonViThoiGian.THANG, ngay.withDayOfMonth(1), entry.getLoai()), 1L,
+                    Long::sum);
+        }
+
+        LocalDateTime now = LocalDateTime.now().truncatedTo(ChronoUnit.MICROS);
+        List<BienDongThongKe> deltas = new ArrayList<>(counts.size());
+        counts.forEach((key, soLuong) -> deltas.add(BienDongThongKe.builder()
+                .donVi(key.getDonVi())
+                .ky(key.getKy())
+                .loai(key.getLoai())
+                .soLuong(soLuong)
+                .capNhatLuc(now)
+                .build()));
+        bienDongJdbcRepository.batchIncrementThongKe(deltas);
+    }
+
+    /**
+     * Số lượng biến động theo kỳ trong [tuNgay, denNgay], mỗi kỳ kèm số lượng theo loại.
+     * Mặc định: 12 tháng gần nhất (THANG) hoặc 30 ngày gần nhất (NGAY).
+     */
+    @Transactional(readOnly = true)
+    public List<BienDongThongKeResponseDto> getStats(DonViThoiGian donVi, LocalDate tuNgay, LocalDate denNgay,
+            Collection<BienDongType> loai) {
+        DonViThoiGian unit = donVi != null ? donVi : DonViThoiGian.THANG;
+        LocalDate den = denNgay != null ? denNgay : LocalDate.now();
+        LocalDate tu = tuNgay != null ? tuNgay
+                : unit == DonViThoiGian.THANG ? den.withDayOfMonth(1).minusMonths(11) : den.minusDays(29);
+        if (tu.isAfter(den)) {
+            throw new BadRequestException("Ngày bắt đầu phải trước hoặc bằng ngày kết thúc");
+        }
+        if (unit == DonViThoiGian.THANG) {
+            tu = tu.withDayOfMonth(1);
+        } else if (ChronoUnit.DAYS.between(tu, den) >= MAX_DAYS) {
+            throw new BadRequestException("Thống kê theo ngày tối đa " + MAX_DAYS + " ngày, hãy dùng donVi=THANG");
+        }
+
+        List<BienDongThongKe> rows = loai == null || loai.isEmpty()
+                ? thongKeRepo.findRange(unit, tu, den)
+                : thongKeRepo.findRangeByLoai(unit, tu, den, loai);
+
+        Map<LocalDate, Map<BienDongType, Long>> byPeriod = new LinkedHashMap<>();
+        for (BienDongThongKe row : rows) {
+            byPeriod.computeIfAbsent(row.getKy(), k -> new EnumMap<>(BienDongType.class))
+                    .put(row.getLoai(), row.getSoLuong());
+        }
+
+        List<BienDongThongKeResponseDto> result = new ArrayList<>(byPeriod.size());
+        byPeriod.forEach((ky, theoLoai) -> result.add(BienDongThongKeResponseDto.builder()
+                .ky(ky)
+                .tong(theoLoai.values().stream().mapToLong(Long::longValue).sum())
+                .soLuongTheoLoai(theoLoai)
+                .build()));
+        return result;
+    }
+
+    /**
+     * Dựng bảng lần đầu khi khởi động (bảng còn trống).
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    @Transactional
+    public void initializeIfEmpty() {
+        if (thongKeRepo.count() == 0) {
+            rebuild();
+        }
+    }
+
+    /**
+     * Tính lại số liệu từ nhật ký còn trong cơ sở dữ liệu (sửa sai lệch do xóa dây chuyền
+     * hộ khẩu / nhân khẩu). Chỉ dựng lại dải tháng liên tục đang có phân vùng tính ngược từ
+     * tháng hiện tại: tháng cũ hơn một tháng đã lưu trữ (vd. tháng vừa nạp lại trong khi các
+     * tháng sau nó vẫn nằm trong tệp lưu trữ) giữ nguyên số liệu, vì bảng gốc không còn đủ dòng.
+     */
+    @Scheduled(cron = "${app.bien-dong.thong-ke.rebuild-cron:0 45 3 * * *}")
+    @Transactional
+    public void rebuild() {
+        thongKeRepo.lockForRebuild();
+
+        LocalDate oldest = thongKeRepo.findOldestLogDate();
+        if (oldest == null) {
+            log.info("Audit log is empty, nothing to roll up");
+            return;
+        }
+        LocalDate tu = rebuildStart(YearMonth.from(oldest));
+        int deleted = thongKeRepo.deleteFrom(tu);
+        int inserted = thongKeRepo.rebuildFrom(tu, LocalDateTime.now().truncatedTo(ChronoUnit.MICROS));
+        log.info("Rebuilt audit log rollups from {} ({} rows replaced by {})", tu, deleted, inserted);
+    }
+
+    /**
+     * Tháng đầu của dải tháng liên tục có phân vùng gắn vào bien_dong, kết thúc ở tháng hiện tại.
+     * Bảng chưa phân vùng thì mọi dòng đều còn, dựng lại từ tháng cũ nhất.
+     */
+    private LocalDate rebuildStart(YearMonth oldest) {
+        if (!partitionRepo.isPartitioned()) {
+            return oldest.atDay(1);
+        }
+
+        Set<YearMonth> attached = partitionRepo.findAttachedPartitions().stream()
+                .map(BienDongPartitionRepository::monthOf)
+                .filter(Objects::nonNull)
+                .collect(Collectors.toSet());
+        for (YearMonth thang = YearMonth.now(); !thang.isBefore(oldest); thang = thang.minusMonths(1)) {
+            if (!attached.contains(thang)) {
+                log.info("Audit log month {} is archived; keeping rollups before {}", thang, thang.plusMonths(1));
+                return thang.plusMonths(1).atDay(1);
+            }
+        }
+        return oldest.atDay(1);
+    }
+}
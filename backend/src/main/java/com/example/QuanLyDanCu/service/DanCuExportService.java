@@ -0,0 +1,69 @@
+package com.example.QuanLyDanCu.service;
+
+import com.example.QuanLyDanCu.enums.DinhDangXuat;
+import com.example.QuanLyDanCu.exception.BadRequestException;
+import com.example.QuanLyDanCu.repository.DanCuExportRepository;
+import com.example.QuanLyDanCu.util.TabularWriter;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Xuất toàn bộ nhân khẩu / hộ khẩu ra CSV hoặc XLSX dạng luồng cho báo cáo phường:
+ * từng dòng được ghi ngay khi đọc từ con trỏ database, bộ nhớ không phụ thuộc số dòng.
+ */
+@Service
+@RequiredArgsConstructor
+public class DanCuExportService {
+
+    private final DanCuExportRepository exportRepo;
+
+    /**
+     * Gọi trước khi mở luồng để lỗi định dạng trả về đúng mã 400.
+     */
+    public DinhDangXuat checkFormat(String format) {
+        DinhDangXuat dinhDang = DinhDangXuat.fromParam(format);
+        if (!dinhDang.isTabular()) {
+            throw new BadRequestException("Xuất dữ liệu chỉ hỗ trợ csv, xlsx");
+        }
+        return dinhDang;
+    }
+
+    @Transactional(readOnly = true)
+    public void writeNhanKhau(DinhDangXuat format, OutputStream out) throws IOException {
+        write(format, out, "Nhan khau", DanCuExportRepository.NHAN_KHAU_COLUMNS, exportRepo::forEachNhanKhau);
+    }
+
+    @Transactional(readOnly = true)
+    public void writeHoKhau(DinhDangXuat format, OutputStream out) throws IOException {
+        write(format, out, "Ho khau", DanCuExportRepository.HO_KHAU_COLUMNS, exportRepo::forEachHoKhau);
+    }
+
+    private void write(DinhDangXuat format, OutputStream out, String sheetName, List<String> columns,
+            Consumer<Consumer<Object[]>> source) throws IOException {
+        TabularWriter writer = format.openTabularWriter(out, sheetName);
+        writer.writeHeader(columns.toArray());
+        // Gửi ngay tiêu đề để client nhận byte đầu tiên trước khi truy vấn chạy
+        writer.flush();
+
+        try {
+            source.accept(row -> {
+                try {
+                    writer.writeRow(row);
+                } catch (IOException ex) {
+                    throw new UncheckedIOException(ex);
+                }
+            });
+        } catch (UncheckedIOException ex) {
+            throw ex.getCause();
+        }
+        // Chỉ kết thúc tệp khi đã ghi đủ: lỗi giữa chừng để lại tệp hỏng thay vì tệp thiếu dòng
+        writer.close();
+    }
+}
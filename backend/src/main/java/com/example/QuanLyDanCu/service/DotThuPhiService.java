@@ -4,10 +4,12 @@ import com.example.QuanLyDanCu.dto.request.DotThuPhiRequestDto;
 import com.example.QuanLyDanCu.dto.response.DotThuPhiResponseDto;
 import com.example.QuanLyDanCu.entity.DotThuPhi;
 import com.example.QuanLyDanCu.enums.LoaiThuPhi;
+import com.example.QuanLyDanCu.event.DotThuPhiChangedEvent;
 import com.example.QuanLyDanCu.exception.BadRequestException;
 import com.example.QuanLyDanCu.exception.NotFoundException;
 import com.example.QuanLyDanCu.repository.DotThuPhiRepository;
 import lombok.RequiredArgsConstructor;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.security.core.Authentication;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
@@ -22,6 +24,8 @@ import java.util.stream.Collectors;
 public class DotThuPhiService {
 
     private final DotThuPhiRepository repo;
+    private final ThuPhiTongHopService tongHopService;
+    private final ApplicationEventPublisher eventPublisher;
 
     // Lấy tất cả đợt thu phí
     public List<DotThuPhiResponseDto> getAll() {
@@ -71,6 +75,7 @@ public class DotThuPhiService {
                 .build();
 
         DotThuPhi saved = repo.save(entity);
+        eventPublisher.publishEvent(new DotThuPhiChangedEvent(DotThuPhiChangedEvent.Type.CREATED, saved.getId()));
         return toResponseDto(saved);
     }
 
@@ -81,6 +86,8 @@ public class DotThuPhiService {
             throw new NotFoundException("Không tìm thấy đợt thu phí id = " + id);
         }
         repo.deleteById(id);
+        tongHopService.removePeriod(id);
+        eventPublisher.publishEvent(new DotThuPhiChangedEvent(DotThuPhiChangedEvent.Type.DELETED, id));
     }
 
     private DotThuPhiResponseDto toResponseDto(DotThuPhi entity) {
@@ -0,0 +1,200 @@
+package com.example.QuanLyDanCu.service;
+
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Hàng đợi tính lại phí theo hộ khẩu, chạy bất đồng bộ sau khi transaction commit.
+ *
+ * <ul>
+ * <li>Trong một transaction, các yêu cầu cho cùng hộ được gộp lại và chỉ gửi đi khi
+ * commit (rollback thì bỏ)</li>
+ * <li>Giữa các transaction, hộ đang chờ xử lý sẽ không được xếp hàng thêm lần nữa;
+ * lần chạy sau đọc trạng thái mới nhất nên kết quả vẫn đúng</li>
+ * <li>Xử lý trên pool giới hạn; khi hàng đợi đầy thì luồng gọi tự chạy (tạo áp lực ngược)</li>
+ * <li>Mỗi lần tính lại chạy trong transaction riêng (REQUIRES_NEW): khi luồng gọi tự chạy
+ * bên trong afterCommit, transaction cũ đã commit nên không được tham gia vào nó, nếu không
+ * các thay đổi sẽ không bao giờ được commit</li>
+ * <li>{@code app.fee-recalc.async=false}: chạy đồng bộ ngay như trước (dùng cho test)</li>
+ * </ul>
+ */
+@Component
+@Slf4j
+public class FeeRecalculationQueue {
+
+    private final ThuPhiHoKhauService thuPhiHoKhauService;
+    private final TransactionTemplate requiresNew;
+    private final boolean async;
+    private final ThreadPoolExecutor executor;
+
+    // hoKhauId -> thời điểm xếp hàng (nanoTime), chỉ chứa các hộ chưa bắt đầu xử lý
+    private final Map<Long, Long> pending = new ConcurrentHashMap<>();
+
+    private final AtomicLong enqueued = new AtomicLong();
+    private final AtomicLong coalesced = new AtomicLong();
+    private final AtomicLong processed = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+    private final AtomicLong totalLagMillis = new AtomicLong();
+    private final AtomicLong maxLagMillis = new AtomicLong();
+    private final AtomicLong lastLagMillis = new AtomicLong();
+
+    public FeeRecalculationQueue(ThuPhiHoKhauService thuPhiHoKhauService,
+            PlatformTransactionManager transactionManager,
+            @Value("${app.fee-recalc.async:true}") boolean async,
+            @Value("${app.fee-recalc.threads:2}") int threads,
+            @Value("${app.fee-recalc.queue-capacity:10000}") int queueCapacity) {
+        this.thuPhiHoKhauService = thuPhiHoKhauService;
+        this.requiresNew = new TransactionTemplate(transactionManager);
+        this.requiresNew.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        this.async = async;
+
+        int poolSize = Math.max(threads, 1);
+        AtomicInteger threadNumber = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(
+                poolSize, poolSize,
+                60L, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(Math.max(queueCapacity, 1)),
+                r -> {
+                    Thread t = new Thread(r, "fee-recalc-" + threadNumber.incrementAndGet());
+                    t.setDaemon(true);
+                    return t;
+                },
+                new ThreadPoolExecutor.CallerRunsPolicy());
+    }
+
+    /**
+     * Yêu cầu tính lại phí cho hộ khẩu. Trong transaction: gửi đi sau khi commit.
+     */
+    public void enqueue(Long hoKhauId) {
+        if (hoKhauId == null) {
+            return;
+        }
+
+        if (!async) {
+            thuPhiHoKhauService.recalculateForHousehold(hoKhauId);
+            return;
+        }
+
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            pendingInCurrentTransaction().add(hoKhauId);
+            return;
+        }
+
+        submit(hoKhauId);
+    }
+
+    public Map<String, Object> getStats() {
+        long processedCount = processed.get();
+
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("async", async);
+        stats.put("queueDepth", pending.size());
+        stats.put("activeWorkers", executor.getActiveCount());
+        stats.put("poolSize", executor.getMaximumPoolSize());
+        stats.put("enqueued", enqueued.get());
+        stats.put("coalesced", coalesced.get());
+        stats.put("processed", processedCount);
+        stats.put("failed", failed.get());
+        stats.put("oldestPendingLagMs", oldestPendingLagMillis());
+        stats.put("lastLagMs", lastLagMillis.get());
+        stats.put("maxLagMs", maxLagMillis.get());
+        stats.put("avgLagMs", processedCount == 0 ? 0 : totalLagMillis.get() / processedCount);
+        return stats;
+    }
+
+    @PreDestroy
+    public void shutdown() throws InterruptedException {
+        executor.shutdown();
+        if (!executor.awaitTermination(10, TimeUnit.SECONDS)) {
+            log.warn("Fee recalculation queue still has {} pending households at shutdown", pending.size());
+            executor.shutdownNow();
+        }
+    }
+
+    // ========================================
+    // PRIVATE HELPERS
+    // ========================================
+
+    /**
+     * Tập hoKhauId cần tính lại của transaction hiện tại; đăng ký gửi đi khi commit.
+     */
+    @SuppressWarnings("unchecked")
+    private Set<Long> pendingInCurrentTransaction() {
+        Set<Long> ids = (Set<Long>) TransactionSynchronizationManager.getResource(this);
+        if (ids != null) {
+            return ids;
+        }
+
+        Set<Long> newIds = new LinkedHashSet<>();
+        TransactionSynchronizationManager.bindResource(this, newIds);
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                newIds.forEach(FeeRecalculationQueue.this::submit);
+            }
+
+            @Override
+            public void afterCompletion(int status) {
+                TransactionSynchronizationManager.unbindResourceIfPossible(FeeRecalculationQueue.this);
+            }
+        });
+        return newIds;
+    }
+
+    private void submit(Long hoKhauId) {
+        enqueued.incrementAndGet();
+        if (pending.putIfAbsent(hoKhauId, System.nanoTime()) != null) {
+            // Hộ này đã chờ trong hàng đợi: lần chạy đó sẽ đọc dữ liệu mới nhất
+            coalesced.incrementAndGet();
+            return;
+        }
+        executor.execute(() -> process(hoKhauId));
+    }
+
+    private void process(Long hoKhauId) {
+        // Xóa khỏi pending trước khi chạy để thay đổi xảy ra trong lúc chạy được xếp hàng lại
+        Long enqueuedAt = pending.remove(hoKhauId);
+        if (enqueuedAt != null) {
+            long lag = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - enqueuedAt);
+            lastLagMillis.set(lag);
+            totalLagMillis.addAndGet(lag);
+            maxLagMillis.accumulateAndGet(lag, Math::max);
+        }
+
+        try {
+            // Có thể đang chạy trên luồng gọi trong afterCommit (hàng đợi đầy): luôn mở transaction mới
+            requiresNew.executeWithoutResult(status -> thuPhiHoKhauService.recalculateForHousehold(hoKhauId));
+        } catch (RuntimeException ex) {
+            failed.incrementAndGet();
+            log.error("Fee recalculation failed for hoKhau={}", hoKhauId, ex);
+        } finally {
+            processed.incrementAndGet();
+        }
+    }
+
+    private long oldestPendingLagMillis() {
+        long now = System.nanoTime();
+        return pending.values().stream()
+                .mapToLong(enqueuedAt -> TimeUnit.NANOSECONDS.toMillis(now - enqueuedAt))
+                .max()
+                .orElse(0L);
+    }
+}
@@ -0,0 +1,404 @@
+package com.example.QuanLyDanCu.service;
+
+import com.example.QuanLyDanCu.dto.response.GoiYResponseDto;
+import com.example.QuanLyDanCu.entity.HoKhau;
+import com.example.QuanLyDanCu.entity.NhanKhau;
+import com.example.QuanLyDanCu.enums.LoaiGoiY;
+import com.example.QuanLyDanCu.event.HoKhauChangedEvent;
+import com.example.QuanLyDanCu.event.NhanKhauChangedEvent;
+import com.example.QuanLyDanCu.event.NhanKhauImportedEvent;
+import com.example.QuanLyDanCu.exception.BadRequestException;
+import com.example.QuanLyDanCu.repository.HoKhauRepository;
+import com.example.QuanLyDanCu.repository.NhanKhauRepository;
+import com.example.QuanLyDanCu.util.PrefixTrie;
+import com.example.QuanLyDanCu.util.VietnameseText;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Gợi ý khi nhập (autocomplete) cho form chọn chủ hộ / hộ khẩu, đọc hoàn toàn từ bộ nhớ.
+ *
+ * <ul>
+ * <li>Khóa đã bỏ dấu, chữ thường: họ tên nhân khẩu (từ mỗi đầu từ, nên gõ "an" hay "van an"
+ * đều ra "Nguyễn Văn An"), CMND/CCCD, số hộ khẩu. Nhân khẩu đã khai tử và hộ khẩu đã xóa bị bỏ.</li>
+ * <li>Cập nhật sau khi transaction commit theo sự kiện NhanKhauChangedEvent / HoKhauChangedEvent;
+ * dựng lại toàn bộ khi khởi động và định kỳ (lưới an toàn cho thay đổi không phát sự kiện).</li>
+ * </ul>
+ */
+@Service
+@Slf4j
+public class GoiYService {
+
+    public static final int DEFAULT_LIMIT = 10;
+    public static final int MAX_LIMIT = 50;
+    private static final int LOAD_BATCH_SIZE = 5000;
+    // Không gợi ý theo từ quá dài (chuỗi nhập bất thường)
+    private static final int MAX_QUERY_LENGTH = 100;
+
+    private final NhanKhauRepository nhanKhauRepo;
+    private final HoKhauRepository hoKhauRepo;
+    private final boolean enabled;
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private final ReentrantLock rebuildLock = new ReentrantLock();
+    // Các trường dưới đây chỉ đọc / ghi khi giữ lock
+    private PrefixTrie<Entry> trie = new PrefixTrie<>();
+    private Map<Long, Entry> nhanKhauEntries = new HashMap<>();
+    private Map<Long, Entry> hoKhauEntries = new HashMap<>();
+    private boolean ready;
+    // Id thay đổi trong lúc đang dựng lại: làm mới lần nữa sau khi thay cây mới
+    private Set<Long> dirtyNhanKhau;
+    private Set<Long> dirtyHoKhau;
+
+    public GoiYService(NhanKhauRepository nhanKhauRepo,
+            HoKhauRepository hoKhauRepo,
+            @Value("${app.goi-y.enabled:true}") boolean enabled) {
+        this.nhanKhauRepo = nhanKhauRepo;
+        this.hoKhauRepo = hoKhauRepo;
+        this.enabled = enabled;
+    }
+
+    /**
+     * Mục trong cây; một nhân khẩu nằm dưới nhiều khóa (các đầu từ của họ tên, CMND/CCCD).
+     */
+    private record Entry(LoaiGoiY loai, long id, String nhan, String moTa, List<String> keys) {
+    }
+
+    /**
+     * Tối đa limit mục có khóa bắt đầu bằng q (đã bỏ dấu), khớp ngắn nhất trước.
+     */
+    public List<GoiYResponseDto> suggest(String q, LoaiGoiY loai, Integer limit) {
+        int k = limit == null ? DEFAULT_LIMIT : limit;
+        if (k <= 0) {
+            throw new BadRequestException("Số gợi ý phải lớn hơn 0");
+        }
+        k = Math.min(k, MAX_LIMIT);
+
+        String prefix = normalize(q);
+        if (prefix.isEmpty() || prefix.length() > MAX_QUERY_LENGTH) {
+            return List.of();
+        }
+
+        List<Entry> found;
+        lock.readLock().lock();
+        try {
+            found = trie.findByPrefix(prefix, k, e -> loai == null || e.loai() == loai);
+        } finally {
+            lock.readLock().unlock();
+        }
+
+        return found.stream()
+                .map(e -> GoiYResponseDto.builder()
+                        .loai(e.loai())
+                        .id(e.id())
+                        .nhan(e.nhan())
+                        .moTa(e.moTa())
+                        .build())
+                .toList();
+    }
+
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        lock.readLock().lock();
+        try {
+            int soMuc = nhanKhauEntries.size() + hoKhauEntries.size();
+            long trieBytes = trie.estimateBytes();
+            long entryBytes = 0;
+            long soKhoa = 0;
+            for (Map<Long, Entry> entries : List.of(nhanKhauEntries, hoKhauEntries)) {
+                for (Entry e : entries.values()) {
+                    entryBytes += estimateBytes(e);
+                    soKhoa += e.keys().size();
+                }
+            }
+            long tong = trieBytes + entryBytes;
+
+            stats.put("enabled", enabled);
+            stats.put("ready", ready);
+            stats.put("soNhanKhau", nhanKhauEntries.size());
+            stats.put("soHoKhau", hoKhauEntries.size());
+            stats.put("soKhoa", soKhoa);
+            stats.put("soNut", trie.nodeCount());
+            stats.put("uocTinhBoNhoCayByte", trieBytes);
+            stats.put("uocTinhBoNhoMucByte", entryBytes);
+            stats.put("uocTinhBoNhoByte", tong);
+            // Quy đổi cho 100.000 mục để so sánh giữa các quy mô dữ liệu
+            stats.put("uocTinhBoNhoMoi100kMucByte", soMuc == 0 ? 0 : tong * 100_000 / soMuc);
+        } finally {
+            lock.readLock().unlock();
+        }
+        return stats;
+    }
+
+    // ========================================
+    // DỰNG CÂY
+    // ========================================
+
+    @EventListener(ApplicationReadyEvent.class)
+    @Scheduled(fixedDelayString = "${app.goi-y.rebuild-ms:3600000}", initialDelayString = "${app.goi-y.rebuild-ms:3600000}")
+    public void rebuild() {
+        if (!enabled) {
+            return;
+        }
+        if (!rebuildLock.tryLock()) {
+            return;
+        }
+        try {
+            long start = System.nanoTime();
+            lock.writeLock().lock();
+            try {
+                dirtyNhanKhau = new HashSet<>();
+                dirtyHoKhau = new HashSet<>();
+            } finally {
+                lock.writeLock().unlock();
+            }
+
+            // Dựng cây mới ngoài lock: yêu cầu gợi ý vẫn đọc cây cũ trong lúc này
+            PrefixTrie<Entry> newTrie = new PrefixTrie<>();
+            Map<Long, Entry> newNhanKhau = new HashMap<>();
+            Map<Long, Entry> newHoKhau = new HashMap<>();
+
+            long afterId = 0;
+            while (true) {
+                List<NhanKhau> batch = nhanKhauRepo.findPageAfterId(afterId, null, null, null, null, null,
+                        PageRequest.of(0, LOAD_BATCH_SIZE));
+                for (NhanKhau nk : batch) {
+                    Entry entry = toEntry(nk);
+                    if (entry != null) {
+                        insert(newTrie, newNhanKhau, entry);
+                    }
+                }
+                if (batch.size() < LOAD_BATCH_SIZE) {
+                    break;
+                }
+                afterId = batch.get(batch.size() - 1).getId();
+            }
+            for (HoKhau hk : hoKhauRepo.findActiveHouseholds()) {
+                Entry entry = toEntry(hk);
+                if (entry != null) {
+                    insert(newTrie, newHoKhau, entry);
+                }
+            }
+
+            Set<Long> nhanKhauToRefresh;
+            Set<Long> hoKhauToRefresh;
+            lock.writeLock().lock();
+            try {
+                trie = newTrie;
+                nhanKhauEntries = newNhanKhau;
+                hoKhauEntries = newHoKhau;
+                ready = true;
+                nhanKhauToRefresh = dirtyNhanKhau;
+                hoKhauToRefresh = dirtyHoKhau;
+                dirtyNhanKhau = null;
+                dirtyHoKhau = null;
+            } finally {
+                lock.writeLock().unlock();
+            }
+            refreshNhanKhau(nhanKhauToRefresh);
+            refreshHoKhau(hoKhauToRefresh);
+
+            log.info("Autocomplete index rebuilt: {} residents, {} households, {} trie nodes in {} ms",
+                    newNhanKhau.size(), newHoKhau.size(), newTrie.nodeCount(), (System.nanoTime() - start) / 1_000_000);
+        } catch (RuntimeException ex) {
+            log.error("Autocomplete index rebuild failed", ex);
+        } finally {
+            rebuildLock.unlock();
+        }
+    }
+
+    // ========================================
+    // EVENT LISTENERS (sau khi commit)
+    // ========================================
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onNhanKhauChanged(NhanKhauChangedEvent event) {
+        if (!enabled) {
+            return;
+        }
+        if (event.getNhanKhauId() != null) {
+            refreshNhanKhau(List.of(event.getNhanKhauId()));
+        }
+        // Đổi chủ hộ làm đổi mô tả của hộ khẩu
+        if (event.getHoKhauIds() != null) {
+            refreshHoKhau(event.getHoKhauIds());
+        }
+    }
+
+    // Nhập hàng loạt: nạp lại theo lô thay vì từng id
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onNhanKhauImported(NhanKhauImportedEvent event) {
+        if (!enabled) {
+            return;
+        }
+        refreshNhanKhau(event.getNhanKhauIds());
+        refreshHoKhau(event.getHoKhauIds());
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onHoKhauChanged(HoKhauChangedEvent event) {
+        if (!enabled) {
+            return;
+        }
+        if (event.getHoKhauId() != null) {
+            refreshHoKhau(List.of(event.getHoKhauId()));
+        }
+        // Xóa hẳn hộ khẩu xóa luôn các thành viên (ON DELETE CASCADE): nạp lại để bỏ khỏi cây
+        refreshNhanKhau(event.getNhanKhauIds());
+    }
+
+    // Nạp lại các id từ DB (id không còn = xóa khỏi cây)
+    private void refreshNhanKhau(Collection<Long> ids) {
+        if (ids.isEmpty()) {
+            return;
+        }
+        Map<Long, Entry> loaded = new HashMap<>();
+        List<Long> idList = new ArrayList<>(ids);
+        for (int from = 0; from < idList.size(); from += LOAD_BATCH_SIZE) {
+            for (NhanKhau nk : nhanKhauRepo.findAllById(idList.subList(from, Math.min(from + LOAD_BATCH_SIZE, idList.size())))) {
+                loaded.put(nk.getId(), toEntry(nk));
+            }
+        }
+        lock.writeLock().lock();
+        try {
+            for (Long id : ids) {
+                if (dirtyNhanKhau != null) {
+                    dirtyNhanKhau.add(id);
+                }
+                replace(nhanKhauEntries, id, loaded.get(id));
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void refreshHoKhau(Collection<Long> ids) {
+        if (ids.isEmpty()) {
+            return;
+        }
+        Map<Long, Entry> loaded = new HashMap<>();
+        for (HoKhau hk : hoKhauRepo.findAllById(ids)) {
+            loaded.put(hk.getId(), toEntry(hk));
+        }
+        lock.writeLock().lock();
+        try {
+            for (Long id : ids) {
+                if (dirtyHoKhau != null) {
+                    dirtyHoKhau.add(id);
+                }
+                replace(hoKhauEntries, id, loaded.get(id));
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // Gọi khi giữ write lock; entry null = xóa khỏi cây
+    private void replace(Map<Long, Entry> entries, Long id, Entry entry) {
+        Entry old = entries.remove(id);
+        if (old != null) {
+            for (String key : old.keys()) {
+                trie.remove(key, old);
+            }
+        }
+        if (entry != null) {
+            insert(trie, entries, entry);
+        }
+    }
+
+    private static void insert(PrefixTrie<Entry> target, Map<Long, Entry> entries, Entry entry) {
+        entries.put(entry.id(), entry);
+        for (String key : entry.keys()) {
+            target.put(key, entry);
+        }
+    }
+
+    private Entry toEntry(NhanKhau nk) {
+        if ("KHAI_TU".equals(nk.getTrangThai())) {
+            return null;
+        }
+        List<String> keys = new ArrayList<>();
+        // Mỗi đầu từ của họ tên là một khóa: "nguyen van an", "van an", "an"
+        List<String> words = VietnameseText.tokens(nk.getHoTen());
+        for (int i = 0; i < words.size(); i++) {
+            keys.add(String.join(" ", words.subList(i, words.size())));
+        }
+        String cccd = normalize(nk.getCmndCccd());
+        if (!cccd.isEmpty()) {
+            keys.add(cccd);
+        }
+        if (keys.isEmpty()) {
+            return null;
+        }
+
+        List<String> moTa = new ArrayList<>();
+        if (nk.getCmndCccd() != null && !nk.getCmndCccd().isBlank()) {
+            moTa.add("CCCD " + nk.getCmndCccd());
+        }
+        if (nk.getNgaySinh() != null) {
+            moTa.add(nk.getNgaySinh().toString());
+        }
+        return new Entry(LoaiGoiY.NHAN_KHAU, nk.getId(), nk.getHoTen(), String.join(" · ", moTa), List.copyOf(keys));
+    }
+
+    private Entry toEntry(HoKhau hk) {
+        if (Boolean.TRUE.equals(hk.getIsDeleted())) {
+            return null;
+        }
+        String key = normalize(hk.getSoHoKhau());
+        if (key.isEmpty()) {
+            return null;
+        }
+
+        List<String> moTa = new ArrayList<>();
+        if (hk.getTenChuHo() != null && !hk.getTenChuHo().isBlank()) {
+            moTa.add("Chủ hộ " + hk.getTenChuHo());
+        }
+        if (hk.getDiaChi() != null && !hk.getDiaChi().isBlank()) {
+            moTa.add(hk.getDiaChi());
+        }
+        return new Entry(LoaiGoiY.HO_KHAU, hk.getId(), hk.getSoHoKhau(), String.join(" · ", moTa), List.of(key));
+    }
+
+    // Bỏ dấu, chữ thường, các từ cách nhau đúng một khoảng trắng
+    private static String normalize(String text) {
+        return String.join(" ", VietnameseText.tokens(text));
+    }
+
+    // Ước tính theo bố cục HotSpot 64-bit (compressed oops, String Latin-1 gọn)
+    private static long estimateBytes(Entry e) {
+        long bytes = 32 + 16 + 16L * e.keys().size();
+        bytes += stringBytes(e.nhan()) + stringBytes(e.moTa());
+        for (String key : e.keys()) {
+            bytes += stringBytes(key);
+        }
+        // Phần tử HashMap (node + ô trong bảng băm) và Long làm khóa
+        return bytes + 32 + 16 + 4;
+    }
+
+    private static long stringBytes(String s) {
+        if (s == null) {
+            return 0;
+        }
+        boolean latin1 = s.chars().allMatch(c -> c < 256);
+        long value = 16 + (long) s.length() * (latin1 ? 1 : 2);
+        return 24 + ((value + 7) & ~7L);
+    }
+}
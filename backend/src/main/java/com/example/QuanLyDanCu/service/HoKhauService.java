@@ -5,18 +5,26 @@ import com.example.QuanLyDanCu.dto.request.HoKhauUpdateDto;
 import com.example.QuanLyDanCu.dto.response.HoKhauResponseDto;
 import com.example.QuanLyDanCu.dto.response.NhanKhauResponseDto;
 import com.example.QuanLyDanCu.enums.BienDongType;
+import com.example.QuanLyDanCu.entity.ChiTietBienDong;
 import com.example.QuanLyDanCu.entity.HoKhau;
+import com.example.QuanLyDanCu.event.HoKhauChangedEvent;
 import com.example.QuanLyDanCu.exception.BusinessException;
 import com.example.QuanLyDanCu.exception.NotFoundException;
 import com.example.QuanLyDanCu.repository.HoKhauRepository;
+import com.example.QuanLyDanCu.repository.NhanKhauRepository;
+import com.example.QuanLyDanCu.repository.ThuPhiHoKhauRepository;
 import lombok.RequiredArgsConstructor;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.security.core.Authentication;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.time.LocalDate;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
 import java.util.stream.Collectors;
 
@@ -24,17 +32,49 @@ import java.util.stream.Collectors;
 @RequiredArgsConstructor
 public class HoKhauService {
 
+    // Giới hạn số tham số trong một câu IN khi nạp thành viên theo lô
+    private static final int MEMBER_BATCH_SIZE = 1000;
+
     private final HoKhauRepository hoKhauRepo;
     private final NhanKhauService nhanKhauService;
+    private final NhanKhauRepository nhanKhauRepo;
     private final BienDongService bienDongService;
+    private final ThuPhiHoKhauRepository thuPhiHoKhauRepo;
+    private final ThuPhiTongHopService thuPhiTongHopService;
+    private final ApplicationEventPublisher eventPublisher;
 
     // ========== DTO-based methods ==========
 
-    // Lấy tất cả hộ khẩu (DTO) - ordered by soHoKhau for stable UI display
-    public List<HoKhauResponseDto> getAll() {
-        return hoKhauRepo.findActiveHouseholds().stream()
-                .map(hk -> toResponseDto(hk))
-                .collect(Collectors.toList());
+    /**
+     * Lấy tất cả hộ khẩu đang hoạt động.
+     * Thành viên được nạp theo lô (một câu IN cho mỗi {@value #MEMBER_BATCH_SIZE} hộ)
+     * rồi nhóm trong bộ nhớ; nếu includeMembers = false chỉ chạy một câu GROUP BY
+     * để lấy soThanhVien, không nạp danh sách nhân khẩu.
+     */
+    public List<HoKhauResponseDto> getAll(boolean includeMembers) {
+        List<HoKhau> households = hoKhauRepo.findActiveHouseholds();
+        List<HoKhauResponseDto> result = new ArrayList<>(households.size());
+
+        for (int from = 0; from < households.size(); from += MEMBER_BATCH_SIZE) {
+            List<HoKhau> batch = households.subList(from, Math.min(from + MEMBER_BATCH_SIZE, households.size()));
+            List<Long> ids = batch.stream().map(HoKhau::getId).collect(Collectors.toList());
+
+            if (includeMembers) {
+                Map<Long, List<NhanKhauResponseDto>> membersByHousehold = nhanKhauService.getAllByHoKhauIds(ids);
+                for (HoKhau hk : batch) {
+                    List<NhanKhauResponseDto> members = membersByHousehold.getOrDefault(hk.getId(),
+                            Collections.emptyList());
+                    result.add(toResponseDto(hk, members, members.size()));
+                }
+            } else {
+                Map<Long, Long> counts = nhanKhauService.countByHoKhauIds(ids);
+                for (HoKhau hk : batch) {
+                    int soThanhVien = counts.getOrDefault(hk.getId(), 0L).intValue();
+                    result.add(toResponseDto(hk, null, soThanhVien));
+                }
+            }
+        }
+        return result;
     }
 
     // Lấy hộ khẩu theo id (DTO)
@@ -65,6 +105,7 @@ public class HoKhauService {
                 "Tạo hộ khẩu mới: " + saved.getSoHoKhau(),
                 saved.getId(),
                 null);
+        eventPublisher.publishEvent(new HoKhauChangedEvent(HoKhauChangedEvent.Type.CREATED, saved.getId()));
 
         return toResponseDto(saved);
     }
@@ -90,7 +131,13 @@ public class HoKhauService {
                     BienDongType.THAY_DOI_THONG_TIN,
                     String.format("Đổi chủ hộ: %s → %s", oldVal, newVal),
                     hoKhauId,
-                    null));
+                    null,
+                    ChiTietBienDong.builder()
+                            .truong("tenChuHo")
+                            .nhan("chủ hộ")
+                            .giaTriCu(oldVal)
+                            .giaTriMoi(newVal)
+                            .build()));
         }
 
         // Cập nhật địa chỉ (only if provided)
@@ -105,7 +152,13 @@ public class HoKhauService {
                             oldVal == null ? "" : oldVal,
                             newVal == null ? "" : newVal),
                     hoKhauId,
-                    null));
+                    null,
+                    ChiTietBienDong.builder()
+                            .truong("diaChi")
+                            .nhan("địa chỉ")
+                            .giaTriCu(oldVal)
+                            .giaTriMoi(newVal)
+                            .build()));
         }
 
         if (!changed) {
@@ -115,6 +168,7 @@ public class HoKhauService {
         HoKhau saved = hoKhauRepo.save(existing);
 
         pendingLogs.forEach(Runnable::run);
+        eventPublisher.publishEvent(new HoKhauChangedEvent(HoKhauChangedEvent.Type.UPDATED, saved.getId()));
 
         return toResponseDto(saved);
     }
@@ -126,13 +180,17 @@ public class HoKhauService {
 
         listNhanKhauDto = nhanKhauService.getAllByHoKhauId(hk.getId());
 
+        return toResponseDto(hk, listNhanKhauDto, listNhanKhauDto != null ? listNhanKhauDto.size() : 0);
+    }
+
+    private HoKhauResponseDto toResponseDto(HoKhau hk, List<NhanKhauResponseDto> listNhanKhauDto, int soThanhVien) {
         return HoKhauResponseDto.builder()
                 .id(hk.getId())
                 .soHoKhau(hk.getSoHoKhau())
                 .tenChuHo(hk.getTenChuHo())
                 .diaChi(hk.getDiaChi())
                 .ngayTao(hk.getNgayTao())
-                .soThanhVien(listNhanKhauDto != null ? listNhanKhauDto.size() : 0)
+                .soThanhVien(soThanhVien)
                 .listNhanKhau(listNhanKhauDto)
                 .build();
     }
@@ -144,6 +202,15 @@ public class HoKhauService {
             throw new NotFoundException("Không tìm thấy hộ khẩu id = " + id);
         }
 
+        // Bản ghi thu phí của hộ bị xóa theo (ON DELETE CASCADE) -> tính lại tổng các đợt liên quan
+        List<Long> affectedPeriods = thuPhiHoKhauRepo.findDotThuPhiIdsByHoKhauId(id);
+        // Nhân khẩu của hộ cũng bị xóa theo: lấy id trước khi xóa để các bên nghe sự kiện bỏ chúng đi
+        List<Long> memberIds = nhanKhauRepo.findIdsByHoKhauId(id);
+
         hoKhauRepo.deleteById(id);
+        hoKhauRepo.flush();
+
+        thuPhiTongHopService.rebuild(affectedPeriods);
+        eventPublisher.publishEvent(new HoKhauChangedEvent(HoKhauChangedEvent.Type.DELETED, id, memberIds));
     }
 }
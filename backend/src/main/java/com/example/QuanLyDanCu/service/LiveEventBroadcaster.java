@@ -0,0 +1,330 @@
+package com.example.QuanLyDanCu.service;
+
+import com.example.QuanLyDanCu.event.BienDongLoggedEvent;
+import com.example.QuanLyDanCu.event.ThuPhiHoKhauChangedEvent;
+import com.example.QuanLyDanCu.exception.BadRequestException;
+import com.example.QuanLyDanCu.exception.BusinessException;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.MediaType;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.security.access.AccessDeniedException;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.time.LocalDateTime;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+
+/**
+ * Đẩy sự kiện đã commit (nhật ký biến động, ghi nhận / xóa thu phí) tới các dashboard qua SSE.
+ *
+ * <ul>
+ * <li>Mỗi client chỉ nhận loại sự kiện mà vai trò của nó được phép đọc qua REST</li>
+ * <li>Vòng đệm {@code replay-size} sự kiện gần nhất: client kết nối lại với Last-Event-ID
+ * nhận tiếp phần còn thiếu; nếu đã quá xa (hoặc server khởi động lại) thì nhận sự kiện
+ * {@code reset} và tải lại dữ liệu qua REST</li>
+ * <li>Hàng đợi riêng mỗi client có giới hạn; client chậm làm đầy hàng đợi sẽ bị ngắt và tự
+ * kết nối lại, không làm chậm transaction hay các client khác</li>
+ * </ul>
+ */
+@Component
+@Slf4j
+public class LiveEventBroadcaster {
+
+    public static final String BIEN_DONG = "bien-dong";
+    public static final String THU_PHI = "thu-phi";
+    public static final String RESET = "reset";
+
+    private final BienDongService bienDongService;
+    private final long timeoutMillis;
+    private final int clientBufferSize;
+    private final int replaySize;
+    private final int maxClients;
+    private final Map<String, Set<String>> rolesByType;
+    private final ExecutorService sender;
+
+    // Id tăng dần; bắt đầu từ thời điểm khởi động để id cũ của lần chạy trước luôn "quá xa"
+    private final AtomicLong sequence = new AtomicLong(System.currentTimeMillis() * 1000);
+    private final Deque<LiveEvent> replay = new ArrayDeque<>();
+    private final Set<Client> clients = ConcurrentHashMap.newKeySet();
+
+    private final AtomicLong published = new AtomicLong();
+    private final AtomicLong delivered = new AtomicLong();
+    private final AtomicLong overflowDisconnects = new AtomicLong();
+    private final AtomicLong resets = new AtomicLong();
+
+    public LiveEventBroadcaster(BienDongService bienDongService,
+            @Value("${app.su-kien.timeout-ms:1800000}") long timeoutMillis,
+            @Value("${app.su-kien.client-buffer-size:256}") int clientBufferSize,
+            @Value("${app.su-kien.replay-size:1000}") int replaySize,
+            @Value("${app.su-kien.max-clients:200}") int maxClients,
+            @Value("${app.su-kien.sender-threads:2}") int senderThreads,
+            @Value("${app.su-kien.roles.bien-dong:ADMIN,TOTRUONG,KETOAN}") Set<String> bienDongRoles,
+            @Value("${app.su-kien.roles.thu-phi:ADMIN,KETOAN,TOTRUONG}") Set<String> thuPhiRoles) {
+        this.bienDongService = bienDongService;
+        this.timeoutMillis = timeoutMillis;
+        this.clientBufferSize = Math.max(clientBufferSize, 1);
+        this.replaySize = Math.max(replaySize, 0);
+        this.maxClients = Math.max(maxClients, 1);
+        this.rolesByType = Map.of(BIEN_DONG, bienDongRoles, THU_PHI, thuPhiRoles);
+
+        AtomicInteger threadNumber = new AtomicInteger();
+        this.sender = Executors.newFixedThreadPool(Math.max(senderThreads, 1), r -> {
+            Thread t = new Thread(r, "sse-sender-" + threadNumber.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    /**
+     * Đăng ký một client.
+     *
+     * @param loai        loại sự kiện muốn nhận (rỗng = mọi loại được phép)
+     * @param lastEventId id sự kiện cuối client đã nhận (null = chỉ nhận sự kiện mới)
+     */
+    public SseEmitter subscribe(Authentication auth, Collection<String> loai, Long lastEventId) {
+        Set<String> types = allowedTypes(auth, loai);
+        if (clients.size() >= maxClients) {
+            throw new BusinessException("Quá nhiều kết nối sự kiện đang mở, vui lòng thử lại sau");
+        }
+
+        SseEmitter emitter = new SseEmitter(timeoutMillis);
+        Client client = new Client(emitter, types, auth.getName());
+        emitter.onCompletion(() -> clients.remove(client));
+        emitter.onTimeout(() -> client.close(false));
+        emitter.onError(ex -> client.close(false));
+
+        // Đăng ký và lấy phần bỏ lỡ trong cùng khóa với publish -> không mất, không trùng
+        synchronized (replay) {
+            if (lastEventId != null) {
+                replayMissed(client, lastEventId);
+            }
+            clients.add(client);
+        }
+        client.schedule();
+        return emitter;
+    }
+
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("clients", clients.size());
+        stats.put("maxClients", maxClients);
+        stats.put("published", published.get());
+        stats.put("delivered", delivered.get());
+        stats.put("overflowDisconnects", overflowDisconnects.get());
+        stats.put("resets", resets.get());
+        synchronized (replay) {
+            stats.put("replayBuffered", replay.size());
+            stats.put("lastEventId", replay.isEmpty() ? null : replay.peekLast().id());
+        }
+        return stats;
+    }
+
+    // ========================================
+    // EVENT LISTENERS (sau khi commit)
+    // ========================================
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onBienDongLogged(BienDongLoggedEvent event) {
+        publish(BIEN_DONG, bienDongService.toResponseDto(event.getEntry()));
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onThuPhiHoKhauChanged(ThuPhiHoKhauChangedEvent event) {
+        Map<String, Object> data = new LinkedHashMap<>();
+        data.put("hanhDong", event.getType().name());
+        data.put("thuPhiHoKhauId", event.getThuPhiHoKhauId());
+        data.put("hoKhauId", event.getHoKhauId());
+        data.put("dotThuPhiId", event.getDotThuPhiId());
+        data.put("thoiGian", LocalDateTime.now());
+        publish(THU_PHI, data);
+    }
+
+    /**
+     * Giữ kết nối qua proxy và phát hiện client đã đóng.
+     */
+    @Scheduled(fixedDelayString = "${app.su-kien.heartbeat-ms:15000}")
+    public void heartbeat() {
+        for (Client client : clients) {
+            client.heartbeatDue.set(true);
+            client.schedule();
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        clients.forEach(client -> client.close(true));
+        sender.shutdownNow();
+    }
+
+    // ========================================
+    // PRIVATE HELPERS
+    // ========================================
+
+    private void publish(String type, Object data) {
+        List<Client> targets;
+        LiveEvent event;
+        synchronized (replay) {
+            event = new LiveEvent(sequence.incrementAndGet(), type, data);
+            if (replaySize > 0) {
+                if (replay.size() == replaySize) {
+                    replay.removeFirst();
+                }
+                replay.addLast(event);
+            }
+            targets = new ArrayList<>(clients);
+        }
+        published.incrementAndGet();
+        targets.forEach(client -> client.offer(event));
+    }
+
+    /**
+     * Gọi khi đang giữ khóa replay.
+     */
+    private void replayMissed(Client client, long lastEventId) {
+        LiveEvent oldest = replay.peekFirst();
+        boolean tooOld = oldest == null ? lastEventId != sequence.get() : lastEventId < oldest.id() - 1;
+        if (tooOld || lastEventId > sequence.get()) {
+            resets.incrementAndGet();
+            client.queue.offer(new LiveEvent(sequence.get(), RESET, Map.of("lyDo", "Đã bỏ lỡ quá nhiều sự kiện, vui lòng tải lại dữ liệu")));
+            return;
+        }
+        for (LiveEvent event : replay) {
+            if (event.id() > lastEventId && !client.offer(event)) {
+                return;
+            }
+        }
+    }
+
+    private Set<String> allowedTypes(Authentication auth, Collection<String> requested) {
+        Set<String> roles = auth.getAuthorities().stream()
+                .map(GrantedAuthority::getAuthority)
+                .collect(Collectors.toSet());
+
+        Set<String> wanted = new LinkedHashSet<>();
+        if (requested == null || requested.isEmpty()) {
+            wanted.addAll(List.of(BIEN_DONG, THU_PHI));
+        } else {
+            for (String type : requested) {
+                if (!rolesByType.containsKey(type)) {
+                    throw new BadRequestException("Loại sự kiện không hợp lệ: " + type + ". Chỉ chấp nhận: "
+                            + String.join(", ", rolesByType.keySet()));
+                }
+                wanted.add(type);
+            }
+        }
+
+        wanted.removeIf(type -> rolesByType.get(type).stream().noneMatch(roles::contains));
+        if (wanted.isEmpty()) {
+            throw new AccessDeniedException("Không có quyền nhận loại sự kiện này");
+        }
+        return wanted;
+    }
+
+    private record LiveEvent(long id, String type, Object data) {
+    }
+
+    private final class Client {
+
+        private final SseEmitter emitter;
+        private final Set<String> types;
+        private final String username;
+        private final BlockingQueue<LiveEvent> queue = new ArrayBlockingQueue<>(clientBufferSize);
+        private final AtomicBoolean draining = new AtomicBoolean();
+        private final AtomicBoolean heartbeatDue = new AtomicBoolean();
+        private volatile boolean closed;
+
+        private Client(SseEmitter emitter, Set<String> types, String username) {
+            this.emitter = emitter;
+            this.types = types;
+            this.username = username;
+        }
+
+        /**
+         * @return false nếu client bị ngắt vì đầy hàng đợi
+         */
+        private boolean offer(LiveEvent event) {
+            if (closed || !types.contains(event.type())) {
+                return true;
+            }
+            if (!queue.offer(event)) {
+                // Client quá chậm: ngắt để nó kết nối lại với Last-Event-ID
+                overflowDisconnects.incrementAndGet();
+                log.warn("SSE client {} fell {} events behind, disconnecting", username, clientBufferSize);
+                close(true);
+                return false;
+            }
+            schedule();
+            return true;
+        }
+
+        private void schedule() {
+            if (!closed && draining.compareAndSet(false, true)) {
+                try {
+                    sender.execute(this::drain);
+                } catch (RuntimeException ex) {
+                    // Executor đã dừng (tắt ứng dụng)
+                    draining.set(false);
+                }
+            }
+        }
+
+        private void drain() {
+            try {
+                if (heartbeatDue.getAndSet(false)) {
+                    emitter.send(SseEmitter.event().comment("ping"));
+                }
+                LiveEvent event;
+                while (!closed && (event = queue.poll()) != null) {
+                    emitter.send(SseEmitter.event()
+                            .id(String.valueOf(event.id()))
+                            .name(event.type())
+                            .data(event.data(), MediaType.APPLICATION_JSON));
+                    delivered.incrementAndGet();
+                }
+            } catch (IOException | IllegalStateException ex) {
+                // Client đã đóng kết nối
+                close(false);
+            } finally {
+                draining.set(false);
+            }
+            if (!closed && (!queue.isEmpty() || heartbeatDue.get())) {
+                schedule();
+            }
+        }
+
+        private void close(boolean complete) {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            clients.remove(this);
+            queue.clear();
+            if (complete) {
+                emitter.complete();
+            }
+        }
+    }
+}
@@ -0,0 +1,515 @@
+package com.example.QuanLyDanCu.service;
+
+import com.example.QuanLyDanCu.dto.request.NhanKhauRequestDto;
+import com.example.QuanLyDanCu.dto.response.NhanKhauImportResponseDto;
+import com.example.QuanLyDanCu.entity.HoKhau;
+import com.example.QuanLyDanCu.entity.NhanKhau;
+import com.example.QuanLyDanCu.enums.BienDongType;
+import com.example.QuanLyDanCu.event.NhanKhauImportedEvent;
+import com.example.QuanLyDanCu.exception.BadRequestException;
+import com.example.QuanLyDanCu.repository.HoKhauRepository;
+import com.example.QuanLyDanCu.repository.NhanKhauJdbcRepository;
+import com.example.QuanLyDanCu.repository.NhanKhauRepository;
+import com.example.QuanLyDanCu.util.CsvReader;
+import jakarta.annotation.PreDestroy;
+import jakarta.validation.ConstraintViolation;
+import jakarta.validation.Validator;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+
+/**
+ * Nhập nhân khẩu hàng loạt từ tệp CSV (khi lập tổ dân phố mới), thay cho việc gọi
+ * {@link NhanKhauService#create} cho từng người.
+ *
+ * <ul>
+ * <li>Đọc tệp tuần tự theo dòng; cột nhận diện theo tên ở dòng tiêu đề (trùng tên trường
+ * của NhanKhauRequestDto, thêm soHoKhau để chỉ định hộ theo số hộ khẩu), cột lạ bị bỏ qua
+ * nên tệp xuất từ /api/nhan-khau/export dùng lại được.</li>
+ * <li>Kiểm tra từng dòng (Bean Validation + quy tắc CMND/CCCD theo tuổi như create) song
+ * song trên nhiều lõi; trùng CMND/CCCD và sự tồn tại của hộ khẩu kiểm tra theo tập.</li>
+ * <li>Ghi bằng JDBC batch; nhật ký biến động và tính lại phí một lần cho mỗi hộ có thành
+ * viên mới; một sự kiện NhanKhauImportedEvent cho cả lô.</li>
+ * <li>dryRun = true: chỉ kiểm tra và trả kết quả từng dòng, không ghi gì.
+ * choPhepMotPhan = false: chỉ ghi khi mọi dòng hợp lệ.</li>
+ * </ul>
+ */
+@Service
+@Slf4j
+public class NhanKhauImportService {
+
+    // Số phần tử mỗi câu IN khi tra cứu theo tập
+    private static final int LOOKUP_CHUNK_SIZE = 1000;
+    // Tệp nhỏ: kiểm tra ngay trên luồng gọi, không đáng chia việc
+    private static final int PARALLEL_THRESHOLD = 200;
+    // Số họ tên tối đa liệt kê trong một dòng nhật ký biến động
+    private static final int MAX_TEN_TRONG_NHAT_KY = 20;
+    private static final DateTimeFormatter NGAY_VN = DateTimeFormatter.ofPattern("d/M/uuuu");
+    private static final String CHU_HO = "Chủ hộ";
+
+    private final HoKhauRepository hoKhauRepo;
+    private final NhanKhauRepository nhanKhauRepo;
+    private final NhanKhauJdbcRepository nhanKhauJdbcRepo;
+    private final BienDongService bienDongService;
+    private final FeeRecalculationQueue feeRecalculationQueue;
+    private final ApplicationEventPublisher eventPublisher;
+    private final Validator validator;
+    private final int maxRows;
+    private final int threads;
+    private final ExecutorService executor;
+
+    public NhanKhauImportService(HoKhauRepository hoKhauRepo,
+            NhanKhauRepository nhanKhauRepo,
+            NhanKhauJdbcRepository nhanKhauJdbcRepo,
+            BienDongService bienDongService,
+            FeeRecalculationQueue feeRecalculationQueue,
+            ApplicationEventPublisher eventPublisher,
+            Validator validator,
+            @Value("${app.nhan-khau.import.max-rows:20000}") int maxRows,
+            @Value("${app.nhan-khau.import.threads:0}") int threads) {
+        this.hoKhauRepo = hoKhauRepo;
+        this.nhanKhauRepo = nhanKhauRepo;
+        this.nhanKhauJdbcRepo = nhanKhauJdbcRepo;
+        this.bienDongService = bienDongService;
+        this.feeRecalculationQueue = feeRecalculationQueue;
+        this.eventPublisher = eventPublisher;
+        this.validator = validator;
+        this.maxRows = Math.max(maxRows, 1);
+        // 0 = theo số lõi CPU
+        this.threads = threads > 0 ? threads : Runtime.getRuntime().availableProcessors();
+
+        AtomicInteger threadNumber = new AtomicInteger();
+        this.executor = Executors.newFixedThreadPool(this.threads, r -> {
+            Thread t = new Thread(r, "nhan-khau-import-" + threadNumber.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    /**
+     * Một dòng dữ liệu của tệp cùng kết quả xử lý (loi != null nghĩa là dòng bị loại).
+     */
+    private record ImportRow(NhanKhauRequestDto dto, String soHoKhau, NhanKhauImportResponseDto.KetQuaDong ketQua) {
+    }
+
+    @Transactional
+    public NhanKhauImportResponseDto importCsv(InputStream in, boolean dryRun, boolean partial) throws IOException {
+        // 1. Đọc tệp
+        List<ImportRow> rows = parse(in);
+        if (rows.isEmpty()) {
+            throw new BadRequestException("Tệp không có dòng dữ liệu nào");
+        }
+
+        // 2. Hộ khẩu chỉ định bằng số hộ khẩu: tra một lần cho cả tệp
+        resolveSoHoKhau(rows);
+
+        // 3. Kiểm tra dữ liệu từng dòng, song song
+        validateRows(rows);
+
+        // 4. Kiểm tra theo tập: hộ khẩu tồn tại, CMND/CCCD không trùng, mỗi hộ tối đa một chủ hộ mới
+        Map<Long, HoKhau> hoKhauById = loadHouseholds(rows);
+        checkHouseholds(rows, hoKhauById);
+        checkCmndCccd(rows);
+        checkChuHo(rows);
+
+        long errorCount = rows.stream().filter(r -> r.ketQua().getLoi() != null).count();
+        if (errorCount > 0 && !partial) {
+            for (ImportRow row : rows) {
+                if (row.ketQua().getLoi() == null) {
+                    row.ketQua().setLoi("Không ghi vì tệp có dòng lỗi (choPhepMotPhan = false)");
+                }
+            }
+            return buildResponse(rows, dryRun, 0);
+        }
+
+        List<ImportRow> valid = rows.stream().filter(r -> r.ketQua().getLoi() == null).toList();
+        Set<Long> affectedHouseholds = valid.stream()
+                .map(r -> r.dto().getHoKhauId())
+                .collect(Collectors.toCollection(LinkedHashSet::new));
+
+        if (dryRun) {
+            valid.forEach(r -> r.ketQua().setThanhCong(true));
+            return buildResponse(rows, true, affectedHouseholds.size());
+        }
+
+        // 5. Ghi theo lô
+        List<NhanKhau> toInsert = valid.stream().map(r -> toEntity(r.dto())).toList();
+        List<Long> ids = nhanKhauJdbcRepo.batchInsert(toInsert);
+        for (int i = 0; i < valid.size(); i++) {
+            valid.get(i).ketQua().setThanhCong(true);
+            valid.get(i).ketQua().setNhanKhauId(ids.get(i));
+        }
+
+        // 6. Mỗi hộ một lần: hiện lại hộ đã ẩn, cập nhật tên chủ hộ, nhật ký, tính lại phí
+        Map<Long, List<NhanKhau>> byHousehold = toInsert.stream()
+                .collect(Collectors.groupingBy(NhanKhau::getHoKhauId, LinkedHashMap::new, Collectors.toList()));
+        byHousehold.forEach((hoKhauId, members) -> {
+            HoKhau hk = hoKhauById.get(hoKhauId);
+            boolean changed = false;
+            if (Boolean.TRUE.equals(hk.getIsDeleted())) {
+                hk.setIsDeleted(false);
+                changed = true;
+            }
+            for (NhanKhau nk : members) {
+                if (CHU_HO.equalsIgnoreCase(nk.getQuanHeChuHo())) {
+                    hk.setTenChuHo(nk.getHoTen());
+                    changed = true;
+                }
+            }
+            if (changed) {
+                hoKhauRepo.save(hk);
+            }
+
+            bienDongService.log(
+                    BienDongType.THEM_MOI_THONG_TIN,
+                    describeImport(members),
+                    hoKhauId,
+                    null);
+            feeRecalculationQueue.enqueue(hoKhauId);
+        });
+
+        eventPublisher.publishEvent(new NhanKhauImportedEvent(new LinkedHashSet<>(ids), affectedHouseholds));
+
+        NhanKhauImportResponseDto response = buildResponse(rows, false, affectedHouseholds.size());
+        log.info("Bulk resident import: {} rows, {} inserted into {} households, {} rejected",
+                response.getTongSo(), response.getSoThanhCong(), response.getSoHoKhau(), response.getSoLoi());
+        return response;
+    }
+
+    @PreDestroy
+    public void shutdown() throws InterruptedException {
+        executor.shutdown();
+        if (!executor.awaitTermination(5, TimeUnit.SECONDS)) {
+            executor.shutdownNow();
+        }
+    }
+
+    // ========================================
+    // ĐỌC TỆP
+    // ========================================
+
+    private List<ImportRow> parse(InputStream in) throws IOException {
+        List<ImportRow> rows = new ArrayList<>();
+        try (CsvReader reader = new CsvReader(in)) {
+            List<String> header = reader.readRow();
+            if (header == null) {
+                throw new BadRequestException("Tệp rỗng");
+            }
+            Map<String, Integer> columns = new HashMap<>();
+            for (int i = 0; i < header.size(); i++) {
+                columns.putIfAbsent(header.get(i).trim().toLowerCase(Locale.ROOT), i);
+            }
+            if (!columns.containsKey("hoten")) {
+                throw new BadRequestException("Thiếu cột hoTen ở dòng tiêu đề");
+            }
+            if (!columns.containsKey("hokhauid") && !columns.containsKey("sohokhau")) {
+                throw new BadRequestException("Thiếu cột hoKhauId hoặc soHoKhau ở dòng tiêu đề");
+            }
+
+            List<String> values;
+            while ((values = reader.readRow()) != null) {
+                if (values.stream().allMatch(String::isBlank)) {
+                    continue;
+                }
+                if (rows.size() >= maxRows) {
+                    throw new BadRequestException("Tệp vượt quá " + maxRows + " dòng dữ liệu, vui lòng chia nhỏ");
+                }
+                rows.add(toRow(reader.getRecordLine(), new RowValues(columns, values)));
+            }
+        }
+        return rows;
+    }
+
+    private ImportRow toRow(int dong, RowValues v) {
+        List<String> errors = new ArrayList<>();
+        NhanKhauRequestDto dto = NhanKhauRequestDto.builder()
+                .hoTen(v.text("hoTen"))
+                .ngaySinh(v.date("ngaySinh", "Ngày sinh", errors))
+                .gioiTinh(v.text("gioiTinh"))
+                .danToc(v.text("danToc"))
+                .quocTich(v.text("quocTich"))
+                .queQuan(v.text("queQuan"))
+                .ngheNghiep(v.text("ngheNghiep"))
+                .cmndCccd(v.text("cmndCccd"))
+                .ngayCap(v.date("ngayCap", "Ngày cấp", errors))
+                .noiCap(v.text("noiCap"))
+                .quanHeChuHo(v.text("quanHeChuHo"))
+                .ghiChu(v.text("ghiChu"))
+                .hoKhauId(v.id("hoKhauId", errors))
+                .build();
+
+        NhanKhauImportResponseDto.KetQuaDong ketQua = NhanKhauImportResponseDto.KetQuaDong.builder()
+                .dong(dong)
+                .hoTen(dto.getHoTen())
+                .cmndCccd(dto.getCmndCccd())
+                .hoKhauId(dto.getHoKhauId())
+                .loi(errors.isEmpty() ? null : String.join("; ", errors))
+                .build();
+        return new ImportRow(dto, v.text("soHoKhau"), ketQua);
+    }
+
+    /**
+     * Giá trị một dòng theo tên cột (không phân biệt hoa thường); ô trống = null.
+     */
+    private record RowValues(Map<String, Integer> columns, List<String> values) {
+
+        String text(String column) {
+            Integer idx = columns.get(column.toLowerCase(Locale.ROOT));
+            if (idx == null || idx >= values.size()) {
+                return null;
+            }
+            String value = values.get(idx).trim();
+            return value.isEmpty() ? null : value;
+        }
+
+        // yyyy-MM-dd hoặc dd/MM/yyyy (định dạng Excel tiếng Việt)
+        LocalDate date(String column, String label, List<String> errors) {
+            String value = text(column);
+            if (value == null) {
+                return null;
+            }
+            try {
+                return value.contains("/") ? LocalDate.parse(value, NGAY_VN) : LocalDate.parse(value);
+            } catch (DateTimeParseException ex) {
+                errors.add(label + " không hợp lệ: " + value);
+                return null;
+            }
+        }
+
+        Long id(String column, List<String> errors) {
+            String value = text(column);
+            if (value == null) {
+                return null;
+            }
+            try {
+                return Long.parseLong(value);
+            } catch (NumberFormatException ex) {
+                errors.add(column + " không hợp lệ: " + value);
+                return null;
+            }
+        }
+    }
+
+    // ========================================
+    // KIỂM TRA
+    // ========================================
+
+    private void resolveSoHoKhau(List<ImportRow> rows) {
+        Set<String> soHoKhaus = new LinkedHashSet<>();
+        for (ImportRow row : rows) {
+            if (row.ketQua().getLoi() == null && row.soHoKhau() != null) {
+                soHoKhaus.add(row.soHoKhau());
+            }
+        }
+        if (soHoKhaus.isEmpty()) {
+            return;
+        }
+
+        Map<String, Long> idBySoHoKhau = new HashMap<>();
+        forEachChunk(soHoKhaus, chunk -> hoKhauRepo.findBySoHoKhauIn(chunk)
+                .forEach(hk -> idBySoHoKhau.put(hk.getSoHoKhau(), hk.getId())));
+
+        for (ImportRow row : rows) {
+            if (row.ketQua().getLoi() != null || row.soHoKhau() == null) {
+                continue;
+            }
+            Long id = idBySoHoKhau.get(row.soHoKhau());
+            if (id == null) {
+                row.ketQua().setLoi("Không tìm thấy hộ khẩu số " + row.soHoKhau());
+            } else if (row.dto().getHoKhauId() != null && !row.dto().getHoKhauId().equals(id)) {
+                row.ketQua().setLoi("hoKhauId và soHoKhau không cùng một hộ khẩu");
+            } else {
+                row.dto().setHoKhauId(id);
+                row.ketQua().setHoKhauId(id);
+            }
+        }
+    }
+
+    private void validateRows(List<ImportRow> rows) {
+        if (rows.size() < PARALLEL_THRESHOLD || threads == 1) {
+            rows.forEach(this::validateRow);
+            return;
+        }
+
+        int chunkSize = (rows.size() + threads - 1) / threads;
+        List<Callable<Void>> tasks = new ArrayList<>();
+        for (int from = 0; from < rows.size(); from += chunkSize) {
+            List<ImportRow> chunk = rows.subList(from, Math.min(from + chunkSize, rows.size()));
+            tasks.add(() -> {
+                chunk.forEach(this::validateRow);
+                return null;
+            });
+        }
+        try {
+            for (Future<Void> future : executor.invokeAll(tasks)) {
+                future.get();
+            }
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Bị gián đoạn khi kiểm tra dữ liệu nhập", ex);
+        } catch (ExecutionException ex) {
+            throw new IllegalStateException("Lỗi khi kiểm tra dữ liệu nhập", ex.getCause());
+        }
+    }
+
+    // Giống kiểm tra của create: @Valid trên DTO, rồi quy tắc CMND/CCCD theo tuổi
+    private void validateRow(ImportRow row) {
+        if (row.ketQua().getLoi() != null) {
+            return;
+        }
+        Set<ConstraintViolation<NhanKhauRequestDto>> violations = validator.validate(row.dto());
+        if (!violations.isEmpty()) {
+            row.ketQua().setLoi(violations.stream()
+                    .map(ConstraintViolation::getMessage)
+                    .sorted()
+                    .collect(Collectors.joining("; ")));
+            return;
+        }
+        try {
+            NhanKhauService.validateCccdByAge(row.dto().getNgaySinh(), row.dto().getCmndCccd(),
+                    row.dto().getNgayCap(), row.dto().getNoiCap());
+        } catch (BadRequestException ex) {
+            row.ketQua().setLoi(ex.getMessage());
+        }
+    }
+
+    private Map<Long, HoKhau> loadHouseholds(List<ImportRow> rows) {
+        Set<Long> ids = new LinkedHashSet<>();
+        for (ImportRow row : rows) {
+            if (row.ketQua().getLoi() == null) {
+                ids.add(row.dto().getHoKhauId());
+            }
+        }
+        Map<Long, HoKhau> hoKhauById = new HashMap<>();
+        forEachChunk(ids, chunk -> hoKhauRepo.findAllById(chunk)
+                .forEach(hk -> hoKhauById.put(hk.getId(), hk)));
+        return hoKhauById;
+    }
+
+    private void checkHouseholds(List<ImportRow> rows, Map<Long, HoKhau> hoKhauById) {
+        for (ImportRow row : rows) {
+            if (row.ketQua().getLoi() == null && !hoKhauById.containsKey(row.dto().getHoKhauId())) {
+                row.ketQua().setLoi("Không tìm thấy hộ khẩu id = " + row.dto().getHoKhauId());
+            }
+        }
+    }
+
+    private void checkCmndCccd(List<ImportRow> rows) {
+        Map<String, Integer> firstLine = new HashMap<>();
+        for (ImportRow row : rows) {
+            String cccd = row.dto().getCmndCccd();
+            if (row.ketQua().getLoi() != null || cccd == null) {
+                continue;
+            }
+            Integer dong = firstLine.putIfAbsent(cccd, row.ketQua().getDong());
+            if (dong != null) {
+                row.ketQua().setLoi("Trùng CMND/CCCD với dòng " + dong + " trong tệp");
+            }
+        }
+        if (firstLine.isEmpty()) {
+            return;
+        }
+
+        Set<String> existing = new HashSet<>();
+        forEachChunk(firstLine.keySet(), chunk -> existing.addAll(nhanKhauRepo.findExistingCmndCccd(chunk)));
+        for (ImportRow row : rows) {
+            if (row.ketQua().getLoi() == null && existing.contains(row.dto().getCmndCccd())) {
+                row.ketQua().setLoi("Căn cước công dân đã tồn tại");
+            }
+        }
+    }
+
+    private void checkChuHo(List<ImportRow> rows) {
+        Map<Long, Integer> chuHoLine = new HashMap<>();
+        for (ImportRow row : rows) {
+            if (row.ketQua().getLoi() != null || !CHU_HO.equalsIgnoreCase(row.dto().getQuanHeChuHo())) {
+                continue;
+            }
+            Integer dong = chuHoLine.putIfAbsent(row.dto().getHoKhauId(), row.ketQua().getDong());
+            if (dong != null) {
+                row.ketQua().setLoi("Hộ khẩu đã có chủ hộ ở dòng " + dong + " trong tệp");
+            }
+        }
+    }
+
+    // ========================================
+    // HELPER
+    // ========================================
+
+    private static <T> void forEachChunk(Collection<T> values, Consumer<List<T>> action) {
+        List<T> list = new ArrayList<>(values);
+        for (int from = 0; from < list.size(); from += LOOKUP_CHUNK_SIZE) {
+            action.accept(list.subList(from, Math.min(from + LOOKUP_CHUNK_SIZE, list.size())));
+        }
+    }
+
+    private static NhanKhau toEntity(NhanKhauRequestDto dto) {
+        return NhanKhau.builder()
+                .hoTen(dto.getHoTen())
+                .ngaySinh(dto.getNgaySinh())
+                .gioiTinh(dto.getGioiTinh())
+                .danToc(dto.getDanToc())
+                .quocTich(dto.getQuocTich())
+                .queQuan(dto.getQueQuan())
+                .ngheNghiep(dto.getNgheNghiep())
+                .cmndCccd(dto.getCmndCccd())
+                .ngayCap(dto.getNgayCap())
+                .noiCap(dto.getNoiCap())
+                .quanHeChuHo(dto.getQuanHeChuHo())
+                .ghiChu(dto.getGhiChu())
+                .hoKhauId(dto.getHoKhauId())
+                .trangThai("THUONG_TRU")
+                .build();
+    }
+
+    private static String describeImport(List<NhanKhau> members) {
+        String names = members.stream()
+                .limit(MAX_TEN_TRONG_NHAT_KY)
+                .map(NhanKhau::getHoTen)
+                .collect(Collectors.joining(", "));
+        if (members.size() > MAX_TEN_TRONG_NHAT_KY) {
+            names += ", ... (+" + (members.size() - MAX_TEN_TRONG_NHAT_KY) + ")";
+        }
+        return "Nhập hàng loạt " + members.size() + " nhân khẩu: " + names;
+    }
+
+    private static NhanKhauImportResponseDto buildResponse(List<ImportRow> rows, boolean dryRun, int soHoKhau) {
+        List<NhanKhauImportResponseDto.KetQuaDong> ketQua = rows.stream().map(ImportRow::ketQua).toList();
+        int success = (int) ketQua.stream().filter(NhanKhauImportResponseDto.KetQuaDong::isThanhCong).count();
+        return NhanKhauImportResponseDto.builder()
+                .dryRun(dryRun)
+                .tongSo(ketQua.size())
+                .soThanhCong(success)
+                .soLoi(ketQua.size() - success)
+                .soHoKhau(success == 0 ? 0 : soHoKhau)
+                .ketQua(ketQua)
+                .build();
+    }
+}
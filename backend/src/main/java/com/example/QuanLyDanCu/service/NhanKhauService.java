@@ -1,17 +1,27 @@
 package com.example.QuanLyDanCu.service;
 
 import com.example.QuanLyDanCu.dto.request.DangKyTamTruTamVangRequestDto;
+import com.example.QuanLyDanCu.dto.request.NhanKhauFilterDto;
 import com.example.QuanLyDanCu.dto.request.NhanKhauRequestDto;
 import com.example.QuanLyDanCu.dto.request.NhanKhauUpdateDto;
+import com.example.QuanLyDanCu.dto.response.CursorPageResponseDto;
 import com.example.QuanLyDanCu.dto.response.NhanKhauResponseDto;
+import com.example.QuanLyDanCu.entity.ChiTietBienDong;
 import com.example.QuanLyDanCu.entity.NhanKhau;
 import com.example.QuanLyDanCu.enums.BienDongType;
 import com.example.QuanLyDanCu.exception.BadRequestException;
 import com.example.QuanLyDanCu.exception.BusinessException;
 import com.example.QuanLyDanCu.exception.NotFoundException;
+import com.example.QuanLyDanCu.event.HoKhauChangedEvent;
+import com.example.QuanLyDanCu.event.NhanKhauChangedEvent;
 import com.example.QuanLyDanCu.repository.HoKhauRepository;
 import com.example.QuanLyDanCu.repository.NhanKhauRepository;
+import com.example.QuanLyDanCu.repository.NhanKhauSearchRepository;
+import com.example.QuanLyDanCu.util.CursorUtils;
+import com.example.QuanLyDanCu.util.VietnameseText;
 import lombok.RequiredArgsConstructor;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.security.core.Authentication;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
@@ -24,10 +34,21 @@ import java.time.LocalDate;
 @Service
 @RequiredArgsConstructor
 public class NhanKhauService {
+    public static final int DEFAULT_PAGE_SIZE = 50;
+    public static final int MAX_PAGE_SIZE = 200;
+    // Tìm kiếm chỉ trả về tối đa bấy nhiêu kết quả liên quan nhất (qua mọi trang)
+    public static final int SEARCH_RESULT_CAP = 500;
+    public static final int DEFAULT_SEARCH_PAGE_SIZE = 20;
+    public static final int DEFAULT_AGE_BUCKET_WIDTH = 5;
+    public static final int DEFAULT_AGE_PYRAMID_MAX = 80;
+
     private final HoKhauRepository hoKhauRepo;
     private final NhanKhauRepository nhanKhauRepo;
+    private final NhanKhauSearchRepository nhanKhauSearchRepo;
+    private final NhanKhauStatsCache statsCache;
     private final BienDongService bienDongService;
-    private final ThuPhiHoKhauService thuPhiHoKhauService;
+    private final FeeRecalculationQueue feeRecalculationQueue;
+    private final ApplicationEventPublisher eventPublisher;
 
     // ========== DTO-based methods ==========
 
@@ -38,6 +59,49 @@ public class NhanKhauService {
                 .collect(Collectors.toList());
     }
 
+    // Lấy một trang nhân khẩu theo con trỏ (keyset trên id), có bộ lọc tùy chọn
+    public CursorPageResponseDto<NhanKhauResponseDto> getPage(NhanKhauFilterDto filter, String cursor, Integer size) {
+        int pageSize = size == null ? DEFAULT_PAGE_SIZE : size;
+        if (pageSize <= 0) {
+            throw new BadRequestException("Kích thước trang phải lớn hơn 0");
+        }
+        pageSize = Math.min(pageSize, MAX_PAGE_SIZE);
+
+        NhanKhauFilterDto f = filter != null ? filter : new NhanKhauFilterDto();
+        if (f.getNgaySinhTu() != null && f.getNgaySinhDen() != null
+                && f.getNgaySinhTu().isAfter(f.getNgaySinhDen())) {
+            throw new BadRequestException("Ngày sinh từ phải trước hoặc bằng ngày sinh đến");
+        }
+
+        long afterId = cursor == null || cursor.isBlank() ? 0L : CursorUtils.decodeId(cursor);
+
+        // Lấy dư 1 dòng để biết còn trang sau hay không
+        List<NhanKhau> rows = nhanKhauRepo.findPageAfterId(
+                afterId,
+                f.getHoKhauId(),
+                f.getTrangThai(),
+                f.getGioiTinh(),
+                f.getNgaySinhTu(),
+                f.getNgaySinhDen(),
+                PageRequest.of(0, pageSize + 1));
+
+        boolean hasMore = rows.size() > pageSize;
+        List<NhanKhau> pageRows = hasMore ? rows.subList(0, pageSize) : rows;
+
+        List<NhanKhauResponseDto> items = pageRows.stream()
+                .map(this::toResponseDTO)
+                .collect(Collectors.toList());
+
+        String nextCursor = hasMore ? CursorUtils.encode(pageRows.get(pageRows.size() - 1).getId()) : null;
+
+        return CursorPageResponseDto.<NhanKhauResponseDto>builder()
+                .items(items)
+                .size(items.size())
+                .hasMore(hasMore)
+                .nextCursor(nextCursor)
+                .build();
+    }
+
     // Lấy nhân khẩu theo id (DTO)
     public NhanKhauResponseDto getById(Long id) {
         NhanKhau nk = nhanKhauRepo.findById(id)
@@ -55,6 +119,30 @@ public class NhanKhauService {
         return nhanKhaus.stream().map(this::toResponseDTO).collect(Collectors.toList());
     }
 
+    // Lấy thành viên của nhiều hộ khẩu trong một lượt truy vấn, nhóm theo hộ
+    public Map<Long, List<NhanKhauResponseDto>> getAllByHoKhauIds(Collection<Long> hoKhauIds) {
+        Map<Long, List<NhanKhauResponseDto>> result = new HashMap<>();
+        if (hoKhauIds == null || hoKhauIds.isEmpty()) {
+            return result;
+        }
+        for (NhanKhau nk : nhanKhauRepo.findByHoKhauIdInOrderByIdAsc(hoKhauIds)) {
+            result.computeIfAbsent(nk.getHoKhauId(), k -> new ArrayList<>()).add(toResponseDTO(nk));
+        }
+        return result;
+    }
+
+    // Đếm số thành viên của nhiều hộ khẩu bằng một câu GROUP BY
+    public Map<Long, Long> countByHoKhauIds(Collection<Long> hoKhauIds) {
+        Map<Long, Long> result = new HashMap<>();
+        if (hoKhauIds == null || hoKhauIds.isEmpty()) {
+            return result;
+        }
+        for (var row : nhanKhauRepo.countByHoKhauIds(hoKhauIds)) {
+            result.put(row.getHoKhauId(), row.getTotal());
+        }
+        return result;
+    }
+
     // Thêm nhân khẩu mới (DTO)
     @Transactional
     public NhanKhauResponseDto create(NhanKhauRequestDto dto, Authentication auth) {
@@ -116,6 +204,7 @@ public class NhanKhauService {
                 saved.getId());
 
         triggerFeeRecalculation(saved.getHoKhauId());
+        publishChange(NhanKhauChangedEvent.Type.CREATED, saved.getId(), saved.getHoKhauId());
 
         return toResponseDTO(saved);
     }
@@ -174,91 +263,91 @@ public class NhanKhauService {
             String newVal = dto.getHoTen();
             existing.setHoTen(newVal);
             changed = true;
-            addChangeLog(pendingLogs, "họ tên", oldVal, newVal);
+            addChangeLog(pendingLogs, "hoTen", "họ tên", oldVal, newVal);
         }
         if (dto.getNgaySinh() != null && !Objects.equals(existing.getNgaySinh(), dto.getNgaySinh())) {
             LocalDate oldVal = existing.getNgaySinh();
             LocalDate newVal = dto.getNgaySinh();
             existing.setNgaySinh(newVal);
             changed = true;
-            addChangeLog(pendingLogs, "ngày sinh", oldVal, newVal);
+            addChangeLog(pendingLogs, "ngaySinh", "ngày sinh", oldVal, newVal);
         }
         if (dto.getGioiTinh() != null && !Objects.equals(existing.getGioiTinh(), dto.getGioiTinh())) {
             String oldVal = existing.getGioiTinh();
             String newVal = dto.getGioiTinh();
             existing.setGioiTinh(newVal);
             changed = true;
-            addChangeLog(pendingLogs, "giới tính", oldVal, newVal);
+            addChangeLog(pendingLogs, "gioiTinh", "giới tính", oldVal, newVal);
         }
         if (dto.getDanToc() != null && !Objects.equals(existing.getDanToc(), dto.getDanToc())) {
             String oldVal = existing.getDanToc();
             String newVal = dto.getDanToc();
             existing.setDanToc(newVal);
             changed = true;
-            addChangeLog(pendingLogs, "dân tộc", oldVal, newVal);
+            addChangeLog(pendingLogs, "danToc", "dân tộc", oldVal, newVal);
         }
         if (dto.getQuocTich() != null && !Objects.equals(existing.getQuocTich(), dto.getQuocTich())) {
             String oldVal = existing.getQuocTich();
             String newVal = dto.getQuocTich();
             existing.setQuocTich(newVal);
             changed = true;
-            addChangeLog(pendingLogs, "quốc tịch", oldVal, newVal);
+            addChangeLog(pendingLogs, "quocTich", "quốc tịch", oldVal, newVal);
         }
         if (dto.getQueQuan() != null && !Objects.equals(existing.getQueQuan(), dto.getQueQuan())) {
             String oldVal = existing.getQueQuan();
             String newVal = dto.getQueQuan();
             existing.setQueQuan(newVal);
             changed = true;
-            addChangeLog(pendingLogs, "quê quán", oldVal, newVal);
+            addChangeLog(pendingLogs, "queQuan", "quê quán", oldVal, newVal);
         }
         if (dto.getNgheNghiep() != null && !Objects.equals(existing.getNgheNghiep(), dto.getNgheNghiep())) {
             String oldVal = existing.getNgheNghiep();
             String newVal = dto.getNgheNghiep();
             existing.setNgheNghiep(newVal);
             changed = true;
-            addChangeLog(pendingLogs, "nghề nghiệp", oldVal, newVal);
+            addChangeLog(pendingLogs, "ngheNghiep", "nghề nghiệp", oldVal, newVal);
         }
         if (dto.getCmndCccd() != null && !Objects.equals(existing.getCmndCccd(), dto.getCmndCccd())) {
             String oldVal = existing.getCmndCccd();
             String newVal = dto.getCmndCccd();
             existing.setCmndCccd(newVal);
             changed = true;
-            addChangeLog(pendingLogs, "CMND/CCCD", oldVal, newVal);
+            addChangeLog(pendingLogs, "cmndCccd", "CMND/CCCD", oldVal, newVal);
         }
         if (dto.getNgayCap() != null && !Objects.equals(existing.getNgayCap(), dto.getNgayCap())) {
             LocalDate oldVal = existing.getNgayCap();
             LocalDate newVal = dto.getNgayCap();
             existing.setNgayCap(newVal);
             changed = true;
-            addChangeLog(pendingLogs, "ngày cấp CMND/CCCD", oldVal, newVal);
+            addChangeLog(pendingLogs, "ngayCap", "ngày cấp CMND/CCCD", oldVal, newVal);
         }
         if (dto.getNoiCap() != null && !Objects.equals(existing.getNoiCap(), dto.getNoiCap())) {
             String oldVal = existing.getNoiCap();
             String newVal = dto.getNoiCap();
             existing.setNoiCap(newVal);
             changed = true;
-            addChangeLog(pendingLogs, "nơi cấp CMND/CCCD", oldVal, newVal);
+            addChangeLog(pendingLogs, "noiCap", "nơi cấp CMND/CCCD", oldVal, newVal);
         }
         if (dto.getQuanHeChuHo() != null && !Objects.equals(existing.getQuanHeChuHo(), dto.getQuanHeChuHo())) {
             String oldVal = existing.getQuanHeChuHo();
             String newVal = dto.getQuanHeChuHo();
             existing.setQuanHeChuHo(newVal);
             changed = true;
-            addChangeLog(pendingLogs, "quan hệ với chủ hộ", oldVal, newVal);
+            addChangeLog(pendingLogs, "quanHeChuHo", "quan hệ với chủ hộ", oldVal, newVal);
         }
         if (dto.getGhiChu() != null && !Objects.equals(existing.getGhiChu(), dto.getGhiChu())) {
             String oldVal = existing.getGhiChu();
             String newVal = dto.getGhiChu();
             existing.setGhiChu(newVal);
             changed = true;
-            addChangeLog(pendingLogs, "ghi chú", oldVal, newVal);
+            addChangeLog(pendingLogs, "ghiChu", "ghi chú", oldVal, newVal);
         }
         if (dto.getTrangThai() != null && !Objects.equals(existing.getTrangThai(), dto.getTrangThai())) {
             String oldVal = existing.getTrangThai();
             String newVal = dto.getTrangThai();
             existing.setTrangThai(newVal);
             changed = true;
-            addChangeLog(pendingLogs, "trạng thái", oldVal, newVal);
+            addChangeLog(pendingLogs, "trangThai", "trạng thái", oldVal, newVal);
         }
         if (dto.getHoKhauId() != null && !Objects.equals(existing.getHoKhauId(), dto.getHoKhauId())) {
             // STRICT_RULE_TRANSFER: Kiểm tra trước khi chuyển
@@ -285,7 +374,13 @@ public class NhanKhauService {
                     BienDongType.CHUYEN_DEN,
                     String.format("Nhân khẩu %s chuyển đến hộ %s", existing.getHoTen(), newHoKhauId),
                     newHoKhauId,
-                    nk.getId()));
+                    nk.getId(),
+                    ChiTietBienDong.builder()
+                            .truong("hoKhauId")
+                            .nhan("hộ khẩu")
+                            .giaTriCu(oldHoKhauId == null ? null : oldHoKhauId.toString())
+                            .giaTriMoi(newHoKhauId.toString())
+                            .build()));
         }
 
         // STRICT_RULE_UPDATE: Nếu đặt người này là "Chủ hộ", phải hủy quyền chủ hộ của
@@ -391,6 +486,7 @@ public class NhanKhauService {
         }
 
         triggerFeeRecalculation(saved.getHoKhauId());
+        publishChange(NhanKhauChangedEvent.Type.UPDATED, saved.getId(), oldHoKhauId, saved.getHoKhauId());
 
         return toResponseDTO(saved);
     }
@@ -415,6 +511,7 @@ public class NhanKhauService {
         // CASE: Remove detached resident (e.g. Deceased) -> No household checks needed
         if (hoKhauId == null) {
             nhanKhauRepo.delete(nk);
+            publishChange(NhanKhauChangedEvent.Type.DELETED, id);
             return;
         }
 
@@ -432,6 +529,7 @@ public class NhanKhauService {
 
         nhanKhauRepo.delete(nk);
         triggerFeeRecalculation(hoKhauId);
+        publishChange(NhanKhauChangedEvent.Type.DELETED, id, hoKhauId);
 
         // STRICT_RULE_DELETE: Nếu đây là người sống cuối cùng (livingMembers <= 1), xóa
         // luôn hộ khẩu.
@@ -487,6 +585,7 @@ public class NhanKhauService {
         bienDongService.log(BienDongType.TAM_TRU, content, nk.getHoKhauId(), nk.getId());
 
         NhanKhau saved = nhanKhauRepo.save(nk);
+        publishChange(NhanKhauChangedEvent.Type.TAM_TRU, saved.getId(), saved.getHoKhauId());
 
         return toResponseDTO(saved);
     }
@@ -513,6 +612,7 @@ public class NhanKhauService {
                 existing.getHoKhauId(),
                 existing.getId());
         nhanKhauRepo.save(existing);
+        publishChange(NhanKhauChangedEvent.Type.HUY_TAM_TRU, existing.getId(), existing.getHoKhauId());
     }
 
     // --- TẠM VẮNG ---
@@ -537,6 +637,7 @@ public class NhanKhauService {
         NhanKhau saved = nhanKhauRepo.save(nk);
 
         triggerFeeRecalculation(saved.getHoKhauId());
+        publishChange(NhanKhauChangedEvent.Type.TAM_VANG, saved.getId(), saved.getHoKhauId());
 
         return toResponseDTO(saved);
     }
@@ -564,6 +665,7 @@ public class NhanKhauService {
                 existing.getId());
         nhanKhauRepo.save(existing);
         triggerFeeRecalculation(existing.getHoKhauId());
+        publishChange(NhanKhauChangedEvent.Type.HUY_TAM_VANG, existing.getId(), existing.getHoKhauId());
     }
 
     // --- KHAI TỬ ---
@@ -596,11 +698,14 @@ public class NhanKhauService {
 
         NhanKhau saved = nhanKhauRepo.save(nk);
 
+        Long hoKhauId = saved.getHoKhauId();
+
         // STRICT_RULE_DEATH: Nếu là người sống cuối cùng -> Xóa luôn hộ khẩu
         if (livingMembers <= 1) {
-            hoKhauRepo.findById(saved.getHoKhauId()).ifPresent(hk -> {
+            hoKhauRepo.findById(hoKhauId).ifPresent(hk -> {
                 hk.setIsDeleted(true);
                 hoKhauRepo.save(hk);
+                eventPublisher.publishEvent(new HoKhauChangedEvent(HoKhauChangedEvent.Type.DELETED, hk.getId()));
             });
         }
 
@@ -608,25 +713,117 @@ public class NhanKhauService {
         nk.setHoKhauId(null);
         nk.setQuanHeChuHo(null);
         nhanKhauRepo.save(nk);
+        publishChange(NhanKhauChangedEvent.Type.KHAI_TU, saved.getId(), hoKhauId);
 
         return toResponseDTO(saved);
     }
 
-    // Search theo tên
-    public java.util.List<com.example.QuanLyDanCu.entity.NhanKhau> searchByName(String keyword) {
-        if (keyword == null || keyword.isBlank())
-            return java.util.Collections.emptyList();
-        return nhanKhauRepo.findByHoTenContainingIgnoreCase(keyword.trim());
+    // Search theo tên (API cũ): trang đầu của tìm kiếm không dấu, không phân trang
+    public List<NhanKhauResponseDto> searchDtoByName(String keyword) {
+        if (String.join("", VietnameseText.tokens(keyword)).length() < 2) {
+            return Collections.emptyList();
+        }
+        return search(keyword, null, MAX_PAGE_SIZE).getItems();
     }
 
-    public List<NhanKhauResponseDto> searchDtoByName(String keyword) {
-        return searchByName(keyword).stream()
+    /**
+     * Tìm nhân khẩu theo họ tên hoặc CMND/CCCD, không phân biệt dấu / hoa thường
+     * ("nguyen" khớp "Nguyễn"), chịu được gõ sai nhẹ. Từ khóa toàn chữ số được tìm theo CMND/CCCD.
+     * Kết quả xếp theo độ liên quan, phân trang theo con trỏ (score, id), tối đa SEARCH_RESULT_CAP dòng.
+     */
+    public CursorPageResponseDto<NhanKhauResponseDto> search(String q, String cursor, Integer size) {
+        int pageSize = size == null ? DEFAULT_SEARCH_PAGE_SIZE : size;
+        if (pageSize <= 0) {
+            throw new BadRequestException("Kích thước trang phải lớn hơn 0");
+        }
+        pageSize = Math.min(pageSize, MAX_PAGE_SIZE);
+
+        String tuKhoa = String.join(" ", VietnameseText.tokens(q));
+        if (tuKhoa.replace(" ", "").length() < 2) {
+            throw new BadRequestException("Từ khóa tìm kiếm phải có ít nhất 2 ký tự chữ hoặc số");
+        }
+
+        Float beforeScore = null;
+        Long afterId = null;
+        int daTra = 0;
+        if (cursor != null && !cursor.isBlank()) {
+            String[] parts = CursorUtils.decode(cursor, 3);
+            try {
+                beforeScore = Float.parseFloat(parts[0]);
+                afterId = Long.parseLong(parts[1]);
+                daTra = Integer.parseInt(parts[2]);
+            } catch (NumberFormatException ex) {
+                throw new BadRequestException("Cursor không hợp lệ");
+            }
+            // Cursor do client gửi lại: số đã trả âm sẽ vượt giới hạn SEARCH_RESULT_CAP
+            if (daTra < 0 || daTra > SEARCH_RESULT_CAP) {
+                throw new BadRequestException("Cursor không hợp lệ");
+            }
+        }
+
+        int remaining = SEARCH_RESULT_CAP - daTra;
+        if (remaining <= 0) {
+            return CursorPageResponseDto.<NhanKhauResponseDto>builder()
+                    .items(List.of())
+                    .size(0)
+                    .hasMore(false)
+                    .build();
+        }
+        pageSize = Math.min(pageSize, remaining);
+
+        // Lấy dư 1 dòng để biết còn trang sau hay không
+        boolean laSoGiayTo = tuKhoa.chars().allMatch(Character::isDigit);
+        List<NhanKhauSearchRepository.Hit> hits = laSoGiayTo
+                ? nhanKhauSearchRepo.searchByCmndCccd(tuKhoa, beforeScore, afterId, pageSize + 1)
+                : nhanKhauSearchRepo.searchByTen(tuKhoa, beforeScore, afterId, pageSize + 1);
+
+        boolean hasMore = hits.size() > pageSize && daTra + pageSize < SEARCH_RESULT_CAP;
+        List<NhanKhauSearchRepository.Hit> pageHits = hits.size() > pageSize ? hits.subList(0, pageSize) : hits;
+
+        // Nạp thực thể bằng một câu IN rồi giữ nguyên thứ tự liên quan
+        Map<Long, NhanKhau> byId = nhanKhauRepo.findAllById(
+                        pageHits.stream().map(NhanKhauSearchRepository.Hit::id).toList())
+                .stream()
+                .collect(Collectors.toMap(NhanKhau::getId, nk -> nk));
+        List<NhanKhauResponseDto> items = pageHits.stream()
+                .map(hit -> byId.get(hit.id()))
+                .filter(Objects::nonNull)
                 .map(this::toResponseDTO)
-                .toList();
+                .collect(Collectors.toList());
+
+        String nextCursor = null;
+        if (hasMore) {
+            NhanKhauSearchRepository.Hit last = pageHits.get(pageHits.size() - 1);
+            nextCursor = CursorUtils.encode(Float.toString(last.score()), last.id(), daTra + pageHits.size());
+        }
+
+        return CursorPageResponseDto.<NhanKhauResponseDto>builder()
+                .items(items)
+                .size(items.size())
+                .hasMore(hasMore)
+                .nextCursor(nextCursor)
+                .build();
+    }
+
+    // Các thống kê dashboard được cache (xem NhanKhauStatsCache), Map trả về là bất biến
+    public Map<String, Object> statsGender() {
+        return statsCache.get(NhanKhauStatsCache.Loai.GENDER, () -> Collections.unmodifiableMap(computeStatsGender()));
+    }
+
+    public Map<String, Object> statsByAge() {
+        return statsCache.get(NhanKhauStatsCache.Loai.AGE, () -> Collections.unmodifiableMap(computeStatsByAge()));
+    }
+
+    public Map<String, Object> statsByStatus() {
+        return statsCache.get(NhanKhauStatsCache.Loai.STATUS, () -> Collections.unmodifiableMap(computeStatsByStatus()));
+    }
+
+    public Map<String, Object> getStatsCacheStats() {
+        return statsCache.getStats();
     }
 
     // Thống kê giới tính (toàn bộ)
-    public java.util.Map<String, Object> statsGender() {
+    private java.util.Map<String, Object> computeStatsGender() {
         var rows = nhanKhauRepo.countByGioiTinh();
         long total = 0;
         java.util.Map<String, Long> byGender = new java.util.LinkedHashMap<>();
@@ -642,35 +839,29 @@ public class NhanKhauService {
     }
 
     // Thống kê theo tuổi: thiếu nhi / đi làm / về hưu
-    public Map<String, Object> statsByAge() {
-
-        LocalDate now = LocalDate.now();
-
+    private Map<String, Object> computeStatsByAge() {
+        long total = 0;
         long diHoc = 0;
         long diLam = 0;
         long veHuu = 0;
 
-        List<NhanKhau> all = nhanKhauRepo.findAll().stream()
-                .filter(nk -> !"KHAI_TU".equals(nk.getTrangThai()))
-                .collect(Collectors.toList());
-
-        for (NhanKhau nk : all) {
-            if (nk.getNgaySinh() == null)
+        for (var r : nhanKhauRepo.countByTuoi(LocalDate.now())) {
+            total += r.getTotal();
+            if (r.getTuoi() == null)
                 continue;
 
-            int age = java.time.Period.between(nk.getNgaySinh(), now).getYears();
-
+            int age = r.getTuoi();
             if (age <= 16) {
-                diHoc++;
+                diHoc += r.getTotal();
             } else if (age < 60) {
-                diLam++;
+                diLam += r.getTotal();
             } else {
-                veHuu++;
+                veHuu += r.getTotal();
             }
         }
 
         Map<String, Object> result = new LinkedHashMap<>();
-        result.put("total", all.size());
+        result.put("total", total);
 
         result.put("diHoc", Map.of(
                 "label", "Đi học (≤16 tuổi)",
@@ -685,8 +876,76 @@ public class NhanKhauService {
         return result;
     }
 
+    /**
+     * Tháp dân số: nhóm tuổi rộng doRong năm (nhóm cuối "tuoiToiDa+" gom phần còn lại),
+     * mỗi nhóm chia theo giới tính và trạng thái. Một câu GROUP BY, không nạp thực thể.
+     *
+     * @param trangThai chỉ đếm nhân khẩu ở trạng thái này (null = tất cả, trừ khai tử)
+     */
+    public Map<String, Object> statsAgePyramid(Integer doRong, Integer tuoiToiDa, String trangThai) {
+        int width = doRong == null ? DEFAULT_AGE_BUCKET_WIDTH : doRong;
+        int max = tuoiToiDa == null ? DEFAULT_AGE_PYRAMID_MAX : tuoiToiDa;
+        if (width < 1 || width > 50) {
+            throw new BadRequestException("Độ rộng nhóm tuổi phải từ 1 đến 50");
+        }
+        if (max < width || max > 150) {
+            throw new BadRequestException("Tuổi tối đa phải từ " + width + " đến 150");
+        }
+        // Nhóm cuối bắt đầu ở bội số của doRong để mọi nhóm đều đủ rộng
+        int openFrom = max / width * width;
+        int bucketCount = openFrom / width + 1;
+
+        List<Map<String, Long>> byGioiTinh = new ArrayList<>();
+        List<Map<String, Long>> byTrangThai = new ArrayList<>();
+        long[] tong = new long[bucketCount];
+        for (int i = 0; i < bucketCount; i++) {
+            byGioiTinh.add(new LinkedHashMap<>());
+            byTrangThai.add(new LinkedHashMap<>());
+        }
+        long total = 0;
+        long khongRoNgaySinh = 0;
+
+        for (var r : nhanKhauRepo.countByTuoi(LocalDate.now())) {
+            if (trangThai != null && !trangThai.equals(r.getTrangThai()))
+                continue;
+            total += r.getTotal();
+            // Tuổi âm = ngày sinh trong tương lai (dữ liệu sai), coi như không rõ
+            if (r.getTuoi() == null || r.getTuoi() < 0) {
+                khongRoNgaySinh += r.getTotal();
+                continue;
+            }
+
+            int idx = Math.min(r.getTuoi() / width, bucketCount - 1);
+            String gioiTinh = r.getGioiTinh() == null ? "Không xác định" : r.getGioiTinh();
+            byGioiTinh.get(idx).merge(gioiTinh, r.getTotal(), Long::sum);
+            byTrangThai.get(idx).merge(r.getTrangThai(), r.getTotal(), Long::sum);
+            tong[idx] += r.getTotal();
+        }
+
+        List<Map<String, Object>> nhom = new ArrayList<>();
+        for (int i = 0; i < bucketCount; i++) {
+            int tu = i * width;
+            boolean last = i == bucketCount - 1;
+            Map<String, Object> item = new LinkedHashMap<>();
+            item.put("tu", tu);
+            item.put("den", last ? null : tu + width - 1);
+            item.put("label", last ? tu + "+" : tu + "–" + (tu + width - 1));
+            item.put("soNguoi", tong[i]);
+            item.put("byGioiTinh", byGioiTinh.get(i));
+            item.put("byTrangThai", byTrangThai.get(i));
+            nhom.add(item);
+        }
+
+        Map<String, Object> out = new LinkedHashMap<>();
+        out.put("total", total);
+        out.put("khongRoNgaySinh", khongRoNgaySinh);
+        out.put("doRong", width);
+        out.put("nhom", nhom);
+        return out;
+    }
+
     // Thống kê theo trạng thái (Tạm trú / Tạm vắng / Thường trú)
-    public Map<String, Object> statsByStatus() {
+    private Map<String, Object> computeStatsByStatus() {
         var rows = nhanKhauRepo.countByTrangThai();
         long total = 0;
         Map<String, Long> byStatus = new LinkedHashMap<>();
@@ -718,23 +977,38 @@ public class NhanKhauService {
         return out;
     }
 
+    /**
+     * Phát sự kiện thay đổi nhân khẩu; listener (cache, ...) chỉ chạy sau khi commit.
+     */
+    private void publishChange(NhanKhauChangedEvent.Type type, Long nhanKhauId, Long... hoKhauIds) {
+        Set<Long> affected = Arrays.stream(hoKhauIds)
+                .filter(Objects::nonNull)
+                .collect(Collectors.toCollection(LinkedHashSet::new));
+        eventPublisher.publishEvent(new NhanKhauChangedEvent(type, nhanKhauId, affected));
+    }
+
+    // Tính lại phí sau khi commit, gộp các yêu cầu trùng hộ (xem FeeRecalculationQueue)
     private void triggerFeeRecalculation(Long hoKhauId) {
-        if (hoKhauId == null) {
-            return;
-        }
-        thuPhiHoKhauService.recalculateForHousehold(hoKhauId);
+        feeRecalculationQueue.enqueue(hoKhauId);
     }
 
     // --- helper ---
 
-    private void addChangeLog(List<Consumer<NhanKhau>> pendingLogs, String fieldLabel, Object oldValue,
-            Object newValue) {
+    private void addChangeLog(List<Consumer<NhanKhau>> pendingLogs, String field, String fieldLabel,
+            Object oldValue, Object newValue) {
+        final ChiTietBienDong chiTiet = ChiTietBienDong.builder()
+                .truong(field)
+                .nhan(fieldLabel)
+                .giaTriCu(oldValue == null ? null : oldValue.toString())
+                .giaTriMoi(newValue == null ? null : newValue.toString())
+                .build();
         final String message = formatChange(fieldLabel, oldValue, newValue);
         pendingLogs.add(nk -> bienDongService.log(
                 BienDongType.THAY_DOI_THONG_TIN,
                 message,
                 nk.getHoKhauId(),
-                nk.getId()));
+                nk.getId(),
+                chiTiet));
     }
 
     private String formatChange(String fieldLabel, Object oldValue, Object newValue) {
@@ -754,7 +1028,7 @@ public class NhanKhauService {
      * - If age >= 14: all CCCD fields required, ngayCap must be >= ngaySinh + 14
      * years and <= today
      */
-    private void validateCccdByAge(LocalDate ngaySinh, String cmndCccd, LocalDate ngayCap, String noiCap) {
+    static void validateCccdByAge(LocalDate ngaySinh, String cmndCccd, LocalDate ngayCap, String noiCap) {
         if (ngaySinh == null) {
             throw new BadRequestException("Ngày sinh không được để trống");
         }
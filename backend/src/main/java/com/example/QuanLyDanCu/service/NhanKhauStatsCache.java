@@ -0,0 +1,253 @@
+package com.example.QuanLyDanCu.service;
+
+import com.example.QuanLyDanCu.event.HoKhauChangedEvent;
+import com.example.QuanLyDanCu.event.NhanKhauChangedEvent;
+import com.example.QuanLyDanCu.event.NhanKhauImportedEvent;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Cache thống kê nhân khẩu cho dashboard (giới tính / độ tuổi / trạng thái), kiểu
+ * stale-while-revalidate.
+ *
+ * <ul>
+ * <li>Chỉ lần đầu tiên (chưa có giá trị nào) mới tính đồng bộ; sau đó giá trị đã cũ
+ * vẫn được trả ngay và một luồng nền tính lại (mỗi loại tối đa một lần tính cùng lúc).</li>
+ * <li>Sự kiện nhân khẩu (sau commit) chỉ đánh dấu cũ các loại bị ảnh hưởng:
+ * tạm trú / tạm vắng chỉ đổi thống kê trạng thái. Xóa hộ khẩu làm cũ cả ba loại.</li>
+ * <li>Thống kê độ tuổi gắn với ngày tính: sang ngày mới là cũ; job lúc 0h tính sẵn.</li>
+ * <li>Bộ đếm thế hệ theo từng loại: kết quả tính trước khi có thay đổi vẫn được lưu
+ * (mới hơn bản đang có) nhưng giữ trạng thái cũ để lần đọc sau tính lại.</li>
+ * </ul>
+ */
+@Component
+@Slf4j
+public class NhanKhauStatsCache {
+
+    public enum Loai {
+        GENDER,
+        AGE,
+        STATUS
+    }
+
+    private final Map<Loai, Slot> slots = new EnumMap<>(Loai.class);
+    private final ExecutorService executor;
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong staleHits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong refreshes = new AtomicLong();
+    private final AtomicLong refreshFailures = new AtomicLong();
+    private final AtomicLong invalidations = new AtomicLong();
+
+    public NhanKhauStatsCache() {
+        for (Loai loai : Loai.values()) {
+            slots.put(loai, new Slot());
+        }
+        this.executor = Executors.newSingleThreadExecutor(r -> {
+            Thread t = new Thread(r, "nhan-khau-stats-refresh");
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    /**
+     * Lấy thống kê từ cache. Giá trị cũ được trả ngay, việc tính lại chạy nền.
+     */
+    public Map<String, Object> get(Loai loai, Supplier<Map<String, Object>> loader) {
+        Slot slot = slots.get(loai);
+        LocalDate today = LocalDate.now();
+        Entry cached;
+        boolean refresh = false;
+
+        synchronized (slot) {
+            cached = slot.entry;
+            if (cached != null) {
+                if (isFresh(loai, slot, cached, today)) {
+                    hits.incrementAndGet();
+                    return cached.value;
+                }
+                staleHits.incrementAndGet();
+                if (!slot.refreshing) {
+                    slot.refreshing = true;
+                    slot.loader = loader;
+                    refresh = true;
+                }
+            }
+        }
+
+        if (cached != null) {
+            if (refresh) {
+                executor.execute(() -> refresh(loai));
+            }
+            return cached.value;
+        }
+
+        // Chưa có giá trị nào: bắt buộc tính đồng bộ
+        misses.incrementAndGet();
+        long startGeneration;
+        synchronized (slot) {
+            startGeneration = slot.generation;
+            slot.loader = loader;
+        }
+        Map<String, Object> value = loader.get();
+        store(slot, value, today, startGeneration);
+        return value;
+    }
+
+    /**
+     * Đánh dấu cũ các loại thống kê; lần đọc sau vẫn trả giá trị cũ và tính lại nền.
+     */
+    public void invalidate(Set<Loai> loais) {
+        for (Loai loai : loais) {
+            Slot slot = slots.get(loai);
+            synchronized (slot) {
+                slot.generation++;
+            }
+            invalidations.incrementAndGet();
+        }
+    }
+
+    public Map<String, Object> getStats() {
+        long hitCount = hits.get();
+        long staleCount = staleHits.get();
+        long missCount = misses.get();
+        long total = hitCount + staleCount + missCount;
+
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("hits", hitCount);
+        stats.put("staleHits", staleCount);
+        stats.put("misses", missCount);
+        stats.put("hitRate", total == 0 ? 0.0 : (double) (hitCount + staleCount) / total);
+        stats.put("refreshes", refreshes.get());
+        stats.put("refreshFailures", refreshFailures.get());
+        stats.put("invalidations", invalidations.get());
+
+        Map<String, Object> byLoai = new LinkedHashMap<>();
+        LocalDate today = LocalDate.now();
+        for (Loai loai : Loai.values()) {
+            Slot slot = slots.get(loai);
+            Map<String, Object> info = new LinkedHashMap<>();
+            synchronized (slot) {
+                info.put("cached", slot.entry != null);
+                info.put("fresh", slot.entry != null && isFresh(loai, slot, slot.entry, today));
+                info.put("refreshing", slot.refreshing);
+                info.put("computedAt", slot.entry == null ? null : slot.entry.computedAt);
+            }
+            byLoai.put(loai.name(), info);
+        }
+        stats.put("entries", byLoai);
+        return stats;
+    }
+
+    // Lúc 0h: tuổi thay đổi theo ngày -> tính sẵn để dashboard sáng sớm không thấy số cũ
+    @Scheduled(cron = "${app.nhan-khau.stats-cache.age-rollover-cron:5 0 0 * * *}")
+    public void rolloverAgeStats() {
+        Slot slot = slots.get(Loai.AGE);
+        synchronized (slot) {
+            if (slot.entry == null || slot.loader == null || slot.refreshing) {
+                return;
+            }
+            slot.refreshing = true;
+        }
+        executor.execute(() -> refresh(Loai.AGE));
+    }
+
+    @PreDestroy
+    public void shutdown() throws InterruptedException {
+        executor.shutdown();
+        if (!executor.awaitTermination(5, TimeUnit.SECONDS)) {
+            executor.shutdownNow();
+        }
+    }
+
+    // ========================================
+    // EVENT LISTENERS (sau khi commit)
+    // ========================================
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onNhanKhauChanged(NhanKhauChangedEvent event) {
+        switch (event.getType()) {
+            // Chỉ đổi trạng thái cư trú
+            case TAM_TRU, HUY_TAM_TRU, TAM_VANG, HUY_TAM_VANG -> invalidate(Set.of(Loai.STATUS));
+            // Thêm / bớt người, hoặc có thể đổi giới tính, ngày sinh, trạng thái
+            case CREATED, UPDATED, DELETED, KHAI_TU -> invalidate(Set.of(Loai.values()));
+        }
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onNhanKhauImported(NhanKhauImportedEvent event) {
+        invalidate(Set.of(Loai.values()));
+    }
+
+    // Xóa hộ khẩu xóa luôn nhân khẩu của hộ (ON DELETE CASCADE) mà không phát sự kiện nhân khẩu
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onHoKhauChanged(HoKhauChangedEvent event) {
+        if (event.getType() == HoKhauChangedEvent.Type.DELETED) {
+            invalidate(Set.of(Loai.values()));
+        }
+    }
+
+    private void refresh(Loai loai) {
+        Slot slot = slots.get(loai);
+        Supplier<Map<String, Object>> loader;
+        long startGeneration;
+        synchronized (slot) {
+            loader = slot.loader;
+            startGeneration = slot.generation;
+        }
+        try {
+            LocalDate today = LocalDate.now();
+            store(slot, loader.get(), today, startGeneration);
+            refreshes.incrementAndGet();
+        } catch (RuntimeException ex) {
+            // Giữ giá trị cũ; lần đọc sau sẽ thử lại
+            refreshFailures.incrementAndGet();
+            log.warn("Refreshing resident statistics {} failed", loai, ex);
+        } finally {
+            synchronized (slot) {
+                slot.refreshing = false;
+            }
+        }
+    }
+
+    private void store(Slot slot, Map<String, Object> value, LocalDate refDate, long startGeneration) {
+        synchronized (slot) {
+            slot.entry = new Entry(value, refDate, startGeneration, LocalDateTime.now());
+        }
+    }
+
+    // Gọi khi giữ lock của slot
+    private static boolean isFresh(Loai loai, Slot slot, Entry entry, LocalDate today) {
+        if (entry.generation != slot.generation) {
+            return false;
+        }
+        return loai != Loai.AGE || entry.refDate.equals(today);
+    }
+
+    // Trạng thái của một loại thống kê; mọi trường đọc / ghi khi giữ lock của chính slot
+    private static final class Slot {
+        Entry entry;
+        long generation;
+        boolean refreshing;
+        Supplier<Map<String, Object>> loader;
+    }
+
+    private record Entry(Map<String, Object> value, LocalDate refDate, long generation, LocalDateTime computedAt) {
+    }
+}
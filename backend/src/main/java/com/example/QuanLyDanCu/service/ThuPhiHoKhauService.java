@@ -1,37 +1,65 @@
 package com.example.QuanLyDanCu.service;
 
+import com.example.QuanLyDanCu.dto.request.ThuPhiHoKhauBulkRequestDto;
 import com.example.QuanLyDanCu.dto.request.ThuPhiHoKhauRequestDto;
+import com.example.QuanLyDanCu.dto.response.CursorPageResponseDto;
+import com.example.QuanLyDanCu.dto.response.ThuPhiHoKhauBulkResponseDto;
 import com.example.QuanLyDanCu.dto.response.ThuPhiHoKhauResponseDto;
 import com.example.QuanLyDanCu.entity.DotThuPhi;
 import com.example.QuanLyDanCu.entity.HoKhau;
 import com.example.QuanLyDanCu.entity.TaiKhoan;
 import com.example.QuanLyDanCu.entity.ThuPhiHoKhau;
+import com.example.QuanLyDanCu.enums.DinhDangXuat;
 import com.example.QuanLyDanCu.enums.LoaiThuPhi;
 import com.example.QuanLyDanCu.enums.TrangThaiThuPhi;
+import com.example.QuanLyDanCu.event.ThuPhiHoKhauChangedEvent;
 import com.example.QuanLyDanCu.exception.BadRequestException;
+import com.example.QuanLyDanCu.exception.ConflictException;
 import com.example.QuanLyDanCu.exception.NotFoundException;
 import com.example.QuanLyDanCu.repository.DotThuPhiRepository;
 import com.example.QuanLyDanCu.repository.HoKhauRepository;
 import com.example.QuanLyDanCu.repository.NhanKhauRepository;
 import com.example.QuanLyDanCu.repository.TaiKhoanRepository;
+import com.example.QuanLyDanCu.repository.ThuPhiHoKhauJdbcRepository;
 import com.example.QuanLyDanCu.repository.ThuPhiHoKhauRepository;
+import com.example.QuanLyDanCu.repository.ThuPhiTongHopRepository;
+import com.example.QuanLyDanCu.util.CursorUtils;
+import com.example.QuanLyDanCu.util.TabularWriter;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import jakarta.validation.ConstraintViolation;
+import jakarta.validation.Validator;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.security.core.Authentication;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.interceptor.TransactionAspectSupport;
 
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
 import java.math.BigDecimal;
 import java.math.RoundingMode;
 import java.time.LocalDate;
 import java.time.YearMonth;
 import java.time.temporal.ChronoUnit;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 /**
  * Service quản lý thu phí hộ khẩu - SIMPLIFIED VERSION (2025)
@@ -64,11 +92,20 @@ import java.util.stream.Collectors;
 @Slf4j
 public class ThuPhiHoKhauService {
 
+    public static final int DEFAULT_PAGE_SIZE = 50;
+    public static final int MAX_PAGE_SIZE = 200;
+
     private final ThuPhiHoKhauRepository repo;
     private final HoKhauRepository hoKhauRepo;
     private final DotThuPhiRepository dotThuPhiRepo;
     private final TaiKhoanRepository taiKhoanRepo;
     private final NhanKhauRepository nhanKhauRepo;
+    private final ThuPhiTongHopService tongHopService;
+    private final ThuPhiOverviewCache overviewCache;
+    private final ApplicationEventPublisher eventPublisher;
+    private final ObjectMapper objectMapper;
+    private final ThuPhiHoKhauJdbcRepository jdbcRepo;
+    private final Validator validator;
 
     // ========================================
     // PUBLIC API METHODS
@@ -78,19 +115,60 @@ public class ThuPhiHoKhauService {
      * Lấy tất cả bản ghi thu phí, sắp xếp ổn định theo soHoKhau
      */
     public List<ThuPhiHoKhauResponseDto> getAll() {
-        return repo.findAll().stream()
-                .filter(record -> record.getHoKhau() != null && !Boolean.TRUE.equals(record.getHoKhau().getIsDeleted()))
-                .sorted((t1, t2) -> {
-                    String so1 = t1.getHoKhau().getSoHoKhau();
-                    String so2 = t2.getHoKhau().getSoHoKhau();
-                    if (so1 == null)
-                        return 1;
-                    if (so2 == null)
-                        return -1;
-                    return so1.compareTo(so2);
-                })
+        return repo.findAllActiveWithDetails().stream()
+                .map(this::toResponseDto)
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * Lấy một trang bản ghi thu phí theo con trỏ (keyset trên soHoKhau, id), có bộ lọc tùy chọn.
+     * Cùng thứ tự với {@link #getAll()}: hộ chưa có số hộ khẩu đứng cuối.
+     */
+    public CursorPageResponseDto<ThuPhiHoKhauResponseDto> getPage(Long dotThuPhiId, Long hoKhauId,
+            TrangThaiThuPhi trangThai, String cursor, Integer size) {
+        int pageSize = size == null ? DEFAULT_PAGE_SIZE : size;
+        if (pageSize <= 0) {
+            throw new BadRequestException("Kích thước trang phải lớn hơn 0");
+        }
+        pageSize = Math.min(pageSize, MAX_PAGE_SIZE);
+
+        String afterSoHoKhau = null;
+        long afterId = 0L;
+        if (cursor != null && !cursor.isBlank()) {
+            String[] parts = CursorUtils.decode(cursor, 2);
+            afterSoHoKhau = parts[0];
+            try {
+                afterId = Long.parseLong(parts[1]);
+            } catch (NumberFormatException ex) {
+                throw new BadRequestException("Cursor không hợp lệ");
+            }
+        }
+
+        // Lấy dư 1 dòng để biết còn trang sau hay không
+        List<ThuPhiHoKhau> rows = repo.findPageAfter(afterSoHoKhau, afterId, dotThuPhiId, hoKhauId, trangThai,
+                pageSize + 1);
+
+        boolean hasMore = rows.size() > pageSize;
+        List<ThuPhiHoKhau> pageRows = hasMore ? rows.subList(0, pageSize) : rows;
+
+        List<ThuPhiHoKhauResponseDto> items = pageRows.stream()
                 .map(this::toResponseDto)
                 .collect(Collectors.toList());
+
+        String nextCursor = null;
+        if (hasMore) {
+            ThuPhiHoKhau last = pageRows.get(pageRows.size() - 1);
+            String soHoKhau = last.getHoKhau().getSoHoKhau();
+            // Chuỗi rỗng: đã sang phần hộ chưa có số hộ khẩu (số hộ khẩu luôn khác rỗng)
+            nextCursor = CursorUtils.encode(soHoKhau == null ? "" : soHoKhau, last.getId());
+        }
+
+        return CursorPageResponseDto.<ThuPhiHoKhauResponseDto>builder()
+                .items(items)
+                .size(items.size())
+                .hasMore(hasMore)
+                .nextCursor(nextCursor)
+                .build();
     }
 
     /**
@@ -113,10 +191,23 @@ public class ThuPhiHoKhauService {
 
     /**
      * Tổng quan thu phí theo đợt – trả về cấu trúc thống kê cuối cùng.
+     * Kết quả được cache theo đợt (xem {@link ThuPhiOverviewCache}), nên Map trả về
+     * là bất biến và dùng chung giữa các request.
      */
+    @Transactional(readOnly = true)
     public Map<String, Object> getOverviewByPeriod(Long dotThuPhiId) {
-        DotThuPhi dotThuPhi = dotThuPhiRepo.findById(dotThuPhiId)
-                .orElseThrow(() -> new NotFoundException("Không tìm thấy đợt thu phí với ID = " + dotThuPhiId));
+        return overviewCache.get(dotThuPhiId, () -> Collections.unmodifiableMap(computeOverview(dotThuPhiId)));
+    }
+
+    /**
+     * Thống kê hit/miss/eviction của cache tổng quan
+     */
+    public Map<String, Object> getOverviewCacheStats() {
+        return overviewCache.getStats();
+    }
+
+    private Map<String, Object> computeOverview(Long dotThuPhiId) {
+        DotThuPhi dotThuPhi = findDotThuPhi(dotThuPhiId);
 
         if (dotThuPhi.getLoai() == LoaiThuPhi.BAT_BUOC) {
             return buildMandatoryOverview(dotThuPhi);
@@ -125,82 +216,140 @@ public class ThuPhiHoKhauService {
         return buildVoluntaryOverview(dotThuPhi);
     }
 
-    private Map<String, Object> buildMandatoryOverview(DotThuPhi dotThuPhi) {
-        long soThang = calculateMonths(dotThuPhi.getNgayBatDau(), dotThuPhi.getNgayKetThuc());
-        LocalDate today = LocalDate.now();
-        LocalDate end = dotThuPhi.getNgayKetThuc();
-        LocalDate refDate = end != null && today.isAfter(end) ? end : today;
-
-        Map<Long, ThuPhiHoKhau> recordsByHousehold = repo.findByDotThuPhiId(dotThuPhi.getId()).stream()
-                .collect(Collectors.toMap(
-                        record -> record.getHoKhau().getId(),
-                        record -> record,
-                        (left, right) -> left,
-                        LinkedHashMap::new));
-
-        List<HoKhau> households = hoKhauRepo.findActiveHouseholds();
-        households.sort(Comparator.comparing(
-                HoKhau::getSoHoKhau,
-                Comparator.nullsLast(String::compareTo)));
-        List<ThuPhiHoKhauResponseDto> rows = new ArrayList<>();
+    /**
+     * Kiểm tra đợt thu phí tồn tại (dùng trước khi mở luồng để trả 404 đúng cách).
+     */
+    public void ensurePeriodExists(Long dotThuPhiId) {
+        findDotThuPhi(dotThuPhiId);
+    }
 
-        int totalHouseholds = households.size();
-        int paidHouseholds = recordsByHousehold.size();
-        BigDecimal tongDuKien = BigDecimal.ZERO;
-        BigDecimal tongDaThu = BigDecimal.ZERO;
+    /**
+     * Ghi tổng quan theo đợt dạng luồng (NDJSON hoặc CSV): từng hộ được ghi ngay khi
+     * đọc từ con trỏ database, phần tổng hợp ghi ở cuối. Bộ nhớ dùng không phụ thuộc
+     * số hộ. Nội dung và cách tính giống hệt {@link #getOverviewByPeriod}; thứ tự hộ
+     * do database sắp xếp theo soHoKhau.
+     */
+    @Transactional(readOnly = true)
+    public void writeOverview(Long dotThuPhiId, DinhDangXuat format, OutputStream out) throws IOException {
+        DotThuPhi dotThuPhi = findDotThuPhi(dotThuPhiId);
+        OverviewSink sink = format.isTabular()
+                ? new TabularOverviewSink(format.openTabularWriter(out, "Tong quan dot " + dotThuPhiId))
+                : new NdjsonOverviewSink(out);
 
-        for (HoKhau hoKhau : households) {
-            ThuPhiHoKhau existing = recordsByHousehold.get(hoKhau.getId());
+        if (dotThuPhi.getLoai() == LoaiThuPhi.BAT_BUOC) {
+            writeMandatoryOverview(dotThuPhi, sink);
+        } else {
+            writeVoluntaryOverview(dotThuPhi, sink);
+        }
+        sink.finish();
+    }
 
-            if (existing != null) {
-                ThuPhiHoKhauResponseDto dto = toResponseDto(existing);
-                BigDecimal paidAmount = existing.getTongPhi() == null ? BigDecimal.ZERO : existing.getTongPhi();
+    /**
+     * Tổng quan đợt thu bắt buộc.
+     * Danh sách hộ được đọc từ cùng một truy vấn và cùng một vòng lặp với bản xuất dạng
+     * luồng ({@link #writeMandatoryOverview}), chỉ khác là các dòng được gom vào bộ nhớ;
+     * vì vậy hai biến thể luôn cho cùng dữ liệu và cùng thứ tự.
+     */
+    private Map<String, Object> buildMandatoryOverview(DotThuPhi dotThuPhi) {
+        CollectingOverviewSink sink = new CollectingOverviewSink();
+        try {
+            writeMandatoryOverview(dotThuPhi, sink);
+        } catch (IOException e) {
+            // Gom vào bộ nhớ không phát sinh I/O
+            throw new UncheckedIOException(e);
+        }
 
-                tongDuKien = tongDuKien.add(paidAmount);
-                tongDaThu = tongDaThu.add(paidAmount);
+        Map<String, Object> summary = sink.summary;
+        summary.put("households", sink.rows);
+        return summary;
+    }
 
-                rows.add(dto);
-                continue;
+    /**
+     * Danh sách hộ lấy bằng một câu truy vấn gom nhóm duy nhất
+     * ({@link ThuPhiHoKhauRepository#streamMandatoryOverviewRows}); phần tính tiền dùng lại
+     * {@link #calculateMandatoryAmount}. Số hộ đã nộp và tổng đã thu cũng cộng từ chính các dòng này
+     * (không đọc thu_phi_tong_hop): bảng tổng hợp còn tính cả hộ đã xóa mềm, trong khi tongHo chỉ
+     * đếm hộ đang hoạt động.
+     */
+    private void writeMandatoryOverview(DotThuPhi dotThuPhi, OverviewSink sink) throws IOException {
+        long soThang = calculateMonths(dotThuPhi.getNgayBatDau(), dotThuPhi.getNgayKetThuc());
+        MandatoryTotals totals = new MandatoryTotals();
+
+        try (Stream<ThuPhiHoKhauRepository.MandatoryOverviewRow> stream = repo
+                .streamMandatoryOverviewRows(dotThuPhi.getId(), overviewRefDate(dotThuPhi))) {
+            Iterator<ThuPhiHoKhauRepository.MandatoryOverviewRow> it = stream.iterator();
+            Long previousHoKhauId = null;
+            while (it.hasNext()) {
+                ThuPhiHoKhauRepository.MandatoryOverviewRow row = it.next();
+                // Các dòng trùng của cùng một hộ đứng liền nhau: chỉ lấy dòng đầu tiên
+                if (row.getHoKhauId().equals(previousHoKhauId)) {
+                    continue;
+                }
+                previousHoKhauId = row.getHoKhauId();
+
+                ThuPhiHoKhauResponseDto dto = toMandatoryOverviewDto(row, dotThuPhi, soThang);
+                totals.add(dto);
+                sink.row(dto);
             }
+        }
 
-            int soNguoi = countEligibleMembers(hoKhau.getId(), refDate);
-            BigDecimal expected = calculateMandatoryAmount(soNguoi, dotThuPhi.getDinhMuc(), soThang,
-                    dotThuPhi.getThuTheoDot());
-            tongDuKien = tongDuKien.add(expected);
+        sink.summary(buildMandatorySummary(dotThuPhi, totals, soThang));
+    }
 
-            ThuPhiHoKhauResponseDto dto = ThuPhiHoKhauResponseDto.builder()
-                    .id(null)
-                    .hoKhauId(hoKhau.getId())
-                    .soHoKhau(hoKhau.getSoHoKhau())
-                    .tenChuHo(hoKhau.getTenChuHo())
+    private ThuPhiHoKhauResponseDto toMandatoryOverviewDto(ThuPhiHoKhauRepository.MandatoryOverviewRow row,
+            DotThuPhi dotThuPhi, long soThang) {
+        if (row.getThuPhiId() != null) {
+            return ThuPhiHoKhauResponseDto.builder()
+                    .id(row.getThuPhiId())
+                    .hoKhauId(row.getHoKhauId())
+                    .soHoKhau(row.getSoHoKhau())
+                    .tenChuHo(row.getTenChuHo())
                     .dotThuPhiId(dotThuPhi.getId())
                     .tenDot(dotThuPhi.getTenDot())
                     .loaiThuPhi(dotThuPhi.getLoai())
-                    .soNguoi(soNguoi)
+                    .soNguoi(row.getSoNguoi())
                     .soThang(soThang)
-                    .tongPhi(expected)
-                    .trangThai(TrangThaiThuPhi.CHUA_NOP)
-                    .ngayThu(null)
-                    .ghiChu(null)
+                    .tongPhi(row.getTongPhi())
+                    .trangThai(row.getTrangThai())
+                    .ngayThu(row.getNgayThu())
+                    .ghiChu(row.getGhiChu())
                     .build();
-
-            rows.add(dto);
         }
 
+        int soNguoi = row.getSoNguoiHopLe() == null ? 0 : row.getSoNguoiHopLe().intValue();
+        BigDecimal expected = calculateMandatoryAmount(soNguoi, dotThuPhi.getDinhMuc(), soThang,
+                dotThuPhi.getThuTheoDot());
+
+        return ThuPhiHoKhauResponseDto.builder()
+                .id(null)
+                .hoKhauId(row.getHoKhauId())
+                .soHoKhau(row.getSoHoKhau())
+                .tenChuHo(row.getTenChuHo())
+                .dotThuPhiId(dotThuPhi.getId())
+                .tenDot(dotThuPhi.getTenDot())
+                .loaiThuPhi(dotThuPhi.getLoai())
+                .soNguoi(soNguoi)
+                .soThang(soThang)
+                .tongPhi(expected)
+                .trangThai(TrangThaiThuPhi.CHUA_NOP)
+                .ngayThu(null)
+                .ghiChu(null)
+                .build();
+    }
+
+    private Map<String, Object> buildMandatorySummary(DotThuPhi dotThuPhi, MandatoryTotals totals, long soThang) {
         Map<String, Object> summary = new LinkedHashMap<>();
         summary.put("dotThuPhiId", dotThuPhi.getId());
         summary.put("tenDot", dotThuPhi.getTenDot());
         summary.put("loai", dotThuPhi.getLoai());
-        summary.put("tongHo", totalHouseholds);
-        summary.put("soHoDaNop", paidHouseholds);
-        summary.put("soHoChuaNop", Math.max(totalHouseholds - paidHouseholds, 0));
-        summary.put("tongDuKien", tongDuKien);
+        summary.put("tongHo", totals.tongHo);
+        summary.put("soHoDaNop", totals.soHoDaNop);
+        summary.put("soHoChuaNop", Math.max(totals.tongHo - totals.soHoDaNop, 0));
+        summary.put("tongDuKien", totals.tongDuKien);
         summary.put("soThang", soThang);
-        summary.put("tongDaThu", tongDaThu);
-        summary.put("tiLeHoDaNop", calculatePercentage(paidHouseholds, totalHouseholds));
-        summary.put("tiLeTienDaThu", calculateRatio(tongDaThu, tongDuKien));
-        summary.put("households", rows);
-
+        summary.put("tongDaThu", totals.tongDaThu);
+        summary.put("tiLeHoDaNop", calculatePercentage(totals.soHoDaNop, totals.tongHo));
+        summary.put("tiLeTienDaThu", calculateRatio(totals.tongDaThu, totals.tongDuKien));
         return summary;
     }
 
@@ -211,7 +360,9 @@ public class ThuPhiHoKhauService {
                             HoKhau hoKhau = record.getHoKhau();
                             return hoKhau == null ? null : hoKhau.getSoHoKhau();
                         },
-                        Comparator.nullsLast(String::compareTo)))
+                        Comparator.nullsLast(String::compareTo))
+                        // Cùng thứ tự với bản xuất dạng luồng (soHoKhau, rồi id bản ghi)
+                        .thenComparing(ThuPhiHoKhau::getId))
                 .map(this::toResponseDto)
                 .collect(Collectors.toList());
 
@@ -219,12 +370,50 @@ public class ThuPhiHoKhauService {
                 .map(dto -> dto.getTongPhi() == null ? BigDecimal.ZERO : dto.getTongPhi())
                 .reduce(BigDecimal.ZERO, BigDecimal::add);
 
+        Map<String, Object> summary = buildVoluntarySummary(dotThuPhi, total);
+        summary.put("households", households);
+        return summary;
+    }
+
+    private void writeVoluntaryOverview(DotThuPhi dotThuPhi, OverviewSink sink) throws IOException {
+        long soThang = calculateMonths(dotThuPhi.getNgayBatDau(), dotThuPhi.getNgayKetThuc());
+        BigDecimal total = BigDecimal.ZERO;
+
+        try (Stream<ThuPhiHoKhauRepository.VoluntaryOverviewRow> stream = repo
+                .streamVoluntaryOverviewRows(dotThuPhi.getId())) {
+            Iterator<ThuPhiHoKhauRepository.VoluntaryOverviewRow> it = stream.iterator();
+            while (it.hasNext()) {
+                ThuPhiHoKhauRepository.VoluntaryOverviewRow row = it.next();
+                if (row.getTongPhi() != null) {
+                    total = total.add(row.getTongPhi());
+                }
+                sink.row(ThuPhiHoKhauResponseDto.builder()
+                        .id(row.getThuPhiId())
+                        .hoKhauId(row.getHoKhauId())
+                        .soHoKhau(row.getSoHoKhau())
+                        .tenChuHo(row.getTenChuHo())
+                        .dotThuPhiId(dotThuPhi.getId())
+                        .tenDot(dotThuPhi.getTenDot())
+                        .loaiThuPhi(dotThuPhi.getLoai())
+                        .soNguoi(row.getSoNguoi())
+                        .soThang(soThang)
+                        .tongPhi(row.getTongPhi())
+                        .trangThai(row.getTrangThai())
+                        .ngayThu(row.getNgayThu())
+                        .ghiChu(row.getGhiChu())
+                        .build());
+            }
+        }
+
+        sink.summary(buildVoluntarySummary(dotThuPhi, total));
+    }
+
+    private Map<String, Object> buildVoluntarySummary(DotThuPhi dotThuPhi, BigDecimal total) {
         Map<String, Object> summary = new LinkedHashMap<>();
         summary.put("dotThuPhiId", dotThuPhi.getId());
         summary.put("tenDot", dotThuPhi.getTenDot());
         summary.put("loai", dotThuPhi.getLoai());
         summary.put("tongTienTuNguyen", total);
-        summary.put("households", households);
         return summary;
     }
 
@@ -255,11 +444,7 @@ public class ThuPhiHoKhauService {
             return result;
         }
 
-        LocalDate today = LocalDate.now();
-        LocalDate end = dotThuPhi.getNgayKetThuc();
-        LocalDate refDate = end != null && today.isAfter(end) ? end : today;
-
-        int memberCount = countEligibleMembers(hoKhauId, refDate);
+        int memberCount = countEligibleMembers(hoKhauId, overviewRefDate(dotThuPhi));
         BigDecimal dinhMuc = dotThuPhi.getDinhMuc();
         long soThang = calculateMonths(dotThuPhi.getNgayBatDau(), dotThuPhi.getNgayKetThuc());
         BigDecimal totalFee = calculateMandatoryAmount(memberCount, dinhMuc, soThang, dotThuPhi.getThuTheoDot());
@@ -309,10 +494,7 @@ public class ThuPhiHoKhauService {
                 dto.getHoKhauId(), dto.getDotThuPhiId());
 
         if (!existingRecords.isEmpty()) {
-            throw new BadRequestException(String.format(
-                    "Đã tồn tại bản ghi thu phí cho hộ khẩu '%s' trong đợt '%s'. " +
-                            "Mỗi hộ khẩu chỉ được có một bản ghi cho mỗi đợt thu phí.",
-                    hoKhau.getSoHoKhau(), dotThuPhi.getTenDot()));
+            throw duplicateRecord(hoKhau, dotThuPhi, existingRecords);
         }
 
         // Validate payment date falls within a period
@@ -352,12 +534,260 @@ public class ThuPhiHoKhauService {
                 .ghiChu(dto.getGhiChu())
                 .build();
 
-        ThuPhiHoKhau saved = repo.save(entity);
+        // Chèn có điều kiện: nếu giao dịch khác vừa ghi nhận cùng hộ + đợt (lọt qua bước
+        // kiểm tra ở trên), ràng buộc duy nhất khiến câu lệnh bỏ qua thay vì tạo bản ghi trùng.
+        // Khi đó giao dịch kia đã commit nên câu SELECT tiếp theo thấy được bản ghi của nó.
+        Long newId = jdbcRepo.insertIfAbsent(entity).orElseThrow(() -> duplicateRecord(hoKhau, dotThuPhi,
+                repo.findByHoKhauIdAndDotThuPhiId(hoKhau.getId(), dotThuPhi.getId())));
+        entity.setId(newId);
+        tongHopService.onPaymentRecorded(dotThuPhi.getId(), entity.getTongPhi());
+        eventPublisher.publishEvent(new ThuPhiHoKhauChangedEvent(
+                ThuPhiHoKhauChangedEvent.Type.CREATED, entity.getId(), hoKhau.getId(), dotThuPhi.getId()));
 
         log.info("Created fee record id={} hoKhau={} dotThuPhi={}",
-                saved.getId(), hoKhau.getId(), dotThuPhi.getId());
+                entity.getId(), hoKhau.getId(), dotThuPhi.getId());
 
-        return toResponseDto(saved);
+        return toResponseDto(entity);
+    }
+
+    /**
+     * Ghi nhận thu phí hàng loạt (nhiều hộ, có thể nhiều đợt) trong một transaction.
+     *
+     * <ul>
+     * <li>Hộ khẩu, đợt thu, bản ghi đã tồn tại và số người đủ điều kiện được tra cứu
+     * theo tập (một câu truy vấn cho mỗi loại / mỗi ngày tham chiếu), người thu chỉ
+     * tra một lần</li>
+     * <li>Mỗi dòng được kiểm tra theo đúng quy tắc của {@link #create}; lỗi được trả về
+     * theo từng dòng</li>
+     * <li>choPhepMotPhan = false: có một dòng lỗi thì không ghi dòng nào</li>
+     * <li>Các dòng hợp lệ được chèn bằng JDBC batch, tổng hợp theo đợt cập nhật một lần
+     * cho mỗi đợt</li>
+     * </ul>
+     */
+    @Transactional
+    public ThuPhiHoKhauBulkResponseDto createBulk(ThuPhiHoKhauBulkRequestDto request, Authentication auth) {
+        List<ThuPhiHoKhauRequestDto> items = request.getItems();
+        boolean partial = Boolean.TRUE.equals(request.getChoPhepMotPhan());
+
+        // Người thu được kiểm tra một lần cho cả lô
+        getCurrentUser(auth);
+
+        // 1. Validate dữ liệu từng dòng
+        List<ThuPhiHoKhauBulkResponseDto.KetQuaDong> results = new ArrayList<>(items.size());
+        for (int i = 0; i < items.size(); i++) {
+            ThuPhiHoKhauRequestDto item = items.get(i);
+            ThuPhiHoKhauBulkResponseDto.KetQuaDong result = ThuPhiHoKhauBulkResponseDto.KetQuaDong.builder()
+                    .viTri(i)
+                    .hoKhauId(item == null ? null : item.getHoKhauId())
+                    .dotThuPhiId(item == null ? null : item.getDotThuPhiId())
+                    .build();
+            if (item == null) {
+                result.setLoi("Dòng dữ liệu rỗng");
+            } else {
+                Set<ConstraintViolation<ThuPhiHoKhauRequestDto>> violations = validator.validate(item);
+                if (!violations.isEmpty()) {
+                    result.setLoi(violations.stream()
+                            .map(ConstraintViolation::getMessage)
+                            .sorted()
+                            .collect(Collectors.joining("; ")));
+                }
+            }
+            results.add(result);
+        }
+
+        // 2. Tra cứu theo tập
+        Set<Long> hoKhauIds = new HashSet<>();
+        Set<Long> dotThuPhiIds = new HashSet<>();
+        for (ThuPhiHoKhauBulkResponseDto.KetQuaDong result : results) {
+            if (result.getLoi() == null) {
+                hoKhauIds.add(result.getHoKhauId());
+                dotThuPhiIds.add(result.getDotThuPhiId());
+            }
+        }
+
+        Map<Long, HoKhau> hoKhauById = hoKhauIds.isEmpty() ? Map.of()
+                : hoKhauRepo.findAllById(hoKhauIds).stream()
+                        .collect(Collectors.toMap(HoKhau::getId, Function.identity()));
+        Map<Long, DotThuPhi> dotThuPhiById = dotThuPhiIds.isEmpty() ? Map.of()
+                : dotThuPhiRepo.findAllById(dotThuPhiIds).stream()
+                        .collect(Collectors.toMap(DotThuPhi::getId, Function.identity()));
+        Map<String, Long> existingIds = new HashMap<>();
+        if (!hoKhauIds.isEmpty()) {
+            for (ThuPhiHoKhauRepository.ExistingRecord record : repo.findExisting(hoKhauIds, dotThuPhiIds)) {
+                existingIds.putIfAbsent(pairKey(record.getHoKhauId(), record.getDotThuPhiId()), record.getId());
+            }
+        }
+
+        // 3. Kiểm tra nghiệp vụ từng dòng (giống create)
+        Set<String> seenPairs = new HashSet<>();
+        Map<LocalDate, Set<Long>> mandatoryHouseholdsByRefDate = new HashMap<>();
+        LocalDate[] refDates = new LocalDate[items.size()];
+        BigDecimal[] voluntaryAmounts = new BigDecimal[items.size()];
+
+        for (ThuPhiHoKhauBulkResponseDto.KetQuaDong result : results) {
+            if (result.getLoi() != null) {
+                continue;
+            }
+            ThuPhiHoKhauRequestDto item = items.get(result.getViTri());
+            HoKhau hoKhau = hoKhauById.get(item.getHoKhauId());
+            DotThuPhi dotThuPhi = dotThuPhiById.get(item.getDotThuPhiId());
+
+            if (hoKhau == null) {
+                result.setLoi("Không tìm thấy hộ khẩu với ID = " + item.getHoKhauId());
+                continue;
+            }
+            if (dotThuPhi == null) {
+                result.setLoi("Không tìm thấy đợt thu phí với ID = " + item.getDotThuPhiId());
+                continue;
+            }
+            if (dotThuPhi.getLoai() == LoaiThuPhi.BAT_BUOC && item.getTongPhi() != null) {
+                result.setLoi("Không được gửi trường 'tongPhi' cho đợt thu bắt buộc!");
+                continue;
+            }
+
+            String key = pairKey(hoKhau.getId(), dotThuPhi.getId());
+            Long existingId = existingIds.get(key);
+            if (existingId != null) {
+                result.setThuPhiId(existingId);
+                result.setLoi(String.format(
+                        "Đã tồn tại bản ghi thu phí cho hộ khẩu '%s' trong đợt '%s'. " +
+                                "Mỗi hộ khẩu chỉ được có một bản ghi cho mỗi đợt thu phí.",
+                        hoKhau.getSoHoKhau(), dotThuPhi.getTenDot()));
+                continue;
+            }
+            if (!seenPairs.add(key)) {
+                result.setLoi("Trùng hộ khẩu và đợt thu phí với một dòng phía trước trong cùng lô");
+                continue;
+            }
+
+            try {
+                validatePaymentDate(item.getNgayThu(), dotThuPhi);
+                if (dotThuPhi.getLoai() == LoaiThuPhi.TU_NGUYEN) {
+                    voluntaryAmounts[result.getViTri()] = normalizeVoluntaryAmount(item.getTongPhi());
+                }
+            } catch (BadRequestException ex) {
+                result.setLoi(ex.getMessage());
+                continue;
+            }
+
+            if (dotThuPhi.getLoai() == LoaiThuPhi.BAT_BUOC) {
+                LocalDate end = dotThuPhi.getNgayKetThuc();
+                LocalDate refDate = end != null && item.getNgayThu().isAfter(end) ? end : item.getNgayThu();
+                refDates[result.getViTri()] = refDate;
+                mandatoryHouseholdsByRefDate.computeIfAbsent(refDate, d -> new HashSet<>()).add(hoKhau.getId());
+            }
+        }
+
+        long errorCount = results.stream().filter(r -> r.getLoi() != null).count();
+        if (errorCount > 0 && !partial) {
+            for (ThuPhiHoKhauBulkResponseDto.KetQuaDong result : results) {
+                if (result.getLoi() == null) {
+                    result.setLoi("Không ghi nhận vì lô có dòng lỗi (choPhepMotPhan = false)");
+                }
+            }
+            return buildBulkResponse(results, BigDecimal.ZERO);
+        }
+
+        // 4. Số người đủ điều kiện: một câu GROUP BY cho mỗi ngày tham chiếu
+        Map<LocalDate, Map<Long, Long>> memberCounts = new HashMap<>();
+        mandatoryHouseholdsByRefDate.forEach((refDate, householdIds) -> memberCounts.put(refDate,
+                nhanKhauRepo.countActiveMembersByHoKhauIds(householdIds, refDate).stream()
+                        .collect(Collectors.toMap(
+                                NhanKhauRepository.HoKhauMemberCount::getHoKhauId,
+                                NhanKhauRepository.HoKhauMemberCount::getTotal))));
+
+        // 5. Dựng bản ghi và chèn theo lô
+        List<ThuPhiHoKhau> toInsert = new ArrayList<>();
+        List<ThuPhiHoKhauBulkResponseDto.KetQuaDong> insertedResults = new ArrayList<>();
+        for (ThuPhiHoKhauBulkResponseDto.KetQuaDong result : results) {
+            if (result.getLoi() != null) {
+                continue;
+            }
+            ThuPhiHoKhauRequestDto item = items.get(result.getViTri());
+            HoKhau hoKhau = hoKhauById.get(item.getHoKhauId());
+            DotThuPhi dotThuPhi = dotThuPhiById.get(item.getDotThuPhiId());
+
+            int soNguoi;
+            BigDecimal tongPhi;
+            if (dotThuPhi.getLoai() == LoaiThuPhi.TU_NGUYEN) {
+                soNguoi = 0;
+                tongPhi = voluntaryAmounts[result.getViTri()];
+            } else {
+                LocalDate refDate = refDates[result.getViTri()];
+                soNguoi = memberCounts.get(refDate).getOrDefault(hoKhau.getId(), 0L).intValue();
+                long soThang = calculateMonths(dotThuPhi.getNgayBatDau(), dotThuPhi.getNgayKetThuc());
+                tongPhi = calculateMandatoryAmount(soNguoi, dotThuPhi.getDinhMuc(), soThang, dotThuPhi.getThuTheoDot());
+            }
+
+            toInsert.add(ThuPhiHoKhau.builder()
+                    .hoKhau(hoKhau)
+                    .dotThuPhi(dotThuPhi)
+                    .soNguoi(soNguoi)
+                    .tongPhi(tongPhi)
+                    .trangThai(TrangThaiThuPhi.DA_NOP)
+                    .ngayThu(item.getNgayThu())
+                    .ghiChu(item.getGhiChu())
+                    .build());
+            result.setSoNguoi(soNguoi);
+            result.setTongPhi(tongPhi);
+            insertedResults.add(result);
+        }
+
+        List<Long> ids = jdbcRepo.batchInsertIfAbsent(toInsert);
+
+        // Dòng bị bỏ qua do giao dịch khác vừa ghi nhận cùng hộ + đợt: báo bản ghi đã có
+        boolean conflicted = false;
+        for (int i = 0; i < insertedResults.size(); i++) {
+            if (ids.get(i) == null) {
+                conflicted = true;
+                ThuPhiHoKhau record = toInsert.get(i);
+                ThuPhiHoKhauBulkResponseDto.KetQuaDong result = insertedResults.get(i);
+                result.setThuPhiId(findExistingId(record.getHoKhau().getId(), record.getDotThuPhi().getId()));
+                result.setSoNguoi(null);
+                result.setTongPhi(null);
+                result.setLoi(String.format("Đã tồn tại bản ghi thu phí cho hộ khẩu '%s' trong đợt '%s'.",
+                        record.getHoKhau().getSoHoKhau(), record.getDotThuPhi().getTenDot()));
+            }
+        }
+        if (conflicted && !partial) {
+            TransactionAspectSupport.currentTransactionStatus().setRollbackOnly();
+            for (ThuPhiHoKhauBulkResponseDto.KetQuaDong result : results) {
+                if (result.getLoi() == null) {
+                    result.setLoi("Không ghi nhận vì lô có dòng lỗi (choPhepMotPhan = false)");
+                }
+            }
+            return buildBulkResponse(results, BigDecimal.ZERO);
+        }
+
+        Map<Long, Long> countByPeriod = new HashMap<>();
+        Map<Long, BigDecimal> amountByPeriod = new HashMap<>();
+        BigDecimal tongTien = BigDecimal.ZERO;
+        for (int i = 0; i < insertedResults.size(); i++) {
+            if (ids.get(i) == null) {
+                continue;
+            }
+            ThuPhiHoKhauBulkResponseDto.KetQuaDong result = insertedResults.get(i);
+            ThuPhiHoKhau record = toInsert.get(i);
+            Long dotThuPhiId = record.getDotThuPhi().getId();
+            BigDecimal amount = record.getTongPhi() == null ? BigDecimal.ZERO : record.getTongPhi();
+
+            result.setThanhCong(true);
+            result.setThuPhiId(ids.get(i));
+            countByPeriod.merge(dotThuPhiId, 1L, Long::sum);
+            amountByPeriod.merge(dotThuPhiId, amount, BigDecimal::add);
+            tongTien = tongTien.add(amount);
+
+            eventPublisher.publishEvent(new ThuPhiHoKhauChangedEvent(
+                    ThuPhiHoKhauChangedEvent.Type.CREATED, ids.get(i), record.getHoKhau().getId(), dotThuPhiId));
+        }
+        countByPeriod.forEach((dotThuPhiId, soHo) -> tongHopService.onPaymentsRecorded(
+                dotThuPhiId, soHo, amountByPeriod.get(dotThuPhiId)));
+
+        ThuPhiHoKhauBulkResponseDto response = buildBulkResponse(results, tongTien);
+        log.info("Bulk fee recording: {} rows, {} inserted, {} rejected",
+                response.getTongSo(), response.getSoThanhCong(), response.getSoLoi());
+
+        return response;
     }
 
     /**
@@ -365,11 +795,14 @@ public class ThuPhiHoKhauService {
      */
     @Transactional
     public void delete(Long id, Authentication auth) {
-        if (!repo.existsById(id)) {
-            throw new NotFoundException("Không tìm thấy bản ghi thu phí với ID = " + id);
-        }
+        ThuPhiHoKhau existing = repo.findById(id)
+                .orElseThrow(() -> new NotFoundException("Không tìm thấy bản ghi thu phí với ID = " + id));
 
-        repo.deleteById(id);
+        repo.delete(existing);
+        tongHopService.onPaymentDeleted(existing.getDotThuPhi().getId(), existing.getTongPhi());
+        eventPublisher.publishEvent(new ThuPhiHoKhauChangedEvent(
+                ThuPhiHoKhauChangedEvent.Type.DELETED, id, existing.getHoKhau().getId(),
+                existing.getDotThuPhi().getId()));
 
         log.info("Deleted fee record id={}", id);
     }
@@ -417,6 +850,7 @@ public class ThuPhiHoKhauService {
             BigDecimal expected = calculateMandatoryAmount(activeMembers, record.getDotThuPhi().getDinhMuc(), soThang,
                     record.getDotThuPhi().getThuTheoDot());
             if (!expected.equals(record.getTongPhi()) || !Integer.valueOf(activeMembers).equals(record.getSoNguoi())) {
+                tongHopService.onPaymentAmountChanged(record.getDotThuPhi().getId(), record.getTongPhi(), expected);
                 record.setSoNguoi(activeMembers);
                 record.setTongPhi(expected);
                 toUpdate.add(record);
@@ -429,38 +863,88 @@ public class ThuPhiHoKhauService {
     }
 
     /**
-     * Thống kê thu phí
+     * Thống kê thu phí, lọc tùy chọn theo ngày thu [tuNgay, denNgay].
+     * Toàn bộ số liệu được tính bằng câu truy vấn gộp trong database (không nạp bản ghi
+     * vào bộ nhớ); kèm chi tiết theo đợt (byPeriod) và theo năm thu (byYear).
+     * Khi không lọc theo ngày, số bản ghi / số tiền tổng và theo đợt đọc thẳng từ bảng
+     * tổng hợp theo đợt (mỗi hộ một bản ghi mỗi đợt nên số bản ghi = số hộ đã nộp).
      */
-    public Map<String, Object> getStats() {
-        List<ThuPhiHoKhau> all = repo.findAll();
+    public Map<String, Object> getStats(LocalDate tuNgay, LocalDate denNgay) {
+        if (tuNgay != null && denNgay != null && tuNgay.isAfter(denNgay)) {
+            throw new BadRequestException("Ngày bắt đầu phải trước hoặc bằng ngày kết thúc");
+        }
 
-        long totalRecords = all.size();
+        Map<String, Object> stats;
+        List<Map<String, Object>> byPeriod;
+        if (tuNgay == null && denNgay == null) {
+            ThuPhiTongHopRepository.GrandTotals grand = tongHopService.getGrandTotals();
+            stats = toStatsMap(grand.getSoHoDaNop(), grand.getTongDaThu(), repo.countDistinctHouseholds(),
+                    grand.getSoHoDaNop());
+            byPeriod = tongHopService.getPeriodTotals().stream()
+                    .map(row -> {
+                        Map<String, Object> item = new LinkedHashMap<>();
+                        item.put("dotThuPhiId", row.getDotThuPhiId());
+                        item.put("tenDot", row.getTenDot());
+                        item.put("loai", row.getLoai());
+                        item.putAll(toStatsMap(row.getSoHoDaNop(), row.getTongDaThu(), row.getSoHoDaNop(),
+                                row.getSoHoDaNop()));
+                        return item;
+                    })
+                    .collect(Collectors.toList());
+        } else {
+            stats = toStatsMap(repo.aggregateStats(TrangThaiThuPhi.DA_NOP, tuNgay, denNgay));
+            byPeriod = repo.aggregateStatsByPeriod(TrangThaiThuPhi.DA_NOP, tuNgay, denNgay).stream()
+                    .map(row -> {
+                        Map<String, Object> item = new LinkedHashMap<>();
+                        item.put("dotThuPhiId", row.getDotThuPhiId());
+                        item.put("tenDot", row.getTenDot());
+                        item.put("loai", row.getLoai());
+                        item.putAll(toStatsMap(row));
+                        return item;
+                    })
+                    .collect(Collectors.toList());
+        }
+        if (tuNgay != null) {
+            stats.put("tuNgay", tuNgay);
+        }
+        if (denNgay != null) {
+            stats.put("denNgay", denNgay);
+        }
 
-        BigDecimal totalExpectedFee = all.stream()
-                .map(t -> t.getTongPhi() != null ? t.getTongPhi() : BigDecimal.ZERO)
-                .reduce(BigDecimal.ZERO, BigDecimal::add);
+        stats.put("byPeriod", byPeriod);
 
-        long paidCount = all.stream()
-                .filter(t -> t.getTrangThai() == TrangThaiThuPhi.DA_NOP)
-                .count();
+        stats.put("byYear", repo.aggregateStatsByYear(TrangThaiThuPhi.DA_NOP, tuNgay, denNgay).stream()
+                .map(row -> {
+                    Map<String, Object> item = new LinkedHashMap<>();
+                    item.put("nam", row.getNam());
+                    item.putAll(toStatsMap(row));
+                    return item;
+                })
+                .collect(Collectors.toList()));
 
-        long unpaidCount = 0L; // CHUA_NOP không còn được lưu trong cơ sở dữ liệu
+        return stats;
+    }
 
-        long totalHouseholds = all.stream()
-                .map(t -> t.getHoKhau().getId())
-                .distinct()
-                .count();
+    private Map<String, Object> toStatsMap(ThuPhiHoKhauRepository.StatsTotals totals) {
+        return toStatsMap(totals.getTotalRecords(), totals.getTotalFee(), totals.getTotalHouseholds(),
+                totals.getPaidRecords());
+    }
 
+    private Map<String, Object> toStatsMap(Long totalRecords, BigDecimal totalFee, Long totalHouseholds,
+            Long paidRecords) {
         Map<String, Object> stats = new LinkedHashMap<>();
-        stats.put("totalRecords", totalRecords);
-        stats.put("totalExpectedFee", totalExpectedFee);
-        stats.put("totalHouseholds", totalHouseholds);
-        stats.put("paidRecords", paidCount);
-        stats.put("unpaidRecords", unpaidCount);
-
+        stats.put("totalRecords", nullToZero(totalRecords));
+        stats.put("totalExpectedFee", totalFee == null ? BigDecimal.ZERO : totalFee);
+        stats.put("totalHouseholds", nullToZero(totalHouseholds));
+        stats.put("paidRecords", nullToZero(paidRecords));
+        stats.put("unpaidRecords", 0L); // CHUA_NOP không còn được lưu trong cơ sở dữ liệu
         return stats;
     }
 
+    private static long nullToZero(Long value) {
+        return value == null ? 0L : value;
+    }
+
     // ========================================
     // PRIVATE HELPER METHODS
     // ========================================
@@ -573,6 +1057,44 @@ public class ThuPhiHoKhauService {
         }
     }
 
+    /**
+     * Lỗi trùng hộ + đợt, mang theo bản ghi đã tồn tại (bản ghi có id nhỏ nhất) để trả về 409.
+     */
+    private ConflictException duplicateRecord(HoKhau hoKhau, DotThuPhi dotThuPhi,
+            List<ThuPhiHoKhau> existingRecords) {
+        ThuPhiHoKhauResponseDto existing = existingRecords.stream()
+                .min(Comparator.comparing(ThuPhiHoKhau::getId))
+                .map(this::toResponseDto)
+                .orElse(null);
+        return new ConflictException(String.format(
+                "Đã tồn tại bản ghi thu phí cho hộ khẩu '%s' trong đợt '%s'. " +
+                        "Mỗi hộ khẩu chỉ được có một bản ghi cho mỗi đợt thu phí.",
+                hoKhau.getSoHoKhau(), dotThuPhi.getTenDot()), existing);
+    }
+
+    private Long findExistingId(Long hoKhauId, Long dotThuPhiId) {
+        return repo.findByHoKhauIdAndDotThuPhiId(hoKhauId, dotThuPhiId).stream()
+                .map(ThuPhiHoKhau::getId)
+                .findFirst()
+                .orElse(null);
+    }
+
+    private static String pairKey(Long hoKhauId, Long dotThuPhiId) {
+        return hoKhauId + ":" + dotThuPhiId;
+    }
+
+    private ThuPhiHoKhauBulkResponseDto buildBulkResponse(List<ThuPhiHoKhauBulkResponseDto.KetQuaDong> results,
+            BigDecimal tongTien) {
+        int success = (int) results.stream().filter(ThuPhiHoKhauBulkResponseDto.KetQuaDong::isThanhCong).count();
+        return ThuPhiHoKhauBulkResponseDto.builder()
+                .tongSo(results.size())
+                .soThanhCong(success)
+                .soLoi(results.size() - success)
+                .tongTien(tongTien)
+                .ketQua(results)
+                .build();
+    }
+
     /**
      * Lấy thông tin người dùng hiện tại
      */
@@ -605,4 +1127,141 @@ public class ThuPhiHoKhauService {
                 .ghiChu(entity.getGhiChu())
                 .build();
     }
+
+    // ========================================
+    // OVERVIEW HELPERS
+    // ========================================
+
+    private DotThuPhi findDotThuPhi(Long dotThuPhiId) {
+        return dotThuPhiRepo.findById(dotThuPhiId)
+                .orElseThrow(() -> new NotFoundException("Không tìm thấy đợt thu phí với ID = " + dotThuPhiId));
+    }
+
+    /**
+     * Ngày tham chiếu đếm thành viên: hôm nay, hoặc ngày kết thúc nếu đợt đã kết thúc.
+     */
+    private LocalDate overviewRefDate(DotThuPhi dotThuPhi) {
+        LocalDate today = LocalDate.now();
+        LocalDate end = dotThuPhi.getNgayKetThuc();
+        return end != null && today.isAfter(end) ? end : today;
+    }
+
+    /**
+     * Cộng dồn số liệu tổng quan đợt bắt buộc theo từng hộ.
+     */
+    private static class MandatoryTotals {
+        private int tongHo;
+        private int soHoDaNop;
+        private BigDecimal tongDuKien = BigDecimal.ZERO;
+        private BigDecimal tongDaThu = BigDecimal.ZERO;
+
+        private void add(ThuPhiHoKhauResponseDto dto) {
+            tongHo++;
+            BigDecimal amount = dto.getTongPhi() == null ? BigDecimal.ZERO : dto.getTongPhi();
+            tongDuKien = tongDuKien.add(amount);
+            // Dòng có bản ghi thu phí là hộ đã nộp
+            if (dto.getId() != null) {
+                soHoDaNop++;
+                tongDaThu = tongDaThu.add(amount);
+            }
+        }
+    }
+
+    /**
+     * Đích ghi tổng quan dạng luồng: các hộ trước, phần tổng hợp sau cùng.
+     */
+    private interface OverviewSink {
+        void row(ThuPhiHoKhauResponseDto dto) throws IOException;
+
+        void summary(Map<String, Object> summary) throws IOException;
+
+        void finish() throws IOException;
+    }
+
+    /**
+     * Gom các hộ và phần tổng hợp vào bộ nhớ (tổng quan dạng JSON có cache).
+     */
+    private static class CollectingOverviewSink implements OverviewSink {
+        private final List<ThuPhiHoKhauResponseDto> rows = new ArrayList<>();
+        private Map<String, Object> summary;
+
+        @Override
+        public void row(ThuPhiHoKhauResponseDto dto) {
+            rows.add(dto);
+        }
+
+        @Override
+        public void summary(Map<String, Object> summary) {
+            this.summary = summary;
+        }
+
+        @Override
+        public void finish() {
+        }
+    }
+
+    /**
+     * Mỗi hộ một dòng JSON; dòng cuối là {"summary": {...}}.
+     */
+    private class NdjsonOverviewSink implements OverviewSink {
+        private final JsonGenerator generator;
+        private final ObjectWriter writer;
+
+        private NdjsonOverviewSink(OutputStream out) throws IOException {
+            this.generator = objectMapper.getFactory().createGenerator(out);
+            this.generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+            // Không flush sau mỗi dòng; để bộ đệm của generator/servlet quyết định
+            this.writer = objectMapper.writer().without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
+        }
+
+        @Override
+        public void row(ThuPhiHoKhauResponseDto dto) throws IOException {
+            writer.writeValue(generator, dto);
+            generator.writeRaw('\n');
+        }
+
+        @Override
+        public void summary(Map<String, Object> summary) throws IOException {
+            writer.writeValue(generator, Map.of("summary", summary));
+            generator.writeRaw('\n');
+        }
+
+        @Override
+        public void finish() throws IOException {
+            generator.close();
+        }
+    }
+
+    /**
+     * Bảng các hộ (CSV / XLSX), sau một dòng trống là các cặp (chỉ tiêu, giá trị) tổng hợp.
+     */
+    private static class TabularOverviewSink implements OverviewSink {
+        private final TabularWriter writer;
+
+        private TabularOverviewSink(TabularWriter writer) throws IOException {
+            this.writer = writer;
+            writer.writeHeader("id", "hoKhauId", "soHoKhau", "tenChuHo", "dotThuPhiId", "tenDot", "loaiThuPhi",
+                    "soNguoi", "soThang", "tongPhi", "trangThai", "ngayThu", "ghiChu");
+        }
+
+        @Override
+        public void row(ThuPhiHoKhauResponseDto dto) throws IOException {
+            writer.writeRow(dto.getId(), dto.getHoKhauId(), dto.getSoHoKhau(), dto.getTenChuHo(),
+                    dto.getDotThuPhiId(), dto.getTenDot(), dto.getLoaiThuPhi(), dto.getSoNguoi(),
+                    dto.getSoThang(), dto.getTongPhi(), dto.getTrangThai(), dto.getNgayThu(), dto.getGhiChu());
+        }
+
+        @Override
+        public void summary(Map<String, Object> summary) throws IOException {
+            writer.writeEmptyRow();
+            for (Map.Entry<String, Object> entry : summary.entrySet()) {
+                writer.writeRow(entry.getKey(), entry.getValue());
+            }
+        }
+
+        @Override
+        public void finish() throws IOException {
+            writer.close();
+        }
+    }
 }
@@ -0,0 +1,177 @@
+package com.example.QuanLyDanCu.service;
+
+import com.example.QuanLyDanCu.enums.LoaiThuPhi;
+import com.example.QuanLyDanCu.event.DotThuPhiChangedEvent;
+import com.example.QuanLyDanCu.event.HoKhauChangedEvent;
+import com.example.QuanLyDanCu.event.NhanKhauChangedEvent;
+import com.example.QuanLyDanCu.event.NhanKhauImportedEvent;
+import com.example.QuanLyDanCu.event.ThuPhiHoKhauChangedEvent;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.time.LocalDate;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Cache kết quả tổng quan thu phí theo đợt (LRU, giới hạn số phần tử).
+ *
+ * <ul>
+ * <li>Mỗi phần tử gắn với ngày tính (refDate): sang ngày mới thì coi như miss vì
+ * số người tạm vắng phụ thuộc ngày hiện tại.</li>
+ * <li>Xóa cache sau khi transaction commit, dựa trên sự kiện domain:
+ * thu phí / đợt thu → chỉ đợt liên quan; thay đổi nhân khẩu → các đợt bắt buộc;
+ * thay đổi hộ khẩu → toàn bộ.</li>
+ * <li>Bộ đếm thế hệ (generation) ngăn việc ghi lại kết quả đã tính trước khi bị
+ * xóa cache.</li>
+ * </ul>
+ */
+@Component
+@Slf4j
+public class ThuPhiOverviewCache {
+
+    private final int maxEntries;
+    private final LinkedHashMap<Long, Entry> entries;
+
+    private final AtomicLong generation = new AtomicLong();
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+    private final AtomicLong invalidations = new AtomicLong();
+
+    public ThuPhiOverviewCache(@Value("${app.thu-phi.overview-cache.max-entries:50}") int maxEntries) {
+        this.maxEntries = Math.max(maxEntries, 1);
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Long, Entry> eldest) {
+                if (size() > ThuPhiOverviewCache.this.maxEntries) {
+                    evictions.incrementAndGet();
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    /**
+     * Lấy tổng quan từ cache, hoặc tính mới bằng loader nếu chưa có / đã sang ngày khác.
+     */
+    public Map<String, Object> get(Long dotThuPhiId, Supplier<Map<String, Object>> loader) {
+        LocalDate today = LocalDate.now();
+
+        synchronized (entries) {
+            Entry cached = entries.get(dotThuPhiId);
+            if (cached != null && cached.refDate.equals(today)) {
+                hits.incrementAndGet();
+                return cached.value;
+            }
+        }
+
+        misses.incrementAndGet();
+        long startGeneration = generation.get();
+        Map<String, Object> value = loader.get();
+
+        synchronized (entries) {
+            // Có thay đổi dữ liệu trong lúc tính -> không lưu kết quả có thể đã cũ
+            if (generation.get() == startGeneration) {
+                Object loai = value.get("loai");
+                entries.put(dotThuPhiId, new Entry(value, today, loai instanceof LoaiThuPhi l ? l : null));
+            }
+        }
+        return value;
+    }
+
+    public void evict(Long dotThuPhiId) {
+        synchronized (entries) {
+            generation.incrementAndGet();
+            if (entries.remove(dotThuPhiId) != null) {
+                invalidations.incrementAndGet();
+            }
+        }
+    }
+
+    public void evictByLoai(LoaiThuPhi loai) {
+        synchronized (entries) {
+            generation.incrementAndGet();
+            Iterator<Entry> it = entries.values().iterator();
+            while (it.hasNext()) {
+                if (it.next().loai == loai) {
+                    it.remove();
+                    invalidations.incrementAndGet();
+                }
+            }
+        }
+    }
+
+    public void evictAll() {
+        synchronized (entries) {
+            generation.incrementAndGet();
+            invalidations.addAndGet(entries.size());
+            entries.clear();
+        }
+    }
+
+    public Map<String, Object> getStats() {
+        long hitCount = hits.get();
+        long missCount = misses.get();
+        long total = hitCount + missCount;
+
+        Map<String, Object> stats = new LinkedHashMap<>();
+        synchronized (entries) {
+            stats.put("size", entries.size());
+        }
+        stats.put("maxEntries", maxEntries);
+        stats.put("hits", hitCount);
+        stats.put("misses", missCount);
+        stats.put("hitRate", total == 0 ? 0.0 : (double) hitCount / total);
+        stats.put("evictions", evictions.get());
+        stats.put("invalidations", invalidations.get());
+        return stats;
+    }
+
+    // ========================================
+    // EVENT LISTENERS (sau khi commit)
+    // ========================================
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onThuPhiHoKhauChanged(ThuPhiHoKhauChangedEvent event) {
+        evict(event.getDotThuPhiId());
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onDotThuPhiChanged(DotThuPhiChangedEvent event) {
+        evict(event.getDotThuPhiId());
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onNhanKhauChanged(NhanKhauChangedEvent event) {
+        switch (event.getType()) {
+            // Tạm trú không ảnh hưởng số người tính phí
+            case TAM_TRU, HUY_TAM_TRU -> {
+            }
+            // Chỉ ảnh hưởng số người đủ điều kiện -> các đợt bắt buộc
+            case TAM_VANG, HUY_TAM_VANG, KHAI_TU -> evictByLoai(LoaiThuPhi.BAT_BUOC);
+            // Có thể đổi chủ hộ (tenChuHo hiển thị ở mọi đợt)
+            case CREATED, UPDATED, DELETED -> evictAll();
+        }
+    }
+
+    // Nhập hàng loạt: thêm người và có thể đổi chủ hộ ở nhiều hộ
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onNhanKhauImported(NhanKhauImportedEvent event) {
+        evictAll();
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onHoKhauChanged(HoKhauChangedEvent event) {
+        evictAll();
+    }
+
+    private record Entry(Map<String, Object> value, LocalDate refDate, LoaiThuPhi loai) {
+    }
+}
@@ -0,0 +1,195 @@
+package com.example.QuanLyDanCu.service;
+
+import com.example.QuanLyDanCu.dto.response.ThuPhiTongHopResponseDto;
+import com.example.QuanLyDanCu.entity.DotThuPhi;
+import com.example.QuanLyDanCu.entity.ThuPhiTongHop;
+import com.example.QuanLyDanCu.repository.DotThuPhiRepository;
+import com.example.QuanLyDanCu.repository.ThuPhiHoKhauRepository;
+import com.example.QuanLyDanCu.repository.ThuPhiTongHopRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Duy trì bảng tổng hợp thu phí theo đợt ({@code thu_phi_tong_hop}).
+ *
+ * <ul>
+ * <li>Ghi nhận / xóa thanh toán cộng dồn chênh lệch trong cùng transaction
+ * (upsert nên an toàn khi nhiều người thu cùng lúc)</li>
+ * <li>Đọc số liệu tổng là O(1), không quét bảng thu_phi_ho_khau</li>
+ * <li>Job dựng lại chạy khi khởi động và hằng đêm để sửa sai lệch (nếu có); trong lúc
+ * dựng lại bảng bị khóa để không mất chênh lệch của giao dịch commit xen giữa</li>
+ * </ul>
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class ThuPhiTongHopService {
+
+    private final ThuPhiTongHopRepository tongHopRepo;
+    private final ThuPhiHoKhauRepository thuPhiRepo;
+    private final DotThuPhiRepository dotThuPhiRepo;
+    private final ThuPhiOverviewCache overviewCache;
+
+    public List<ThuPhiTongHopResponseDto> getAll() {
+        return tongHopRepo.findAll().stream()
+                .map(this::toResponseDto)
+                .collect(Collectors.toList());
+    }
+
+    public ThuPhiTongHopResponseDto getByDotThuPhiId(Long dotThuPhiId) {
+        return tongHopRepo.findById(dotThuPhiId)
+                .map(this::toResponseDto)
+                .orElseGet(() -> ThuPhiTongHopResponseDto.builder()
+                        .dotThuPhiId(dotThuPhiId)
+                        .soHoDaNop(0L)
+                        .tongDaThu(BigDecimal.ZERO)
+                        .build());
+    }
+
+    /**
+     * Tổng số hộ đã nộp và số tiền đã thu của mọi đợt.
+     */
+    public ThuPhiTongHopRepository.GrandTotals getGrandTotals() {
+        return tongHopRepo.sumAll();
+    }
+
+    /**
+     * Tổng theo từng đợt đã có thu, sắp xếp theo id đợt.
+     */
+    public List<ThuPhiTongHopRepository.PeriodTotals> getPeriodTotals() {
+        return tongHopRepo.findPeriodTotals();
+    }
+
+    /**
+     * Cộng một khoản thanh toán mới vào tổng của đợt.
+     */
+    @Transactional
+    public void onPaymentRecorded(Long dotThuPhiId, BigDecimal tongPhi) {
+        tongHopRepo.applyDelta(dotThuPhiId, 1L, nullToZero(tongPhi), LocalDateTime.now());
+    }
+
+    /**
+     * Cộng nhiều khoản thanh toán của cùng một đợt (ghi nhận hàng loạt) bằng một lần upsert.
+     */
+    @Transactional
+    public void onPaymentsRecorded(Long dotThuPhiId, long soHo, BigDecimal tongTien) {
+        if (soHo == 0) {
+            return;
+        }
+        tongHopRepo.applyDelta(dotThuPhiId, soHo, nullToZero(tongTien), LocalDateTime.now());
+    }
+
+    /**
+     * Trừ một khoản thanh toán bị xóa khỏi tổng của đợt.
+     */
+    @Transactional
+    public void onPaymentDeleted(Long dotThuPhiId, BigDecimal tongPhi) {
+        tongHopRepo.applyDelta(dotThuPhiId, -1L, nullToZero(tongPhi).negate(), LocalDateTime.now());
+    }
+
+    /**
+     * Điều chỉnh tổng tiền khi số tiền của một bản ghi đã có thay đổi (tính lại phí).
+     */
+    @Transactional
+    public void onPaymentAmountChanged(Long dotThuPhiId, BigDecimal oldTongPhi, BigDecimal newTongPhi) {
+        BigDecimal delta = nullToZero(newTongPhi).subtract(nullToZero(oldTongPhi));
+        if (delta.signum() == 0) {
+            return;
+        }
+        tongHopRepo.applyDelta(dotThuPhiId, 0L, delta, LocalDateTime.now());
+    }
+
+    @Transactional
+    public void removePeriod(Long dotThuPhiId) {
+        if (tongHopRepo.existsById(dotThuPhiId)) {
+            tongHopRepo.deleteById(dotThuPhiId);
+        }
+    }
+
+    /**
+     * Tính lại tổng của các đợt chỉ định từ dữ liệu gốc.
+     */
+    @Transactional
+    public void rebuild(Collection<Long> dotThuPhiIds) {
+        if (dotThuPhiIds.isEmpty()) {
+            return;
+        }
+        tongHopRepo.lockForRebuild();
+        LocalDateTime now = LocalDateTime.now();
+        for (Long dotThuPhiId : dotThuPhiIds) {
+            List<ThuPhiHoKhauRepository.PeriodTotals> totals = thuPhiRepo.sumForPeriod(dotThuPhiId);
+            long soHo = totals.isEmpty() ? 0L : totals.get(0).getSoHo();
+            BigDecimal soTien = totals.isEmpty() ? BigDecimal.ZERO : nullToZero(totals.get(0).getTongTien());
+            tongHopRepo.overwrite(dotThuPhiId, soHo, soTien, now);
+        }
+        afterCommit(() -> dotThuPhiIds.forEach(overviewCache::evict));
+    }
+
+    /**
+     * Dựng lại toàn bộ bảng tổng hợp (sửa sai lệch). Chạy khi khởi động và hằng đêm.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    @Scheduled(cron = "${app.thu-phi.tong-hop.rebuild-cron:0 30 2 * * *}")
+    @Transactional
+    public void rebuildAll() {
+        // Khóa trước khi đọc tổng: thanh toán commit trước đó đã được tính, thanh toán đến sau
+        // phải chờ và cộng dồn lên giá trị mới
+        tongHopRepo.lockForRebuild();
+        Map<Long, ThuPhiHoKhauRepository.PeriodTotals> totalsByPeriod = thuPhiRepo.sumByPeriod().stream()
+                .collect(Collectors.toMap(ThuPhiHoKhauRepository.PeriodTotals::getDotThuPhiId, Function.identity()));
+
+        LocalDateTime now = LocalDateTime.now();
+        int count = 0;
+        for (DotThuPhi dot : dotThuPhiRepo.findAll()) {
+            ThuPhiHoKhauRepository.PeriodTotals totals = totalsByPeriod.get(dot.getId());
+            long soHo = totals == null ? 0L : totals.getSoHo();
+            BigDecimal soTien = totals == null ? BigDecimal.ZERO : nullToZero(totals.getTongTien());
+            tongHopRepo.overwrite(dot.getId(), soHo, soTien, now);
+            count++;
+        }
+        afterCommit(overviewCache::evictAll);
+        log.info("Rebuilt fee totals for {} periods", count);
+    }
+
+    // Tổng quan đã cache lấy số đã thu từ bảng này: chỉ xóa cache khi giá trị mới đã commit
+    private void afterCommit(Runnable action) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            action.run();
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                action.run();
+            }
+        });
+    }
+
+    private BigDecimal nullToZero(BigDecimal value) {
+        return value == null ? BigDecimal.ZERO : value;
+    }
+
+    private ThuPhiTongHopResponseDto toResponseDto(ThuPhiTongHop entity) {
+        return ThuPhiTongHopResponseDto.builder()
+                .dotThuPhiId(entity.getDotThuPhiId())
+                .soHoDaNop(entity.getSoHoDaNop())
+                .tongDaThu(entity.getTongDaThu())
+                .capNhatLuc(entity.getCapNhatLuc())
+                .build();
+    }
+}
@@ -0,0 +1,85 @@
+package com.example.QuanLyDanCu.util;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.JsonNodeFactory;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HexFormat;
+import java.util.List;
+
+/**
+ * Hash SHA-256 của một dòng nhật ký biến động trong chuỗi chống sửa.
+ *
+ * <p>Nội dung được băm gồm vị trí trong chuỗi (chuoi, thu_tu), hash dòng trước và các trường
+ * không đổi của dòng: loai, noi_dung, thoi_gian, chi_tiet. Mỗi trường được ghi kèm độ dài
+ * nên không thể dời ký tự giữa hai trường mà giữ nguyên hash.
+ * chi_tiet được băm ở dạng JSON chuẩn hóa (khóa sắp xếp, không khoảng trắng) vì JSONB không
+ * giữ thứ tự khóa; khóa lạ được thêm vào cũng làm đổi hash.
+ * ho_khau_id / nhan_khau_id không được băm: chúng bị đặt null khi hộ khẩu / nhân khẩu bị xóa.
+ */
+public final class BienDongHashUtils {
+
+    // hash_truoc của dòng đầu tiên mỗi chuỗi
+    public static final String GENESIS = "0".repeat(64);
+
+    private static final HexFormat HEX = HexFormat.of();
+
+    private BienDongHashUtils() {
+    }
+
+    public static String compute(int chuoi, long thuTu, String hashTruoc, String loai, String noiDung,
+            LocalDateTime thoiGian, JsonNode chiTiet) {
+        MessageDigest digest = sha256();
+        digest.update(ByteBuffer.allocate(Integer.BYTES + Long.BYTES).putInt(chuoi).putLong(thuTu).array());
+        update(digest, hashTruoc);
+        update(digest, loai);
+        update(digest, noiDung);
+        update(digest, thoiGian != null ? thoiGian.toString() : null);
+        update(digest, chiTiet == null || chiTiet.isNull() ? null : sorted(chiTiet).toString());
+        return HEX.formatHex(digest.digest());
+    }
+
+    private static JsonNode sorted(JsonNode node) {
+        if (node.isObject()) {
+            List<String> names = new ArrayList<>();
+            node.fieldNames().forEachRemaining(names::add);
+            names.sort(null);
+            ObjectNode result = JsonNodeFactory.instance.objectNode();
+            for (String name : names) {
+                result.set(name, sorted(node.get(name)));
+            }
+            return result;
+        }
+        if (node.isArray()) {
+            ArrayNode result = JsonNodeFactory.instance.arrayNode();
+            node.forEach(child -> result.add(sorted(child)));
+            return result;
+        }
+        return node;
+    }
+
+    private static void update(MessageDigest digest, String value) {
+        if (value == null) {
+            digest.update(ByteBuffer.allocate(Integer.BYTES).putInt(-1).array());
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        digest.update(ByteBuffer.allocate(Integer.BYTES).putInt(bytes.length).array());
+        digest.update(bytes);
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException ex) {
+            // Mọi JVM đều bắt buộc có SHA-256
+            throw new IllegalStateException(ex);
+        }
+    }
+}
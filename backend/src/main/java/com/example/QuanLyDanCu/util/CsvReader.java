@@ -0,0 +1,107 @@
+package com.example.QuanLyDanCu.util;
+
+import com.example.QuanLyDanCu.exception.BadRequestException;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Đọc CSV (RFC 4180) tuần tự từng bản ghi, không nạp cả tệp vào bộ nhớ.
+ * Bỏ qua BOM UTF-8 ở đầu (tệp do {@link CsvWriter} hoặc Excel ghi).
+ */
+public class CsvReader implements Closeable {
+
+    private static final char SEPARATOR = ',';
+
+    private final Reader reader;
+    private boolean started;
+    // Dòng vật lý hiện tại và dòng bắt đầu của bản ghi vừa đọc (tính từ 1)
+    private int line = 1;
+    private int recordLine;
+
+    public CsvReader(InputStream in) {
+        this.reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Bản ghi tiếp theo, hoặc null khi hết tệp. Dòng trống trả về một trường rỗng.
+     */
+    public List<String> readRow() throws IOException {
+        int c = reader.read();
+        if (!started) {
+            started = true;
+            if (c == '\uFEFF') {
+                c = reader.read();
+            }
+        }
+        if (c == -1) {
+            return null;
+        }
+
+        recordLine = line;
+        List<String> fields = new ArrayList<>();
+        StringBuilder field = new StringBuilder();
+        boolean inQuotes = false;
+        boolean quoted = false;
+
+        while (true) {
+            if (inQuotes) {
+                if (c == -1) {
+                    throw new BadRequestException("CSV không hợp lệ: dấu nháy kép chưa đóng (dòng " + recordLine + ")");
+                }
+                if (c == '"') {
+                    int next = reader.read();
+                    if (next == '"') {
+                        field.append('"');
+                        c = reader.read();
+                    } else {
+                        inQuotes = false;
+                        c = next;
+                    }
+                    continue;
+                }
+                if (c == '\n') {
+                    line++;
+                }
+                field.append((char) c);
+                c = reader.read();
+                continue;
+            }
+
+            if (c == '"' && field.length() == 0 && !quoted) {
+                inQuotes = true;
+                quoted = true;
+            } else if (c == SEPARATOR) {
+                fields.add(field.toString());
+                field.setLength(0);
+                quoted = false;
+            } else if (c == '\n' || c == -1) {
+                fields.add(field.toString());
+                line++;
+                return fields;
+            } else if (c != '\r') {
+                field.append((char) c);
+            }
+            c = reader.read();
+        }
+    }
+
+    /**
+     * Dòng (vật lý) bắt đầu của bản ghi vừa đọc, tính từ 1.
+     */
+    public int getRecordLine() {
+        return recordLine;
+    }
+
+    @Override
+    public void close() throws IOException {
+        reader.close();
+    }
+}
@@ -0,0 +1,69 @@
+package com.example.QuanLyDanCu.util;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Ghi CSV (RFC 4180) tuần tự ra OutputStream, không giữ dữ liệu trong bộ nhớ.
+ * Có BOM UTF-8 ở đầu để Excel đọc đúng tiếng Việt.
+ */
+public class CsvWriter implements TabularWriter {
+
+    private static final char SEPARATOR = ',';
+    private static final String LINE_END = "\r\n";
+
+    private final Writer writer;
+
+    public CsvWriter(OutputStream out) throws IOException {
+        this.writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8));
+        this.writer.write('\uFEFF');
+    }
+
+    @Override
+    public void writeRow(Object... values) throws IOException {
+        for (int i = 0; i < values.length; i++) {
+            if (i > 0) {
+                writer.write(SEPARATOR);
+            }
+            writer.write(escape(values[i]));
+        }
+        writer.write(LINE_END);
+    }
+
+    @Override
+    public void writeEmptyRow() throws IOException {
+        writer.write(LINE_END);
+    }
+
+    @Override
+    public void flush() throws IOException {
+        writer.flush();
+    }
+
+    /**
+     * Chỉ flush, không đóng OutputStream gốc (do container quản lý).
+     */
+    @Override
+    public void close() throws IOException {
+        writer.flush();
+    }
+
+    private static String escape(Object value) {
+        if (value == null) {
+            return "";
+        }
+        String text = value.toString();
+        boolean needsQuote = text.indexOf(SEPARATOR) >= 0
+                || text.indexOf('"') >= 0
+                || text.indexOf('\n') >= 0
+                || text.indexOf('\r') >= 0;
+        if (!needsQuote) {
+            return text;
+        }
+        return '"' + text.replace("\"", "\"\"") + '"';
+    }
+}
@@ -0,0 +1,182 @@
+package com.example.QuanLyDanCu.util;
+
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.function.Predicate;
+
+/**
+ * Cây tiền tố (trie) gọn: mỗi nút giữ mảng ký tự con đã sắp xếp thay vì HashMap,
+ * nên vài trăm nghìn khóa chỉ tốn vài chục MB. Một khóa có thể gắn nhiều giá trị
+ * và một giá trị có thể nằm dưới nhiều khóa.
+ *
+ * <p>Không an toàn luồng: người gọi tự đồng bộ (xem {@code GoiYService}).
+ */
+public final class PrefixTrie<T> {
+
+    private static final char[] NO_KEYS = new char[0];
+    private static final Node<?>[] NO_CHILDREN = new Node<?>[0];
+    private static final Object[] NO_VALUES = new Object[0];
+
+    private final Node<T> root = new Node<>();
+    private int nodeCount = 1;
+
+    public void put(String key, T value) {
+        Node<T> node = root;
+        for (int i = 0; i < key.length(); i++) {
+            node = node.childOrCreate(key.charAt(i), this);
+        }
+        node.addValue(value);
+    }
+
+    public void remove(String key, T value) {
+        remove(root, key, 0, value);
+    }
+
+    // Trả về true nếu nút con đã rỗng và có thể gỡ khỏi nút cha
+    private boolean remove(Node<T> node, String key, int depth, T value) {
+        if (depth == key.length()) {
+            node.removeValue(value);
+        } else {
+            int idx = Arrays.binarySearch(node.keys, key.charAt(depth));
+            if (idx < 0) {
+                return false;
+            }
+            if (remove(node.child(idx), key, depth + 1, value)) {
+                node.removeChild(idx);
+                nodeCount--;
+            }
+        }
+        return node != root && node.values.length == 0 && node.keys.length == 0;
+    }
+
+    /**
+     * Tối đa limit giá trị (không trùng) có khóa bắt đầu bằng prefix, theo thứ tự từ điển của khóa
+     * (khóa ngắn / trùng khớp trước). Chỉ duyệt tới khi đủ limit.
+     */
+    public List<T> findByPrefix(String prefix, int limit, Predicate<T> filter) {
+        Node<T> node = root;
+        for (int i = 0; i < prefix.length() && node != null; i++) {
+            int idx = Arrays.binarySearch(node.keys, prefix.charAt(i));
+            node = idx < 0 ? null : node.child(idx);
+        }
+        Set<T> result = new LinkedHashSet<>();
+        if (node != null) {
+            collect(node, limit, filter, result);
+        }
+        return List.copyOf(result);
+    }
+
+    private void collect(Node<T> node, int limit, Predicate<T> filter, Set<T> result) {
+        for (Object raw : node.values) {
+            @SuppressWarnings("unchecked")
+            T value = (T) raw;
+            if (filter.test(value)) {
+                result.add(value);
+                if (result.size() >= limit) {
+                    return;
+                }
+            }
+        }
+        for (int i = 0; i < node.keys.length && result.size() < limit; i++) {
+            collect(node.child(i), limit, filter, result);
+        }
+    }
+
+    public int nodeCount() {
+        return nodeCount;
+    }
+
+    /**
+     * Ước tính bộ nhớ của riêng cấu trúc cây (không gồm giá trị), theo bố cục HotSpot 64-bit
+     * với compressed oops: header đối tượng 12 byte, tham chiếu 4 byte, căn lề 8 byte.
+     */
+    public long estimateBytes() {
+        return estimateBytes(root);
+    }
+
+    private long estimateBytes(Node<T> node) {
+        // Nút: header + 3 tham chiếu mảng
+        long bytes = align(12 + 3 * 4);
+        if (node.keys.length > 0) {
+            bytes += align(16 + 2L * node.keys.length) + align(16 + 4L * node.children.length);
+        }
+        if (node.values.length > 0) {
+            bytes += align(16 + 4L * node.values.length);
+        }
+        for (int i = 0; i < node.keys.length; i++) {
+            bytes += estimateBytes(node.child(i));
+        }
+        return bytes;
+    }
+
+    private static long align(long bytes) {
+        return (bytes + 7) & ~7L;
+    }
+
+    private static final class Node<T> {
+        char[] keys = NO_KEYS;
+        Node<?>[] children = NO_CHILDREN;
+        Object[] values = NO_VALUES;
+
+        @SuppressWarnings("unchecked")
+        Node<T> child(int idx) {
+            return (Node<T>) children[idx];
+        }
+
+        Node<T> childOrCreate(char c, PrefixTrie<T> trie) {
+            int idx = Arrays.binarySearch(keys, c);
+            if (idx >= 0) {
+                return child(idx);
+            }
+            int at = -idx - 1;
+            Node<T> created = new Node<>();
+            char[] newKeys = new char[keys.length + 1];
+            Node<?>[] newChildren = new Node<?>[children.length + 1];
+            System.arraycopy(keys, 0, newKeys, 0, at);
+            System.arraycopy(children, 0, newChildren, 0, at);
+            newKeys[at] = c;
+            newChildren[at] = created;
+            System.arraycopy(keys, at, newKeys, at + 1, keys.length - at);
+            System.arraycopy(children, at, newChildren, at + 1, children.length - at);
+            keys = newKeys;
+            children = newChildren;
+            trie.nodeCount++;
+            return created;
+        }
+
+        void removeChild(int idx) {
+            char[] newKeys = new char[keys.length - 1];
+            Node<?>[] newChildren = new Node<?>[children.length - 1];
+            System.arraycopy(keys, 0, newKeys, 0, idx);
+            System.arraycopy(children, 0, newChildren, 0, idx);
+            System.arraycopy(keys, idx + 1, newKeys, idx, keys.length - idx - 1);
+            System.arraycopy(children, idx + 1, newChildren, idx, children.length - idx - 1);
+            keys = newKeys.length == 0 ? NO_KEYS : newKeys;
+            children = newChildren.length == 0 ? NO_CHILDREN : newChildren;
+        }
+
+        void addValue(T value) {
+            for (Object existing : values) {
+                if (existing.equals(value)) {
+                    return;
+                }
+            }
+            values = Arrays.copyOf(values, values.length + 1);
+            values[values.length - 1] = value;
+        }
+
+        void removeValue(T value) {
+            for (int i = 0; i < values.length; i++) {
+                if (values[i].equals(value)) {
+                    Object[] newValues = new Object[values.length - 1];
+                    System.arraycopy(values, 0, newValues, 0, i);
+                    System.arraycopy(values, i + 1, newValues, i, values.length - i - 1);
+                    values = newValues.length == 0 ? NO_VALUES : newValues;
+                    return;
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,22 @@
+package com.example.QuanLyDanCu.util;
+
+import java.io.Closeable;
+import java.io.Flushable;
+import java.io.IOException;
+
+/**
+ * Ghi bảng tuần tự theo dòng (CSV, XLSX). close() chỉ kết thúc tệp, không đóng OutputStream gốc.
+ */
+public interface TabularWriter extends Flushable, Closeable {
+
+    void writeRow(Object... values) throws IOException;
+
+    void writeEmptyRow() throws IOException;
+
+    /**
+     * Dòng tiêu đề; mặc định ghi như dòng thường.
+     */
+    default void writeHeader(Object... values) throws IOException {
+        writeRow(values);
+    }
+}
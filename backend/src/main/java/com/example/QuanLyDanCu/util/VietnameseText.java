@@ -0,0 +1,46 @@
+package com.example.QuanLyDanCu.util;
+
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Chuẩn hóa tiếng Việt để tìm kiếm không phân biệt dấu / hoa thường,
+ * khớp với hàm {@code f_unaccent} phía PostgreSQL ("Nguyễn Đức" -> "nguyen duc").
+ */
+public final class VietnameseText {
+
+    private static final Pattern COMBINING_MARKS = Pattern.compile("\\p{M}+");
+    private static final Pattern TOKEN = Pattern.compile("[\\p{L}\\p{N}]+");
+
+    private VietnameseText() {
+    }
+
+    public static String fold(String text) {
+        if (text == null) {
+            return null;
+        }
+        // đ/Đ không phải ký tự tổ hợp nên NFD không tách được dấu
+        String replaced = text.replace('đ', 'd').replace('Đ', 'D');
+        String decomposed = Normalizer.normalize(replaced, Normalizer.Form.NFD);
+        return COMBINING_MARKS.matcher(decomposed).replaceAll("").toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * Tách chuỗi đã chuẩn hóa thành các từ (chữ / số), bỏ dấu câu và khoảng trắng.
+     */
+    public static List<String> tokens(String text) {
+        List<String> result = new ArrayList<>();
+        if (text == null) {
+            return result;
+        }
+        Matcher m = TOKEN.matcher(fold(text));
+        while (m.find()) {
+            result.add(m.group());
+        }
+        return result;
+    }
+}
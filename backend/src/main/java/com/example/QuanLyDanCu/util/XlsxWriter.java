@@ -0,0 +1,223 @@
+package com.example.QuanLyDanCu.util;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * Ghi tệp XLSX một trang tính tuần tự ra OutputStream, không giữ dữ liệu trong bộ nhớ.
+ *
+ * <p>XLSX là tệp ZIP gồm các phần XML; phần cố định được ghi ngay khi khởi tạo, trang tính
+ * được ghi dần theo dòng. Chữ dùng inline string (không cần bảng sharedStrings phải giữ
+ * trong bộ nhớ), số ghi dạng số, các kiểu khác ghi bằng toString() như CSV.
+ */
+public class XlsxWriter implements TabularWriter {
+
+    // Giới hạn của Excel
+    private static final int MAX_ROWS = 1_048_576;
+    private static final int MAX_CELL_LENGTH = 32_767;
+
+    private static final String MAIN_NS = "http://schemas.openxmlformats.org/spreadsheetml/2006/main";
+    private static final String REL_NS = "http://schemas.openxmlformats.org/package/2006/relationships";
+    private static final String DOC_REL = "http://schemas.openxmlformats.org/officeDocument/2006/relationships";
+    private static final String XML_DECL = "<?xml version=\"1.0\" encoding=\"UTF-8\" standalone=\"yes\"?>\n";
+
+    private final OutputStream out;
+    private final ZipOutputStream zip;
+    private final Writer writer;
+    private int rowNumber;
+    private boolean finished;
+
+    public XlsxWriter(OutputStream out, String sheetName) throws IOException {
+        this.out = out;
+        this.zip = new ZipOutputStream(out, StandardCharsets.UTF_8);
+        this.writer = new BufferedWriter(new OutputStreamWriter(zip, StandardCharsets.UTF_8));
+
+        writePart("[Content_Types].xml", XML_DECL
+                + "<Types xmlns=\"http://schemas.openxmlformats.org/package/2006/content-types\">"
+                + "<Default Extension=\"rels\" ContentType=\"application/vnd.openxmlformats-package.relationships+xml\"/>"
+                + "<Default Extension=\"xml\" ContentType=\"application/xml\"/>"
+                + "<Override PartName=\"/xl/workbook.xml\" ContentType=\"application/vnd.openxmlformats-officedocument.spreadsheetml.sheet.main+xml\"/>"
+                + "<Override PartName=\"/xl/styles.xml\" ContentType=\"application/vnd.openxmlformats-officedocument.spreadsheetml.styles+xml\"/>"
+                + "<Override PartName=\"/xl/worksheets/sheet1.xml\" ContentType=\"application/vnd.openxmlformats-officedocument.spreadsheetml.worksheet+xml\"/>"
+                + "</Types>");
+        writePart("_rels/.rels", XML_DECL
+                + "<Relationships xmlns=\"" + REL_NS + "\">"
+                + "<Relationship Id=\"rId1\" Type=\"" + DOC_REL + "/officeDocument\" Target=\"xl/workbook.xml\"/>"
+                + "</Relationships>");
+        writePart("xl/workbook.xml", XML_DECL
+                + "<workbook xmlns=\"" + MAIN_NS + "\" xmlns:r=\"" + DOC_REL + "\">"
+                + "<sheets><sheet name=\"" + escape(sheetName(sheetName)) + "\" sheetId=\"1\" r:id=\"rId1\"/></sheets>"
+                + "</workbook>");
+        writePart("xl/_rels/workbook.xml.rels", XML_DECL
+                + "<Relationships xmlns=\"" + REL_NS + "\">"
+                + "<Relationship Id=\"rId1\" Type=\"" + DOC_REL + "/worksheet\" Target=\"worksheets/sheet1.xml\"/>"
+                + "<Relationship Id=\"rId2\" Type=\"" + DOC_REL + "/styles\" Target=\"styles.xml\"/>"
+                + "</Relationships>");
+        // Style 0: mặc định, style 1: chữ đậm (dòng tiêu đề)
+        writePart("xl/styles.xml", XML_DECL
+                + "<styleSheet xmlns=\"" + MAIN_NS + "\">"
+                + "<fonts count=\"2\"><font><sz val=\"11\"/><name val=\"Calibri\"/></font>"
+                + "<font><b/><sz val=\"11\"/><name val=\"Calibri\"/></font></fonts>"
+                + "<fills count=\"2\"><fill><patternFill patternType=\"none\"/></fill>"
+                + "<fill><patternFill patternType=\"gray125\"/></fill></fills>"
+                + "<borders count=\"1\"><border><left/><right/><top/><bottom/><diagonal/></border></borders>"
+                + "<cellStyleXfs count=\"1\"><xf numFmtId=\"0\" fontId=\"0\" fillId=\"0\" borderId=\"0\"/></cellStyleXfs>"
+                + "<cellXfs count=\"2\"><xf numFmtId=\"0\" fontId=\"0\" fillId=\"0\" borderId=\"0\" xfId=\"0\"/>"
+                + "<xf numFmtId=\"0\" fontId=\"1\" fillId=\"0\" borderId=\"0\" xfId=\"0\" applyFont=\"1\"/></cellXfs>"
+                + "</styleSheet>");
+
+        zip.putNextEntry(new ZipEntry("xl/worksheets/sheet1.xml"));
+        writer.write(XML_DECL);
+        writer.write("<worksheet xmlns=\"" + MAIN_NS + "\"><sheetData>");
+    }
+
+    @Override
+    public void writeHeader(Object... values) throws IOException {
+        writeRow(1, values);
+    }
+
+    @Override
+    public void writeRow(Object... values) throws IOException {
+        writeRow(0, values);
+    }
+
+    /**
+     * Dòng trống: chỉ tăng số dòng, không cần ghi phần tử nào.
+     */
+    @Override
+    public void writeEmptyRow() throws IOException {
+        nextRow();
+    }
+
+    @Override
+    public void flush() throws IOException {
+        writer.flush();
+        zip.flush();
+    }
+
+    /**
+     * Kết thúc trang tính và ghi mục lục ZIP; không đóng OutputStream gốc (do container quản lý).
+     */
+    @Override
+    public void close() throws IOException {
+        if (finished) {
+            return;
+        }
+        finished = true;
+        writer.write("</sheetData></worksheet>");
+        writer.flush();
+        zip.closeEntry();
+        zip.finish();
+        out.flush();
+    }
+
+    private void writeRow(int style, Object... values) throws IOException {
+        int row = nextRow();
+        writer.write("<row r=\"");
+        writer.write(Integer.toString(row));
+        writer.write("\">");
+        for (Object value : values) {
+            writeCell(style, value);
+        }
+        writer.write("</row>");
+    }
+
+    private int nextRow() throws IOException {
+        if (rowNumber >= MAX_ROWS) {
+            throw new IOException("Vượt quá số dòng tối đa của XLSX (" + MAX_ROWS + ")");
+        }
+        return ++rowNumber;
+    }
+
+    private void writeCell(int style, Object value) throws IOException {
+        String styleAttr = style == 0 ? "" : " s=\"" + style + "\"";
+        if (value == null) {
+            writer.write("<c" + styleAttr + "/>");
+            return;
+        }
+        String number = toNumber(value);
+        if (number != null) {
+            writer.write("<c" + styleAttr + "><v>");
+            writer.write(number);
+            writer.write("</v></c>");
+            return;
+        }
+        String text = value.toString();
+        if (text.length() > MAX_CELL_LENGTH) {
+            text = text.substring(0, MAX_CELL_LENGTH);
+        }
+        writer.write("<c" + styleAttr + " t=\"inlineStr\"><is><t xml:space=\"preserve\">");
+        writer.write(escape(text));
+        writer.write("</t></is></c>");
+    }
+
+    // null nếu không phải số ghi được dạng số trong Excel
+    private static String toNumber(Object value) {
+        if (value instanceof Integer || value instanceof Long || value instanceof Short
+                || value instanceof Byte || value instanceof BigInteger) {
+            return value.toString();
+        }
+        if (value instanceof BigDecimal d) {
+            return d.toPlainString();
+        }
+        if (value instanceof Double || value instanceof Float) {
+            double d = ((Number) value).doubleValue();
+            return Double.isFinite(d) ? value.toString() : null;
+        }
+        return null;
+    }
+
+    private void writePart(String name, String content) throws IOException {
+        zip.putNextEntry(new ZipEntry(name));
+        writer.write(content);
+        writer.flush();
+        zip.closeEntry();
+    }
+
+    // Tên trang tính: tối đa 31 ký tự, không chứa : \ / ? * [ ]
+    private static String sheetName(String name) {
+        String cleaned = name == null ? "" : name.replaceAll("[:\\\\/?*\\[\\]]", " ").trim();
+        if (cleaned.isEmpty()) {
+            return "Sheet1";
+        }
+        return cleaned.length() > 31 ? cleaned.substring(0, 31) : cleaned;
+    }
+
+    // Thoát ký tự XML; bỏ ký tự điều khiển không hợp lệ trong XML 1.0
+    private static String escape(String text) {
+        StringBuilder sb = null;
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            String replacement;
+            switch (c) {
+                case '&' -> replacement = "&amp;";
+                case '<' -> replacement = "&lt;";
+                case '>' -> replacement = "&gt;";
+                case '"' -> replacement = "&quot;";
+                default -> replacement = (c < 0x20 && c != '\t' && c != '\n' && c != '\r') || c == '\uFFFE' || c == '\uFFFF'
+                        ? ""
+                        : null;
+            }
+            if (replacement == null) {
+                if (sb != null) {
+                    sb.append(c);
+                }
+                continue;
+            }
+            if (sb == null) {
+                sb = new StringBuilder(text.length() + 16);
+                sb.append(text, 0, i);
+            }
+            sb.append(replacement);
+        }
+        return sb == null ? text : sb.toString();
+    }
+}
@@ -0,0 +1,49 @@
+package com.example.QuanLyDanCu;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+/**
+ * Tiện ích đo cho các lớp {@code @Tag("benchmark")}: đo thời gian, in kết quả một dòng.
+ * Các benchmark không chạy trong {@code mvn test} thường, chạy riêng bằng
+ * {@code mvn test -Dgroups=benchmark -Dsurefire.excludedGroups=} (cần Docker).
+ * Số liệu phụ thuộc máy chạy; so sánh các dòng trong cùng một lần chạy.
+ */
+public final class Benchmarks {
+
+    private Benchmarks() {
+    }
+
+    /**
+     * Chạy tác vụ (trả về số đơn vị đã xử lý) và in thông lượng.
+     */
+    public static long measure(String name, LongSupplier task) {
+        long start = System.nanoTime();
+        long units = task.getAsLong();
+        long millis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        report(name, units, millis);
+        return millis;
+    }
+
+    public static void report(String name, long units, long millis) {
+        double perSecond = millis == 0 ? Double.POSITIVE_INFINITY : units * 1000.0 / millis;
+        System.out.printf("[benchmark] %-55s %10d dòng %9d ms %12.0f dòng/s%n", name, units, millis, perSecond);
+    }
+
+    /**
+     * In độ trễ (p50 / p95 / max) của một dãy lần đo, đơn vị mili giây.
+     */
+    public static void reportLatency(String name, long[] nanos) {
+        long[] sorted = nanos.clone();
+        Arrays.sort(sorted);
+        System.out.printf("[benchmark] %-55s n=%d p50=%.2f ms p95=%.2f ms max=%.2f ms%n", name, sorted.length,
+                sorted[percentileIndex(sorted.length, 50)] / 1e6,
+                sorted[percentileIndex(sorted.length, 95)] / 1e6,
+                sorted[sorted.length - 1] / 1e6);
+    }
+
+    private static int percentileIndex(int size, int percentile) {
+        return Math.min(size - 1, (int) Math.ceil(percentile / 100.0 * size) - 1);
+    }
+}
@@ -0,0 +1,34 @@
+package com.example.QuanLyDanCu;
+
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.testcontainers.containers.PostgreSQLContainer;
+import org.testcontainers.utility.MountableFile;
+
+/**
+ * Lớp cơ sở cho test tích hợp: một PostgreSQL (Testcontainers) dùng chung cho mọi lớp test,
+ * schema khởi tạo từ quanlydancu.sql giống môi trường thật (phân vùng, ràng buộc duy nhất,
+ * unaccent / pg_trgm). Cần Docker khi chạy {@code mvn test}.
+ */
+@SpringBootTest
+@ActiveProfiles("test")
+public abstract class PostgresIntegrationTest {
+
+    protected static final PostgreSQLContainer<?> POSTGRES = new PostgreSQLContainer<>("postgres:16-alpine")
+            .withCopyFileToContainer(MountableFile.forHostPath("quanlydancu.sql"),
+                    "/docker-entrypoint-initdb.d/01-quanlydancu.sql");
+
+    static {
+        // Khởi động một lần cho cả lần chạy test; Testcontainers tự dọn khi JVM kết thúc
+        POSTGRES.start();
+    }
+
+    @DynamicPropertySource
+    static void datasource(DynamicPropertyRegistry registry) {
+        registry.add("spring.datasource.url", POSTGRES::getJdbcUrl);
+        registry.add("spring.datasource.username", POSTGRES::getUsername);
+        registry.add("spring.datasource.password", POSTGRES::getPassword);
+    }
+}
@@ -0,0 +1,69 @@
+package com.example.QuanLyDanCu.service;
+
+import com.example.QuanLyDanCu.Benchmarks;
+import com.example.QuanLyDanCu.PostgresIntegrationTest;
+import com.example.QuanLyDanCu.dto.response.KiemTraChuoiResponseDto;
+import com.example.QuanLyDanCu.enums.BienDongType;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Tốc độ kiểm tra chuỗi hash trên một triệu dòng nhật ký: nạp đủ 1.000.000 dòng đã niêm phong
+ * qua {@link BienDongService#log}, rồi chạy {@link BienDongChuoiService#verifyNow()} và in
+ * thời gian, số dòng / giây và số luồng (app.bien-dong.chuoi.verify-threads).
+ */
+@Tag("benchmark")
+class BienDongChuoiBenchmarkTest extends PostgresIntegrationTest {
+
+    private static final long TARGET_ROWS = 1_000_000;
+    private static final int ROWS_PER_TRANSACTION = 1_000;
+
+    @Autowired
+    private BienDongService bienDongService;
+
+    @Autowired
+    private BienDongChuoiService chuoiService;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Test
+    void verifyOneMillionRows() {
+        Long existing = jdbcTemplate.queryForObject("SELECT COUNT(*) FROM bien_dong WHERE chuoi IS NOT NULL",
+                Long.class);
+        long missing = Math.max(TARGET_ROWS - (existing == null ? 0 : existing), 0);
+        Benchmarks.measure("nạp dữ liệu qua log(), " + ROWS_PER_TRANSACTION + " dòng/transaction",
+                () -> seed(missing));
+
+        // Lượt đầu làm nóng cache trang của PostgreSQL và JIT; lượt sau là số liệu
+        chuoiService.verifyNow();
+        KiemTraChuoiResponseDto result = chuoiService.verifyNow();
+
+        assertThat(result.getHopLe()).isTrue();
+        assertThat(result.getSoDongDaKiemTra()).isGreaterThanOrEqualTo(TARGET_ROWS);
+        Benchmarks.report("verifyNow(), " + result.getSoLuongXuLy() + " luồng, "
+                + result.getSoChuoi() + " chuỗi", result.getSoDongDaKiemTra(), result.getThoiGianMs());
+    }
+
+    private long seed(long rows) {
+        for (long done = 0; done < rows; done += ROWS_PER_TRANSACTION) {
+            long from = done;
+            long count = Math.min(ROWS_PER_TRANSACTION, rows - done);
+            transactionTemplate.executeWithoutResult(status -> {
+                for (long i = from; i < from + count; i++) {
+                    bienDongService.log(BienDongType.THAY_DOI_THONG_TIN,
+                            "Cập nhật thông tin nhân khẩu " + i + " (dữ liệu benchmark)", null, null);
+                }
+            });
+        }
+        return rows;
+    }
+}
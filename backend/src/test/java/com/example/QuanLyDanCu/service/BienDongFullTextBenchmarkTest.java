@@ -0,0 +1,84 @@
+package com.example.QuanLyDanCu.service;
+
+import com.example.QuanLyDanCu.Benchmarks;
+import com.example.QuanLyDanCu.PostgresIntegrationTest;
+import com.example.QuanLyDanCu.enums.BienDongType;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * Thông lượng {@link BienDongService#log} khi có và không có index GIN toàn văn
+ * {@code idx_bien_dong_noi_dung_fts} (migrations/005), thêm trường hợp tắt fastupdate để thấy
+ * phần chi phí mà danh sách chờ của GIN gánh bớt. Index được tạo lại như ban đầu sau khi đo.
+ */
+@Tag("benchmark")
+class BienDongFullTextBenchmarkTest extends PostgresIntegrationTest {
+
+    private static final int ROWS = 20_000;
+    private static final int ROWS_PER_TRANSACTION = 10;
+
+    private static final String CREATE_INDEX = """
+            CREATE INDEX idx_bien_dong_noi_dung_fts ON bien_dong
+                USING GIN (to_tsvector('simple', f_unaccent(coalesce(noi_dung, ''))))
+                WITH (fastupdate = %s)
+            """;
+    private static final String DROP_INDEX = "DROP INDEX IF EXISTS idx_bien_dong_noi_dung_fts";
+
+    // Nội dung giống nhật ký thật: câu tiếng Việt có dấu, độ dài khác nhau
+    private static final String[] NOI_DUNG = {
+            "Chuyển hộ khẩu của nhân khẩu %d sang hộ mới tại tổ dân phố số 7",
+            "Cập nhật thông tin: số điện thoại, nghề nghiệp của nhân khẩu %d",
+            "Đăng ký tạm trú cho nhân khẩu %d đến hết tháng mười hai",
+            "Khai tử nhân khẩu %d, cập nhật lại số thành viên của hộ",
+            "Tách hộ: nhân khẩu %d trở thành chủ hộ của hộ khẩu mới",
+    };
+
+    @Autowired
+    private BienDongService bienDongService;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Test
+    void logThroughputWithAndWithoutFullTextIndex() {
+        // Làm nóng JIT, pool kết nối và cache câu lệnh, không tính kết quả
+        logRows(2_000);
+
+        try {
+            Benchmarks.measure("log() có index GIN (fastupdate = on)", () -> logRows(ROWS));
+
+            recreateIndex("off");
+            Benchmarks.measure("log() có index GIN (fastupdate = off)", () -> logRows(ROWS));
+
+            jdbcTemplate.execute(DROP_INDEX);
+            Benchmarks.measure("log() không có index GIN", () -> logRows(ROWS));
+        } finally {
+            recreateIndex("on");
+        }
+    }
+
+    private void recreateIndex(String fastupdate) {
+        jdbcTemplate.execute(DROP_INDEX);
+        jdbcTemplate.execute(String.format(CREATE_INDEX, fastupdate));
+    }
+
+    private long logRows(int rows) {
+        for (int done = 0; done < rows; done += ROWS_PER_TRANSACTION) {
+            int from = done;
+            int count = Math.min(ROWS_PER_TRANSACTION, rows - done);
+            transactionTemplate.executeWithoutResult(status -> {
+                for (int i = from; i < from + count; i++) {
+                    bienDongService.log(BienDongType.THAY_DOI_THONG_TIN,
+                            String.format(NOI_DUNG[i % NOI_DUNG.length], i), null, null);
+                }
+            });
+        }
+        return rows;
+    }
+}
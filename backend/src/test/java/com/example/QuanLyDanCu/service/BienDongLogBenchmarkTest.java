@@ -0,0 +1,82 @@
+package com.example.QuanLyDanCu.service;
+
+import com.example.QuanLyDanCu.Benchmarks;
+import com.example.QuanLyDanCu.PostgresIntegrationTest;
+import com.example.QuanLyDanCu.entity.BienDong;
+import com.example.QuanLyDanCu.enums.BienDongType;
+import com.example.QuanLyDanCu.repository.BienDongRepository;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Thông lượng ghi nhật ký biến động: cách cũ (mỗi lời gọi một {@code save} JPA, một câu INSERT)
+ * so với {@link BienDongService#log} hiện tại (gom theo transaction, một JDBC batch trước commit,
+ * kèm nối chuỗi hash và cộng dồn thống kê).
+ * Mỗi kịch bản chạy cùng tổng số dòng, chia thành các transaction có 1, 10 và 100 dòng.
+ */
+@Tag("benchmark")
+class BienDongLogBenchmarkTest extends PostgresIntegrationTest {
+
+    private static final int ROWS = 20_000;
+    private static final int[] ROWS_PER_TRANSACTION = { 1, 10, 100 };
+
+    @Autowired
+    private BienDongService bienDongService;
+
+    @Autowired
+    private BienDongRepository bienDongRepository;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Test
+    void batchedLogVersusPerRowSave() {
+        // Làm nóng JIT, pool kết nối và cache câu lệnh, không tính kết quả
+        perRowSave(1_000, 10);
+        batchedLog(1_000, 10);
+
+        for (int perTransaction : ROWS_PER_TRANSACTION) {
+            long before = bienDongRepository.count();
+            Benchmarks.measure("save() từng dòng, " + perTransaction + " dòng/transaction",
+                    () -> perRowSave(ROWS, perTransaction));
+            Benchmarks.measure("log() gom lô, " + perTransaction + " dòng/transaction",
+                    () -> batchedLog(ROWS, perTransaction));
+            assertThat(bienDongRepository.count() - before).isEqualTo(2L * ROWS);
+        }
+    }
+
+    private long perRowSave(int rows, int perTransaction) {
+        for (int done = 0; done < rows; done += perTransaction) {
+            int count = Math.min(perTransaction, rows - done);
+            transactionTemplate.executeWithoutResult(status -> {
+                for (int i = 0; i < count; i++) {
+                    bienDongRepository.save(BienDong.builder()
+                            .loai(BienDongType.THAY_DOI_THONG_TIN)
+                            .noiDung("Benchmark save từng dòng")
+                            .thoiGian(LocalDateTime.now().truncatedTo(ChronoUnit.MICROS))
+                            .build());
+                }
+            });
+        }
+        return rows;
+    }
+
+    private long batchedLog(int rows, int perTransaction) {
+        for (int done = 0; done < rows; done += perTransaction) {
+            int count = Math.min(perTransaction, rows - done);
+            transactionTemplate.executeWithoutResult(status -> {
+                for (int i = 0; i < count; i++) {
+                    bienDongService.log(BienDongType.THAY_DOI_THONG_TIN, "Benchmark log gom lô", null, null);
+                }
+            });
+        }
+        return rows;
+    }
+}
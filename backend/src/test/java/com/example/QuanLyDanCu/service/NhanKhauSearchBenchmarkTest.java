@@ -0,0 +1,118 @@
+package com.example.QuanLyDanCu.service;
+
+import com.example.QuanLyDanCu.Benchmarks;
+import com.example.QuanLyDanCu.PostgresIntegrationTest;
+import com.example.QuanLyDanCu.dto.response.CursorPageResponseDto;
+import com.example.QuanLyDanCu.dto.response.NhanKhauResponseDto;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+/**
+ * Độ trễ tìm kiếm nhân khẩu ({@link NhanKhauService#search}) trên 100.000 và 1.000.000 nhân khẩu:
+ * tên đầy đủ, một từ phổ biến, gõ sai, CMND/CCCD theo tiền tố và trang thứ hai theo con trỏ,
+ * so với câu truy vấn cũ ({@code LOWER(ho_ten) LIKE '%kw%' OR cmnd_cccd LIKE '%kw%'}, trả mọi dòng khớp)
+ * trên cùng dữ liệu và cùng từ khóa.
+ * Dữ liệu sinh bằng generate_series với họ tên tiếng Việt có dấu; in p50 / p95 / max.
+ */
+@Tag("benchmark")
+class NhanKhauSearchBenchmarkTest extends PostgresIntegrationTest {
+
+    private static final int WARMUP = 5;
+    private static final int RUNS = 30;
+    private static final int PAGE_SIZE = 20;
+
+    private static final String SEED_SQL = """
+            INSERT INTO nhan_khau (ho_ten, ngay_sinh, gioi_tinh, cmnd_cccd, trang_thai)
+            SELECT (ARRAY['Nguyễn','Trần','Lê','Phạm','Hoàng','Huỳnh','Phan','Vũ','Võ','Đặng',
+                          'Bùi','Đỗ','Hồ','Ngô','Dương','Lý'])[1 + g % 16]
+                   || ' ' || (ARRAY['Văn','Thị','Hữu','Đức','Minh','Ngọc','Thanh','Quốc','Gia','Bảo'])[1 + g / 16 % 10]
+                   || ' ' || (ARRAY['An','Bình','Cường','Dũng','Giang','Hà','Hải','Hạnh','Hiếu','Hoa',
+                                    'Hùng','Hương','Khánh','Lan','Linh','Long','Mai','Nam','Nga','Phúc',
+                                    'Quang','Sơn','Tâm','Thảo','Trang','Trung','Tuấn','Vân','Việt','Yến'])[1 + g / 160 % 30],
+                   DATE '1950-01-01' + (g % 25000)::int,
+                   CASE WHEN g % 2 = 0 THEN 'Nam' ELSE 'Nữ' END,
+                   lpad(g::text, 12, '0'),
+                   'THUONG_TRU'
+            FROM generate_series(?, ?) AS g
+            """;
+
+    // Câu truy vấn trước khi có tìm kiếm trigram (NhanKhauRepository.findByHoTenContainingIgnoreCase cũ)
+    private static final String LEGACY_SQL = """
+            SELECT * FROM nhan_khau
+            WHERE LOWER(ho_ten) LIKE LOWER('%' || ? || '%') OR cmnd_cccd LIKE '%' || ? || '%'
+            """;
+
+    private static final String[] QUERIES = {
+            "nguyen van hung",   // họ tên đầy đủ, không dấu
+            "Nguyễn Văn Hùng",   // họ tên đầy đủ, có dấu (cách cũ chỉ tìm được kiểu này)
+            "huong",             // một từ rất phổ biến
+            "tran thi hnah",     // gõ sai
+            "00000012",          // CMND/CCCD theo tiền tố
+    };
+
+    @Autowired
+    private NhanKhauService nhanKhauService;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Test
+    void searchLatencyAtHundredThousandAndOneMillionResidents() {
+        for (long target : new long[] { 100_000, 1_000_000 }) {
+            seedUpTo(target);
+            for (String q : QUERIES) {
+                measure(target, q);
+                measureLegacy(target, q);
+            }
+        }
+    }
+
+    private void seedUpTo(long target) {
+        Long existing = jdbcTemplate.queryForObject("SELECT COUNT(*) FROM nhan_khau", Long.class);
+        long from = (existing == null ? 0 : existing) + 1;
+        if (from <= target) {
+            Benchmarks.measure("nạp nhân khẩu tới " + target, () -> {
+                jdbcTemplate.update(SEED_SQL, from, target);
+                return target - from + 1;
+            });
+        }
+        jdbcTemplate.execute("ANALYZE nhan_khau");
+    }
+
+    private void measure(long residents, String q) {
+        long[] firstPage = new long[RUNS];
+        long[] nextPage = new long[RUNS];
+        for (int i = -WARMUP; i < RUNS; i++) {
+            long start = System.nanoTime();
+            CursorPageResponseDto<NhanKhauResponseDto> page = nhanKhauService.search(q, null, PAGE_SIZE);
+            long middle = System.nanoTime();
+            if (page.getNextCursor() != null) {
+                nhanKhauService.search(q, page.getNextCursor(), PAGE_SIZE);
+            }
+            long end = System.nanoTime();
+            if (i >= 0) {
+                firstPage[i] = middle - start;
+                nextPage[i] = end - middle;
+            }
+        }
+        Benchmarks.reportLatency(residents + " nhân khẩu, \"" + q + "\", trang đầu", firstPage);
+        Benchmarks.reportLatency(residents + " nhân khẩu, \"" + q + "\", trang sau", nextPage);
+    }
+
+    private void measureLegacy(long residents, String q) {
+        long[] nanos = new long[RUNS];
+        int matches = 0;
+        for (int i = -WARMUP; i < RUNS; i++) {
+            long start = System.nanoTime();
+            matches = jdbcTemplate.queryForList(LEGACY_SQL, q, q).size();
+            long end = System.nanoTime();
+            if (i >= 0) {
+                nanos[i] = end - start;
+            }
+        }
+        // Cách cũ không bỏ dấu: số dòng khớp cho thấy nó có tìm ra hay không
+        Benchmarks.reportLatency(residents + " nhân khẩu, \"" + q + "\", truy vấn cũ (" + matches + " dòng)", nanos);
+    }
+}
@@ -0,0 +1,50 @@
+package com.example.QuanLyDanCu.service;
+
+import com.example.QuanLyDanCu.PostgresIntegrationTest;
+import com.example.QuanLyDanCu.dto.response.CursorPageResponseDto;
+import com.example.QuanLyDanCu.dto.response.NhanKhauResponseDto;
+import com.example.QuanLyDanCu.exception.BadRequestException;
+import com.example.QuanLyDanCu.util.CursorUtils;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * Con trỏ tìm kiếm do client gửi lại: số dòng đã trả nằm ngoài [0, SEARCH_RESULT_CAP] bị từ chối,
+ * để không vượt được giới hạn kết quả.
+ */
+class NhanKhauSearchCursorTest extends PostgresIntegrationTest {
+
+    @Autowired
+    private NhanKhauService nhanKhauService;
+
+    @Test
+    void rejectsNegativeReturnedCount() {
+        String cursor = CursorUtils.encode("1.0", 1L, -100_000);
+
+        assertThatThrownBy(() -> nhanKhauService.search("nguyen", cursor, 50))
+                .isInstanceOf(BadRequestException.class)
+                .hasMessage("Cursor không hợp lệ");
+    }
+
+    @Test
+    void rejectsReturnedCountAboveCap() {
+        String cursor = CursorUtils.encode("1.0", 1L, NhanKhauService.SEARCH_RESULT_CAP + 1);
+
+        assertThatThrownBy(() -> nhanKhauService.search("nguyen", cursor, 50))
+                .isInstanceOf(BadRequestException.class)
+                .hasMessage("Cursor không hợp lệ");
+    }
+
+    @Test
+    void cursorAtCapReturnsEmptyLastPage() {
+        String cursor = CursorUtils.encode("1.0", 1L, NhanKhauService.SEARCH_RESULT_CAP);
+
+        CursorPageResponseDto<NhanKhauResponseDto> page = nhanKhauService.search("nguyen", cursor, 50);
+
+        assertThat(page.getItems()).isEmpty();
+        assertThat(page.getHasMore()).isFalse();
+    }
+}
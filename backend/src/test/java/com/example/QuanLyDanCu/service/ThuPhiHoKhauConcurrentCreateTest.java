@@ -0,0 +1,150 @@
+package com.example.QuanLyDanCu.service;
+
+import com.example.QuanLyDanCu.PostgresIntegrationTest;
+import com.example.QuanLyDanCu.dto.request.ThuPhiHoKhauRequestDto;
+import com.example.QuanLyDanCu.dto.response.ThuPhiHoKhauResponseDto;
+import com.example.QuanLyDanCu.entity.DotThuPhi;
+import com.example.QuanLyDanCu.entity.HoKhau;
+import com.example.QuanLyDanCu.entity.NhanKhau;
+import com.example.QuanLyDanCu.entity.TaiKhoan;
+import com.example.QuanLyDanCu.enums.LoaiThuPhi;
+import com.example.QuanLyDanCu.exception.ConflictException;
+import com.example.QuanLyDanCu.repository.DotThuPhiRepository;
+import com.example.QuanLyDanCu.repository.HoKhauRepository;
+import com.example.QuanLyDanCu.repository.NhanKhauRepository;
+import com.example.QuanLyDanCu.repository.TaiKhoanRepository;
+import com.example.QuanLyDanCu.repository.ThuPhiHoKhauRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.Authentication;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Nhiều thu ngân ghi nhận cùng một hộ + đợt cùng lúc: chỉ đúng một bản ghi được tạo,
+ * các yêu cầu còn lại nhận 409 kèm chính bản ghi đó.
+ */
+class ThuPhiHoKhauConcurrentCreateTest extends PostgresIntegrationTest {
+
+    private static final int THREADS = 12;
+
+    @Autowired
+    private ThuPhiHoKhauService thuPhiHoKhauService;
+
+    @Autowired
+    private ThuPhiTongHopService tongHopService;
+
+    @Autowired
+    private HoKhauRepository hoKhauRepo;
+
+    @Autowired
+    private NhanKhauRepository nhanKhauRepo;
+
+    @Autowired
+    private DotThuPhiRepository dotThuPhiRepo;
+
+    @Autowired
+    private ThuPhiHoKhauRepository thuPhiRepo;
+
+    @Autowired
+    private TaiKhoanRepository taiKhoanRepo;
+
+    @Test
+    void parallelCreatesProduceExactlyOneRecord() throws Exception {
+        String prefix = "CONC-" + UUID.randomUUID().toString().substring(0, 8);
+        LocalDate today = LocalDate.now();
+
+        TaiKhoan thuNgan = taiKhoanRepo.save(TaiKhoan.builder()
+                .tenDangNhap(prefix)
+                .matKhau("x")
+                .vaiTro("KETOAN")
+                .hoTen("Thu ngân " + prefix)
+                .ngayTao(LocalDateTime.now())
+                .build());
+        DotThuPhi dot = dotThuPhiRepo.save(DotThuPhi.builder()
+                .tenDot(prefix + " Phí vệ sinh")
+                .loai(LoaiThuPhi.BAT_BUOC)
+                .ngayBatDau(today.minusMonths(1))
+                .ngayKetThuc(today.plusMonths(1))
+                .dinhMuc(new BigDecimal("6000.00"))
+                .thuTheoDot(false)
+                .build());
+        HoKhau hoKhau = hoKhauRepo.save(HoKhau.builder()
+                .soHoKhau(prefix)
+                .tenChuHo("Chủ hộ " + prefix)
+                .diaChi("Tổ 1")
+                .ngayTao(LocalDate.of(2024, 1, 1))
+                .isDeleted(false)
+                .build());
+        for (int i = 0; i < 2; i++) {
+            nhanKhauRepo.save(NhanKhau.builder()
+                    .hoTen("Thành viên " + i)
+                    .ngaySinh(LocalDate.of(1990, 1, 1))
+                    .gioiTinh("Nam")
+                    .hoKhauId(hoKhau.getId())
+                    .trangThai("THUONG_TRU")
+                    .build());
+        }
+
+        Authentication auth = new UsernamePasswordAuthenticationToken(thuNgan.getTenDangNhap(), null);
+        ThuPhiHoKhauRequestDto request = ThuPhiHoKhauRequestDto.builder()
+                .hoKhauId(hoKhau.getId())
+                .dotThuPhiId(dot.getId())
+                .ngayThu(today)
+                .ghiChu("Ghi nhận song song")
+                .build();
+
+        // Mọi luồng chờ cùng một hiệu lệnh rồi gọi create đồng thời
+        CountDownLatch start = new CountDownLatch(1);
+        ExecutorService pool = Executors.newFixedThreadPool(THREADS);
+        List<Future<ThuPhiHoKhauResponseDto>> futures = new ArrayList<>();
+        try {
+            for (int i = 0; i < THREADS; i++) {
+                futures.add(pool.submit(() -> {
+                    start.await();
+                    return thuPhiHoKhauService.create(request, auth);
+                }));
+            }
+            start.countDown();
+
+            List<ThuPhiHoKhauResponseDto> created = new ArrayList<>();
+            List<ConflictException> conflicts = new ArrayList<>();
+            for (Future<ThuPhiHoKhauResponseDto> future : futures) {
+                try {
+                    created.add(future.get(60, TimeUnit.SECONDS));
+                } catch (ExecutionException e) {
+                    assertThat(e.getCause()).isInstanceOf(ConflictException.class);
+                    conflicts.add((ConflictException) e.getCause());
+                }
+            }
+
+            assertThat(created).hasSize(1);
+            assertThat(conflicts).hasSize(THREADS - 1);
+            Long createdId = created.get(0).getId();
+            assertThat(conflicts).allSatisfy(conflict -> {
+                assertThat(conflict.getExisting()).isInstanceOf(ThuPhiHoKhauResponseDto.class);
+                assertThat(((ThuPhiHoKhauResponseDto) conflict.getExisting()).getId()).isEqualTo(createdId);
+            });
+        } finally {
+            pool.shutdownNow();
+        }
+
+        assertThat(thuPhiRepo.findByHoKhauIdAndDotThuPhiId(hoKhau.getId(), dot.getId())).hasSize(1);
+        // Bảng tổng hợp chỉ cộng một lần
+        assertThat(tongHopService.getByDotThuPhiId(dot.getId()).getSoHoDaNop()).isEqualTo(1L);
+    }
+}
@@ -0,0 +1,305 @@
+package com.example.QuanLyDanCu.service;
+
+import com.example.QuanLyDanCu.PostgresIntegrationTest;
+import com.example.QuanLyDanCu.dto.response.ThuPhiHoKhauResponseDto;
+import com.example.QuanLyDanCu.entity.DotThuPhi;
+import com.example.QuanLyDanCu.entity.HoKhau;
+import com.example.QuanLyDanCu.entity.NhanKhau;
+import com.example.QuanLyDanCu.entity.ThuPhiHoKhau;
+import com.example.QuanLyDanCu.enums.LoaiThuPhi;
+import com.example.QuanLyDanCu.enums.TrangThaiThuPhi;
+import com.example.QuanLyDanCu.repository.DotThuPhiRepository;
+import com.example.QuanLyDanCu.repository.HoKhauRepository;
+import com.example.QuanLyDanCu.repository.NhanKhauRepository;
+import com.example.QuanLyDanCu.repository.ThuPhiHoKhauRepository;
+import org.assertj.core.api.recursive.comparison.RecursiveComparisonConfiguration;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * So sánh tổng quan đợt thu bắt buộc giữa cách tính cũ (duyệt từng hộ, đếm thành viên
+ * từng hộ) và câu truy vấn gom nhóm hiện tại trên cùng một bộ dữ liệu.
+ */
+class ThuPhiOverviewComparisonTest extends PostgresIntegrationTest {
+
+    @Autowired
+    private ThuPhiHoKhauService thuPhiHoKhauService;
+
+    @Autowired
+    private ThuPhiTongHopService tongHopService;
+
+    @Autowired
+    private HoKhauRepository hoKhauRepo;
+
+    @Autowired
+    private NhanKhauRepository nhanKhauRepo;
+
+    @Autowired
+    private DotThuPhiRepository dotThuPhiRepo;
+
+    @Autowired
+    private ThuPhiHoKhauRepository thuPhiRepo;
+
+    private String prefix;
+
+    @BeforeEach
+    void setUp() {
+        prefix = "CMP-" + UUID.randomUUID().toString().substring(0, 8) + "-";
+    }
+
+    @Test
+    void monthlyPeriodMatchesPerHouseholdComputation() {
+        DotThuPhi dot = dotThuPhiRepo.save(DotThuPhi.builder()
+                .tenDot(prefix + "Phí vệ sinh quý 1")
+                .loai(LoaiThuPhi.BAT_BUOC)
+                .ngayBatDau(LocalDate.of(2025, 1, 1))
+                .ngayKetThuc(LocalDate.of(2025, 3, 31))
+                .dinhMuc(new BigDecimal("6000.00"))
+                .thuTheoDot(false)
+                .build());
+        seedHouseholds(dot, LocalDate.of(2025, 3, 31));
+
+        assertSameOverview(dot);
+    }
+
+    @Test
+    void perPeriodFeeMatchesPerHouseholdComputation() {
+        LocalDate today = LocalDate.now();
+        DotThuPhi dot = dotThuPhiRepo.save(DotThuPhi.builder()
+                .tenDot(prefix + "Quỹ an ninh")
+                .loai(LoaiThuPhi.BAT_BUOC)
+                .ngayBatDau(today.minusMonths(1))
+                .ngayKetThuc(today.plusMonths(1))
+                .dinhMuc(new BigDecimal("20000.00"))
+                .thuTheoDot(true)
+                .build());
+        seedHouseholds(dot, today);
+
+        assertSameOverview(dot);
+    }
+
+    /**
+     * Bộ dữ liệu: hộ đã nộp, hộ chưa nộp có người tạm vắng / đã khai tử / tạm vắng đã hết hạn,
+     * hộ không có thành viên, hộ chưa có số hộ khẩu, hộ đã xóa mềm và hộ đã nộp rồi mới bị xóa mềm.
+     */
+    private void seedHouseholds(DotThuPhi dot, LocalDate refDate) {
+        HoKhau daNop = household(prefix + "003", false);
+        member(daNop, null, null);
+        member(daNop, null, null);
+        member(daNop, null, null);
+        thuPhiRepo.save(ThuPhiHoKhau.builder()
+                .hoKhau(daNop)
+                .dotThuPhi(dot)
+                .soNguoi(3)
+                .tongPhi(new BigDecimal("54000.00"))
+                .trangThai(TrangThaiThuPhi.DA_NOP)
+                .ngayThu(dot.getNgayBatDau())
+                .ghiChu("Đã nộp đủ")
+                .build());
+
+        HoKhau chuaNop = household(prefix + "001", false);
+        member(chuaNop, null, null);
+        member(chuaNop, refDate.plusDays(10), null);   // đang tạm vắng tại ngày tham chiếu: không tính
+        member(chuaNop, refDate.minusDays(1), null);   // tạm vắng đã kết thúc: vẫn tính
+        member(chuaNop, null, "KHAI_TU");              // đã khai tử: không tính
+
+        household(prefix + "002", false);              // không có thành viên
+        household(null, false);                        // chưa có số hộ khẩu: xếp cuối
+
+        HoKhau daXoa = household(prefix + "000", true); // đã xóa mềm: không xuất hiện
+        member(daXoa, null, null);
+
+        // Đã nộp rồi mới bị xóa mềm (thành viên cuối chuyển đi): không tính vào hộ đã nộp lẫn số đã thu
+        HoKhau daNopRoiXoa = household(prefix + "004", false);
+        thuPhiRepo.save(ThuPhiHoKhau.builder()
+                .hoKhau(daNopRoiXoa)
+                .dotThuPhi(dot)
+                .soNguoi(1)
+                .tongPhi(new BigDecimal("18000.00"))
+                .trangThai(TrangThaiThuPhi.DA_NOP)
+                .ngayThu(dot.getNgayBatDau())
+                .build());
+        daNopRoiXoa.setIsDeleted(true);
+        hoKhauRepo.save(daNopRoiXoa);
+
+        // Bảng tổng hợp theo đợt được dựng lại từ dữ liệu gốc như job hằng đêm
+        tongHopService.rebuildAll();
+    }
+
+    private HoKhau household(String soHoKhau, boolean deleted) {
+        return hoKhauRepo.save(HoKhau.builder()
+                .soHoKhau(soHoKhau)
+                .tenChuHo("Chủ hộ " + (soHoKhau == null ? "không số" : soHoKhau))
+                .diaChi("Tổ 1")
+                .ngayTao(LocalDate.of(2024, 1, 1))
+                .isDeleted(deleted)
+                .build());
+    }
+
+    private void member(HoKhau hoKhau, LocalDate tamVangDen, String trangThai) {
+        nhanKhauRepo.save(NhanKhau.builder()
+                .hoTen("Thành viên " + hoKhau.getId())
+                .ngaySinh(LocalDate.of(1990, 1, 1))
+                .gioiTinh("Nam")
+                .hoKhauId(hoKhau.getId())
+                .tamVangTu(tamVangDen == null ? null : tamVangDen.minusMonths(2))
+                .tamVangDen(tamVangDen)
+                .trangThai(trangThai == null ? "THUONG_TRU" : trangThai)
+                .build());
+    }
+
+    @SuppressWarnings("unchecked")
+    private void assertSameOverview(DotThuPhi dot) {
+        Map<String, Object> expected = legacyOverview(dot);
+        Map<String, Object> actual = thuPhiHoKhauService.getOverviewByPeriod(dot.getId());
+
+        List<ThuPhiHoKhauResponseDto> expectedRows = (List<ThuPhiHoKhauResponseDto>) expected.get("households");
+        List<ThuPhiHoKhauResponseDto> actualRows = (List<ThuPhiHoKhauResponseDto>) actual.get("households");
+
+        assertThat(actualRows)
+                .usingRecursiveFieldByFieldElementComparator(RecursiveComparisonConfiguration.builder()
+                        .withComparatorForType(BigDecimal::compareTo, BigDecimal.class)
+                        .build())
+                .containsExactlyElementsOf(expectedRows);
+
+        // Hộ đã nộp rồi bị xóa mềm không được làm lệch các số đã nộp
+        assertThat((Integer) actual.get("soHoDaNop")).isEqualTo(1);
+        assertThat((BigDecimal) actual.get("tongDaThu")).isEqualByComparingTo("54000.00");
+        assertThat((Integer) actual.get("soHoChuaNop")).isEqualTo((Integer) actual.get("tongHo") - 1);
+
+        for (String key : List.of("tongHo", "soHoDaNop", "soHoChuaNop", "soThang")) {
+            assertThat(actual.get(key)).as(key).isEqualTo(expected.get(key));
+        }
+        for (String key : List.of("tongDuKien", "tongDaThu", "tiLeHoDaNop", "tiLeTienDaThu")) {
+            assertThat((BigDecimal) actual.get(key)).as(key).isEqualByComparingTo((BigDecimal) expected.get(key));
+        }
+    }
+
+    // ========================================
+    // CÁCH TÍNH CŨ (duyệt từng hộ), giữ nguyên để đối chiếu
+    // ========================================
+
+    private Map<String, Object> legacyOverview(DotThuPhi dotThuPhi) {
+        long soThang = calculateMonths(dotThuPhi.getNgayBatDau(), dotThuPhi.getNgayKetThuc());
+        LocalDate today = LocalDate.now();
+        LocalDate end = dotThuPhi.getNgayKetThuc();
+        LocalDate refDate = end != null && today.isAfter(end) ? end : today;
+
+        Map<Long, ThuPhiHoKhau> recordsByHousehold = thuPhiRepo.findByDotThuPhiId(dotThuPhi.getId()).stream()
+                .collect(Collectors.toMap(
+                        record -> record.getHoKhau().getId(),
+                        record -> record,
+                        (left, right) -> left,
+                        LinkedHashMap::new));
+
+        List<HoKhau> households = hoKhauRepo.findActiveHouseholds();
+        households.sort(Comparator.comparing(HoKhau::getSoHoKhau, Comparator.nullsLast(String::compareTo)));
+
+        List<ThuPhiHoKhauResponseDto> rows = new ArrayList<>();
+        int totalHouseholds = households.size();
+        int paidHouseholds = 0;
+        BigDecimal tongDuKien = BigDecimal.ZERO;
+        BigDecimal tongDaThu = BigDecimal.ZERO;
+
+        for (HoKhau hoKhau : households) {
+            ThuPhiHoKhau existing = recordsByHousehold.get(hoKhau.getId());
+            if (existing != null) {
+                BigDecimal paidAmount = existing.getTongPhi() == null ? BigDecimal.ZERO : existing.getTongPhi();
+                tongDuKien = tongDuKien.add(paidAmount);
+                tongDaThu = tongDaThu.add(paidAmount);
+                // Chỉ đếm hộ đang hoạt động, cùng tập hộ với tongHo và tongDaThu
+                paidHouseholds++;
+                rows.add(ThuPhiHoKhauResponseDto.builder()
+                        .id(existing.getId())
+                        .hoKhauId(hoKhau.getId())
+                        .soHoKhau(hoKhau.getSoHoKhau())
+                        .tenChuHo(hoKhau.getTenChuHo())
+                        .dotThuPhiId(dotThuPhi.getId())
+                        .tenDot(dotThuPhi.getTenDot())
+                        .loaiThuPhi(dotThuPhi.getLoai())
+                        .soNguoi(existing.getSoNguoi())
+                        .soThang(soThang)
+                        .tongPhi(existing.getTongPhi())
+                        .trangThai(existing.getTrangThai())
+                        .ngayThu(existing.getNgayThu())
+                        .ghiChu(existing.getGhiChu())
+                        .build());
+                continue;
+            }
+
+            int soNguoi = (int) nhanKhauRepo.countActiveMembers(hoKhau.getId(), refDate);
+            BigDecimal expected = calculateMandatoryAmount(soNguoi, dotThuPhi.getDinhMuc(), soThang,
+                    dotThuPhi.getThuTheoDot());
+            tongDuKien = tongDuKien.add(expected);
+            rows.add(ThuPhiHoKhauResponseDto.builder()
+                    .hoKhauId(hoKhau.getId())
+                    .soHoKhau(hoKhau.getSoHoKhau())
+                    .tenChuHo(hoKhau.getTenChuHo())
+                    .dotThuPhiId(dotThuPhi.getId())
+                    .tenDot(dotThuPhi.getTenDot())
+                    .loaiThuPhi(dotThuPhi.getLoai())
+                    .soNguoi(soNguoi)
+                    .soThang(soThang)
+                    .tongPhi(expected)
+                    .trangThai(TrangThaiThuPhi.CHUA_NOP)
+                    .build());
+        }
+
+        Map<String, Object> summary = new LinkedHashMap<>();
+        summary.put("tongHo", totalHouseholds);
+        summary.put("soHoDaNop", paidHouseholds);
+        summary.put("soHoChuaNop", Math.max(totalHouseholds - paidHouseholds, 0));
+        summary.put("tongDuKien", tongDuKien);
+        summary.put("soThang", soThang);
+        summary.put("tongDaThu", tongDaThu);
+        summary.put("tiLeHoDaNop", ratio(BigDecimal.valueOf(paidHouseholds), BigDecimal.valueOf(totalHouseholds)));
+        summary.put("tiLeTienDaThu", ratio(tongDaThu, tongDuKien));
+        summary.put("households", rows);
+        return summary;
+    }
+
+    private static long calculateMonths(LocalDate start, LocalDate end) {
+        if (start == null || end == null) {
+            return 1L;
+        }
+        long months = ChronoUnit.MONTHS.between(YearMonth.from(start), YearMonth.from(end)) + 1;
+        return Math.max(months, 1L);
+    }
+
+    private static BigDecimal calculateMandatoryAmount(int soNguoi, BigDecimal dinhMuc, long soThang,
+            Boolean thuTheoDot) {
+        if (dinhMuc == null || soNguoi <= 0) {
+            return BigDecimal.ZERO;
+        }
+        if (Boolean.TRUE.equals(thuTheoDot)) {
+            return dinhMuc.multiply(BigDecimal.valueOf(soNguoi));
+        }
+        if (soThang <= 0) {
+            return BigDecimal.ZERO;
+        }
+        return dinhMuc.multiply(BigDecimal.valueOf(soNguoi)).multiply(BigDecimal.valueOf(soThang));
+    }
+
+    private static BigDecimal ratio(BigDecimal numerator, BigDecimal denominator) {
+        if (denominator.compareTo(BigDecimal.ZERO) == 0) {
+            return BigDecimal.ZERO;
+        }
+        return numerator.multiply(BigDecimal.valueOf(100)).divide(denominator, 2, RoundingMode.HALF_UP);
+    }
+}
@@ -1,11 +1,79 @@
 import apiClient from "./apiClient";
 
 /**
- * Lấy danh sách log biến động (chỉ đọc)
- * GET /api/bien-dong
+ * Lấy danh sách log biến động (chỉ đọc, chế độ không phân trang, tương thích ngược)
+ * GET /api/bien-dong?unpaged=true
  */
 export const getAllBienDong = async () => {
-  const response = await apiClient.get("/bien-dong");
+  const response = await apiClient.get("/bien-dong", {
+    params: { unpaged: true },
+  });
+  return response.data;
+};
+
+/**
+ * Lấy một trang log biến động theo con trỏ (mới nhất trước)
+ * GET /api/bien-dong?cursor=...&size=...&hoKhauId=...&nhanKhauId=...&loai=...&tuThoiGian=...&denThoiGian=...
+ * @param {Object} params - {cursor, size, hoKhauId, nhanKhauId, loai, tuThoiGian, denThoiGian}
+ * @returns {Promise<{items: Array<BienDongResponseDto>, size: number, hasMore: boolean, nextCursor: string|null}>}
+ */
+export const getBienDongPage = async (params = {}) => {
+  const response = await apiClient.get("/bien-dong", { params });
+  return response.data;
+};
+
+/**
+ * Dòng thời gian biến động của một hộ khẩu
+ * GET /api/bien-dong/ho-khau/{hoKhauId}?cursor=...&size=...&loai=...
+ */
+export const getBienDongByHoKhau = async (hoKhauId, params = {}) => {
+  const response = await apiClient.get(`/bien-dong/ho-khau/${hoKhauId}`, { params });
+  return response.data;
+};
+
+/**
+ * Dòng thời gian biến động của một nhân khẩu
+ * GET /api/bien-dong/nhan-khau/{nhanKhauId}?cursor=...&size=...&loai=...
+ */
+export const getBienDongByNhanKhau = async (nhanKhauId, params = {}) => {
+  const response = await apiClient.get(`/bien-dong/nhan-khau/${nhanKhauId}`, { params });
+  return response.data;
+};
+
+/**
+ * Tra cứu thay đổi theo trường / người thực hiện (chi tiết có cấu trúc)
+ * GET /api/bien-dong/thay-doi?truong=...&nguoiThucHien=...&hoKhauId=...&nhanKhauId=...&cursor=...&size=...
+ * @param {Object} params - {truong, nguoiThucHien, hoKhauId, nhanKhauId, tuThoiGian, denThoiGian, cursor, size}
+ */
+export const getBienDongThayDoi = async (params = {}) => {
+  const response = await apiClient.get("/bien-dong/thay-doi", { params });
+  return response.data;
+};
+
+/**
+ * Tìm kiếm toàn văn trong nội dung biến động (không phân biệt dấu, xếp theo độ liên quan)
+ * GET /api/bien-dong/tim-kiem?q=...&loai=...&tuThoiGian=...&denThoiGian=...&cursor=...&size=...
+ * @param {string} q - Từ khóa, ví dụ "chuyen ho"
+ * @param {Object} params - {loai, tuThoiGian, denThoiGian, cursor, size}
+ */
+export const searchBienDong = async (q, params = {}) => {
+  const response = await apiClient.get("/bien-dong/tim-kiem", {
+    params: { ...params, q },
+  });
+  return response.data;
+};
+
+/**
+ * Số lượng biến động theo ngày / tháng cho biểu đồ (đọc từ bảng tổng hợp)
+ * GET /api/bien-dong/thong-ke?donVi=THANG&tuNgay=...&denNgay=...&loai=TAM_TRU&loai=TAM_VANG
+ * @param {Object} params - {donVi, tuNgay, denNgay, loai}
+ * @returns {Promise<Array<{ky: string, tong: number, soLuongTheoLoai: Object}>>}
+ */
+export const getBienDongThongKe = async (params = {}) => {
+  const response = await apiClient.get("/bien-dong/thong-ke", {
+    params,
+    paramsSerializer: { indexes: null },
+  });
   return response.data;
 };
 
@@ -17,3 +85,22 @@ export const getBienDongById = async (id) => {
   const response = await apiClient.get(`/bien-dong/${id}`);
   return response.data;
 };
+
+/**
+ * Kết quả kiểm tra chuỗi hash chống sửa gần nhất (ADMIN)
+ * GET /api/bien-dong/chuoi/kiem-tra
+ * @returns {Promise<{hopLe: boolean, soDongDaKiemTra: number, tocDoDongMoiGiay: number, lienKetHong: Array}>}
+ */
+export const getKiemTraChuoi = async () => {
+  const response = await apiClient.get("/bien-dong/chuoi/kiem-tra");
+  return response.data;
+};
+
+/**
+ * Chạy kiểm tra chuỗi hash chống sửa ngay (ADMIN)
+ * POST /api/bien-dong/chuoi/kiem-tra
+ */
+export const runKiemTraChuoi = async () => {
+  const response = await apiClient.post("/bien-dong/chuoi/kiem-tra");
+  return response.data;
+};
@@ -0,0 +1,17 @@
+import apiClient from "./apiClient";
+
+/**
+ * Gợi ý nhân khẩu / hộ khẩu theo chuỗi đang nhập (không phân biệt dấu)
+ * GET /api/goi-y
+ * @param {string} q - Chuỗi đang nhập (họ tên, CMND/CCCD hoặc số hộ khẩu)
+ * @param {Object} [options]
+ * @param {"NHAN_KHAU"|"HO_KHAU"} [options.loai] - Chỉ lấy một loại
+ * @param {number} [options.k] - Số gợi ý tối đa (mặc định 10, tối đa 50)
+ * @returns {Promise<Array<{loai: string, id: number, nhan: string, moTa: string}>>}
+ */
+export const getGoiY = async (q, { loai, k } = {}) => {
+  const response = await apiClient.get("/goi-y", {
+    params: { q, loai, k },
+  });
+  return response.data;
+};
@@ -44,3 +44,17 @@ export const deleteHoKhau = async (id) => {
   const response = await apiClient.delete(`/ho-khau/${id}`);
   return response.data;
 };
+
+/**
+ * Xuất toàn bộ hộ khẩu (kèm số thành viên) ra tệp
+ * GET /api/ho-khau/export
+ * @param {"csv"|"xlsx"} [format="csv"] - Định dạng tệp
+ * @returns {Promise<Blob>}
+ */
+export const exportHoKhau = async (format = "csv") => {
+  const response = await apiClient.get("/ho-khau/export", {
+    params: { format },
+    responseType: "blob",
+  });
+  return response.data;
+};
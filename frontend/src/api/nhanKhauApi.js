@@ -1,12 +1,25 @@
 import apiClient from "./apiClient";
 
 /**
- * Lấy danh sách tất cả nhân khẩu
- * GET /api/nhan-khau
+ * Lấy danh sách tất cả nhân khẩu (chế độ không phân trang, tương thích ngược)
+ * GET /api/nhan-khau?unpaged=true
  * @returns {Promise<Array<NhanKhauResponseDto>>}
  */
 export const getAllNhanKhau = async () => {
-  const response = await apiClient.get("/nhan-khau");
+  const response = await apiClient.get("/nhan-khau", {
+    params: { unpaged: true },
+  });
+  return response.data;
+};
+
+/**
+ * Lấy một trang nhân khẩu theo con trỏ
+ * GET /api/nhan-khau?cursor=...&size=...&hoKhauId=...&trangThai=...&gioiTinh=...&ngaySinhTu=...&ngaySinhDen=...
+ * @param {Object} params - {cursor, size, hoKhauId, trangThai, gioiTinh, ngaySinhTu, ngaySinhDen}
+ * @returns {Promise<{items: Array<NhanKhauResponseDto>, size: number, hasMore: boolean, nextCursor: string|null}>}
+ */
+export const getNhanKhauPage = async (params = {}) => {
+  const response = await apiClient.get("/nhan-khau", { params });
   return response.data;
 };
 
@@ -34,6 +47,20 @@ export const searchNhanKhau = async (keyword) => {
   return response.data;
 };
 
+/**
+ * Tìm kiếm nhân khẩu không dấu theo họ tên hoặc CMND/CCCD, xếp theo độ liên quan
+ * GET /api/nhan-khau/tim-kiem?q=...&cursor=...&size=...
+ * @param {string} q - Từ khóa, ví dụ "nguyen van an" hoặc số CCCD
+ * @param {Object} params - {cursor, size}
+ * @returns {Promise<{items: Array<NhanKhauResponseDto>, size: number, hasMore: boolean, nextCursor: string|null}>}
+ */
+export const timKiemNhanKhau = async (q, params = {}) => {
+  const response = await apiClient.get("/nhan-khau/tim-kiem", {
+    params: { ...params, q },
+  });
+  return response.data;
+};
+
 /**
  * Tạo nhân khẩu mới (ADMIN, TOTRUONG)
  * POST /api/nhan-khau
@@ -146,6 +173,22 @@ export const getAgeStats = async () => {
   return response.data;
 };
 
+/**
+ * Tháp dân số: nhóm tuổi x giới tính x trạng thái
+ * GET /api/nhan-khau/stats/age-pyramid
+ * @param {Object} [params]
+ * @param {number} [params.doRong] - Độ rộng mỗi nhóm tuổi (mặc định 5)
+ * @param {number} [params.tuoiToiDa] - Tuổi bắt đầu nhóm cuối (mặc định 80)
+ * @param {string} [params.trangThai] - Chỉ đếm nhân khẩu ở trạng thái này
+ * @returns {Promise<{total: number, khongRoNgaySinh: number, doRong: number, nhom: Array<{tu: number, den: number|null, label: string, soNguoi: number, byGioiTinh: Object, byTrangThai: Object}>}>}
+ */
+export const getAgePyramid = async (params = {}) => {
+  const response = await apiClient.get("/nhan-khau/stats/age-pyramid", {
+    params,
+  });
+  return response.data;
+};
+
 /**
  * Thống kê nhân khẩu theo trạng thái
  * GET /api/nhan-khau/stats/status
@@ -155,3 +198,36 @@ export const getStatusStats = async () => {
   const response = await apiClient.get("/nhan-khau/stats/status");
   return response.data;
 };
+
+/**
+ * Nhập nhân khẩu hàng loạt từ tệp CSV (ADMIN, TOTRUONG)
+ * POST /api/nhan-khau/import (multipart/form-data)
+ * Trả về kết quả từng dòng; HTTP 422 (không dòng nào được ghi) vẫn trả về báo cáo thay vì ném lỗi
+ * @param {File} file - Tệp CSV, dòng đầu là tên cột (hoTen, ngaySinh, ..., hoKhauId hoặc soHoKhau)
+ * @param {Object} options - {dryRun?: boolean, choPhepMotPhan?: boolean}
+ * @returns {Promise<NhanKhauImportResponseDto>}
+ */
+export const importNhanKhau = async (file, { dryRun = false, choPhepMotPhan = false } = {}) => {
+  const formData = new FormData();
+  formData.append("file", file);
+  const response = await apiClient.post("/nhan-khau/import", formData, {
+    params: { dryRun, choPhepMotPhan },
+    headers: { "Content-Type": "multipart/form-data" },
+    validateStatus: (status) => status === 200 || status === 201 || status === 422,
+  });
+  return response.data;
+};
+
+/**
+ * Xuất toàn bộ nhân khẩu (kèm thông tin hộ khẩu) ra tệp
+ * GET /api/nhan-khau/export
+ * @param {"csv"|"xlsx"} [format="csv"] - Định dạng tệp
+ * @returns {Promise<Blob>}
+ */
+export const exportNhanKhau = async (format = "csv") => {
+  const response = await apiClient.get("/nhan-khau/export", {
+    params: { format },
+    responseType: "blob",
+  });
+  return response.data;
+};
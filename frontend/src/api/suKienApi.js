@@ -0,0 +1,33 @@
+import apiClient from "./apiClient";
+
+/**
+ * Mở luồng sự kiện trực tiếp (SSE) thay cho việc gọi lại API định kỳ
+ * GET /api/su-kien/stream?loai=bien-dong&loai=thu-phi&access_token=...
+ * EventSource tự kết nối lại và gửi Last-Event-ID để nhận tiếp phần bỏ lỡ.
+ * @param {Object} handlers - {onBienDong, onThuPhi, onReset, onError}
+ * @param {Array<string>} loai - Loại sự kiện muốn nhận (mặc định: tất cả được phép)
+ * @returns {EventSource} - Gọi .close() khi rời trang
+ */
+export const openSuKienStream = (handlers = {}, loai = []) => {
+  const params = new URLSearchParams();
+  loai.forEach((l) => params.append("loai", l));
+  const token = localStorage.getItem("token");
+  if (token) {
+    params.append("access_token", token);
+  }
+
+  const source = new EventSource(`${apiClient.defaults.baseURL}/su-kien/stream?${params.toString()}`);
+  if (handlers.onBienDong) {
+    source.addEventListener("bien-dong", (e) => handlers.onBienDong(JSON.parse(e.data)));
+  }
+  if (handlers.onThuPhi) {
+    source.addEventListener("thu-phi", (e) => handlers.onThuPhi(JSON.parse(e.data)));
+  }
+  if (handlers.onReset) {
+    source.addEventListener("reset", () => handlers.onReset());
+  }
+  if (handlers.onError) {
+    source.onerror = handlers.onError;
+  }
+  return source;
+};
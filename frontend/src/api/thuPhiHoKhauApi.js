@@ -6,17 +6,31 @@ import apiClient from "./apiClient";
  * @returns {Promise<Array<ThuPhiHoKhauResponseDto>>}
  */
 export const getAllThuPhiHoKhau = async () => {
-  const response = await apiClient.get("/thu-phi-ho-khau");
+  const response = await apiClient.get("/thu-phi-ho-khau", {
+    params: { unpaged: true },
+  });
+  return response.data;
+};
+
+/**
+ * Lấy một trang bản ghi thu phí theo con trỏ (sắp xếp theo số hộ khẩu)
+ * GET /api/thu-phi-ho-khau?cursor=...&size=...&dotThuPhiId=...&hoKhauId=...&trangThai=...
+ * @param {Object} params - {cursor, size, dotThuPhiId, hoKhauId, trangThai}
+ * @returns {Promise<{items: Array<ThuPhiHoKhauResponseDto>, size: number, hasMore: boolean, nextCursor: string|null}>}
+ */
+export const getThuPhiHoKhauPage = async (params = {}) => {
+  const response = await apiClient.get("/thu-phi-ho-khau", { params });
   return response.data;
 };
 
 /**
- * Thống kê tổng quan về thu phí hộ khẩu
+ * Thống kê tổng quan về thu phí hộ khẩu (kèm byPeriod, byYear)
  * GET /api/thu-phi-ho-khau/stats
- * @returns {Promise<{totalRecords: number, totalExpectedFee: number, totalHouseholds: number, paidRecords: number, unpaidRecords: number}>}
+ * @param {Object} [params] - {tuNgay?: 'yyyy-MM-dd', denNgay?: 'yyyy-MM-dd'} lọc theo ngày thu
+ * @returns {Promise<{totalRecords: number, totalExpectedFee: number, totalHouseholds: number, paidRecords: number, unpaidRecords: number, byPeriod: Array, byYear: Array}>}
  */
-export const getThuPhiStats = async () => {
-  const response = await apiClient.get("/thu-phi-ho-khau/stats");
+export const getThuPhiStats = async (params = {}) => {
+  const response = await apiClient.get("/thu-phi-ho-khau/stats", { params });
   return response.data;
 };
 
@@ -84,6 +98,20 @@ export const createThuPhiHoKhau = async (data) => {
   return response.data;
 };
 
+/**
+ * Ghi nhận thu phí hàng loạt (ADMIN, KETOAN)
+ * POST /api/thu-phi-ho-khau/bulk
+ * Trả về kết quả từng dòng; HTTP 422 (không dòng nào được ghi) vẫn trả về báo cáo thay vì ném lỗi
+ * @param {Object} data - {items: ThuPhiHoKhauRequestDto[], choPhepMotPhan?: boolean}
+ * @returns {Promise<ThuPhiHoKhauBulkResponseDto>}
+ */
+export const createThuPhiHoKhauBulk = async (data) => {
+  const response = await apiClient.post("/thu-phi-ho-khau/bulk", data, {
+    validateStatus: (status) => status === 201 || status === 422,
+  });
+  return response.data;
+};
+
 /**
  * Cập nhật bản ghi thu phí (ADMIN, KETOAN)
  * PUT /api/thu-phi-ho-khau/{id}
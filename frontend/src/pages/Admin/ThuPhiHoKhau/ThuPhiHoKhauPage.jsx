@@ -196,6 +196,7 @@ function ThuPhiHoKhauPage() {
       handleCloseModal();
       loadDataForDot(selectedDotId);
     } catch (err) {
+      if (handleDuplicateRecord(err)) return;
       alert(err.response?.data?.message || "Có lỗi xảy ra khi thu phí");
     } finally {
       setIsSubmitting(false);
@@ -272,6 +273,7 @@ function ThuPhiHoKhauPage() {
       handleCloseModal();
       loadDataForDot(selectedDotId);
     } catch (err) {
+      if (handleDuplicateRecord(err)) return;
       alert(err.response?.data?.message || "Có lỗi xảy ra");
     } finally {
       setIsSubmitting(false);
@@ -298,6 +300,16 @@ function ThuPhiHoKhauPage() {
     setCalculatedData(null);
   };
 
+  // 409: hộ khẩu đã có bản ghi trong đợt (có thể do người khác vừa ghi nhận), body là bản ghi đó
+  const handleDuplicateRecord = (err) => {
+    if (err.response?.status !== 409) return false;
+    const existing = err.response.data;
+    alert(`Hộ khẩu ${existing?.soHoKhau ?? ""} đã có bản ghi thu phí trong đợt này (ID = ${existing?.id}).`);
+    handleCloseModal();
+    loadDataForDot(selectedDotId);
+    return true;
+  };
+
   const getTrangThaiLabel = (trangThai) => {
     const labels = {
       DA_NOP: "Đã nộp",